@@ -0,0 +1,73 @@
+package drx.drone.service.drone_med_service.benchmark;
+
+import drx.drone.service.drone_med_service.dto.MedRequest;
+import drx.drone.service.drone_med_service.model.Drone;
+import drx.drone.service.drone_med_service.model.State;
+import drx.drone.service.drone_med_service.model.WeightModel;
+import drx.drone.service.drone_med_service.service.DispatchPlanner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One {@link DispatchPlanner} round packing the queued orders onto the idle drones, by number of
+ * orders. Drones are of all four weight classes with batteries above the loading minimum, orders
+ * weigh 1-120.
+ */
+@org.openjdk.jmh.annotations.State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DispatchPlannerBenchmark {
+
+    @Param({"10000"})
+    public int drones;
+
+    @Param({"10000", "100000"})
+    public int orders;
+
+    private List<Drone> idle;
+    private List<MedRequest> queued;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        float[] limits = {500, 400, 200, 100};
+        idle = new ArrayList<>(drones);
+        for (int i = 0; i < drones; i++) {
+            int model = random.nextInt(limits.length);
+            idle.add(Drone.builder()
+                    .serialNumber("d" + i)
+                    .weightClass(WeightModel.values()[model])
+                    .weightLimit(limits[model])
+                    .batteryCapacity(26 + random.nextInt(75))
+                    .state(State.IDLE)
+                    .loadedWeight(0f)
+                    .medCount(0)
+                    .build());
+        }
+        queued = new ArrayList<>(orders);
+        for (int i = 0; i < orders; i++) {
+            queued.add(MedRequest.builder().name("med").code("MED_" + i).weight(1 + random.nextInt(120)).build());
+        }
+    }
+
+    @Benchmark
+    public DispatchPlanner.Plan plan() {
+        return DispatchPlanner.plan(idle, queued);
+    }
+}
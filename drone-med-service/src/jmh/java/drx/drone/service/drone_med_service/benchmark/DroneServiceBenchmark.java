@@ -0,0 +1,147 @@
+package drx.drone.service.drone_med_service.benchmark;
+
+import drx.drone.service.drone_med_service.dto.DroneRequest;
+import drx.drone.service.drone_med_service.dto.MedRequest;
+import drx.drone.service.drone_med_service.exception.ErrorResponse;
+import drx.drone.service.drone_med_service.model.Drone;
+import drx.drone.service.drone_med_service.model.Medication;
+import drx.drone.service.drone_med_service.model.State;
+import drx.drone.service.drone_med_service.model.WeightModel;
+import drx.drone.service.drone_med_service.repository.DroneRepository;
+import drx.drone.service.drone_med_service.service.DroneCommandQueues;
+import drx.drone.service.drone_med_service.service.DroneMetrics;
+import drx.drone.service.drone_med_service.service.DroneService;
+import drx.drone.service.drone_med_service.service.DroneWriteBehind;
+import drx.drone.service.drone_med_service.service.FleetCache;
+import drx.drone.service.drone_med_service.service.MedicationCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link DroneService} hot paths over the in-memory repositories, by fleet size, meds per loaded drone
+ * and with the {@link FleetCache} on or off. A tenth of the fleet is LOADED with {@code payload} meds
+ * each, the rest is IDLE.
+ */
+@org.openjdk.jmh.annotations.State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DroneServiceBenchmark {
+
+    @Param({"1000", "100000"})
+    public int fleetSize;
+
+    @Param({"1", "5", "10"})
+    public int payload;
+
+    @Param({"false", "true"})
+    public boolean cacheEnabled;
+
+    private InMemoryRepositories.Drones drones;
+    private DroneRepository droneRepository;
+    private DroneService service;
+    private List<String> idle;
+    private List<Drone> loaded;
+    private final MedRequest medRequest = MedRequest.builder().name("bench").code("BENCH").weight(20).build();
+    private int next;
+
+    @Setup
+    public void setUp() {
+        drones = new InMemoryRepositories.Drones();
+        InMemoryRepositories.Medications medications = new InMemoryRepositories.Medications();
+        idle = new ArrayList<>();
+        loaded = new ArrayList<>();
+        for (int i = 0; i < fleetSize; i++) {
+            String serialNumber = "drone-" + i;
+            boolean isLoaded = i % 10 == 0;
+            List<String> meds = new ArrayList<>();
+            if (isLoaded) {
+                for (int m = 0; m < payload; m++) {
+                    Medication medication = Medication.builder().id(serialNumber + "-med-" + m).name("med").code("MED").weight(10).build();
+                    medications.put(medication);
+                    meds.add(medication.getId());
+                }
+            }
+            Drone drone = Drone.builder()
+                    .serialNumber(serialNumber)
+                    .weightClass(WeightModel.HEAVY_WEIGHT)
+                    .weightLimit(500)
+                    .batteryCapacity(100)
+                    .state(isLoaded ? State.LOADED : State.IDLE)
+                    .loadedMeds(meds)
+                    .loadedWeight(10f * meds.size())
+                    .medCount(meds.size())
+                    .version(0L)
+                    .build();
+            drones.put(drone);
+            if (isLoaded) {
+                loaded.add(drone);
+            } else {
+                idle.add(serialNumber);
+            }
+        }
+        FleetCache fleetCache = new FleetCache(cacheEnabled, fleetSize * 2);
+        fleetCache.warm(drones.all());
+        droneRepository = drones.repository();
+        service = new DroneService(droneRepository, medications.repository(), fleetCache, event -> { }, new DroneMetrics(new SimpleMeterRegistry()),
+                new MedicationCache(cacheEnabled, fleetSize * 10L, 600_000), new DroneWriteBehind(droneRepository, fleetCache, false, 200),
+                new DroneCommandQueues(false, 0, 0));
+    }
+
+    @Benchmark
+    public ErrorResponse loadDrone() throws Exception {
+        String serialNumber = idle.get(next++ % idle.size());
+        Drone before = droneRepository.findById(serialNumber).orElseThrow();
+        ErrorResponse response = service.loadDrone(serialNumber, medRequest);
+        // put the drone back so every call loads onto an empty IDLE drone
+        drones.put(before);
+        return response;
+    }
+
+    @Benchmark
+    public float getTotalLoadedWeight() {
+        return service.getTotalLoadedWeight(loaded.get(next++ % loaded.size()));
+    }
+
+    @Benchmark
+    public Optional<List<Medication>> getLoadedMeds() {
+        return service.getLoadedMeds(loaded.get(next++ % loaded.size()).getSerialNumber());
+    }
+
+    @Benchmark
+    public Optional<List<Drone>> getLoadedDrones() {
+        return service.getLoadedDrones();
+    }
+
+    @Benchmark
+    public Optional<List<Drone>> getIdleDrones() {
+        return service.getIdleDrones();
+    }
+
+    @Benchmark
+    public Optional<Drone> registerDrone() {
+        String serialNumber = "registered-" + next++;
+        Optional<Drone> drone = service.registerDrone(DroneRequest.builder()
+                .serialNumber(serialNumber)
+                .weightClass(WeightModel.MIDDLE_WEIGHT)
+                .build());
+        drones.remove(serialNumber);
+        return drone;
+    }
+}
@@ -0,0 +1,99 @@
+package drx.drone.service.drone_med_service.benchmark;
+
+import drx.drone.service.drone_med_service.DroneMedServiceApplication;
+import drx.drone.service.drone_med_service.model.Drone;
+import drx.drone.service.drone_med_service.model.State;
+import drx.drone.service.drone_med_service.model.WeightModel;
+import drx.drone.service.drone_med_service.service.DroneService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * {@link DroneService#getLoadedDrones()} against a real database as the fleet grows from 1k to 1M
+ * drones, with the number of LOADED drones fixed: with the {@code state} index the time stays flat.
+ * Boots the application without a web server, so it needs {@code -Dspring.data.mongodb.uri} (see
+ * the README). Seeded drones are removed afterwards.
+ */
+@org.openjdk.jmh.annotations.State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DroneStateQueryMongoBenchmark {
+
+    private static final String PREFIX = "bench-";
+    private static final int LOADED_DRONES = 100;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int fleetSize;
+
+    private ConfigurableApplicationContext context;
+    private MongoTemplate mongoTemplate;
+    private DroneService droneService;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(DroneMedServiceApplication.class).web(WebApplicationType.NONE).run();
+        mongoTemplate = context.getBean(MongoTemplate.class);
+        droneService = context.getBean(DroneService.class);
+        IndexResolver.create(context.getBean(MongoMappingContext.class)).resolveIndexFor(Drone.class)
+                .forEach(mongoTemplate.indexOps(Drone.class)::createIndex);
+        seed(0, LOADED_DRONES, State.LOADED);
+        seed(LOADED_DRONES, fleetSize, State.IDLE);
+    }
+
+    @TearDown
+    public void tearDown() {
+        mongoTemplate.remove(query(where("serialNumber").regex("^" + PREFIX)), Drone.class);
+        context.close();
+    }
+
+    @Benchmark
+    public Optional<List<Drone>> getLoadedDrones() {
+        return droneService.getLoadedDrones();
+    }
+
+    private void seed(int from, int to, State state) {
+        List<Drone> batch = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            batch.add(Drone.builder()
+                    .serialNumber(PREFIX + i)
+                    .weightClass(WeightModel.MIDDLE_WEIGHT)
+                    .weightLimit(400)
+                    .batteryCapacity(100)
+                    .state(state)
+                    .build());
+            if (batch.size() == 10_000) {
+                mongoTemplate.insert(batch, Drone.class);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            mongoTemplate.insert(batch, Drone.class);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package drx.drone.service.drone_med_service.benchmark;
+
+import drx.drone.service.drone_med_service.model.Drone;
+import drx.drone.service.drone_med_service.model.State;
+import drx.drone.service.drone_med_service.model.WeightModel;
+import drx.drone.service.drone_med_service.service.FleetSnapshots;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warm start: {@link FleetSnapshots#loadFleet()} mapping a snapshot of the fleet back, a quarter of it
+ * loaded with three meds, and laying the 1k drones written since over it.
+ */
+@org.openjdk.jmh.annotations.State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class FleetSnapshotBenchmark {
+
+    private static final int CHANGED = 1_000;
+
+    @Param({"100000", "1000000"})
+    public int fleetSize;
+
+    private Path dir;
+    private FleetSnapshots snapshots;
+
+    @Setup
+    public void setUp() throws IOException {
+        InMemoryRepositories.Drones drones = new InMemoryRepositories.Drones();
+        for (int i = 0; i < fleetSize; i++) {
+            drones.put(drone(i, 1_000L));
+        }
+        dir = Files.createTempDirectory("fleet-snapshot-benchmark");
+        snapshots = new FleetSnapshots(drones.repository(), true, dir.resolve("fleet.snapshot").toString());
+        snapshots.snapshot();
+        for (int i = 0; i < CHANGED; i++) {
+            drones.put(drone(i, System.currentTimeMillis()));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(dir.resolve("fleet.snapshot"));
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public List<Drone> loadFleet() {
+        return snapshots.loadFleet();
+    }
+
+    private static Drone drone(int i, long updatedAt) {
+        List<String> meds = i % 4 == 0 ? List.of("m" + i % 97, "m" + i % 89, "m" + i % 83) : List.of();
+        return Drone.builder()
+                .serialNumber(String.format("SN-%08d", i))
+                .weightClass(WeightModel.values()[i % WeightModel.values().length])
+                .weightLimit(500f)
+                .batteryCapacity(i % 101)
+                .state(meds.isEmpty() ? State.IDLE : State.LOADED)
+                .loadedMeds(new ArrayList<>(meds))
+                .loadedWeight(meds.size() * 25f)
+                .medCount(meds.size())
+                .version(1L)
+                .updatedAt(updatedAt)
+                .build();
+    }
+}
@@ -0,0 +1,261 @@
+package drx.drone.service.drone_med_service.benchmark;
+
+import drx.drone.service.drone_med_service.dto.TelemetryReading;
+import drx.drone.service.drone_med_service.model.Drone;
+import drx.drone.service.drone_med_service.model.Medication;
+import drx.drone.service.drone_med_service.model.State;
+import drx.drone.service.drone_med_service.model.WeightModel;
+import drx.drone.service.drone_med_service.repository.DroneRepository;
+import drx.drone.service.drone_med_service.repository.MedicationRepository;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Map-backed stand-ins for the repositories, so the benchmarks measure the service and not the
+ * database. Only the methods {@link drx.drone.service.drone_med_service.service.DroneService} calls
+ * are implemented, with the same guards as the Mongo updates; drones are indexed by state like the
+ * {@code state} index does. Single threaded, like a JMH benchmark thread, or the one thread a
+ * {@link drx.drone.service.drone_med_service.service.TelemetryBuffer} flushes on.
+ */
+final class InMemoryRepositories {
+
+    private InMemoryRepositories() {
+    }
+
+    static final class Drones implements InvocationHandler {
+
+        private final Map<String, Drone> drones = new HashMap<>();
+        private final Map<State, Set<String>> byState = new EnumMap<>(State.class);
+
+        Drones() {
+            for (State state : State.values()) {
+                byState.put(state, new LinkedHashSet<>());
+            }
+        }
+
+        DroneRepository repository() {
+            return (DroneRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{DroneRepository.class}, this);
+        }
+
+        void put(Drone drone) {
+            Drone previous = drones.put(drone.getSerialNumber(), drone);
+            if (previous != null) {
+                byState.get(previous.getState()).remove(previous.getSerialNumber());
+            }
+            byState.get(drone.getState()).add(drone.getSerialNumber());
+        }
+
+        void remove(String serialNumber) {
+            Drone removed = drones.remove(serialNumber);
+            if (removed != null) {
+                byState.get(removed.getState()).remove(serialNumber);
+            }
+        }
+
+        Collection<Drone> all() {
+            return drones.values();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if (method.getDeclaringClass() == Object.class) {
+                return switch (method.getName()) {
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> "InMemoryDroneRepository";
+                };
+            }
+            return switch (method.getName()) {
+                case "isAvailable" -> true;
+                case "save" -> save((Drone) args[0]);
+                case "findById" -> Optional.ofNullable(drones.get((String) args[0]));
+                case "findAllById" -> findAllById((Iterable<String>) args[0]);
+                case "findAll" -> new ArrayList<>(drones.values());
+                case "findByState" -> findByState((State) args[0]);
+                case "loadMedication" -> loadMedication((String) args[0], (String) args[1], (Float) args[2]);
+                case "transitionState" -> transition((String) args[0], (Collection<State>) args[1], (State) args[2], false);
+                case "unload" -> transition((String) args[0], List.of((State) args[1]), (State) args[2], true);
+                case "updateAll" -> updateAll((Collection<Drone>) args[0]);
+                case "backfillPayload" -> null;
+                case "count" -> (long) drones.size();
+                case "streamAll" -> streamAll((State) args[0], (WeightModel) args[1]);
+                case "findChangedSince" -> findChangedSince((Long) args[0]);
+                case "applyTelemetry" -> applyTelemetry((Collection<TelemetryReading>) args[0]);
+                default -> throw new UnsupportedOperationException(method.toString());
+            };
+        }
+
+        private Drone save(Drone drone) {
+            drone.setVersion(drone.getVersion() == null ? 0 : drone.getVersion() + 1);
+            put(drone);
+            return drone;
+        }
+
+        private List<Drone> findAllById(Iterable<String> ids) {
+            List<Drone> found = new ArrayList<>();
+            for (String id : ids) {
+                Drone drone = drones.get(id);
+                if (drone != null) {
+                    found.add(drone);
+                }
+            }
+            return found;
+        }
+
+        private List<Drone> findByState(State state) {
+            List<Drone> found = new ArrayList<>(byState.get(state).size());
+            for (String serialNumber : byState.get(state)) {
+                found.add(drones.get(serialNumber));
+            }
+            return found;
+        }
+
+        private Stream<Drone> streamAll(State state, WeightModel weightClass) {
+            return new ArrayList<>(drones.values()).stream()
+                    .filter(drone -> state == null || drone.getState() == state)
+                    .filter(drone -> weightClass == null || drone.getWeightClass() == weightClass);
+        }
+
+        private List<Drone> findChangedSince(long since) {
+            List<Drone> changed = new ArrayList<>();
+            for (Drone drone : drones.values()) {
+                if (drone.getUpdatedAt() != null && drone.getUpdatedAt() >= since) {
+                    changed.add(drone);
+                }
+            }
+            return changed;
+        }
+
+        private int applyTelemetry(Collection<TelemetryReading> readings) {
+            int updated = 0;
+            for (TelemetryReading reading : readings) {
+                Drone drone = drones.get(reading.getSerialNumber());
+                if (drone == null || drone.getBatteryReportedAt() != null && drone.getBatteryReportedAt() >= reading.getTimestamp()) {
+                    continue;
+                }
+                put(drone.toBuilder()
+                        .batteryCapacity(reading.getBattery())
+                        .batteryReportedAt(reading.getTimestamp())
+                        .updatedAt(System.currentTimeMillis())
+                        .version(drone.getVersion() + 1)
+                        .build());
+                updated++;
+            }
+            return updated;
+        }
+
+        private Drone loadMedication(String serialNumber, String medId, float medWeight) {
+            Drone drone = drones.get(serialNumber);
+            if (drone == null
+                    || !Drone.LOADABLE_STATES.contains(drone.getState())
+                    || drone.getBatteryCapacity() <= Drone.MIN_LOADING_BATTERY
+                    || drone.getMedCount() >= Drone.MAX_MED_COUNT
+                    || drone.getLoadedWeight() + medWeight > drone.getWeightLimit()) {
+                return null;
+            }
+            float loadedWeight = drone.getLoadedWeight() + medWeight;
+            List<String> loadedMeds = new ArrayList<>(drone.getLoadedMeds());
+            loadedMeds.add(medId);
+            Drone loaded = drone.toBuilder()
+                    .state(loadedWeight >= drone.getWeightLimit() ? State.LOADED : State.LOADING)
+                    .loadedWeight(loadedWeight)
+                    .medCount(drone.getMedCount() + 1)
+                    .batteryCapacity(drone.getBatteryCapacity() - Drone.LOAD_BATTERY_COST)
+                    .loadedMeds(loadedMeds)
+                    .version(drone.getVersion() + 1)
+                    .build();
+            put(loaded);
+            return loaded;
+        }
+
+        private Drone transition(String serialNumber, Collection<State> from, State to, boolean unload) {
+            Drone drone = drones.get(serialNumber);
+            if (drone == null || !from.contains(drone.getState())) {
+                return null;
+            }
+            Drone.DroneBuilder moved = drone.toBuilder().state(to).version(drone.getVersion() + 1);
+            if (unload) {
+                moved.loadedMeds(new ArrayList<>()).loadedWeight(0f).medCount(0);
+            }
+            Drone updated = moved.build();
+            put(updated);
+            return updated;
+        }
+
+        private List<Drone> updateAll(Collection<Drone> written) {
+            List<Drone> applied = new ArrayList<>();
+            for (Drone drone : written) {
+                Drone stored = drones.get(drone.getSerialNumber());
+                if (stored != null && stored.getVersion().equals(drone.getVersion())) {
+                    Drone updated = drone.toBuilder().version(drone.getVersion() + 1).build();
+                    put(updated);
+                    applied.add(updated);
+                }
+            }
+            return applied;
+        }
+    }
+
+    static final class Medications implements InvocationHandler {
+
+        private final Map<String, Medication> medications = new HashMap<>();
+
+        MedicationRepository repository() {
+            return (MedicationRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{MedicationRepository.class}, this);
+        }
+
+        void put(Medication medication) {
+            medications.put(medication.getId(), medication);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if (method.getDeclaringClass() == Object.class) {
+                return switch (method.getName()) {
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> "InMemoryMedicationRepository";
+                };
+            }
+            return switch (method.getName()) {
+                case "save" -> {
+                    put((Medication) args[0]);
+                    yield args[0];
+                }
+                case "bulkSave" -> {
+                    ((List<Medication>) args[0]).forEach(this::put);
+                    yield null;
+                }
+                case "findById" -> Optional.ofNullable(medications.get((String) args[0]));
+                case "findAllById" -> {
+                    List<Medication> found = new ArrayList<>();
+                    for (String id : (Iterable<String>) args[0]) {
+                        Medication medication = medications.get(id);
+                        if (medication != null) {
+                            found.add(medication);
+                        }
+                    }
+                    yield found;
+                }
+                case "findAll" -> new ArrayList<>(medications.values());
+                default -> throw new UnsupportedOperationException(method.toString());
+            };
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package drx.drone.service.drone_med_service.benchmark;
+
+import drx.drone.service.drone_med_service.DroneMedServiceApplication;
+import drx.drone.service.drone_med_service.model.Drone;
+import drx.drone.service.drone_med_service.model.Medication;
+import drx.drone.service.drone_med_service.model.State;
+import drx.drone.service.drone_med_service.model.WeightModel;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Requests per second of {@code POST /{serialNumber}/loadMeds} and {@code GET /available} over HTTP,
+ * with 1k to 10k requests in flight, on platform or virtual request threads. Each invocation is a
+ * round of 10k requests; those that fail or don't get a 2xx are counted as {@code failures}. Boots
+ * the application on a random port, so it needs {@code -Dspring.data.mongodb.uri} (see the README),
+ * and the virtual runs need Java 21+. Seeded drones and medications are removed afterwards.
+ */
+@org.openjdk.jmh.annotations.State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class RequestThreadingMongoBenchmark {
+
+    private static final String PREFIX = "load-";
+    private static final String MED_NAME = "load-test";
+    private static final int REQUESTS = 10_000;
+    // 5 loads each on a full battery, so every load in a round is accepted
+    private static final int LOADABLE_DRONES = REQUESTS / 5;
+    private static final int AVAILABLE_DRONES = 100;
+    private static final String LOAD_BODY = "{\"name\":\"" + MED_NAME + "\",\"code\":\"LOAD_TEST\",\"weight\":1}";
+
+    @Param({"1000", "2500", "5000", "10000"})
+    public int clients;
+
+    @Param({"false", "true"})
+    public boolean virtualThreads;
+
+    private ConfigurableApplicationContext context;
+    private MongoTemplate mongoTemplate;
+    private String baseUri;
+    private boolean loading;
+    private final HttpClient http = HttpClient.newHttpClient();
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @org.openjdk.jmh.annotations.State(Scope.Thread)
+    public static class Failures {
+
+        public long failures;
+    }
+
+    @Setup
+    public void setUp(BenchmarkParams params) {
+        context = new SpringApplicationBuilder(DroneMedServiceApplication.class)
+                .properties("server.port=0",
+                        "server.tomcat.max-connections=20000",
+                        "server.tomcat.accept-count=10000",
+                        "spring.threads.virtual.enabled=" + virtualThreads)
+                .run();
+        if (virtualThreads && !Threading.VIRTUAL.isActive(context.getEnvironment())) {
+            context.close();
+            throw new IllegalStateException("virtual threads need Java 21+");
+        }
+        mongoTemplate = context.getBean(MongoTemplate.class);
+        baseUri = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/api/v1/drones";
+        loading = params.getBenchmark().endsWith("loadMeds");
+        seed(loading ? LOADABLE_DRONES : AVAILABLE_DRONES);
+    }
+
+    // every round of loads starts on empty drones with a full battery
+    @Setup(Level.Invocation)
+    public void resetDrones() {
+        if (loading) {
+            mongoTemplate.updateMulti(query(where("serialNumber").regex("^" + PREFIX)), Update.update("state", State.IDLE)
+                    .set("batteryCapacity", 100)
+                    .set("loadedMeds", List.of())
+                    .set("loadedWeight", 0f)
+                    .set("medCount", 0), Drone.class);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        mongoTemplate.remove(query(where("serialNumber").regex("^" + PREFIX)), Drone.class);
+        mongoTemplate.remove(query(where("name").is(MED_NAME)), Medication.class);
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(REQUESTS)
+    public void loadMeds(Failures failures) throws InterruptedException {
+        failures.failures += round(i -> HttpRequest.newBuilder(URI.create(baseUri + "/" + PREFIX + (i % LOADABLE_DRONES) + "/loadMeds"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(LOAD_BODY))
+                .build());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(REQUESTS)
+    public void available(Failures failures) throws InterruptedException {
+        failures.failures += round(i -> HttpRequest.newBuilder(URI.create(baseUri + "/available")).GET().build());
+    }
+
+    /**
+     * Sends {@link #REQUESTS} requests keeping {@code clients} of them in flight.
+     *
+     * @return - requests that failed or didn't get a 2xx
+     */
+    private int round(IntFunction<HttpRequest> request) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(clients);
+        CountDownLatch done = new CountDownLatch(REQUESTS);
+        AtomicInteger failures = new AtomicInteger();
+        for (int i = 0; i < REQUESTS; i++) {
+            inFlight.acquire();
+            http.sendAsync(request.apply(i), HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                if (error != null || response.statusCode() >= 300) {
+                    failures.incrementAndGet();
+                }
+                inFlight.release();
+                done.countDown();
+            });
+        }
+        if (!done.await(5, TimeUnit.MINUTES)) {
+            throw new IllegalStateException("round of " + REQUESTS + " requests did not finish in 5 minutes");
+        }
+        return failures.get();
+    }
+
+    private void seed(int count) {
+        List<Drone> drones = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            drones.add(Drone.builder()
+                    .serialNumber(PREFIX + i)
+                    .weightClass(WeightModel.HEAVY_WEIGHT)
+                    .weightLimit(500)
+                    .batteryCapacity(100)
+                    .state(State.IDLE)
+                    .loadedMeds(new ArrayList<>())
+                    .loadedWeight(0f)
+                    .medCount(0)
+                    .version(0L)
+                    .build());
+        }
+        mongoTemplate.insert(drones, Drone.class);
+    }
+}
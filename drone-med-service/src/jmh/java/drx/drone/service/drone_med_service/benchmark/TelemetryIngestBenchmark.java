@@ -0,0 +1,134 @@
+package drx.drone.service.drone_med_service.benchmark;
+
+import drx.drone.service.drone_med_service.dto.TelemetryReading;
+import drx.drone.service.drone_med_service.exception.ErrorResponse;
+import drx.drone.service.drone_med_service.model.Drone;
+import drx.drone.service.drone_med_service.model.State;
+import drx.drone.service.drone_med_service.model.WeightModel;
+import drx.drone.service.drone_med_service.service.FleetCache;
+import drx.drone.service.drone_med_service.service.TelemetryBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TelemetryBuffer} over the in-memory drone repository with a fleet of 10k drones: readings
+ * accepted per second from four senders of 100-reading batches while the buffer flushes on a thread
+ * of its own, and the time to write out a buffer holding a reading for every drone.
+ */
+@org.openjdk.jmh.annotations.State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TelemetryIngestBenchmark {
+
+    private static final int DRONES = 10_000;
+    private static final int BATCH = 100;
+
+    private ExecutorService flusher;
+    private TelemetryBuffer buffer;
+
+    @Setup
+    public void setUp() {
+        flusher = Executors.newSingleThreadExecutor();
+        buffer = new TelemetryBuffer(fleet().repository(), new FleetCache(false, 0), flusher::execute, 200_000, 5_000, 1_000);
+    }
+
+    @TearDown
+    public void tearDown() {
+        flusher.shutdown();
+    }
+
+    @org.openjdk.jmh.annotations.State(Scope.Thread)
+    public static class Sender {
+
+        private int next;
+
+        @Setup
+        public void setUp() {
+            // senders start on different drones, like drones reporting independently
+            next = (int) (Thread.currentThread().getId() * 7919 % DRONES);
+        }
+
+        List<TelemetryReading> batch() {
+            List<TelemetryReading> batch = new ArrayList<>(BATCH);
+            for (int i = 0; i < BATCH; i++, next++) {
+                batch.add(TelemetryReading.builder().serialNumber("drone-" + next % DRONES).battery(next % 101).build());
+            }
+            return batch;
+        }
+    }
+
+    @org.openjdk.jmh.annotations.State(Scope.Thread)
+    public static class FullBuffer {
+
+        private TelemetryBuffer buffer;
+        private long timestamp;
+
+        @Setup(Level.Trial)
+        public void setUpBuffer() {
+            // never flushes by itself, only when the benchmark ticks it
+            buffer = new TelemetryBuffer(fleet().repository(), new FleetCache(false, 0), task -> { }, DRONES, Integer.MAX_VALUE, 1_000);
+        }
+
+        @Setup(Level.Invocation)
+        public void fill() {
+            timestamp++;
+            List<TelemetryReading> readings = new ArrayList<>(DRONES);
+            for (int i = 0; i < DRONES; i++) {
+                readings.add(TelemetryReading.builder().serialNumber("drone-" + i).battery(i % 101).timestamp(timestamp).build());
+            }
+            buffer.submit(readings);
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(BATCH)
+    public ErrorResponse submit(Sender sender) {
+        return buffer.submit(sender.batch());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void flushWholeFleet(FullBuffer full) {
+        full.buffer.tick();
+    }
+
+    private static InMemoryRepositories.Drones fleet() {
+        InMemoryRepositories.Drones drones = new InMemoryRepositories.Drones();
+        for (int i = 0; i < DRONES; i++) {
+            drones.put(Drone.builder()
+                    .serialNumber("drone-" + i)
+                    .weightClass(WeightModel.MIDDLE_WEIGHT)
+                    .weightLimit(400)
+                    .batteryCapacity(100)
+                    .state(State.IDLE)
+                    .loadedMeds(new ArrayList<>())
+                    .loadedWeight(0f)
+                    .medCount(0)
+                    .version(0L)
+                    .build());
+        }
+        return drones;
+    }
+}
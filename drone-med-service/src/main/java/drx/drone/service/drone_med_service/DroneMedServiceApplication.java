@@ -2,8 +2,18 @@ package drx.drone.service.drone_med_service;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.data.mongo.MongoReactiveDataAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.mongo.MongoReactiveRepositoriesAutoConfiguration;
+import org.springframework.boot.autoconfigure.mongo.MongoReactiveAutoConfiguration;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
-@SpringBootApplication
+// the reactive Mongo stack is only set up with the reactive profile, see ReactiveConfig
+@SpringBootApplication(exclude = {
+		MongoReactiveAutoConfiguration.class,
+		MongoReactiveDataAutoConfiguration.class,
+		MongoReactiveRepositoriesAutoConfiguration.class
+})
+@EnableScheduling
 public class DroneMedServiceApplication {
 
 	public static void main(String[] args) {
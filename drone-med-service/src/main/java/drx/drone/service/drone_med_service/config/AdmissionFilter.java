@@ -0,0 +1,78 @@
+package drx.drone.service.drone_med_service.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import drx.drone.service.drone_med_service.exception.ErrorResponse;
+import drx.drone.service.drone_med_service.service.AdmissionControl;
+import drx.drone.service.drone_med_service.service.AdmissionControl.Admission;
+import drx.drone.service.drone_med_service.service.AdmissionControl.Outcome;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Runs API requests past {@link AdmissionControl} before anything else of ours touches them: a
+ * throttled client gets 429 with 611 TOO MANY REQUESTS, a shed request 503 with 612 SERVER
+ * OVERLOADED, both with a Retry-After. Ordered after the server observation filter, so refused requests still show up in
+ * {@code http.server.requests} with their status.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+@RequiredArgsConstructor
+public class AdmissionFilter extends OncePerRequestFilter {
+
+    private final AdmissionControl admissionControl;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !admissionControl.isEnabled()
+                || !request.getRequestURI().startsWith("/api/")
+                || "OPTIONS".equals(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Admission admission = admissionControl.admit(client(request),
+                AdmissionControl.classify(request.getMethod(), request.getRequestURI()));
+        if (!admission.isAdmitted()) {
+            refuse(response, admission);
+            return;
+        }
+        // an event stream gives its slot back once subscribed, the stream itself runs off the request thread
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            admissionControl.release();
+        }
+    }
+
+    private String client(HttpServletRequest request) {
+        String header = admissionControl.getClientHeader();
+        String client = header == null ? null : request.getHeader(header);
+        return client == null || client.isBlank() ? request.getRemoteAddr() : client;
+    }
+
+    private void refuse(HttpServletResponse response, Admission admission) throws IOException {
+        boolean throttled = admission.outcome() == Outcome.THROTTLED;
+        long retryAfterSeconds = throttled ? Math.max(1, (admission.retryAfterMillis() + 999) / 1000) : 1;
+        response.setStatus(throttled ? HttpStatus.TOO_MANY_REQUESTS.value() : HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        ErrorResponse body = throttled
+                ? new ErrorResponse("611", "TOO MANY REQUESTS")
+                : new ErrorResponse("612", "SERVER OVERLOADED");
+        objectMapper.writeValue(response.getOutputStream(), body);
+    }
+}
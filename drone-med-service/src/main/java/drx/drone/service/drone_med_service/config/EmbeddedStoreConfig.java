@@ -0,0 +1,45 @@
+package drx.drone.service.drone_med_service.config;
+
+import drx.drone.service.drone_med_service.repository.DroneStore;
+import drx.drone.service.drone_med_service.repository.EmbeddedStore;
+import drx.drone.service.drone_med_service.repository.MedicationStore;
+import drx.drone.service.drone_med_service.service.FleetCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+
+/**
+ * The {@code embedded} profile: drones and medications are kept by the {@link EmbeddedStore} instead
+ * of Mongo, so a node runs without a database (edge deployments, local benchmarks). DroneRepository
+ * and MedicationRepository are not scanned as Mongo repositories with this profile; the store's
+ * {@link DroneStore} and {@link MedicationStore} take their place. History, idempotency keys and the reactive stack still need Mongo
+ * and stay idle without one.
+ */
+@Slf4j
+@Configuration
+@Profile("embedded")
+public class EmbeddedStoreConfig {
+
+    @Bean
+    public DroneStore droneStore(EmbeddedStore store) {
+        return store.droneStore();
+    }
+
+    @Bean
+    public MedicationStore medicationStore(EmbeddedStore store) {
+        return store.medicationStore();
+    }
+
+    // MongoConfig warms the cache once Mongo is reachable, which here it never is
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmFleetCache(ApplicationReadyEvent event) {
+        FleetCache fleetCache = event.getApplicationContext().getBean(FleetCache.class);
+        if (fleetCache.isEnabled()) {
+            fleetCache.warm(event.getApplicationContext().getBean(DroneStore.class).findAll());
+            log.info("Fleet cache warmed with {} drones", fleetCache.size());
+        }
+    }
+}
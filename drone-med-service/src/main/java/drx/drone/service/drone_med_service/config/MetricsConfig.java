@@ -0,0 +1,43 @@
+package drx.drone.service.drone_med_service.config;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Set;
+
+/**
+ * Publishes latency histograms (Prometheus buckets) for the request, repository, driver and service
+ * timers, so percentiles can be aggregated across instances instead of averaged.
+ * <ul>
+ *     <li>{@code http.server.requests} - per controller endpoint (uri, method, status)</li>
+ *     <li>{@code spring.data.repository.invocations} - per DroneRepository/MedicationRepository method</li>
+ *     <li>{@code mongodb.driver.commands} - per Mongo command and collection</li>
+ *     <li>{@code drone.service.calls}, {@code drone.mongo.round.trips} - see DroneMetrics and MongoRoundTripFilter</li>
+ * </ul>
+ */
+@Configuration
+public class MetricsConfig {
+
+    private static final Set<String> HISTOGRAMS = Set.of(
+            "http.server.requests",
+            "spring.data.repository.invocations",
+            "mongodb.driver.commands",
+            "drone.service.calls",
+            "drone.mongo.round.trips");
+
+    @Bean
+    public MeterFilter latencyHistograms() {
+        return new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                if (!HISTOGRAMS.contains(id.getName())) {
+                    return config;
+                }
+                return DistributionStatisticConfig.builder().percentilesHistogram(true).build().merge(config);
+            }
+        };
+    }
+}
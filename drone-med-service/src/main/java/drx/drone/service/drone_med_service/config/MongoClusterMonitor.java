@@ -0,0 +1,51 @@
+package drx.drone.service.drone_med_service.config;
+
+import com.mongodb.event.ClusterDescriptionChangedEvent;
+import com.mongodb.event.ClusterListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tracks whether the driver can currently reach a writable server, so startup work against the
+ * database can wait for it instead of blocking a thread in server selection.
+ */
+@Component
+public class MongoClusterMonitor implements ClusterListener {
+
+    private final List<Runnable> pending = new ArrayList<>();
+    private boolean writable;
+
+    @Override
+    public void clusterDescriptionChanged(ClusterDescriptionChangedEvent event) {
+        List<Runnable> toRun;
+        synchronized (this) {
+            writable = event.getNewDescription().hasWritableServer();
+            if (!writable || pending.isEmpty()) {
+                return;
+            }
+            toRun = new ArrayList<>(pending);
+            pending.clear();
+        }
+        toRun.forEach(Runnable::run);
+    }
+
+    /**
+     * Runs the callback now if a writable server is known, otherwise as soon as one shows up. The
+     * callback may run on a driver monitor thread, so it should only hand work off.
+     */
+    public void whenWritable(Runnable callback) {
+        synchronized (this) {
+            if (!writable) {
+                pending.add(callback);
+                return;
+            }
+        }
+        callback.run();
+    }
+
+    public synchronized boolean isWritable() {
+        return writable;
+    }
+}
@@ -0,0 +1,81 @@
+package drx.drone.service.drone_med_service.config;
+
+import drx.drone.service.drone_med_service.model.Drone;
+import drx.drone.service.drone_med_service.service.FleetCache;
+import drx.drone.service.drone_med_service.service.FleetSnapshots;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.List;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+@Slf4j
+@Configuration
+@RequiredArgsConstructor
+public class MongoConfig {
+
+    private static final List<Class<?>> INDEXED_DOCUMENTS = List.of(Drone.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final MongoMappingContext mappingContext;
+    private final TaskExecutor applicationTaskExecutor;
+    private final MongoClusterMonitor clusterMonitor;
+    private final FleetCache fleetCache;
+    private final FleetSnapshots fleetSnapshots;
+
+    @Bean
+    public static MongoClientSettingsBuilderCustomizer listenerCustomizer(MongoRoundTripCounter counter,
+                                                                          MongoClusterMonitor clusterMonitor) {
+        return settings -> settings
+                .addCommandListener(counter)
+                .applyToClusterSettings(cluster -> cluster.addClusterListener(clusterMonitor));
+    }
+
+    /**
+     * Creates the indexes declared on the documents (e.g. {@code Drone.state}) and versions drones
+     * stored before {@code Drone.version} existed, once the app is up and the database is reachable.
+     * Then warms the {@link FleetCache} if it is enabled, from the {@link FleetSnapshots} when there is
+     * one. Runs off the startup thread so the database never holds up (or fails) the boot.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void prepareCollections() {
+        clusterMonitor.whenWritable(() -> applicationTaskExecutor.execute(() -> {
+            try {
+                createIndexes();
+                versionLegacyDrones();
+                if (fleetCache.isEnabled()) {
+                    fleetCache.warm(fleetSnapshots.loadFleet());
+                    log.info("Fleet cache warmed with {} drones", fleetCache.size());
+                }
+            } catch (RuntimeException e) {
+                log.warn("Could not prepare collections: {}", e.getMessage());
+            }
+        }));
+    }
+
+    private void createIndexes() {
+        IndexResolver resolver = IndexResolver.create(mappingContext);
+        for (Class<?> document : INDEXED_DOCUMENTS) {
+            IndexOperations indexOps = mongoTemplate.indexOps(document);
+            resolver.resolveIndexFor(document).forEach(indexOps::createIndex);
+        }
+    }
+
+    // save() treats a drone read back without a version as new and inserts it, so give old drones one
+    private void versionLegacyDrones() {
+        mongoTemplate.updateMulti(query(where("version").exists(false)), Update.update("version", 0L), Drone.class);
+    }
+}
@@ -0,0 +1,28 @@
+package drx.drone.service.drone_med_service.config;
+
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts the Mongo commands issued by the current thread. The sync driver reports commands on the
+ * calling thread, so for a servlet request this is the number of round trips the request made.
+ */
+@Component
+public class MongoRoundTripCounter implements CommandListener {
+
+    private static final ThreadLocal<int[]> ROUND_TRIPS = ThreadLocal.withInitial(() -> new int[1]);
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        ROUND_TRIPS.get()[0]++;
+    }
+
+    public void reset() {
+        ROUND_TRIPS.get()[0] = 0;
+    }
+
+    public int current() {
+        return ROUND_TRIPS.get()[0];
+    }
+}
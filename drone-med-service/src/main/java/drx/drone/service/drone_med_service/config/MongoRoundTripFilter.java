@@ -0,0 +1,75 @@
+package drx.drone.service.drone_med_service.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records how many Mongo round trips each API request made in the {@code drone.mongo.round.trips}
+ * summary (per method and uri pattern), e.g. to check that loadMeds stays flat as a drone's payload
+ * grows. Also logs them per request with
+ * {@code logging.level.drx.drone.service.drone_med_service.config.MongoRoundTripFilter=DEBUG}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MongoRoundTripFilter extends OncePerRequestFilter {
+
+    private static final String UNKNOWN_URI = "UNKNOWN";
+
+    private final MongoRoundTripCounter counter;
+    private final MeterRegistry registry;
+
+    // uri pattern -> method -> summary; looked up without building tags once registered
+    private final Map<String, Map<String, DistributionSummary>> summaries = new ConcurrentHashMap<>();
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        counter.reset();
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            summary(request).record(counter.current());
+            if (log.isDebugEnabled()) {
+                log.debug("{} {} -> {} mongo round trips in {} ms", request.getMethod(), request.getRequestURI(),
+                        counter.current(), (System.nanoTime() - start) / 1_000_000);
+            }
+        }
+    }
+
+    private DistributionSummary summary(HttpServletRequest request) {
+        // the matched pattern, not the raw URI, keeps the serial numbers out of the tags
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern == null ? UNKNOWN_URI : pattern.toString();
+        Map<String, DistributionSummary> byMethod = summaries.get(uri);
+        DistributionSummary summary = byMethod == null ? null : byMethod.get(request.getMethod());
+        if (summary != null) {
+            return summary;
+        }
+        return summaries.computeIfAbsent(uri, u -> new ConcurrentHashMap<>())
+                .computeIfAbsent(request.getMethod(), method -> DistributionSummary.builder("drone.mongo.round.trips")
+                        .description("Mongo commands issued per API request")
+                        .tag("uri", uri)
+                        .tag("method", method)
+                        .register(registry));
+    }
+}
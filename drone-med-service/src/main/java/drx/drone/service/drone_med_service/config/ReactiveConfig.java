@@ -0,0 +1,72 @@
+package drx.drone.service.drone_med_service.config;
+
+import drx.drone.service.drone_med_service.repository.DroneRepository;
+import drx.drone.service.drone_med_service.repository.ReactiveDroneRepository;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.reactivestreams.client.MongoClient;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.autoconfigure.mongo.MongoProperties;
+import org.springframework.boot.autoconfigure.mongo.ReactiveMongoClientFactory;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.SimpleReactiveMongoDatabaseFactory;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
+import org.springframework.data.mongodb.repository.config.EnableReactiveMongoRepositories;
+import org.springframework.web.reactive.config.CorsRegistry;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+
+/**
+ * The {@code reactive} profile (see application-reactive.properties): serves the API from
+ * ReactiveDroneController/ReactiveMedicationController on Netty's event loop, over the reactive Mongo
+ * driver. The reactive Mongo auto-configuration is excluded on DroneMedServiceApplication, so the
+ * servlet deployment doesn't open a second connection pool; the client is built here instead, from
+ * the same spring.data.mongodb.* settings and listeners as the blocking one.
+ * <p>
+ * The blocking repositories stay, for the work both stacks share: startup indexes and cache warm-up,
+ * dispatch rounds, batch loads and the fleet gauges.
+ */
+@Configuration
+@Profile("reactive")
+// declaring either kind of repository turns off Boot's repository scanning, so both are declared here
+@EnableMongoRepositories(basePackageClasses = DroneRepository.class)
+@EnableReactiveMongoRepositories(basePackageClasses = ReactiveDroneRepository.class)
+public class ReactiveConfig implements WebFluxConfigurer {
+
+    /**
+     * Tomcat is on the classpath for the servlet stack and would otherwise be picked first.
+     */
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    @Bean(destroyMethod = "close")
+    public MongoClient reactiveMongoClient(ObjectProvider<MongoClientSettingsBuilderCustomizer> customizers) {
+        return new ReactiveMongoClientFactory(customizers.orderedStream().toList())
+                .createMongoClient(MongoClientSettings.builder().build());
+    }
+
+    @Bean
+    public ReactiveMongoTemplate reactiveMongoTemplate(MongoClient reactiveMongoClient,
+                                                       MongoProperties properties,
+                                                       MappingMongoConverter mongoConverter) {
+        return new ReactiveMongoTemplate(
+                new SimpleReactiveMongoDatabaseFactory(reactiveMongoClient, properties.getMongoClientDatabase()),
+                mongoConverter);
+    }
+
+    // same as WebConfig
+    @Override
+    public void addCorsMappings(CorsRegistry registry) {
+        registry.addMapping("/api/**")
+                .allowedOrigins("http://localhost:3000")
+                .allowedMethods("GET", "POST", "OPTIONS", "PATCH")
+                .allowedHeaders("Content-Type", "Authorization", "Idempotency-Key")
+                .allowCredentials(true);
+    }
+}
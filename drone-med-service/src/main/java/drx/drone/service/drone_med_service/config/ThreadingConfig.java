@@ -0,0 +1,74 @@
+package drx.drone.service.drone_med_service.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Request and background execution mode. With {@code spring.threads.virtual.enabled=true} on Java 21+,
+ * Boot runs Tomcat requests, the {@code applicationTaskExecutor} (startup work, size-triggered telemetry
+ * flushes) and the scheduler (dispatch rounds) on virtual threads; batch loads and exports run on the request
+ * thread, so they follow it. Otherwise everything stays on platform threads, sized by
+ * {@code server.tomcat.threads.max}.
+ * <p>
+ * Either way concurrent Mongo calls are capped by the driver's pool ({@code maxPoolSize} on the uri),
+ * so with virtual threads raise that rather than the Tomcat pool.
+ * <p>
+ * Boot's scheduler runs every {@code @Scheduled} job on one thread, so a long dispatch round or
+ * snapshot holds up the rest. Flushes whose interval bounds what a crash can lose (write-behind,
+ * telemetry) run on a {@link #dedicatedScheduler} of their own instead, and the event stream writes to
+ * its clients from a {@link #dedicatedPool}, where a client that stopped reading holds up nothing else.
+ */
+@Slf4j
+@Configuration
+@RequiredArgsConstructor
+public class ThreadingConfig {
+
+    private static final String VIRTUAL_THREADS = "spring.threads.virtual.enabled";
+
+    private final Environment environment;
+
+    /**
+     * A single daemon thread for one periodic job, so it keeps its interval whatever else is scheduled.
+     */
+    public static ScheduledExecutorService dedicatedScheduler(String name) {
+        return Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * A fixed pool of daemon threads, named {@code name-0}, {@code name-1}, ...
+     */
+    public static ExecutorService dedicatedPool(String name, int threads) {
+        AtomicInteger next = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + next.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void logThreadingMode() {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            log.info("Requests and background work run on virtual threads");
+        } else if (environment.getProperty(VIRTUAL_THREADS, Boolean.class, false)) {
+            log.warn("{}=true needs Java 21+, running on platform threads on Java {}",
+                    VIRTUAL_THREADS, Runtime.version().feature());
+        } else {
+            log.info("Requests and background work run on platform threads");
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package drx.drone.service.drone_med_service.controller;
+
+
+import drx.drone.service.drone_med_service.dto.DispatchStatus;
+import drx.drone.service.drone_med_service.dto.MedRequest;
+import drx.drone.service.drone_med_service.exception.ErrorResponse;
+import drx.drone.service.drone_med_service.service.DispatchService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping(path = "api/v1/dispatch")
+@RequiredArgsConstructor
+public class DispatchController {
+
+    private final DispatchService service;
+
+    /**
+     *
+     * @param orders - medications to deliver [name, weight, code, img_url]; the dispatcher picks the drones
+     * @return - 200 ORDERS QUEUED, 600 DRONE OVER WEIGHT or 607 DISPATCH QUEUE FULL
+     */
+    @PostMapping("/orders")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public ErrorResponse submitOrders(@RequestBody List<MedRequest> orders) {
+        return service.submit(orders);
+    }
+
+    /**
+     *
+     * @return - orders waiting and the outcome of the last dispatch round
+     */
+    @GetMapping()
+    @ResponseStatus(HttpStatus.OK)
+    public DispatchStatus getStatus() {
+        return service.getStatus();
+    }
+}
@@ -1,25 +1,49 @@
 package drx.drone.service.drone_med_service.controller;
 
 
+import drx.drone.service.drone_med_service.dto.BatchLoadRequest;
+import drx.drone.service.drone_med_service.dto.BatchLoadResult;
+import drx.drone.service.drone_med_service.dto.CursorPage;
 import drx.drone.service.drone_med_service.dto.DroneRequest;
+import drx.drone.service.drone_med_service.dto.FleetSummary;
 import drx.drone.service.drone_med_service.dto.MedRequest;
 import drx.drone.service.drone_med_service.exception.ErrorResponse;
 import drx.drone.service.drone_med_service.model.Drone;
+import drx.drone.service.drone_med_service.model.DroneTransition;
 import drx.drone.service.drone_med_service.model.Medication;
+import drx.drone.service.drone_med_service.model.State;
+import drx.drone.service.drone_med_service.model.WeightModel;
+import drx.drone.service.drone_med_service.service.DroneEventStream;
+import drx.drone.service.drone_med_service.service.DroneHistory;
 import drx.drone.service.drone_med_service.service.DroneService;
+import drx.drone.service.drone_med_service.service.ExportService;
+import drx.drone.service.drone_med_service.service.FleetSummaryService;
+import drx.drone.service.drone_med_service.service.IdempotencyStore;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
 @RestController
+@Profile("!reactive")
 @RequestMapping(path = "api/v1/drones")
 @RequiredArgsConstructor
 public class DroneController {
 
     private final DroneService service;
+    private final DroneEventStream eventStream;
+    private final ExportService exportService;
+    private final FleetSummaryService summaryService;
+    private final DroneHistory history;
+    private final IdempotencyStore idempotencyStore;
 
     /**
      *
@@ -32,6 +56,17 @@ public class DroneController {
         return service.registerDrone(drone);
     }
 
+    /**
+     *
+     * @return - drones per state and weight class, average battery and total loaded weight, at most
+     *           drone.summary.max-age ms old
+     */
+    @GetMapping("/summary")
+    @ResponseStatus(HttpStatus.OK)
+    public FleetSummary getSummary(){
+        return summaryService.getSummary();
+    }
+
     /**
      *
      * @param serialNumber - Drone's serialNumber[ID]
@@ -48,6 +83,8 @@ public class DroneController {
      * @param serialNumber - Drone's serialNumber[ID]
      * @param medication - Medication object to be loaded on drone
      *                   - [name, weight, code, img_url]
+     * @param idempotencyKey - optional Idempotency-Key header, unique per load; a retry with the same key
+     *                       and body gets the first response back instead of loading again
      * @return           - returns confirmation message
      * @throws Exception - <Exception>DroneOverWeightException</Exception> ,
      *                   - <Exception>DroneNotFoundException</Exception> ,
@@ -55,11 +92,27 @@ public class DroneController {
      */
     @PostMapping("/{serialNumber}/loadMeds")
     @ResponseStatus(HttpStatus.ACCEPTED)
-    public Optional<ErrorResponse> loadDrone(@PathVariable String serialNumber, @RequestBody MedRequest medication) throws Exception {
+    public Optional<ErrorResponse> loadDrone(@PathVariable String serialNumber, @RequestBody MedRequest medication,
+                                             @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey) throws Exception {
+        if (idempotencyKey != null) {
+            return Optional.of(idempotencyStore.execute(serialNumber, idempotencyKey, medication,
+                    () -> service.loadDrone(serialNumber, medication)));
+        }
         return Optional.of(service.loadDrone(serialNumber, medication));
         //return ResponseEntity.ok("Medication loaded on drone " + serialNumber);
     }
 
+    /**
+     *
+     * @param loads - list of [serialNumber, medications[]] to load, e.g. a whole shift's worth
+     * @return      - per entry, one loadMeds response (code, message) per medication, in request order
+     */
+    @PostMapping("/loadMeds")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public List<BatchLoadResult> loadDrones(@RequestBody List<BatchLoadRequest> loads) {
+        return service.loadDrones(loads);
+    }
+
     /**
      *
      * @param serialNumber - Drone's serialNumber[ID]
@@ -89,6 +142,36 @@ public class DroneController {
         return service.getAllDrones();
     }
 
+    /**
+     *
+     * @param limit  - page size (max 500); asking for a limit switches the listing to pages
+     * @param cursor - nextCursor from the previous page, none for the first page
+     * @param fields - optional comma separated drone properties to return, e.g. serialNumber,state
+     * @return - [items, nextCursor]
+     */
+    @GetMapping(params = "limit")
+    @ResponseStatus(HttpStatus.OK)
+    public CursorPage<?> getDronePage(@RequestParam int limit,
+                                      @RequestParam(required = false) String cursor,
+                                      @RequestParam(required = false) List<String> fields) {
+        return service.getDronePage(cursor, limit, fields);
+    }
+
+    /**
+     *
+     * @param state       - optional, only drones in this State
+     * @param weightClass - optional, only drones of this WeightModel
+     * @param response    - written as newline-delimited JSON, one drone per line, straight from the database cursor
+     * @throws IOException - if the client goes away mid-export
+     */
+    @GetMapping(path = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void exportDrones(@RequestParam(required = false) State state,
+                             @RequestParam(required = false) WeightModel weightClass,
+                             HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        exportService.exportDrones(state, weightClass, response.getOutputStream());
+    }
+
     /**
      *
      * @param serial_number - drone's serialNumber
@@ -101,8 +184,48 @@ public class DroneController {
         return service.getBatteryLevel(serial_number);
     }
 
+    /**
+     *
+     * @param serialNumber - drone's serialNumber
+     * @param from         - optional ISO-8601 instant, entries at or after it
+     * @param to           - optional ISO-8601 instant, entries before it
+     * @param limit        - at most this many entries (max 500), the earliest first
+     * @return - the drone's state, battery and payload after each change, in time order
+     */
+    @GetMapping("/{serialNumber}/history")
+    @ResponseStatus(HttpStatus.OK)
+    public List<DroneTransition> getDroneHistory(@PathVariable String serialNumber,
+                                                 @RequestParam(required = false) Instant from,
+                                                 @RequestParam(required = false) Instant to,
+                                                 @RequestParam(defaultValue = "100") int limit) {
+        return history.getHistory(serialNumber, from, to, limit);
+    }
+
+    /**
+     *
+     * @return - same as /{serialNumber}/history for every drone
+     */
+    @GetMapping("/history")
+    @ResponseStatus(HttpStatus.OK)
+    public List<DroneTransition> getFleetHistory(@RequestParam(required = false) Instant from,
+                                                 @RequestParam(required = false) Instant to,
+                                                 @RequestParam(defaultValue = "100") int limit) {
+        return history.getHistory(null, from, to, limit);
+    }
+
     // DRONE HOME PAGE ENDPOINTS
 
+    /**
+     *
+     * @return - Server-Sent Events: a "snapshot" event with all drones, then a "drone" event with the
+     *           updated drone whenever one changes state, battery or payload
+     * @throws Exception - if the snapshot can't be serialized
+     */
+    @GetMapping(path = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamDroneEvents() throws Exception {
+        return eventStream.subscribe();
+    }
+
     // get all loaded drones
     // drones ready for delivery
     @GetMapping("/loaded")
@@ -1,21 +1,29 @@
 package drx.drone.service.drone_med_service.controller;
 
 
+import drx.drone.service.drone_med_service.dto.CursorPage;
 import drx.drone.service.drone_med_service.model.Medication;
+import drx.drone.service.drone_med_service.service.ExportService;
 import drx.drone.service.drone_med_service.service.MedicationService;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Optional;
 
 @RestController
+@Profile("!reactive")
 @RequestMapping(path = "api/v1/medications")
 @RequiredArgsConstructor
 public class MedicationController {
 
     private final MedicationService service;
+    private final ExportService exportService;
 
     @GetMapping()
     @ResponseStatus(HttpStatus.OK)
@@ -23,6 +31,32 @@ public class MedicationController {
         return service.getAllMedications();
     }
 
+    /**
+     *
+     * @param limit  - page size (max 500); asking for a limit switches the listing to pages
+     * @param cursor - nextCursor from the previous page, none for the first page
+     * @param fields - optional comma separated medication properties to return, e.g. id,name,weight
+     * @return - [items, nextCursor]
+     */
+    @GetMapping(params = "limit")
+    @ResponseStatus(HttpStatus.OK)
+    public CursorPage<?> getMedicationPage(@RequestParam int limit,
+                                           @RequestParam(required = false) String cursor,
+                                           @RequestParam(required = false) List<String> fields) {
+        return service.getMedicationPage(cursor, limit, fields);
+    }
+
+    /**
+     *
+     * @param response - written as newline-delimited JSON, one medication per line, straight from the database cursor
+     * @throws IOException - if the client goes away mid-export
+     */
+    @GetMapping(path = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void exportMeds(HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        exportService.exportMedications(response.getOutputStream());
+    }
+
     @GetMapping("/{id}")
     @ResponseStatus(HttpStatus.OK)
     public Optional<Medication> getMedication(@PathVariable String id) {
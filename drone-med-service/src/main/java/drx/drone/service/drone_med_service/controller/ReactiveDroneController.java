@@ -0,0 +1,198 @@
+package drx.drone.service.drone_med_service.controller;
+
+import drx.drone.service.drone_med_service.dto.BatchLoadRequest;
+import drx.drone.service.drone_med_service.dto.BatchLoadResult;
+import drx.drone.service.drone_med_service.dto.CursorPage;
+import drx.drone.service.drone_med_service.dto.DroneRequest;
+import drx.drone.service.drone_med_service.dto.FleetSummary;
+import drx.drone.service.drone_med_service.dto.MedRequest;
+import drx.drone.service.drone_med_service.exception.ErrorResponse;
+import drx.drone.service.drone_med_service.model.Drone;
+import drx.drone.service.drone_med_service.model.DroneTransition;
+import drx.drone.service.drone_med_service.model.Medication;
+import drx.drone.service.drone_med_service.model.State;
+import drx.drone.service.drone_med_service.model.WeightModel;
+import drx.drone.service.drone_med_service.service.DroneHistory;
+import drx.drone.service.drone_med_service.service.FleetSummaryService;
+import drx.drone.service.drone_med_service.service.IdempotencyStore;
+import drx.drone.service.drone_med_service.service.ReactiveDroneEvents;
+import drx.drone.service.drone_med_service.service.ReactiveDroneService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * {@link DroneController} on WebFlux, for the {@code reactive} profile: same paths, same responses.
+ * Listings are streamed as the database cursor returns them instead of being collected first.
+ */
+@RestController
+@Profile("reactive")
+@RequestMapping(path = "api/v1/drones")
+@RequiredArgsConstructor
+public class ReactiveDroneController {
+
+    private final ReactiveDroneService service;
+    private final ReactiveDroneEvents events;
+    private final FleetSummaryService summaryService;
+    private final DroneHistory history;
+    private final IdempotencyStore idempotencyStore;
+
+    @PostMapping("/register")
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<Drone> registerDrone(@RequestBody DroneRequest drone) {
+        return service.registerDrone(drone);
+    }
+
+    // mostly served from memory; a refresh is one aggregation, run off the event loop
+    @GetMapping("/summary")
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<FleetSummary> getSummary() {
+        return Mono.fromCallable(summaryService::getSummary).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @GetMapping("/{serialNumber}")
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<Drone> getDrone(@PathVariable String serialNumber) {
+        return service.getDroneById(serialNumber);
+    }
+
+    @PostMapping("/{serialNumber}/loadMeds")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public Mono<ErrorResponse> loadDrone(@PathVariable String serialNumber, @RequestBody MedRequest medication,
+                                         @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey) {
+        if (idempotencyKey != null) {
+            return idempotencyStore.executeReactive(serialNumber, idempotencyKey, medication,
+                    () -> service.loadDrone(serialNumber, medication));
+        }
+        return service.loadDrone(serialNumber, medication);
+    }
+
+    @PostMapping("/loadMeds")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public Mono<List<BatchLoadResult>> loadDrones(@RequestBody List<BatchLoadRequest> loads) {
+        return service.loadDrones(loads);
+    }
+
+    @GetMapping("/{serialNumber}/medications")
+    @ResponseStatus(HttpStatus.OK)
+    public Flux<Medication> getLoadedMeds(@PathVariable String serialNumber) {
+        return service.getLoadedMeds(serialNumber);
+    }
+
+    @GetMapping("/available")
+    @ResponseStatus(HttpStatus.OK)
+    public Flux<Drone> getAvailableDrones() {
+        return service.getIdleDrones();
+    }
+
+    @GetMapping()
+    @ResponseStatus(HttpStatus.OK)
+    public Flux<Drone> getAllDrones() {
+        return service.getAllDrones();
+    }
+
+    @GetMapping(params = "limit")
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<CursorPage<?>> getDronePage(@RequestParam int limit,
+                                            @RequestParam(required = false) String cursor,
+                                            @RequestParam(required = false) List<String> fields) {
+        return service.getDronePage(cursor, limit, fields);
+    }
+
+    /**
+     *
+     * @return - newline-delimited JSON, one drone per line, written as the cursor is read and only as
+     *           fast as the client takes it
+     */
+    @GetMapping(path = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Drone> exportDrones(@RequestParam(required = false) State state,
+                                    @RequestParam(required = false) WeightModel weightClass) {
+        return service.exportDrones(state, weightClass);
+    }
+
+    @GetMapping("/{serialNumber}/battery")
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<Integer> getBatteryLevel(@PathVariable String serialNumber) {
+        return service.getBatteryLevel(serialNumber);
+    }
+
+    // history lives in the blocking repository, read it off the event loop
+    @GetMapping("/{serialNumber}/history")
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<List<DroneTransition>> getDroneHistory(@PathVariable String serialNumber,
+                                                       @RequestParam(required = false) Instant from,
+                                                       @RequestParam(required = false) Instant to,
+                                                       @RequestParam(defaultValue = "100") int limit) {
+        return Mono.fromCallable(() -> history.getHistory(serialNumber, from, to, limit)).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @GetMapping("/history")
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<List<DroneTransition>> getFleetHistory(@RequestParam(required = false) Instant from,
+                                                       @RequestParam(required = false) Instant to,
+                                                       @RequestParam(defaultValue = "100") int limit) {
+        return Mono.fromCallable(() -> history.getHistory(null, from, to, limit)).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @GetMapping(path = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> streamDroneEvents() {
+        return events.subscribe();
+    }
+
+    @GetMapping("/loaded")
+    @ResponseStatus(HttpStatus.OK)
+    public Flux<Drone> getLoadedDrones() {
+        return service.getLoadedDrones();
+    }
+
+    @PatchMapping("/{serialNumber}/setForDelivery")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public Mono<Void> sendDroneForDelivery(@PathVariable String serialNumber) {
+        return service.sendDroneForDelivery(serialNumber);
+    }
+
+    @GetMapping("/forDelivery")
+    @ResponseStatus(HttpStatus.OK)
+    public Flux<Drone> getDronesMarkedForDelivery() {
+        return service.getDronesMarkedForDelivery();
+    }
+
+    @PatchMapping("/{serialNumber}/deliver")
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<Void> deliverDrone(@PathVariable String serialNumber) {
+        return service.deliverDrone(serialNumber);
+    }
+
+    @GetMapping("/delivered")
+    @ResponseStatus(HttpStatus.OK)
+    public Flux<Drone> getDronesMarkedAsDelivered() {
+        return service.getDronesMarkedAsDelivered();
+    }
+
+    @PatchMapping("/{serialNumber}/returnDrone")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public Mono<Void> returnDrone(@PathVariable String serialNumber) {
+        return service.returnDrone(serialNumber);
+    }
+
+    @GetMapping("/returning")
+    @ResponseStatus(HttpStatus.OK)
+    public Flux<Drone> getReturningDrones() {
+        return service.getReturningDrones();
+    }
+
+    @PatchMapping("/{serialNumber}/markIdle")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public Mono<Void> markDroneIdle(@PathVariable String serialNumber) {
+        return service.markIdle(serialNumber);
+    }
+}
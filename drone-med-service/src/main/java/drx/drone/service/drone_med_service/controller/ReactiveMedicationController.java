@@ -0,0 +1,51 @@
+package drx.drone.service.drone_med_service.controller;
+
+import drx.drone.service.drone_med_service.dto.CursorPage;
+import drx.drone.service.drone_med_service.model.Medication;
+import drx.drone.service.drone_med_service.service.ReactiveMedicationService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * {@link MedicationController} on WebFlux, for the {@code reactive} profile.
+ */
+@RestController
+@Profile("reactive")
+@RequestMapping(path = "api/v1/medications")
+@RequiredArgsConstructor
+public class ReactiveMedicationController {
+
+    private final ReactiveMedicationService service;
+
+    @GetMapping()
+    @ResponseStatus(HttpStatus.OK)
+    public Flux<Medication> getAllMeds() {
+        return service.getAllMedications();
+    }
+
+    @GetMapping(params = "limit")
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<CursorPage<?>> getMedicationPage(@RequestParam int limit,
+                                                 @RequestParam(required = false) String cursor,
+                                                 @RequestParam(required = false) List<String> fields) {
+        return service.getMedicationPage(cursor, limit, fields);
+    }
+
+    @GetMapping(path = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Medication> exportMeds() {
+        return service.getAllMedications();
+    }
+
+    @GetMapping("/{id}")
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<Medication> getMedication(@PathVariable String id) {
+        return service.getMedication(id);
+    }
+}
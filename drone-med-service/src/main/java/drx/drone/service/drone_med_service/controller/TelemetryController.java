@@ -0,0 +1,39 @@
+package drx.drone.service.drone_med_service.controller;
+
+
+import drx.drone.service.drone_med_service.dto.TelemetryReading;
+import drx.drone.service.drone_med_service.exception.ErrorResponse;
+import drx.drone.service.drone_med_service.service.TelemetryBuffer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping(path = "api/v1/telemetry")
+@RequiredArgsConstructor
+public class TelemetryController {
+
+    private final TelemetryBuffer buffer;
+
+    /**
+     *
+     * @param readings - battery readings [serialNumber, battery, timestamp], any number of drones per batch
+     * @return - 202 with 200 READINGS ACCEPTED, 400 with 605 INVALID READING, or 429 with 608 TELEMETRY
+     *           BUFFER FULL and a Retry-After of one flush interval
+     */
+    @PostMapping()
+    public ResponseEntity<ErrorResponse> submitReadings(@RequestBody List<TelemetryReading> readings) {
+        ErrorResponse response = buffer.submit(readings);
+        return switch (response.getCode()) {
+            case "200" -> ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+            case "608" -> ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, Long.toString(buffer.retryAfterSeconds()))
+                    .body(response);
+            default -> ResponseEntity.badRequest().body(response);
+        };
+    }
+}
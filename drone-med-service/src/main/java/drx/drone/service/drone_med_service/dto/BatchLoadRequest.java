@@ -0,0 +1,14 @@
+package drx.drone.service.drone_med_service.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Builder
+@Data
+public class BatchLoadRequest {
+
+    public String serialNumber;
+    public List<MedRequest> medications; // loaded in order, each checked like a single loadMeds call
+}
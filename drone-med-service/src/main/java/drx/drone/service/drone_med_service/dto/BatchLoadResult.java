@@ -0,0 +1,15 @@
+package drx.drone.service.drone_med_service.dto;
+
+import drx.drone.service.drone_med_service.exception.ErrorResponse;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Builder
+@Data
+public class BatchLoadResult {
+
+    public String serialNumber;
+    public List<ErrorResponse> results; // one per requested medication, same codes as loadMeds
+}
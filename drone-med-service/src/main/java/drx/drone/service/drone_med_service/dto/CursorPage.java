@@ -0,0 +1,62 @@
+package drx.drone.service.drone_med_service.dto;
+
+import drx.drone.service.drone_med_service.exception.InvalidPageRequestException;
+import lombok.Builder;
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+@Builder
+@Data
+public class CursorPage<T> {
+
+    public static final int MAX_LIMIT = 500;
+
+    public List<T> items;
+    public String nextCursor; // pass back as ?cursor= for the next page, null on the last page
+
+    /**
+     * @param rows  - up to limit + 1 rows read after the previous cursor; the extra one only tells
+     *                whether there is a next page
+     * @param limit - page size asked for
+     * @param id    - key the rows are ordered by
+     */
+    public static <T> CursorPage<T> of(List<T> rows, int limit, Function<T, String> id) {
+        if (rows.size() <= limit) {
+            return CursorPage.<T>builder().items(rows).build();
+        }
+        List<T> items = rows.subList(0, limit);
+        return CursorPage.<T>builder().items(items).nextCursor(encode(id.apply(items.get(limit - 1)))).build();
+    }
+
+    /**
+     * @throws InvalidPageRequestException - if the limit is below 1; limits above {@link #MAX_LIMIT} are cut to it
+     */
+    public static int checkLimit(int limit) {
+        if (limit < 1) {
+            throw new InvalidPageRequestException("Limit must be at least 1!");
+        }
+        return Math.min(limit, MAX_LIMIT);
+    }
+
+    /**
+     * @return - the id the cursor points after, null for no cursor (first page)
+     */
+    public static String decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidPageRequestException("Invalid cursor " + cursor + "!");
+        }
+    }
+
+    private static String encode(String id) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(id.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,16 @@
+package drx.drone.service.drone_med_service.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Builder(toBuilder = true)
+@Data
+public class DispatchStatus {
+
+    public int pending;         // orders waiting for the next round
+    public int assigned;        // orders loaded in the last round
+    public int dronesLoaded;    // drones they went onto
+    public int unassigned;      // orders of the last round no idle drone could take, back in the queue
+    public int expired;         // orders of the last round dropped after drone.dispatch.max-rounds rounds without a drone
+    public long lastRunMillis;  // duration of the last round
+}
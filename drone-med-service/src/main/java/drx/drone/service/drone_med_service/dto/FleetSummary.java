@@ -0,0 +1,20 @@
+package drx.drone.service.drone_med_service.dto;
+
+import drx.drone.service.drone_med_service.model.State;
+import drx.drone.service.drone_med_service.model.WeightModel;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.Map;
+
+@Builder(toBuilder = true)
+@Data
+public class FleetSummary {
+
+    public long total;                              // registered drones
+    public Map<State, Long> byState;                // drones per state, every state present
+    public Map<WeightModel, Long> byWeightClass;    // drones per weight class, every class present
+    public double averageBattery;                   // mean batteryCapacity, 0 without drones
+    public double totalLoadedWeight;                // grams currently loaded across the fleet
+    public long computedAt;                         // epoch millis the figures were read from the database
+}
@@ -0,0 +1,13 @@
+package drx.drone.service.drone_med_service.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Builder(toBuilder = true)
+@Data
+public class TelemetryReading {
+
+    public String serialNumber;
+    public int battery;     // percent, 0-100
+    public long timestamp;  // epoch millis the drone took the reading, 0 for when it is received
+}
@@ -0,0 +1,31 @@
+package drx.drone.service.drone_med_service.exception;
+
+import drx.drone.service.drone_med_service.dto.BatchLoadResult;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A batch load that failed once it had started writing drones back. Any drone of the batch may
+ * hold its medications except the ones in {@code unwritten}; {@code results} are the responses the
+ * batch would have returned.
+ */
+public class BatchLoadFailedException extends RuntimeException {
+
+    private final List<BatchLoadResult> results;
+    private final Set<String> unwritten;
+
+    public BatchLoadFailedException(List<BatchLoadResult> results, Set<String> unwritten, Throwable cause) {
+        super("Batch load failed while writing drones: " + cause.getMessage(), cause);
+        this.results = results;
+        this.unwritten = unwritten;
+    }
+
+    public List<BatchLoadResult> getResults() {
+        return results;
+    }
+
+    public Set<String> getUnwritten() {
+        return unwritten;
+    }
+}
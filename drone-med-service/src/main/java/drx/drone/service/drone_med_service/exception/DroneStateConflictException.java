@@ -0,0 +1,9 @@
+package drx.drone.service.drone_med_service.exception;
+
+import drx.drone.service.drone_med_service.model.State;
+
+public class DroneStateConflictException extends RuntimeException {
+    public DroneStateConflictException(String serialNumber, State expected, State actual) {
+        super("Drone " + serialNumber + " is " + actual + ", expected " + expected + "!");
+    }
+}
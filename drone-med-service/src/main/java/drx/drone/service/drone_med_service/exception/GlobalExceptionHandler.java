@@ -15,16 +15,28 @@ public class GlobalExceptionHandler {
     }
 
     @ExceptionHandler(DroneOverWeightException.class)
-    public ResponseEntity<ErrorResponse> handleDroneOverWeightException(DroneNotExistException ex) {
+    public ResponseEntity<ErrorResponse> handleDroneOverWeightException(DroneOverWeightException ex) {
         ErrorResponse errorResponse = new ErrorResponse("DRONE_WEIGHT_LIMIT", ex.getMessage());
         return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
     }
 
     @ExceptionHandler(MedicationNotFoundException.class)
-    public ResponseEntity<ErrorResponse> handleMedicationNotFoundException(DroneNotExistException ex) {
+    public ResponseEntity<ErrorResponse> handleMedicationNotFoundException(MedicationNotFoundException ex) {
         ErrorResponse errorResponse = new ErrorResponse("MEDICATION_NOT_FOUND", ex.getMessage());
         return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
     }
 
+    @ExceptionHandler(DroneStateConflictException.class)
+    public ResponseEntity<ErrorResponse> handleDroneStateConflictException(DroneStateConflictException ex) {
+        ErrorResponse errorResponse = new ErrorResponse("DRONE_STATE_CONFLICT", ex.getMessage());
+        return new ResponseEntity<>(errorResponse, HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler(InvalidPageRequestException.class)
+    public ResponseEntity<ErrorResponse> handleInvalidPageRequestException(InvalidPageRequestException ex) {
+        ErrorResponse errorResponse = new ErrorResponse("INVALID_PAGE_REQUEST", ex.getMessage());
+        return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
+    }
+
 }
 
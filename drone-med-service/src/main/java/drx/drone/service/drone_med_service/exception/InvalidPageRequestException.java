@@ -0,0 +1,7 @@
+package drx.drone.service.drone_med_service.exception;
+
+public class InvalidPageRequestException extends RuntimeException {
+    public InvalidPageRequestException(String message) {
+        super(message);
+    }
+}
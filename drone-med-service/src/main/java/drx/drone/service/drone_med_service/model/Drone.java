@@ -7,26 +7,42 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.Generated;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 @Document(value = "drones")
-@Builder
+@Builder(toBuilder = true)
 @Data
 @AllArgsConstructor
 public class Drone {
 
+    public static final int MIN_LOADING_BATTERY = 25; // loading needs battery above this
+    public static final int MAX_MED_COUNT = 10;
+    public static final int LOAD_BATTERY_COST = 15;   // battery % used per loaded medication
+    public static final Set<State> LOADABLE_STATES = Set.of(State.IDLE, State.LOADING, State.LOADED);
+
     @Id
     @Generated
     public String serialNumber;
     public WeightModel weightClass;
     public float weightLimit;
     public Integer batteryCapacity;
+    public Long batteryReportedAt; // timestamp of the telemetry reading batteryCapacity was last set from
+    @Indexed
     public State state;
     @Builder.Default
     public List<String> loadedMeds = new ArrayList<>(); // medication codes or UUIDs
+    public Float loadedWeight; // sum of loadedMeds weights, kept in step by DroneRepository.loadMedication
+    public Integer medCount;   // loadedMeds.size(), kept alongside loadedWeight
+    @Version
+    public Long version;
+    @Indexed
+    public Long updatedAt;     // epoch millis of the last write, so snapshots can be caught up (see FleetSnapshots)
 
 
     @PostConstruct
@@ -0,0 +1,39 @@
+package drx.drone.service.drone_med_service.model;
+
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.Generated;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.TimeSeries;
+import org.springframework.data.mongodb.core.timeseries.Granularity;
+
+import java.time.Instant;
+
+/**
+ * One entry of the append-only drone history: the drone as it was after a write changed it. Stored in a
+ * time-series collection bucketed per drone, so a drone's entries over a time range sit together.
+ */
+@Document(value = "droneTransitions")
+@TimeSeries(timeField = "at", metaField = "serialNumber", granularity = Granularity.MINUTES)
+@CompoundIndex(def = "{'serialNumber': 1, 'at': 1}")
+@Builder
+@Data
+@AllArgsConstructor
+public class DroneTransition {
+
+    @Id
+    @Generated
+    public String id;
+    public String serialNumber;
+    @Indexed
+    public Instant at;             // fleet-wide time windows
+    public State state;            // state the drone was left in
+    public Integer batteryCapacity;
+    public Float loadedWeight;
+    public Integer medCount;
+}
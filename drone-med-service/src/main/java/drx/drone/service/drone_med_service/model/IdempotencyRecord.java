@@ -0,0 +1,29 @@
+package drx.drone.service.drone_med_service.model;
+
+
+import drx.drone.service.drone_med_service.dto.MedRequest;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Outcome of a loadMeds request sent with an Idempotency-Key, kept so a retry on any node gets the same
+ * response. Removed by a TTL index on createdAt.
+ */
+@Document(value = "idempotencyKeys")
+@Builder
+@Data
+@AllArgsConstructor
+public class IdempotencyRecord {
+
+    @Id
+    public String id;           // serialNumber:key
+    public MedRequest request;  // a retry has to send the same body
+    public String code;
+    public String message;
+    public Instant createdAt;
+}
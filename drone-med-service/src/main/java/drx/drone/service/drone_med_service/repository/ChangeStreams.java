@@ -0,0 +1,121 @@
+package drx.drone.service.drone_med_service.repository;
+
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import drx.drone.service.drone_med_service.model.Drone;
+import drx.drone.service.drone_med_service.model.Medication;
+import lombok.RequiredArgsConstructor;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Mongo change streams over the drones and medications collections (inserts, updates, replaces and
+ * deletes), with the changed documents looked up and read back as {@link Drone}s and
+ * {@link Medication}s. Change streams need a replica set or a sharded cluster; on a standalone server
+ * {@link #watch} fails with {@link #NOT_A_REPLICA_SET}.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ChangeStreams {
+
+    public static final int NOT_A_REPLICA_SET = 40573;
+    public static final int HISTORY_LOST = 286;
+    public static final int RESUME_FAILED = 280;
+
+    private static final List<String> OPERATIONS = List.of(OperationType.INSERT.getValue(),
+            OperationType.UPDATE.getValue(), OperationType.REPLACE.getValue(), OperationType.DELETE.getValue());
+
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * One change to a drone or medication.
+     *
+     * @param type        - {@code Drone.class} or {@code Medication.class}
+     * @param id          - the serial number or medication id
+     * @param drone       - the drone as stored after the change, null for a medication or a delete
+     * @param medication  - the medication as stored after the change, null for a drone or a delete
+     * @param resumeToken - where to resume the stream to get the changes after this one
+     */
+    public record Change(Class<?> type, String id, Drone drone, Medication medication, BsonDocument resumeToken) {
+
+        public boolean isDelete() {
+            return drone == null && medication == null;
+        }
+    }
+
+    public interface Cursor extends AutoCloseable {
+
+        /**
+         * @return - the next change, or null if there is none yet (waits up to the server's await time)
+         */
+        Change tryNext();
+
+        /**
+         * @return - where to resume to see nothing already returned, even if nothing was returned yet
+         */
+        BsonDocument getResumeToken();
+
+        @Override
+        void close();
+    }
+
+    /**
+     * @param resumeAfter - the token of the last change already applied, or null to start from now
+     */
+    public Cursor watch(BsonDocument resumeAfter) {
+        String drones = mongoTemplate.getCollectionName(Drone.class);
+        String medications = mongoTemplate.getCollectionName(Medication.class);
+        var stream = mongoTemplate.getDb()
+                .watch(List.of(Aggregates.match(Filters.and(
+                        Filters.in("ns.coll", drones, medications),
+                        Filters.in("operationType", OPERATIONS)))))
+                .fullDocument(FullDocument.UPDATE_LOOKUP);
+        if (resumeAfter != null) {
+            stream = stream.resumeAfter(resumeAfter);
+        }
+        MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = stream.cursor();
+        return new Cursor() {
+            @Override
+            public Change tryNext() {
+                ChangeStreamDocument<Document> event = cursor.tryNext();
+                if (event == null) {
+                    return null;
+                }
+                boolean drone = drones.equals(event.getNamespace().getCollectionName());
+                Document document = event.getOperationType() == OperationType.DELETE ? null : event.getFullDocument();
+                return new Change(drone ? Drone.class : Medication.class, id(event.getDocumentKey()),
+                        drone && document != null ? mongoTemplate.getConverter().read(Drone.class, document) : null,
+                        !drone && document != null ? mongoTemplate.getConverter().read(Medication.class, document) : null,
+                        event.getResumeToken());
+            }
+
+            @Override
+            public BsonDocument getResumeToken() {
+                return cursor.getResumeToken();
+            }
+
+            @Override
+            public void close() {
+                cursor.close();
+            }
+        };
+    }
+
+    // serial numbers are stored as strings, medication ids as ObjectIds when they are valid ones
+    private static String id(BsonDocument documentKey) {
+        BsonValue id = documentKey == null ? null : documentKey.get("_id");
+        if (id == null) {
+            return null;
+        }
+        return id.isObjectId() ? id.asObjectId().getValue().toHexString() : id.isString() ? id.asString().getValue() : id.toString();
+    }
+}
@@ -0,0 +1,439 @@
+package drx.drone.service.drone_med_service.repository;
+
+import drx.drone.service.drone_med_service.dto.FleetSummary;
+import drx.drone.service.drone_med_service.dto.TelemetryReading;
+import drx.drone.service.drone_med_service.model.Drone;
+import drx.drone.service.drone_med_service.model.State;
+import drx.drone.service.drone_med_service.model.WeightModel;
+import drx.drone.service.drone_med_service.repository.DroneRepositoryCustom.StateChange;
+import drx.drone.service.drone_med_service.repository.DroneSnapshot.Columns;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import static drx.drone.service.drone_med_service.repository.DroneSnapshot.NO_ENUM;
+import static drx.drone.service.drone_med_service.repository.DroneSnapshot.NO_INT;
+import static drx.drone.service.drone_med_service.repository.DroneSnapshot.NO_LONG;
+
+/**
+ * The embedded store's drone table: a row per drone in {@link Columns}, found by serial number through
+ * a sorted index. Filters and counts scan the byte/int columns without building drones; a drone object
+ * is only built for the rows a caller gets back. Writes apply the same guards as {@link DroneUpdates},
+ * each under the table's write lock, so they are atomic like the single-document Mongo updates.
+ */
+final class DroneColumns {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final NavigableMap<String, Integer> rows = new TreeMap<>();
+    private Columns columns = Columns.allocate(0, INITIAL_CAPACITY);
+
+    Drone get(String serialNumber) {
+        lock.readLock().lock();
+        try {
+            Integer row = rows.get(serialNumber);
+            return row == null ? null : columns.drone(row);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    List<Drone> getAll(Iterable<String> serialNumbers) {
+        lock.readLock().lock();
+        try {
+            List<Drone> found = new ArrayList<>();
+            for (String serialNumber : serialNumbers) {
+                Integer row = rows.get(serialNumber);
+                if (row != null) {
+                    found.add(columns.drone(row));
+                }
+            }
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param state       - only drones in this state, all if null
+     * @param weightClass - only drones of this weight class, all if null
+     */
+    List<Drone> filter(State state, WeightModel weightClass) {
+        byte stateCode = state == null ? NO_ENUM : (byte) state.ordinal();
+        byte weightCode = weightClass == null ? NO_ENUM : (byte) weightClass.ordinal();
+        lock.readLock().lock();
+        try {
+            List<Drone> found = new ArrayList<>();
+            for (int row = 0; row < columns.size(); row++) {
+                if ((state == null || columns.states()[row] == stateCode)
+                        && (weightClass == null || columns.weightClasses()[row] == weightCode)) {
+                    found.add(columns.drone(row));
+                }
+            }
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return - the first {@code limit} drones in serialNumber order after {@code afterSerialNumber}
+     */
+    List<Drone> page(String afterSerialNumber, int limit) {
+        lock.readLock().lock();
+        try {
+            Map<String, Integer> after = afterSerialNumber == null ? rows : rows.tailMap(afterSerialNumber, false);
+            List<Drone> page = new ArrayList<>(Math.min(limit, after.size()));
+            for (int row : after.values()) {
+                if (page.size() == limit) {
+                    break;
+                }
+                page.add(columns.drone(row));
+            }
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    List<Drone> changedSince(long since) {
+        lock.readLock().lock();
+        try {
+            List<Drone> found = new ArrayList<>();
+            for (int row = 0; row < columns.size(); row++) {
+                if (columns.updatedAt()[row] != NO_LONG && columns.updatedAt()[row] >= since) {
+                    found.add(columns.drone(row));
+                }
+            }
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return columns.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    Map<State, Long> countByState() {
+        lock.readLock().lock();
+        try {
+            long[] counts = new long[State.values().length];
+            for (int row = 0; row < columns.size(); row++) {
+                if (columns.states()[row] != NO_ENUM) {
+                    counts[columns.states()[row]]++;
+                }
+            }
+            Map<State, Long> byState = new EnumMap<>(State.class);
+            for (State state : State.values()) {
+                if (counts[state.ordinal()] > 0) {
+                    byState.put(state, counts[state.ordinal()]);
+                }
+            }
+            return byState;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    FleetSummary summarize() {
+        Map<State, Long> byState = new EnumMap<>(State.class);
+        Map<WeightModel, Long> byWeightClass = new EnumMap<>(WeightModel.class);
+        long[] stateCounts = new long[State.values().length];
+        long[] weightCounts = new long[WeightModel.values().length];
+        long total;
+        long batteryTotal = 0;
+        long batteryCount = 0;
+        double loadedWeight = 0;
+        lock.readLock().lock();
+        try {
+            total = columns.size();
+            for (int row = 0; row < total; row++) {
+                if (columns.states()[row] != NO_ENUM) {
+                    stateCounts[columns.states()[row]]++;
+                }
+                if (columns.weightClasses()[row] != NO_ENUM) {
+                    weightCounts[columns.weightClasses()[row]]++;
+                }
+                if (columns.battery()[row] != NO_INT) {
+                    batteryTotal += columns.battery()[row];
+                    batteryCount++;
+                }
+                if (!Float.isNaN(columns.loadedWeight()[row])) {
+                    loadedWeight += columns.loadedWeight()[row];
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (State state : State.values()) {
+            byState.put(state, stateCounts[state.ordinal()]);
+        }
+        for (WeightModel weightClass : WeightModel.values()) {
+            byWeightClass.put(weightClass, weightCounts[weightClass.ordinal()]);
+        }
+        return FleetSummary.builder()
+                .total(total)
+                .byState(byState)
+                .byWeightClass(byWeightClass)
+                .averageBattery(batteryCount == 0 ? 0 : (double) batteryTotal / batteryCount)
+                .totalLoadedWeight(loadedWeight)
+                .computedAt(System.currentTimeMillis())
+                .build();
+    }
+
+    /**
+     * Insert (no version) or optimistic-lock update (version must match the stored one), like
+     * {@code MongoRepository.save} on a versioned document. Sets the new version on the drone.
+     */
+    Drone save(Drone drone) {
+        lock.writeLock().lock();
+        try {
+            Integer row = rows.get(drone.getSerialNumber());
+            if (drone.getVersion() == null) {
+                if (row != null) {
+                    throw new DuplicateKeyException("Drone " + drone.getSerialNumber() + " already exists");
+                }
+                drone.setVersion(0L);
+            } else {
+                if (row == null || columns.version()[row] != drone.getVersion()) {
+                    throw new OptimisticLockingFailureException("Drone " + drone.getSerialNumber() + " was modified");
+                }
+                drone.setVersion(drone.getVersion() + 1);
+            }
+            put(drone);
+            return drone;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    Drone loadMedication(String serialNumber, String medId, float medWeight) {
+        return update(serialNumber, drone -> Drone.LOADABLE_STATES.contains(drone.getState())
+                && drone.getBatteryCapacity() != null && drone.getBatteryCapacity() > Drone.MIN_LOADING_BATTERY
+                && drone.getMedCount() != null && drone.getMedCount() < Drone.MAX_MED_COUNT
+                && drone.getLoadedWeight() != null && drone.getLoadedWeight() + medWeight <= drone.getWeightLimit(), drone -> {
+            float loadedWeight = drone.getLoadedWeight() + medWeight;
+            drone.getLoadedMeds().add(medId);
+            drone.setState(loadedWeight >= drone.getWeightLimit() ? State.LOADED : State.LOADING);
+            drone.setLoadedWeight(loadedWeight);
+            drone.setMedCount(drone.getMedCount() + 1);
+            drone.setBatteryCapacity(drone.getBatteryCapacity() - Drone.LOAD_BATTERY_COST);
+            bump(drone, 1);
+        });
+    }
+
+    /**
+     * @param unload - also empty loadedMeds and reset loadedWeight/medCount
+     */
+    Drone transition(String serialNumber, Collection<State> from, State to, boolean unload) {
+        return update(serialNumber, drone -> from.contains(drone.getState()), drone -> {
+            drone.setState(to);
+            if (unload) {
+                unload(drone);
+            }
+            bump(drone, 1);
+        });
+    }
+
+    List<Drone> updateAll(Collection<Drone> drones) {
+        List<Drone> applied = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            for (Drone written : drones) {
+                Integer row = rows.get(written.getSerialNumber());
+                long expected = written.getVersion() == null ? NO_LONG : written.getVersion();
+                if (row != null && columns.version()[row] == expected) {
+                    Drone stored = columns.drone(row);
+                    stored.setState(written.getState());
+                    stored.setBatteryCapacity(written.getBatteryCapacity());
+                    stored.setLoadedMeds(new ArrayList<>(written.getLoadedMeds()));
+                    stored.setLoadedWeight(written.getLoadedWeight());
+                    stored.setMedCount(written.getMedCount());
+                    bump(stored, 1);
+                    columns.set(row, stored);
+                    applied.add(columns.drone(row));
+                }
+            }
+            return applied;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    List<Drone> bulkTransition(Collection<StateChange> changes) {
+        List<Drone> refused = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            for (StateChange change : changes) {
+                Integer row = rows.get(change.serialNumber());
+                if (row == null) {
+                    continue;
+                }
+                Drone stored = columns.drone(row);
+                if (stored.getState() != change.from()) {
+                    refused.add(stored);
+                    continue;
+                }
+                stored.setState(change.to());
+                if (change.unload()) {
+                    unload(stored);
+                }
+                bump(stored, change.changes());
+                columns.set(row, stored);
+            }
+            return refused;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int applyTelemetry(Collection<TelemetryReading> readings) {
+        int updated = 0;
+        lock.writeLock().lock();
+        try {
+            for (TelemetryReading reading : readings) {
+                Integer row = rows.get(reading.getSerialNumber());
+                if (row != null && (columns.batteryReportedAt()[row] == NO_LONG
+                        || columns.batteryReportedAt()[row] < reading.getTimestamp())) {
+                    columns.battery()[row] = reading.getBattery();
+                    columns.batteryReportedAt()[row] = reading.getTimestamp();
+                    columns.version()[row] = columns.version()[row] == NO_LONG ? 1 : columns.version()[row] + 1;
+                    columns.updatedAt()[row] = System.currentTimeMillis();
+                    updated++;
+                }
+            }
+            return updated;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void backfillPayload(String serialNumber, float loadedWeight, int medCount) {
+        update(serialNumber, drone -> drone.getLoadedWeight() == null, drone -> {
+            drone.setLoadedWeight(loadedWeight);
+            drone.setMedCount(medCount);
+            drone.setUpdatedAt(System.currentTimeMillis());
+        });
+    }
+
+    boolean delete(String serialNumber) {
+        lock.writeLock().lock();
+        try {
+            Integer row = rows.remove(serialNumber);
+            if (row == null) {
+                return false;
+            }
+            // move the last row into the hole
+            int last = columns.size() - 1;
+            if (row != last) {
+                columns.copy(last, row);
+                rows.put(columns.serialNumbers()[row], row);
+            }
+            columns.serialNumbers()[last] = null;
+            columns.loadedMeds()[last] = null;
+            columns = columns.withSize(last);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void clear() {
+        lock.writeLock().lock();
+        try {
+            rows.clear();
+            columns = Columns.allocate(0, INITIAL_CAPACITY);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return - a copy of the rows in use, for writing a snapshot without holding up writes
+     */
+    Columns copy() {
+        lock.readLock().lock();
+        try {
+            return columns.resize(columns.size(), columns.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the table with the given rows, e.g. from a snapshot.
+     */
+    void restore(Columns restored) {
+        lock.writeLock().lock();
+        try {
+            rows.clear();
+            columns = restored.resize(restored.size(), Math.max(INITIAL_CAPACITY, restored.size() * 2));
+            for (int row = 0; row < restored.size(); row++) {
+                rows.put(columns.serialNumbers()[row], row);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // reads the drone, and if it passes the guard, changes and stores it; null if missing or refused
+    private Drone update(String serialNumber, Predicate<Drone> guard, Consumer<Drone> change) {
+        lock.writeLock().lock();
+        try {
+            Integer row = rows.get(serialNumber);
+            if (row == null) {
+                return null;
+            }
+            Drone drone = columns.drone(row);
+            if (!guard.test(drone)) {
+                return null;
+            }
+            change.accept(drone);
+            columns.set(row, drone);
+            return drone;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // caller holds the write lock
+    private void put(Drone drone) {
+        Integer row = rows.get(drone.getSerialNumber());
+        if (row == null) {
+            row = columns.size();
+            int capacity = columns.serialNumbers().length;
+            columns = row < capacity ? columns.withSize(row + 1) : columns.resize(row + 1, capacity * 2);
+            rows.put(drone.getSerialNumber(), row);
+        }
+        columns.set(row, drone);
+    }
+
+    private static void unload(Drone drone) {
+        drone.setLoadedMeds(new ArrayList<>());
+        drone.setLoadedWeight(0f);
+        drone.setMedCount(0);
+    }
+
+    private static void bump(Drone drone, int changes) {
+        drone.setVersion(drone.getVersion() == null ? changes : drone.getVersion() + changes);
+        drone.setUpdatedAt(System.currentTimeMillis());
+    }
+}
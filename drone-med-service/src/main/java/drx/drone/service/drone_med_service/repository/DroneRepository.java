@@ -1,7 +1,27 @@
 package drx.drone.service.drone_med_service.repository;
 
 import drx.drone.service.drone_med_service.model.Drone;
+import org.springframework.context.annotation.Profile;
 import org.springframework.data.mongodb.repository.MongoRepository;
 
-public interface DroneRepository extends MongoRepository<Drone, String> {
+import java.util.List;
+import java.util.Optional;
+
+// the embedded profile brings its own DroneStore, see EmbeddedStore
+@Profile("!embedded")
+public interface DroneRepository extends MongoRepository<Drone, String>, DroneStore {
+
+    // declared by both parents; once more here so calls on a DroneRepository aren't ambiguous
+
+    @Override
+    <S extends Drone> S save(S drone);
+
+    @Override
+    Optional<Drone> findById(String serialNumber);
+
+    @Override
+    List<Drone> findAllById(Iterable<String> serialNumbers);
+
+    @Override
+    List<Drone> findAll();
 }
@@ -0,0 +1,122 @@
+package drx.drone.service.drone_med_service.repository;
+
+import drx.drone.service.drone_med_service.dto.FleetSummary;
+import drx.drone.service.drone_med_service.dto.TelemetryReading;
+import drx.drone.service.drone_med_service.model.Drone;
+import drx.drone.service.drone_med_service.model.State;
+import drx.drone.service.drone_med_service.model.WeightModel;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Single-document atomic updates that don't fit derived repository methods.
+ */
+public interface DroneRepositoryCustom {
+
+    /**
+     * Whether writes can go through right now. Background writers check it before flushing, rather
+     * than block waiting for a database that isn't reachable.
+     */
+    boolean isAvailable();
+
+    /**
+     * Adds a medication to an IDLE, LOADING or LOADED drone in one conditional update: pushes the med
+     * id, adds its weight to {@code loadedWeight}, bumps {@code medCount}, takes 15% off the battery and
+     * sets the state to LOADED when the drone is now full, LOADING otherwise.
+     *
+     * @return - the updated drone, or null if the drone is missing or the state, battery (> 25),
+     *           count (< 10) or weight (loadedWeight + medWeight <= weightLimit) guard didn't hold
+     */
+    Drone loadMedication(String serialNumber, String medId, float medWeight);
+
+    /**
+     * Compare-and-set on the drone's state: moves it to {@code to} only if it is currently in one of
+     * {@code from}. Bumps the version like any other update.
+     *
+     * @return - the updated drone, or null if it doesn't exist or wasn't in one of the expected states
+     */
+    Drone transitionState(String serialNumber, Collection<State> from, State to);
+
+    /**
+     * Same as {@link #transitionState} but also empties loadedMeds and resets loadedWeight/medCount.
+     */
+    Drone unload(String serialNumber, State from, State to);
+
+    /**
+     * Writes back drones changed in memory (state, battery and payload). Each update is an optimistic
+     * lock: it only applies if the stored version still equals the drone's {@code version}, and bumps
+     * it. The updates go out as one unordered bulk write, each also stamping the drone with a token
+     * for this call; a bulk write only says how many matched, not which, so the drones holding the
+     * token are then read back by id. An update that errors counts as not applied.
+     *
+     * @return - the drones whose update was applied, as stored right after it
+     */
+    List<Drone> updateAll(Collection<Drone> drones);
+
+    /**
+     * Drones written at or after {@code since} (epoch millis, see {@code Drone.updatedAt}), read over
+     * the index on updatedAt.
+     */
+    List<Drone> findChangedSince(long since);
+
+    /**
+     * Sets loadedWeight/medCount on a drone stored before they were maintained. No-op if already set.
+     */
+    void backfillPayload(String serialNumber, float loadedWeight, int medCount);
+
+    /**
+     * Keyset page: the first {@code limit} drones in serialNumber order after {@code afterSerialNumber}
+     * (null for the first page).
+     */
+    List<Drone> findPage(String afterSerialNumber, int limit);
+
+    /**
+     * Same page with only the given properties (plus serialNumber) read from the database.
+     */
+    List<Map<String, Object>> findPage(String afterSerialNumber, int limit, Collection<String> fields);
+
+    /**
+     * Iterates the drones over a server-side cursor, a batch at a time. Must be closed.
+     *
+     * @param state       - only drones in this state, all if null
+     * @param weightClass - only drones of this weight class, all if null
+     */
+    Stream<Drone> streamAll(State state, WeightModel weightClass);
+
+    /**
+     * Number of drones per state, from one $group over the collection. States with no drones are absent.
+     */
+    Map<State, Long> countByState();
+
+    /**
+     * A write-behind transition: the drone goes from {@code from} (its state in the database) to
+     * {@code to}, its payload emptied on the way if {@code unload}, its version raised by {@code changes}.
+     */
+    record StateChange(String serialNumber, State from, State to, boolean unload, int changes) {
+    }
+
+    /**
+     * Applies the changes in one unordered bulk write, each guarded on the drone still being in its
+     * {@code from} state.
+     *
+     * @return - the drones whose guard failed, as stored now (empty when all applied)
+     */
+    List<Drone> bulkTransition(Collection<StateChange> changes);
+
+    /**
+     * Sets batteryCapacity from the given readings (at most one per drone) in one unordered bulk write.
+     * A reading older than the one a drone already holds is skipped, as are unknown drones.
+     *
+     * @return - drones updated
+     */
+    int applyTelemetry(Collection<TelemetryReading> readings);
+
+    /**
+     * Counts per state and weight class, average battery and total loaded weight, from one $facet
+     * aggregation over the collection.
+     */
+    FleetSummary summarize();
+}
@@ -0,0 +1,203 @@
+package drx.drone.service.drone_med_service.repository;
+
+import drx.drone.service.drone_med_service.config.MongoClusterMonitor;
+import drx.drone.service.drone_med_service.dto.FleetSummary;
+import drx.drone.service.drone_med_service.dto.TelemetryReading;
+import drx.drone.service.drone_med_service.model.Drone;
+import drx.drone.service.drone_med_service.model.State;
+import drx.drone.service.drone_med_service.model.WeightModel;
+import com.mongodb.bulk.BulkWriteResult;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+@RequiredArgsConstructor
+public class DroneRepositoryImpl implements DroneRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+    private final MongoClusterMonitor clusterMonitor;
+
+    @Override
+    public boolean isAvailable() {
+        return clusterMonitor.isWritable();
+    }
+
+    @Override
+    public Drone loadMedication(String serialNumber, String medId, float medWeight) {
+        return mongoTemplate.findAndModify(DroneUpdates.loadGuard(serialNumber, medWeight),
+                DroneUpdates.load(medId, medWeight), DroneUpdates.RETURN_NEW, Drone.class);
+    }
+
+    @Override
+    public Drone transitionState(String serialNumber, Collection<State> from, State to) {
+        return mongoTemplate.findAndModify(DroneUpdates.inState(serialNumber, from),
+                DroneUpdates.state(to), DroneUpdates.RETURN_NEW, Drone.class);
+    }
+
+    @Override
+    public Drone unload(String serialNumber, State from, State to) {
+        return mongoTemplate.findAndModify(DroneUpdates.inState(serialNumber, List.of(from)),
+                DroneUpdates.unload(to), DroneUpdates.RETURN_NEW, Drone.class);
+    }
+
+    @Override
+    public List<Drone> updateAll(Collection<Drone> drones) {
+        if (drones.isEmpty()) {
+            return List.of();
+        }
+        String batch = new ObjectId().toHexString();
+        List<String> serialNumbers = new ArrayList<>(drones.size());
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Drone.class);
+        for (Drone drone : drones) {
+            serialNumbers.add(drone.getSerialNumber());
+            bulk.updateOne(DroneUpdates.atVersion(drone.getSerialNumber(), drone.getVersion()), DroneUpdates.loaded(drone, batch));
+        }
+        try {
+            bulk.execute();
+        } catch (BulkOperationException e) {
+            // unordered, so the others were still written: a drone whose update failed just isn't applied
+        }
+        return mongoTemplate.find(DroneUpdates.writtenBy(serialNumbers, batch), Drone.class);
+    }
+
+    @Override
+    public List<Drone> bulkTransition(Collection<StateChange> changes) {
+        if (changes.isEmpty()) {
+            return List.of();
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Drone.class);
+        for (StateChange change : changes) {
+            Update update = change.unload() ? DroneUpdates.unload(change.to()) : DroneUpdates.state(change.to());
+            bulk.updateOne(DroneUpdates.inState(change.serialNumber(), List.of(change.from())),
+                    update.inc("version", change.changes()));
+        }
+        BulkWriteResult result = bulk.execute();
+        if (result.getMatchedCount() == changes.size()) {
+            return List.of();
+        }
+        // the bulk result doesn't say which missed: an applied change left the drone in its new state
+        Map<String, State> expected = changes.stream().collect(Collectors.toMap(StateChange::serialNumber, StateChange::to));
+        return mongoTemplate.find(query(where("serialNumber").in(expected.keySet())), Drone.class).stream()
+                .filter(stored -> stored.getState() != expected.get(stored.getSerialNumber()))
+                .toList();
+    }
+
+    @Override
+    public int applyTelemetry(Collection<TelemetryReading> readings) {
+        if (readings.isEmpty()) {
+            return 0;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Drone.class);
+        for (TelemetryReading reading : readings) {
+            bulk.updateOne(DroneUpdates.readingNewer(reading.getSerialNumber(), reading.getTimestamp()),
+                    DroneUpdates.battery(reading.getBattery(), reading.getTimestamp()));
+        }
+        return bulk.execute().getModifiedCount();
+    }
+
+    @Override
+    public List<Drone> findChangedSince(long since) {
+        return mongoTemplate.find(DroneUpdates.changedSince(since), Drone.class);
+    }
+
+    @Override
+    public void backfillPayload(String serialNumber, float loadedWeight, int medCount) {
+        mongoTemplate.updateFirst(DroneUpdates.payloadMissing(serialNumber), DroneUpdates.payload(loadedWeight, medCount), Drone.class);
+    }
+
+    @Override
+    public List<Drone> findPage(String afterSerialNumber, int limit) {
+        return mongoTemplate.find(KeysetPages.after(afterSerialNumber, limit), Drone.class);
+    }
+
+    @Override
+    public List<Map<String, Object>> findPage(String afterSerialNumber, int limit, Collection<String> fields) {
+        return KeysetPages.findProjected(mongoTemplate, KeysetPages.after(afterSerialNumber, limit), Drone.class, fields);
+    }
+
+    @Override
+    public Stream<Drone> streamAll(State state, WeightModel weightClass) {
+        return mongoTemplate.stream(DroneUpdates.filtered(state, weightClass), Drone.class);
+    }
+
+    @Override
+    public Map<State, Long> countByState() {
+        Aggregation byState = Aggregation.newAggregation(Aggregation.group("state").count().as("count"));
+        Map<State, Long> counts = new EnumMap<>(State.class);
+        for (Document row : mongoTemplate.aggregate(byState, Drone.class, Document.class)) {
+            Object state = row.get("_id");
+            if (state != null) {
+                counts.put(State.valueOf(state.toString()), ((Number) row.get("count")).longValue());
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public FleetSummary summarize() {
+        Aggregation summary = Aggregation.newAggregation(Aggregation
+                .facet(Aggregation.group("state").count().as("count")).as("byState")
+                .and(Aggregation.group("weightClass").count().as("count")).as("byWeightClass")
+                .and(Aggregation.group()
+                        .count().as("total")
+                        .avg("batteryCapacity").as("averageBattery")
+                        .sum("loadedWeight").as("totalLoadedWeight")).as("totals"));
+        Document facets = mongoTemplate.aggregate(summary, Drone.class, Document.class).getUniqueMappedResult();
+
+        Map<State, Long> byState = new EnumMap<>(State.class);
+        for (State state : State.values()) {
+            byState.put(state, 0L);
+        }
+        Map<WeightModel, Long> byWeightClass = new EnumMap<>(WeightModel.class);
+        for (WeightModel weightClass : WeightModel.values()) {
+            byWeightClass.put(weightClass, 0L);
+        }
+        FleetSummary.FleetSummaryBuilder builder = FleetSummary.builder()
+                .byState(byState)
+                .byWeightClass(byWeightClass)
+                .computedAt(System.currentTimeMillis());
+        if (facets == null) {
+            return builder.build();
+        }
+        for (Document row : facets.getList("byState", Document.class, List.of())) {
+            if (row.get("_id") != null) {
+                byState.put(State.valueOf(row.get("_id").toString()), ((Number) row.get("count")).longValue());
+            }
+        }
+        for (Document row : facets.getList("byWeightClass", Document.class, List.of())) {
+            if (row.get("_id") != null) {
+                byWeightClass.put(WeightModel.valueOf(row.get("_id").toString()), ((Number) row.get("count")).longValue());
+            }
+        }
+        // no drones, no totals row
+        List<Document> totals = facets.getList("totals", Document.class, List.of());
+        if (!totals.isEmpty()) {
+            Document row = totals.get(0);
+            builder.total(((Number) row.get("total")).longValue())
+                    .averageBattery(number(row, "averageBattery"))
+                    .totalLoadedWeight(number(row, "totalLoadedWeight"));
+        }
+        return builder.build();
+    }
+
+    private static double number(Document row, String key) {
+        Object value = row.get(key);
+        return value == null ? 0 : ((Number) value).doubleValue();
+    }
+}
@@ -0,0 +1,347 @@
+package drx.drone.service.drone_med_service.repository;
+
+import drx.drone.service.drone_med_service.model.Drone;
+import drx.drone.service.drone_med_service.model.Medication;
+import drx.drone.service.drone_med_service.model.State;
+import drx.drone.service.drone_med_service.model.WeightModel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary, column-per-property image of a fleet, written and read through memory-mapped files.
+ * <p>
+ * Layout: a header (magic, format, time written, drone count), then the serial number dictionary, one
+ * column each for state and weight class (a byte per drone, the enum ordinal or -1), battery, weight
+ * limit, loaded weight, med count, version, battery reading time and last write time (packed
+ * primitives, see the {@code NO_*} markers for missing values), the loaded meds as an offsets array
+ * into one list of indexes into a dictionary of med ids, and finally the medications. Strings are
+ * stored as a length and their UTF-8 bytes.
+ */
+public final class DroneSnapshot {
+
+    static final byte NO_ENUM = -1;
+    static final int NO_INT = Integer.MIN_VALUE;
+    static final long NO_LONG = Long.MIN_VALUE;
+
+    private static final int MAGIC = 0x44524e53; // "DRNS"
+    private static final int FORMAT = 2;
+    private static final State[] STATES = State.values();
+    private static final WeightModel[] WEIGHT_CLASSES = WeightModel.values();
+    private static final String[] NO_MEDS = new String[0];
+
+    private final long writtenAt;
+    private final Columns columns;
+    private final List<Medication> medications;
+
+    private DroneSnapshot(long writtenAt, Columns columns, List<Medication> medications) {
+        this.writtenAt = writtenAt;
+        this.columns = columns;
+        this.medications = medications;
+    }
+
+    /**
+     * One array per drone property, row i of each belonging to the drone {@code serialNumbers[i]}. Only
+     * the first {@code size} rows are in use.
+     */
+    public record Columns(int size, String[] serialNumbers, byte[] states, byte[] weightClasses, int[] battery,
+                          float[] weightLimit, float[] loadedWeight, int[] medCount, long[] version,
+                          long[] batteryReportedAt, long[] updatedAt, String[][] loadedMeds) {
+
+        static Columns allocate(int size, int capacity) {
+            return new Columns(size, new String[capacity], new byte[capacity], new byte[capacity], new int[capacity],
+                    new float[capacity], new float[capacity], new int[capacity], new long[capacity],
+                    new long[capacity], new long[capacity], new String[capacity][]);
+        }
+
+        public static Columns of(List<Drone> drones) {
+            Columns columns = allocate(drones.size(), drones.size());
+            for (int row = 0; row < drones.size(); row++) {
+                columns.set(row, drones.get(row));
+            }
+            return columns;
+        }
+
+        /**
+         * Same rows in arrays of the given capacity, {@code size} of them in use.
+         */
+        Columns resize(int size, int capacity) {
+            return new Columns(size, Arrays.copyOf(serialNumbers, capacity), Arrays.copyOf(states, capacity),
+                    Arrays.copyOf(weightClasses, capacity), Arrays.copyOf(battery, capacity),
+                    Arrays.copyOf(weightLimit, capacity), Arrays.copyOf(loadedWeight, capacity),
+                    Arrays.copyOf(medCount, capacity), Arrays.copyOf(version, capacity),
+                    Arrays.copyOf(batteryReportedAt, capacity), Arrays.copyOf(updatedAt, capacity),
+                    Arrays.copyOf(loadedMeds, capacity));
+        }
+
+        /**
+         * Same arrays with {@code size} rows in use.
+         */
+        Columns withSize(int size) {
+            return new Columns(size, serialNumbers, states, weightClasses, battery, weightLimit, loadedWeight,
+                    medCount, version, batteryReportedAt, updatedAt, loadedMeds);
+        }
+
+        public Drone drone(int row) {
+            return Drone.builder()
+                    .serialNumber(serialNumbers[row])
+                    .state(states[row] == NO_ENUM ? null : STATES[states[row]])
+                    .weightClass(weightClasses[row] == NO_ENUM ? null : WEIGHT_CLASSES[weightClasses[row]])
+                    .batteryCapacity(battery[row] == NO_INT ? null : battery[row])
+                    .weightLimit(weightLimit[row])
+                    .loadedWeight(Float.isNaN(loadedWeight[row]) ? null : loadedWeight[row])
+                    .medCount(medCount[row] == NO_INT ? null : medCount[row])
+                    .version(version[row] == NO_LONG ? null : version[row])
+                    .batteryReportedAt(batteryReportedAt[row] == NO_LONG ? null : batteryReportedAt[row])
+                    .updatedAt(updatedAt[row] == NO_LONG ? null : updatedAt[row])
+                    .loadedMeds(new ArrayList<>(Arrays.asList(loadedMeds[row])))
+                    .build();
+        }
+
+        void set(int row, Drone drone) {
+            serialNumbers[row] = drone.getSerialNumber();
+            states[row] = drone.getState() == null ? NO_ENUM : (byte) drone.getState().ordinal();
+            weightClasses[row] = drone.getWeightClass() == null ? NO_ENUM : (byte) drone.getWeightClass().ordinal();
+            battery[row] = drone.getBatteryCapacity() == null ? NO_INT : drone.getBatteryCapacity();
+            weightLimit[row] = drone.getWeightLimit();
+            loadedWeight[row] = drone.getLoadedWeight() == null ? Float.NaN : drone.getLoadedWeight();
+            medCount[row] = drone.getMedCount() == null ? NO_INT : drone.getMedCount();
+            version[row] = drone.getVersion() == null ? NO_LONG : drone.getVersion();
+            batteryReportedAt[row] = drone.getBatteryReportedAt() == null ? NO_LONG : drone.getBatteryReportedAt();
+            updatedAt[row] = drone.getUpdatedAt() == null ? NO_LONG : drone.getUpdatedAt();
+            loadedMeds[row] = drone.getLoadedMeds() == null ? NO_MEDS : drone.getLoadedMeds().toArray(String[]::new);
+        }
+
+        void copy(int from, int to) {
+            serialNumbers[to] = serialNumbers[from];
+            states[to] = states[from];
+            weightClasses[to] = weightClasses[from];
+            battery[to] = battery[from];
+            weightLimit[to] = weightLimit[from];
+            loadedWeight[to] = loadedWeight[from];
+            medCount[to] = medCount[from];
+            version[to] = version[from];
+            batteryReportedAt[to] = batteryReportedAt[from];
+            updatedAt[to] = updatedAt[from];
+            loadedMeds[to] = loadedMeds[from];
+        }
+    }
+
+    public long getWrittenAt() {
+        return writtenAt;
+    }
+
+    public Columns getColumns() {
+        return columns;
+    }
+
+    public List<Medication> getMedications() {
+        return medications;
+    }
+
+    /**
+     * Writes the first {@code columns.size()} drones and the medications to a temporary file next to
+     * {@code file} and moves it over {@code file}, so a crash mid-write leaves the previous snapshot.
+     */
+    public static void write(Path file, long writtenAt, Columns columns, List<Medication> medications) throws IOException {
+        int size = columns.size();
+        byte[][] serialNumbers = new byte[size][];
+        int loaded = 0;
+        long length = 4 + 4 + 8 + 4;
+        for (int row = 0; row < size; row++) {
+            serialNumbers[row] = utf8(columns.serialNumbers()[row]);
+            loaded += columns.loadedMeds()[row].length;
+            length += 4 + serialNumbers[row].length;
+        }
+        // the same few meds are loaded on many drones, each id is stored once
+        Map<String, Integer> medIds = new LinkedHashMap<>();
+        int[] meds = new int[loaded];
+        int med = 0;
+        for (int row = 0; row < size; row++) {
+            for (String medId : columns.loadedMeds()[row]) {
+                meds[med++] = medId == null ? -1 : medIds.computeIfAbsent(medId, id -> medIds.size());
+            }
+        }
+        List<byte[]> medIdBytes = new ArrayList<>(medIds.size());
+        length += 4;
+        for (String medId : medIds.keySet()) {
+            medIdBytes.add(utf8(medId));
+            length += 4 + medIdBytes.get(medIdBytes.size() - 1).length;
+        }
+        length += 2L * size + (4L + 4 + 4 + 4 + 8 + 8 + 8) * size + 4L * (size + 1) + 4L * loaded;
+        List<byte[][]> medicationFields = new ArrayList<>(medications.size());
+        length += 4;
+        for (Medication medication : medications) {
+            byte[][] fields = {utf8(medication.getId()), utf8(medication.getName()), utf8(medication.getCode()),
+                    utf8(medication.getImg_url())};
+            for (byte[] field : fields) {
+                length += 4 + (field == null ? 0 : field.length);
+            }
+            length += 4;
+            medicationFields.add(fields);
+        }
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot of " + length + " bytes is too large for one mapping");
+        }
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+            out.putInt(MAGIC).putInt(FORMAT).putLong(writtenAt).putInt(size);
+            for (byte[] serialNumber : serialNumbers) {
+                putBytes(out, serialNumber);
+            }
+            out.put(columns.states(), 0, size);
+            out.put(columns.weightClasses(), 0, size);
+            out.asIntBuffer().put(columns.battery(), 0, size);
+            out.position(out.position() + 4 * size);
+            out.asFloatBuffer().put(columns.weightLimit(), 0, size);
+            out.position(out.position() + 4 * size);
+            out.asFloatBuffer().put(columns.loadedWeight(), 0, size);
+            out.position(out.position() + 4 * size);
+            out.asIntBuffer().put(columns.medCount(), 0, size);
+            out.position(out.position() + 4 * size);
+            out.asLongBuffer().put(columns.version(), 0, size);
+            out.position(out.position() + 8 * size);
+            out.asLongBuffer().put(columns.batteryReportedAt(), 0, size);
+            out.position(out.position() + 8 * size);
+            out.asLongBuffer().put(columns.updatedAt(), 0, size);
+            out.position(out.position() + 8 * size);
+            int offset = 0;
+            for (int row = 0; row < size; row++) {
+                out.putInt(offset);
+                offset += columns.loadedMeds()[row].length;
+            }
+            out.putInt(offset);
+            out.putInt(medIdBytes.size());
+            for (byte[] medId : medIdBytes) {
+                putBytes(out, medId);
+            }
+            out.asIntBuffer().put(meds);
+            out.position(out.position() + 4 * loaded);
+            out.putInt(medications.size());
+            for (int i = 0; i < medications.size(); i++) {
+                for (byte[] field : medicationFields.get(i)) {
+                    putBytes(out, field);
+                }
+                out.putFloat(medications.get(i).getWeight());
+            }
+            out.force();
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return - the snapshot in {@code file}, or null if there is none
+     * @throws IOException - if the file can't be read or isn't a snapshot of this format
+     */
+    public static DroneSnapshot read(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.getInt() != MAGIC || in.getInt() != FORMAT) {
+                throw new IOException(file + " is not a drone snapshot");
+            }
+            long writtenAt = in.getLong();
+            int size = in.getInt();
+            Columns columns = Columns.allocate(size, size);
+            byte[] buffer = new byte[256];
+            for (int row = 0; row < size; row++) {
+                columns.serialNumbers()[row] = getString(in, buffer);
+            }
+            in.get(columns.states(), 0, size);
+            in.get(columns.weightClasses(), 0, size);
+            in.asIntBuffer().get(columns.battery(), 0, size);
+            in.position(in.position() + 4 * size);
+            in.asFloatBuffer().get(columns.weightLimit(), 0, size);
+            in.position(in.position() + 4 * size);
+            in.asFloatBuffer().get(columns.loadedWeight(), 0, size);
+            in.position(in.position() + 4 * size);
+            in.asIntBuffer().get(columns.medCount(), 0, size);
+            in.position(in.position() + 4 * size);
+            in.asLongBuffer().get(columns.version(), 0, size);
+            in.position(in.position() + 8 * size);
+            in.asLongBuffer().get(columns.batteryReportedAt(), 0, size);
+            in.position(in.position() + 8 * size);
+            in.asLongBuffer().get(columns.updatedAt(), 0, size);
+            in.position(in.position() + 8 * size);
+            int[] offsets = new int[size + 1];
+            in.asIntBuffer().get(offsets);
+            in.position(in.position() + 4 * (size + 1));
+            String[] medIds = new String[in.getInt()];
+            for (int i = 0; i < medIds.length; i++) {
+                medIds[i] = getString(in);
+            }
+            int[] meds = new int[offsets[size]];
+            in.asIntBuffer().get(meds);
+            in.position(in.position() + 4 * meds.length);
+            for (int row = 0; row < size; row++) {
+                if (offsets[row + 1] == offsets[row]) {
+                    columns.loadedMeds()[row] = NO_MEDS;
+                    continue;
+                }
+                String[] loaded = new String[offsets[row + 1] - offsets[row]];
+                for (int i = 0; i < loaded.length; i++) {
+                    int med = meds[offsets[row] + i];
+                    loaded[i] = med < 0 ? null : medIds[med];
+                }
+                columns.loadedMeds()[row] = loaded;
+            }
+            int medicationCount = in.getInt();
+            List<Medication> medications = new ArrayList<>(medicationCount);
+            for (int i = 0; i < medicationCount; i++) {
+                medications.add(Medication.builder()
+                        .id(getString(in))
+                        .name(getString(in))
+                        .code(getString(in))
+                        .img_url(getString(in))
+                        .weight(in.getFloat())
+                        .build());
+            }
+            return new DroneSnapshot(writtenAt, columns, medications);
+        }
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // -1 for null
+    private static void putBytes(ByteBuffer out, byte[] bytes) {
+        if (bytes == null) {
+            out.putInt(-1);
+            return;
+        }
+        out.putInt(bytes.length).put(bytes);
+    }
+
+    private static String getString(ByteBuffer in) {
+        return getString(in, new byte[0]);
+    }
+
+    // decodes through the given buffer when it is large enough, so a run of short strings shares one
+    private static String getString(ByteBuffer in, byte[] buffer) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = length <= buffer.length ? buffer : new byte[length];
+        in.get(bytes, 0, length);
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,31 @@
+package drx.drone.service.drone_med_service.repository;
+
+import drx.drone.service.drone_med_service.model.Drone;
+import drx.drone.service.drone_med_service.model.State;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The drone operations the services use. {@link DroneRepository} serves them from Mongo;
+ * {@link EmbeddedDroneRepository} from the embedded store's table.
+ */
+public interface DroneStore extends DroneRepositoryCustom {
+
+    /**
+     * Insert (no version) or optimistic-lock update (version must match the stored one). Sets the new
+     * version on the drone.
+     */
+    <S extends Drone> S save(S drone);
+
+    Optional<Drone> findById(String serialNumber);
+
+    List<Drone> findAllById(Iterable<String> serialNumbers);
+
+    List<Drone> findAll();
+
+    /**
+     * Served by the index on {@code state}, so cost follows the result size rather than the fleet size.
+     */
+    List<Drone> findByState(State state);
+}
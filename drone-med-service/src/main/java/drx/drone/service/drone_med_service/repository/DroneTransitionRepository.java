@@ -0,0 +1,7 @@
+package drx.drone.service.drone_med_service.repository;
+
+import drx.drone.service.drone_med_service.model.DroneTransition;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface DroneTransitionRepository extends MongoRepository<DroneTransition, String>, DroneTransitionRepositoryCustom {
+}
@@ -0,0 +1,31 @@
+package drx.drone.service.drone_med_service.repository;
+
+import drx.drone.service.drone_med_service.model.DroneTransition;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface DroneTransitionRepositoryCustom {
+
+    /**
+     * Creates the time-series collection and its (serialNumber, at) index unless they exist. Writing to
+     * the collection before would create it as a plain one.
+     */
+    void prepare();
+
+    /**
+     * Appends the entries with one insertMany.
+     */
+    void append(Collection<DroneTransition> transitions);
+
+    /**
+     * Entries in time order with from <= at < to.
+     *
+     * @param serialNumber - only this drone's entries, every drone's if null
+     * @param from         - from this time on, the beginning if null
+     * @param to           - before this time, up to now if null
+     * @param limit        - at most this many, the earliest first
+     */
+    List<DroneTransition> findRange(String serialNumber, Instant from, Instant to, int limit);
+}
@@ -0,0 +1,60 @@
+package drx.drone.service.drone_med_service.repository;
+
+import drx.drone.service.drone_med_service.model.DroneTransition;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+@RequiredArgsConstructor
+public class DroneTransitionRepositoryImpl implements DroneTransitionRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+    private final MongoMappingContext mappingContext;
+
+    @Override
+    public void prepare() {
+        if (!mongoTemplate.collectionExists(DroneTransition.class)) {
+            // picks up the @TimeSeries options
+            mongoTemplate.createCollection(DroneTransition.class);
+        }
+        IndexOperations indexOps = mongoTemplate.indexOps(DroneTransition.class);
+        IndexResolver.create(mappingContext).resolveIndexFor(DroneTransition.class).forEach(indexOps::createIndex);
+    }
+
+    @Override
+    public void append(Collection<DroneTransition> transitions) {
+        if (!transitions.isEmpty()) {
+            mongoTemplate.insert(transitions, DroneTransition.class);
+        }
+    }
+
+    @Override
+    public List<DroneTransition> findRange(String serialNumber, Instant from, Instant to, int limit) {
+        Query query = new Query().with(Sort.by("at")).limit(limit);
+        if (serialNumber != null) {
+            query.addCriteria(where("serialNumber").is(serialNumber));
+        }
+        if (from != null || to != null) {
+            Criteria at = where("at");
+            if (from != null) {
+                at.gte(from);
+            }
+            if (to != null) {
+                at.lt(to);
+            }
+            query.addCriteria(at);
+        }
+        return mongoTemplate.find(query, DroneTransition.class);
+    }
+}
@@ -0,0 +1,167 @@
+package drx.drone.service.drone_med_service.repository;
+
+import drx.drone.service.drone_med_service.model.Drone;
+import drx.drone.service.drone_med_service.model.State;
+import drx.drone.service.drone_med_service.model.WeightModel;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.aggregation.AggregationExpression;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Collection;
+import java.util.List;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * The guards and updates behind the drone writes, shared by {@link DroneRepositoryImpl} and
+ * {@link ReactiveDroneRepositoryImpl} so both stacks apply exactly the same rules.
+ */
+final class DroneUpdates {
+
+    static final FindAndModifyOptions RETURN_NEW = FindAndModifyOptions.options().returnNew(true);
+    static final int STREAM_BATCH_SIZE = 1000;
+    // stored only, never mapped onto Drone: which batch load last wrote the drone
+    static final String LOAD_BATCH = "loadBatch";
+
+    private DroneUpdates() {
+    }
+
+    /**
+     * Matches the drone only if the state, battery, count and weight guards of loadMedication hold.
+     */
+    static Query loadGuard(String serialNumber, float medWeight) {
+        return query(where("serialNumber").is(serialNumber)
+                .and("state").in(Drone.LOADABLE_STATES)
+                .and("batteryCapacity").gt(Drone.MIN_LOADING_BATTERY)
+                .and("medCount").lt(Drone.MAX_MED_COUNT)
+                .andOperator(Criteria.expr(ComparisonOperators.valueOf(newWeight(medWeight)).lessThanEqualTo("weightLimit"))));
+    }
+
+    static AggregationUpdate load(String medId, float medWeight) {
+        AggregationExpression newWeight = newWeight(medWeight);
+        // Pipeline update so the LOADING/LOADED decision is part of the same atomic write.
+        // Each set(..) is its own stage, so state has to be decided before loadedWeight moves.
+        return AggregationUpdate.update()
+                .set("state").toValue(ConditionalOperators
+                        .when(ComparisonOperators.valueOf(newWeight).greaterThanEqualTo("weightLimit"))
+                        .then(State.LOADED.name())
+                        .otherwise(State.LOADING.name()))
+                .set("loadedWeight").toValue(newWeight)
+                .set("medCount").toValue(ArithmeticOperators.valueOf("medCount").add(1))
+                .set("batteryCapacity").toValue(ArithmeticOperators.valueOf("batteryCapacity").subtract(Drone.LOAD_BATTERY_COST))
+                .set("loadedMeds").toValue(pushed(medId))
+                .set("updatedAt").toValue(System.currentTimeMillis())
+                // bumped here rather than by the template, whose $add would leave a missing version null
+                .set("version").toValue(ArithmeticOperators.valueOf(ConditionalOperators.ifNull("version").then(0)).add(1));
+    }
+
+    static Update state(State to) {
+        return Update.update("state", to).set("updatedAt", System.currentTimeMillis());
+    }
+
+    /**
+     * Matches the drone only while its stored version is still the one it was read at.
+     */
+    static Query atVersion(String serialNumber, Long version) {
+        return query(where("serialNumber").is(serialNumber).and("version").is(version));
+    }
+
+    /**
+     * Writes back everything a batch load changes on a drone, bumping its version, and stamps it with
+     * the batch that wrote it (see {@link #writtenBy}).
+     */
+    static Update loaded(Drone drone, String batch) {
+        return Update.update("state", drone.getState())
+                .set("batteryCapacity", drone.getBatteryCapacity())
+                .set("loadedMeds", drone.getLoadedMeds())
+                .set("loadedWeight", drone.getLoadedWeight())
+                .set("medCount", drone.getMedCount())
+                .set("updatedAt", System.currentTimeMillis())
+                .set(LOAD_BATCH, batch)
+                .inc("version", 1);
+    }
+
+    /**
+     * The drones among {@code serialNumbers} last written by batch {@code batch}, looked up by id.
+     */
+    static Query writtenBy(Collection<String> serialNumbers, String batch) {
+        return query(where("serialNumber").in(serialNumbers).and(LOAD_BATCH).is(batch));
+    }
+
+    static Query inState(String serialNumber, Collection<State> from) {
+        return query(where("serialNumber").is(serialNumber).and("state").in(from));
+    }
+
+    static Update unload(State to) {
+        return state(to)
+                .set("loadedMeds", List.of())
+                .set("loadedWeight", 0f)
+                .set("medCount", 0);
+    }
+
+    static Query payloadMissing(String serialNumber) {
+        return query(where("serialNumber").is(serialNumber).and("loadedWeight").exists(false));
+    }
+
+    static Update payload(float loadedWeight, int medCount) {
+        return Update.update("loadedWeight", loadedWeight)
+                .set("medCount", medCount)
+                .set("updatedAt", System.currentTimeMillis());
+    }
+
+    /**
+     * Matches the drone unless it already holds a battery reading taken at or after the given time.
+     */
+    static Query readingNewer(String serialNumber, long timestamp) {
+        return query(where("serialNumber").is(serialNumber)
+                .orOperator(where("batteryReportedAt").exists(false), where("batteryReportedAt").lt(timestamp)));
+    }
+
+    static Update battery(int battery, long timestamp) {
+        // a new version, so batch loads planned on the old battery lose their version check
+        return Update.update("batteryCapacity", battery)
+                .set("batteryReportedAt", timestamp)
+                .set("updatedAt", System.currentTimeMillis())
+                .inc("version", 1);
+    }
+
+    /**
+     * Drones written at or after {@code since} (epoch millis).
+     */
+    static Query changedSince(long since) {
+        return query(where("updatedAt").gte(since)).cursorBatchSize(STREAM_BATCH_SIZE);
+    }
+
+    /**
+     * @param state       - only drones in this state, all if null
+     * @param weightClass - only drones of this weight class, all if null
+     */
+    static Query filtered(State state, WeightModel weightClass) {
+        Query query = new Query().cursorBatchSize(STREAM_BATCH_SIZE);
+        if (state != null) {
+            query.addCriteria(where("state").is(state));
+        }
+        if (weightClass != null) {
+            query.addCriteria(where("weightClass").is(weightClass));
+        }
+        return query;
+    }
+
+    private static AggregationExpression newWeight(float medWeight) {
+        return ArithmeticOperators.valueOf("loadedWeight").add((double) medWeight);
+    }
+
+    // $push isn't available in pipeline updates, so append through $concatArrays
+    private static AggregationExpression pushed(String medId) {
+        return context -> new Document("$concatArrays",
+                List.of(new Document("$ifNull", List.of("$loadedMeds", List.of())), List.of(medId)));
+    }
+}
@@ -0,0 +1,164 @@
+package drx.drone.service.drone_med_service.repository;
+
+import drx.drone.service.drone_med_service.dto.FleetSummary;
+import drx.drone.service.drone_med_service.dto.TelemetryReading;
+import drx.drone.service.drone_med_service.exception.InvalidPageRequestException;
+import drx.drone.service.drone_med_service.model.Drone;
+import drx.drone.service.drone_med_service.model.State;
+import drx.drone.service.drone_med_service.model.WeightModel;
+import drx.drone.service.drone_med_service.repository.DroneRepositoryCustom.StateChange;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * {@link DroneStore} over {@link DroneColumns}, for the embedded profile, with the same guards and
+ * version bumps as the Mongo updates.
+ */
+final class EmbeddedDroneRepository implements DroneStore {
+
+    static final Set<String> PROPERTIES = Set.of("serialNumber", "weightClass", "weightLimit", "batteryCapacity",
+            "batteryReportedAt", "state", "loadedMeds", "loadedWeight", "medCount", "version", "updatedAt");
+
+    private final DroneColumns drones;
+
+    EmbeddedDroneRepository(DroneColumns drones) {
+        this.drones = drones;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    public <S extends Drone> S save(S drone) {
+        drones.save(drone);
+        return drone;
+    }
+
+    @Override
+    public Optional<Drone> findById(String serialNumber) {
+        return Optional.ofNullable(drones.get(serialNumber));
+    }
+
+    @Override
+    public List<Drone> findAllById(Iterable<String> serialNumbers) {
+        return drones.getAll(serialNumbers);
+    }
+
+    @Override
+    public List<Drone> findAll() {
+        return drones.filter(null, null);
+    }
+
+    @Override
+    public List<Drone> findByState(State state) {
+        return drones.filter(state, null);
+    }
+
+    @Override
+    public Drone loadMedication(String serialNumber, String medId, float medWeight) {
+        return drones.loadMedication(serialNumber, medId, medWeight);
+    }
+
+    @Override
+    public Drone transitionState(String serialNumber, Collection<State> from, State to) {
+        return drones.transition(serialNumber, from, to, false);
+    }
+
+    @Override
+    public Drone unload(String serialNumber, State from, State to) {
+        return drones.transition(serialNumber, List.of(from), to, true);
+    }
+
+    @Override
+    public List<Drone> updateAll(Collection<Drone> written) {
+        return drones.updateAll(written);
+    }
+
+    @Override
+    public List<Drone> bulkTransition(Collection<StateChange> changes) {
+        return drones.bulkTransition(changes);
+    }
+
+    @Override
+    public int applyTelemetry(Collection<TelemetryReading> readings) {
+        return drones.applyTelemetry(readings);
+    }
+
+    @Override
+    public List<Drone> findChangedSince(long since) {
+        return drones.changedSince(since);
+    }
+
+    @Override
+    public void backfillPayload(String serialNumber, float loadedWeight, int medCount) {
+        drones.backfillPayload(serialNumber, loadedWeight, medCount);
+    }
+
+    @Override
+    public List<Drone> findPage(String afterSerialNumber, int limit) {
+        return drones.page(afterSerialNumber, limit);
+    }
+
+    @Override
+    public List<Map<String, Object>> findPage(String afterSerialNumber, int limit, Collection<String> fields) {
+        return project(drones.page(afterSerialNumber, limit), fields);
+    }
+
+    @Override
+    public Stream<Drone> streamAll(State state, WeightModel weightClass) {
+        return drones.filter(state, weightClass).stream();
+    }
+
+    @Override
+    public Map<State, Long> countByState() {
+        return drones.countByState();
+    }
+
+    @Override
+    public FleetSummary summarize() {
+        return drones.summarize();
+    }
+
+    // same rows as KeysetPages.findProjected: requested properties present on the drone, plus the id
+    private static List<Map<String, Object>> project(List<Drone> page, Collection<String> fields) {
+        for (String field : fields) {
+            if (!PROPERTIES.contains(field)) {
+                throw new InvalidPageRequestException("Unknown field " + field + "!");
+            }
+        }
+        List<Map<String, Object>> rows = new ArrayList<>(page.size());
+        for (Drone drone : page) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("serialNumber", drone.getSerialNumber());
+            for (String field : fields) {
+                Object value = switch (field) {
+                    case "weightClass" -> drone.getWeightClass() == null ? null : drone.getWeightClass().name();
+                    case "weightLimit" -> drone.getWeightLimit();
+                    case "batteryCapacity" -> drone.getBatteryCapacity();
+                    case "batteryReportedAt" -> drone.getBatteryReportedAt();
+                    case "state" -> drone.getState() == null ? null : drone.getState().name();
+                    case "loadedMeds" -> drone.getLoadedMeds();
+                    case "loadedWeight" -> drone.getLoadedWeight();
+                    case "medCount" -> drone.getMedCount();
+                    case "version" -> drone.getVersion();
+                    case "updatedAt" -> drone.getUpdatedAt();
+                    default -> drone.getSerialNumber();
+                };
+                if (value != null) {
+                    row.put(field, value);
+                }
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+}
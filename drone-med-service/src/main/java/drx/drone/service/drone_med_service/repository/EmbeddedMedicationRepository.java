@@ -0,0 +1,134 @@
+package drx.drone.service.drone_med_service.repository;
+
+import drx.drone.service.drone_med_service.exception.InvalidPageRequestException;
+import drx.drone.service.drone_med_service.model.Medication;
+import org.bson.types.ObjectId;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.stream.Stream;
+
+/**
+ * {@link MedicationStore} over a sorted map of medications by id, for the embedded profile.
+ */
+final class EmbeddedMedicationRepository implements MedicationStore {
+
+    private static final Set<String> PROPERTIES = Set.of("id", "name", "weight", "code", "img_url");
+
+    private final ConcurrentNavigableMap<String, Medication> medications;
+
+    EmbeddedMedicationRepository(ConcurrentNavigableMap<String, Medication> medications) {
+        this.medications = medications;
+    }
+
+    // ids are generated like Mongo would for a new document
+    @Override
+    public <S extends Medication> S save(S medication) {
+        if (medication.getId() == null) {
+            medication.setId(new ObjectId().toHexString());
+        }
+        medications.put(medication.getId(), medication);
+        return medication;
+    }
+
+    @Override
+    public void bulkSave(List<Medication> toSave) {
+        for (Medication medication : toSave) {
+            save(medication);
+        }
+    }
+
+    @Override
+    public Optional<Medication> findById(String id) {
+        return Optional.ofNullable(medications.get(id));
+    }
+
+    @Override
+    public List<Medication> findAllById(Iterable<String> ids) {
+        List<Medication> found = new ArrayList<>();
+        for (String id : ids) {
+            Medication medication = medications.get(id);
+            if (medication != null) {
+                found.add(medication);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public List<Medication> findAll() {
+        return new ArrayList<>(medications.values());
+    }
+
+    @Override
+    public void deleteById(String id) {
+        medications.remove(id);
+    }
+
+    @Override
+    public void deleteAllById(Iterable<? extends String> ids) {
+        for (String id : ids) {
+            medications.remove(id);
+        }
+    }
+
+    @Override
+    public List<Medication> findPage(String afterId, int limit) {
+        return page(afterId, limit);
+    }
+
+    @Override
+    public List<Map<String, Object>> findPage(String afterId, int limit, Collection<String> fields) {
+        return project(page(afterId, limit), fields);
+    }
+
+    @Override
+    public Stream<Medication> streamAll() {
+        return new ArrayList<>(medications.values()).stream();
+    }
+
+    private List<Medication> page(String afterId, int limit) {
+        Map<String, Medication> after = afterId == null ? medications : medications.tailMap(afterId, false);
+        List<Medication> page = new ArrayList<>(Math.min(limit, after.size()));
+        for (Medication medication : after.values()) {
+            if (page.size() == limit) {
+                break;
+            }
+            page.add(medication);
+        }
+        return page;
+    }
+
+    private static List<Map<String, Object>> project(List<Medication> page, Collection<String> fields) {
+        for (String field : fields) {
+            if (!PROPERTIES.contains(field)) {
+                throw new InvalidPageRequestException("Unknown field " + field + "!");
+            }
+        }
+        List<Map<String, Object>> rows = new ArrayList<>(page.size());
+        for (Medication medication : page) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("id", medication.getId());
+            for (String field : fields) {
+                Object value = switch (field) {
+                    case "name" -> medication.getName();
+                    case "weight" -> medication.getWeight();
+                    case "code" -> medication.getCode();
+                    case "img_url" -> medication.getImg_url();
+                    default -> medication.getId();
+                };
+                if (value != null) {
+                    row.put(field, value);
+                }
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,80 @@
+package drx.drone.service.drone_med_service.repository;
+
+import drx.drone.service.drone_med_service.model.Medication;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Storage for the {@code embedded} profile, in place of Mongo: drones in a {@link DroneColumns} table,
+ * medications in a sorted map, served as a {@link DroneStore} and a {@link MedicationStore} (see
+ * {@link #droneStore()} and {@link #medicationStore()}).
+ * <p>
+ * The data lives in memory and is written to {@code drone.embedded.snapshot-path} (a
+ * {@link DroneSnapshot}) every {@code drone.embedded.snapshot-interval} ms and on shutdown, and read
+ * back from there on startup. A crash loses what changed since the last snapshot.
+ */
+@Slf4j
+@Component
+@Profile("embedded")
+public class EmbeddedStore {
+
+    private final DroneColumns drones = new DroneColumns();
+    private final ConcurrentNavigableMap<String, Medication> medications = new ConcurrentSkipListMap<>();
+    private final Path snapshotPath;
+
+    public EmbeddedStore(@Value("${drone.embedded.snapshot-path:data/drones.snapshot}") String snapshotPath) throws IOException {
+        this.snapshotPath = Path.of(snapshotPath);
+        long start = System.nanoTime();
+        DroneSnapshot snapshot = DroneSnapshot.read(this.snapshotPath);
+        if (snapshot != null) {
+            drones.restore(snapshot.getColumns());
+            snapshot.getMedications().forEach(medication -> medications.put(medication.getId(), medication));
+            log.info("Embedded store loaded {} drones and {} medications from {} in {} ms", drones.size(),
+                    medications.size(), this.snapshotPath, (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    public DroneStore droneStore() {
+        return new EmbeddedDroneRepository(drones);
+    }
+
+    public MedicationStore medicationStore() {
+        return new EmbeddedMedicationRepository(medications);
+    }
+
+    @Scheduled(fixedDelayString = "${drone.embedded.snapshot-interval:60000}")
+    public void tick() {
+        try {
+            snapshot();
+        } catch (IOException e) {
+            log.warn("Could not write snapshot {}: {}", snapshotPath, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        tick();
+    }
+
+    /**
+     * Writes the current drones and medications to the snapshot file. Writes to the store go on
+     * meanwhile; the drones are copied first, column by column.
+     */
+    public synchronized void snapshot() throws IOException {
+        if (snapshotPath.getParent() != null) {
+            Files.createDirectories(snapshotPath.getParent());
+        }
+        DroneSnapshot.write(snapshotPath, System.currentTimeMillis(), drones.copy(), new ArrayList<>(medications.values()));
+    }
+}
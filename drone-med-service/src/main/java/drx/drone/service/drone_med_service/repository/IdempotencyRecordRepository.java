@@ -0,0 +1,7 @@
+package drx.drone.service.drone_med_service.repository;
+
+import drx.drone.service.drone_med_service.model.IdempotencyRecord;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface IdempotencyRecordRepository extends MongoRepository<IdempotencyRecord, String>, IdempotencyRecordRepositoryCustom {
+}
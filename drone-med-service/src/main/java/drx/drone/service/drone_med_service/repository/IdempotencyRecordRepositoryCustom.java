@@ -0,0 +1,11 @@
+package drx.drone.service.drone_med_service.repository;
+
+import java.time.Duration;
+
+public interface IdempotencyRecordRepositoryCustom {
+
+    /**
+     * Creates the TTL index that removes records the given time after createdAt.
+     */
+    void prepare(Duration ttl);
+}
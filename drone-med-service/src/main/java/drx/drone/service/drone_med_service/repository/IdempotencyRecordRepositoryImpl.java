@@ -0,0 +1,21 @@
+package drx.drone.service.drone_med_service.repository;
+
+import drx.drone.service.drone_med_service.model.IdempotencyRecord;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+
+import java.time.Duration;
+
+@RequiredArgsConstructor
+public class IdempotencyRecordRepositoryImpl implements IdempotencyRecordRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public void prepare(Duration ttl) {
+        mongoTemplate.indexOps(IdempotencyRecord.class)
+                .createIndex(new Index().on("createdAt", Sort.Direction.ASC).expire(ttl).named("createdAt_ttl"));
+    }
+}
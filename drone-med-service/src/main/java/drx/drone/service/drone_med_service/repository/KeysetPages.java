@@ -0,0 +1,107 @@
+package drx.drone.service.drone_med_service.repository;
+
+import drx.drone.service.drone_med_service.exception.InvalidPageRequestException;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.schema.JsonSchemaObject;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.springframework.data.domain.Sort.Direction.ASC;
+import static org.springframework.data.domain.Sort.by;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Keyset pagination on {@code _id}: each page is an index range scan that starts right after the last
+ * id of the previous page, so a page costs the same however deep into the collection it is.
+ */
+final class KeysetPages {
+
+    private KeysetPages() {
+    }
+
+    /**
+     * @param afterId - last id of the previous page, null for the first page
+     * @return - query for the next {@code limit} documents in _id order
+     */
+    static Query after(String afterId, int limit) {
+        Query query = new Query().with(by(ASC, "_id")).limit(limit);
+        if (afterId == null) {
+            return query;
+        }
+        if (ObjectId.isValid(afterId)) {
+            return query.addCriteria(where("_id").gt(new ObjectId(afterId)));
+        }
+        // ids that look like ObjectIds are stored as ObjectIds, everything else as strings, and all
+        // strings sort before all ObjectIds; $gt only compares within one type
+        return query.addCriteria(new Criteria().orOperator(
+                where("_id").gt(afterId),
+                where("_id").type(JsonSchemaObject.Type.objectIdType())));
+    }
+
+    /**
+     * Runs the page query returning only the given properties of {@code type}, keyed by property name
+     * like the full documents are. The id is always included.
+     *
+     * @throws InvalidPageRequestException - if one of the fields isn't a property of {@code type}
+     */
+    static List<Map<String, Object>> findProjected(MongoTemplate mongoTemplate, Query query, Class<?> type,
+                                                   Collection<String> fields) {
+        MongoPersistentEntity<?> entity = mongoTemplate.getConverter().getMappingContext().getRequiredPersistentEntity(type);
+        Map<String, String> propertyByField = project(entity, query, fields);
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (Document document : mongoTemplate.find(query, Document.class, entity.getCollection())) {
+            rows.add(row(document, propertyByField));
+        }
+        return rows;
+    }
+
+    /**
+     * Same as {@link #findProjected(MongoTemplate, Query, Class, Collection)}, rows emitted as they arrive.
+     */
+    static Flux<Map<String, Object>> findProjected(ReactiveMongoTemplate mongoTemplate, Query query, Class<?> type,
+                                                   Collection<String> fields) {
+        MongoPersistentEntity<?> entity = mongoTemplate.getConverter().getMappingContext().getRequiredPersistentEntity(type);
+        Map<String, String> propertyByField = project(entity, query, fields);
+        return mongoTemplate.find(query, Document.class, entity.getCollection())
+                .map(document -> row(document, propertyByField));
+    }
+
+    // includes the fields in the query, returns field name -> property name
+    private static Map<String, String> project(MongoPersistentEntity<?> entity, Query query, Collection<String> fields) {
+        Map<String, String> propertyByField = new LinkedHashMap<>();
+        MongoPersistentProperty id = entity.getRequiredIdProperty();
+        propertyByField.put(id.getFieldName(), id.getName());
+        for (String field : fields) {
+            MongoPersistentProperty property = entity.getPersistentProperty(field);
+            if (property == null) {
+                throw new InvalidPageRequestException("Unknown field " + field + "!");
+            }
+            propertyByField.put(property.getFieldName(), property.getName());
+        }
+        query.fields().include(propertyByField.keySet().toArray(String[]::new));
+        return propertyByField;
+    }
+
+    private static Map<String, Object> row(Document document, Map<String, String> propertyByField) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        propertyByField.forEach((field, property) -> {
+            if (document.containsKey(field)) {
+                Object value = document.get(field);
+                row.put(property, value instanceof ObjectId objectId ? objectId.toHexString() : value);
+            }
+        });
+        return row;
+    }
+}
@@ -1,7 +1,33 @@
 package drx.drone.service.drone_med_service.repository;
 
 import drx.drone.service.drone_med_service.model.Medication;
+import org.springframework.context.annotation.Profile;
 import org.springframework.data.mongodb.repository.MongoRepository;
 
-public interface MedicationRepository extends MongoRepository<Medication, String> {
+import java.util.List;
+import java.util.Optional;
+
+// the embedded profile brings its own MedicationStore, see EmbeddedStore
+@Profile("!embedded")
+public interface MedicationRepository extends MongoRepository<Medication, String>, MedicationStore {
+
+    // declared by both parents; once more here so calls on a MedicationRepository aren't ambiguous
+
+    @Override
+    <S extends Medication> S save(S medication);
+
+    @Override
+    Optional<Medication> findById(String id);
+
+    @Override
+    List<Medication> findAllById(Iterable<String> ids);
+
+    @Override
+    List<Medication> findAll();
+
+    @Override
+    void deleteById(String id);
+
+    @Override
+    void deleteAllById(Iterable<? extends String> ids);
 }
@@ -0,0 +1,32 @@
+package drx.drone.service.drone_med_service.repository;
+
+import drx.drone.service.drone_med_service.model.Medication;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+public interface MedicationRepositoryCustom {
+
+    /**
+     * Upserts all medications (by id) in one unordered bulk write.
+     */
+    void bulkSave(List<Medication> medications);
+
+    /**
+     * Keyset page: the first {@code limit} medications in id order after {@code afterId} (null for the
+     * first page).
+     */
+    List<Medication> findPage(String afterId, int limit);
+
+    /**
+     * Same page with only the given properties (plus id) read from the database.
+     */
+    List<Map<String, Object>> findPage(String afterId, int limit, Collection<String> fields);
+
+    /**
+     * Iterates all medications over a server-side cursor, a batch at a time. Must be closed.
+     */
+    Stream<Medication> streamAll();
+}
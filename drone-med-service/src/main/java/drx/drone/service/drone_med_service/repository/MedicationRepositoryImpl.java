@@ -0,0 +1,51 @@
+package drx.drone.service.drone_med_service.repository;
+
+import drx.drone.service.drone_med_service.model.Medication;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+@RequiredArgsConstructor
+public class MedicationRepositoryImpl implements MedicationRepositoryCustom {
+
+    private static final int STREAM_BATCH_SIZE = 1000;
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public void bulkSave(List<Medication> medications) {
+        if (medications.isEmpty()) {
+            return;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Medication.class);
+        for (Medication medication : medications) {
+            bulk.replaceOne(query(where("id").is(medication.getId())), medication, FindAndReplaceOptions.options().upsert());
+        }
+        bulk.execute();
+    }
+
+    @Override
+    public List<Medication> findPage(String afterId, int limit) {
+        return mongoTemplate.find(KeysetPages.after(afterId, limit), Medication.class);
+    }
+
+    @Override
+    public List<Map<String, Object>> findPage(String afterId, int limit, Collection<String> fields) {
+        return KeysetPages.findProjected(mongoTemplate, KeysetPages.after(afterId, limit), Medication.class, fields);
+    }
+
+    @Override
+    public Stream<Medication> streamAll() {
+        return mongoTemplate.stream(new Query().cursorBatchSize(STREAM_BATCH_SIZE), Medication.class);
+    }
+}
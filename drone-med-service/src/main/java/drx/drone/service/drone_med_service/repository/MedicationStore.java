@@ -0,0 +1,28 @@
+package drx.drone.service.drone_med_service.repository;
+
+import drx.drone.service.drone_med_service.model.Medication;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The medication operations the services use. {@link MedicationRepository} serves them from Mongo;
+ * {@link EmbeddedMedicationRepository} from the embedded store's map.
+ */
+public interface MedicationStore extends MedicationRepositoryCustom {
+
+    /**
+     * Inserts or replaces the medication by id, generating one if it has none.
+     */
+    <S extends Medication> S save(S medication);
+
+    Optional<Medication> findById(String id);
+
+    List<Medication> findAllById(Iterable<String> ids);
+
+    List<Medication> findAll();
+
+    void deleteById(String id);
+
+    void deleteAllById(Iterable<? extends String> ids);
+}
@@ -0,0 +1,17 @@
+package drx.drone.service.drone_med_service.repository;
+
+import drx.drone.service.drone_med_service.model.Drone;
+import drx.drone.service.drone_med_service.model.State;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Flux;
+
+/**
+ * Non-blocking twin of {@link DroneRepository}, only created with the {@code reactive} profile.
+ */
+public interface ReactiveDroneRepository extends ReactiveMongoRepository<Drone, String>, ReactiveDroneRepositoryCustom {
+
+    /**
+     * Served by the index on {@code state}, emitted as the cursor returns batches.
+     */
+    Flux<Drone> findByState(State state);
+}
@@ -0,0 +1,52 @@
+package drx.drone.service.drone_med_service.repository;
+
+import drx.drone.service.drone_med_service.model.Drone;
+import drx.drone.service.drone_med_service.model.State;
+import drx.drone.service.drone_med_service.model.WeightModel;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * The atomic updates of {@link DroneRepositoryCustom}, with the same guards; "null" there is an empty
+ * Mono here.
+ */
+public interface ReactiveDroneRepositoryCustom {
+
+    /**
+     * @see DroneRepositoryCustom#loadMedication
+     */
+    Mono<Drone> loadMedication(String serialNumber, String medId, float medWeight);
+
+    /**
+     * @see DroneRepositoryCustom#transitionState
+     */
+    Mono<Drone> transitionState(String serialNumber, Collection<State> from, State to);
+
+    /**
+     * @see DroneRepositoryCustom#unload
+     */
+    Mono<Drone> unload(String serialNumber, State from, State to);
+
+    /**
+     * @see DroneRepositoryCustom#backfillPayload
+     */
+    Mono<Void> backfillPayload(String serialNumber, float loadedWeight, int medCount);
+
+    /**
+     * @see DroneRepositoryCustom#findPage(String, int)
+     */
+    Flux<Drone> findPage(String afterSerialNumber, int limit);
+
+    /**
+     * @see DroneRepositoryCustom#findPage(String, int, Collection)
+     */
+    Flux<Map<String, Object>> findPage(String afterSerialNumber, int limit, Collection<String> fields);
+
+    /**
+     * Every drone, optionally filtered, a cursor batch at a time as the subscriber requests them.
+     */
+    Flux<Drone> findAll(State state, WeightModel weightClass);
+}
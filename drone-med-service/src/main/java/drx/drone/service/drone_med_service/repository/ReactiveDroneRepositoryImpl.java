@@ -0,0 +1,58 @@
+package drx.drone.service.drone_med_service.repository;
+
+import drx.drone.service.drone_med_service.model.Drone;
+import drx.drone.service.drone_med_service.model.State;
+import drx.drone.service.drone_med_service.model.WeightModel;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+@RequiredArgsConstructor
+public class ReactiveDroneRepositoryImpl implements ReactiveDroneRepositoryCustom {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    @Override
+    public Mono<Drone> loadMedication(String serialNumber, String medId, float medWeight) {
+        return mongoTemplate.findAndModify(DroneUpdates.loadGuard(serialNumber, medWeight),
+                DroneUpdates.load(medId, medWeight), DroneUpdates.RETURN_NEW, Drone.class);
+    }
+
+    @Override
+    public Mono<Drone> transitionState(String serialNumber, Collection<State> from, State to) {
+        return mongoTemplate.findAndModify(DroneUpdates.inState(serialNumber, from),
+                DroneUpdates.state(to), DroneUpdates.RETURN_NEW, Drone.class);
+    }
+
+    @Override
+    public Mono<Drone> unload(String serialNumber, State from, State to) {
+        return mongoTemplate.findAndModify(DroneUpdates.inState(serialNumber, List.of(from)),
+                DroneUpdates.unload(to), DroneUpdates.RETURN_NEW, Drone.class);
+    }
+
+    @Override
+    public Mono<Void> backfillPayload(String serialNumber, float loadedWeight, int medCount) {
+        return mongoTemplate.updateFirst(DroneUpdates.payloadMissing(serialNumber),
+                DroneUpdates.payload(loadedWeight, medCount), Drone.class).then();
+    }
+
+    @Override
+    public Flux<Drone> findPage(String afterSerialNumber, int limit) {
+        return mongoTemplate.find(KeysetPages.after(afterSerialNumber, limit), Drone.class);
+    }
+
+    @Override
+    public Flux<Map<String, Object>> findPage(String afterSerialNumber, int limit, Collection<String> fields) {
+        return KeysetPages.findProjected(mongoTemplate, KeysetPages.after(afterSerialNumber, limit), Drone.class, fields);
+    }
+
+    @Override
+    public Flux<Drone> findAll(State state, WeightModel weightClass) {
+        return mongoTemplate.find(DroneUpdates.filtered(state, weightClass), Drone.class);
+    }
+}
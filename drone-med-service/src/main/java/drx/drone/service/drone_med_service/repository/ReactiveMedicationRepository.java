@@ -0,0 +1,11 @@
+package drx.drone.service.drone_med_service.repository;
+
+import drx.drone.service.drone_med_service.model.Medication;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+
+/**
+ * Non-blocking twin of {@link MedicationRepository}, only created with the {@code reactive} profile.
+ */
+public interface ReactiveMedicationRepository extends ReactiveMongoRepository<Medication, String>,
+        ReactiveMedicationRepositoryCustom {
+}
@@ -0,0 +1,20 @@
+package drx.drone.service.drone_med_service.repository;
+
+import drx.drone.service.drone_med_service.model.Medication;
+import reactor.core.publisher.Flux;
+
+import java.util.Collection;
+import java.util.Map;
+
+public interface ReactiveMedicationRepositoryCustom {
+
+    /**
+     * @see MedicationRepositoryCustom#findPage(String, int)
+     */
+    Flux<Medication> findPage(String afterId, int limit);
+
+    /**
+     * @see MedicationRepositoryCustom#findPage(String, int, Collection)
+     */
+    Flux<Map<String, Object>> findPage(String afterId, int limit, Collection<String> fields);
+}
@@ -0,0 +1,25 @@
+package drx.drone.service.drone_med_service.repository;
+
+import drx.drone.service.drone_med_service.model.Medication;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Flux;
+
+import java.util.Collection;
+import java.util.Map;
+
+@RequiredArgsConstructor
+public class ReactiveMedicationRepositoryImpl implements ReactiveMedicationRepositoryCustom {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    @Override
+    public Flux<Medication> findPage(String afterId, int limit) {
+        return mongoTemplate.find(KeysetPages.after(afterId, limit), Medication.class);
+    }
+
+    @Override
+    public Flux<Map<String, Object>> findPage(String afterId, int limit, Collection<String> fields) {
+        return KeysetPages.findProjected(mongoTemplate, KeysetPages.after(afterId, limit), Medication.class, fields);
+    }
+}
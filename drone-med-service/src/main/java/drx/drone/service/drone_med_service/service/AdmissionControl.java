@@ -0,0 +1,201 @@
+package drx.drone.service.drone_med_service.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Admission control for the API. With {@code drone.admission.enabled=true} every request is first
+ * charged to a token bucket for its client and endpoint class, refilled at
+ * {@code drone.admission.<class>.rate} requests per second up to {@code drone.admission.<class>.burst}.
+ * A client out of tokens is throttled (429) without costing the others anything.
+ * <p>
+ * Admitted requests then share one in-flight count. Each class is only let in while fewer than
+ * {@code drone.admission.<class>.concurrency} requests of any class are running, so under overload
+ * the full listings are shed (503) first, then single reads, and lifecycle calls (loadMeds, the
+ * delivery transitions, registration, telemetry) keep the last slots to themselves.
+ * <p>
+ * Clients are told apart by the {@code drone.admission.client-header} header when one is configured
+ * (set it only behind a gateway that fills it in), by remote address otherwise.
+ */
+@Service
+public class AdmissionControl implements MeterBinder {
+
+    public enum EndpointClass { LIFECYCLE, READ, LISTING }
+
+    public enum Outcome { ADMITTED, THROTTLED, SHED }
+
+    /**
+     * @param retryAfterMillis - when a throttled client has a token again; 0 unless throttled
+     */
+    public record Admission(Outcome outcome, long retryAfterMillis) {
+
+        public boolean isAdmitted() {
+            return outcome == Outcome.ADMITTED;
+        }
+    }
+
+    private record Limits(double rate, double burst, int concurrency) {
+    }
+
+    // collection endpoints that return the whole fleet or a whole state, the first to go under load
+    private static final Pattern LISTINGS = Pattern.compile(
+            "/api/v1/(drones|medications)(/(available|loaded|forDelivery|delivered|returning|export|history))?/?");
+
+    private static final Admission ADMITTED = new Admission(Outcome.ADMITTED, 0);
+    private static final Admission SHED = new Admission(Outcome.SHED, 0);
+
+    private final boolean enabled;
+    private final String clientHeader;
+    private final Limits[] limits = new Limits[EndpointClass.values().length];
+    private final Cache<String, TokenBucket>[] buckets;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final LongAdder[][] outcomes = new LongAdder[EndpointClass.values().length][Outcome.values().length];
+
+    @SuppressWarnings("unchecked")
+    public AdmissionControl(@Value("${drone.admission.enabled:false}") boolean enabled,
+                            @Value("${drone.admission.client-header:}") String clientHeader,
+                            @Value("${drone.admission.max-clients:100000}") long maxClients,
+                            @Value("${drone.admission.lifecycle.rate:50}") double lifecycleRate,
+                            @Value("${drone.admission.lifecycle.burst:100}") double lifecycleBurst,
+                            @Value("${drone.admission.lifecycle.concurrency:64}") int lifecycleConcurrency,
+                            @Value("${drone.admission.read.rate:50}") double readRate,
+                            @Value("${drone.admission.read.burst:100}") double readBurst,
+                            @Value("${drone.admission.read.concurrency:48}") int readConcurrency,
+                            @Value("${drone.admission.listing.rate:5}") double listingRate,
+                            @Value("${drone.admission.listing.burst:10}") double listingBurst,
+                            @Value("${drone.admission.listing.concurrency:32}") int listingConcurrency) {
+        this.enabled = enabled;
+        this.clientHeader = clientHeader == null || clientHeader.isBlank() ? null : clientHeader;
+        limits[EndpointClass.LIFECYCLE.ordinal()] = new Limits(lifecycleRate, lifecycleBurst, lifecycleConcurrency);
+        limits[EndpointClass.READ.ordinal()] = new Limits(readRate, readBurst, readConcurrency);
+        limits[EndpointClass.LISTING.ordinal()] = new Limits(listingRate, listingBurst, listingConcurrency);
+        buckets = new Cache[limits.length];
+        for (int i = 0; i < limits.length; i++) {
+            // a bucket left alone until it refilled is no different from a new one, so it can go
+            long refillMillis = limits[i].rate() > 0 ? (long) Math.ceil(limits[i].burst() / limits[i].rate() * 1000) : 0;
+            buckets[i] = Caffeine.newBuilder()
+                    .maximumSize(maxClients)
+                    .expireAfterAccess(Duration.ofMillis(Math.max(1_000, refillMillis)))
+                    .build();
+            for (int j = 0; j < Outcome.values().length; j++) {
+                outcomes[i][j] = new LongAdder();
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return - the header clients are told apart by, null to use the remote address
+     */
+    public String getClientHeader() {
+        return clientHeader;
+    }
+
+    /**
+     * @param method - HTTP method
+     * @param uri    - request path, without the query string
+     */
+    public static EndpointClass classify(String method, String uri) {
+        String verb = method.toUpperCase(Locale.ROOT);
+        if (!verb.equals("GET") && !verb.equals("HEAD")) {
+            return EndpointClass.LIFECYCLE;
+        }
+        return LISTINGS.matcher(uri).matches() ? EndpointClass.LISTING : EndpointClass.READ;
+    }
+
+    /**
+     * Decides whether a request may run. An admitted request holds an in-flight slot until
+     * {@link #release()} is called for it.
+     */
+    public Admission admit(String client, EndpointClass endpoint) {
+        int index = endpoint.ordinal();
+        Limits limit = limits[index];
+        if (limit.rate() > 0) {
+            TokenBucket bucket = buckets[index].get(client, key -> new TokenBucket(limit.burst(), System.nanoTime()));
+            long waitNanos = bucket.take(System.nanoTime(), limit.rate() / TimeUnit.SECONDS.toNanos(1), limit.burst());
+            if (waitNanos > 0) {
+                outcomes[index][Outcome.THROTTLED.ordinal()].increment();
+                return new Admission(Outcome.THROTTLED, Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos)));
+            }
+        }
+        int running = inFlight.incrementAndGet();
+        if (limit.concurrency() > 0 && running > limit.concurrency()) {
+            inFlight.decrementAndGet();
+            outcomes[index][Outcome.SHED.ordinal()].increment();
+            return SHED;
+        }
+        outcomes[index][Outcome.ADMITTED.ordinal()].increment();
+        return ADMITTED;
+    }
+
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (!enabled) {
+            return;
+        }
+        for (EndpointClass endpoint : EndpointClass.values()) {
+            String tag = endpoint.name().toLowerCase(Locale.ROOT);
+            for (Outcome outcome : Outcome.values()) {
+                FunctionCounter.builder("drone.admission.requests", outcomes[endpoint.ordinal()][outcome.ordinal()], LongAdder::sum)
+                        .description("API requests admitted, throttled per client or shed under load")
+                        .tag("class", tag)
+                        .tag("outcome", outcome.name().toLowerCase(Locale.ROOT))
+                        .register(registry);
+            }
+            Limits limit = limits[endpoint.ordinal()];
+            Gauge.builder("drone.admission.limit", limit, Limits::rate).tag("class", tag).tag("limit", "rate").register(registry);
+            Gauge.builder("drone.admission.limit", limit, Limits::burst).tag("class", tag).tag("limit", "burst").register(registry);
+            Gauge.builder("drone.admission.limit", limit, Limits::concurrency).tag("class", tag).tag("limit", "concurrency").register(registry);
+        }
+        Gauge.builder("drone.admission.in-flight", inFlight, AtomicInteger::get).register(registry);
+    }
+
+    private static final class TokenBucket {
+
+        private double tokens;
+        private long refilledAt;
+
+        TokenBucket(double tokens, long now) {
+            this.tokens = tokens;
+            this.refilledAt = now;
+        }
+
+        /**
+         * @return - 0 if a token was taken, otherwise how long until there is one
+         */
+        synchronized long take(long now, double perNano, double burst) {
+            tokens = Math.min(burst, tokens + (now - refilledAt) * perNano);
+            refilledAt = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) / perNano);
+        }
+    }
+}
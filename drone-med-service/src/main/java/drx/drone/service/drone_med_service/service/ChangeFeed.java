@@ -0,0 +1,309 @@
+package drx.drone.service.drone_med_service.service;
+
+import com.mongodb.MongoCommandException;
+import drx.drone.service.drone_med_service.config.MongoClusterMonitor;
+import drx.drone.service.drone_med_service.model.Drone;
+import drx.drone.service.drone_med_service.repository.ChangeStreams;
+import drx.drone.service.drone_med_service.repository.DroneStore;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps this node's {@link FleetCache} and {@link MedicationCache} in step with writes made by other
+ * nodes. With {@code drone.change-feed.enabled=true} a background thread follows a Mongo change stream
+ * over the drones and medications (see {@link ChangeStreams}) and applies every change to the caches;
+ * drone changes the cache didn't have yet are republished as {@link DroneReplicatedEvent}s for the
+ * event streams. A node's own writes come back too and are skipped by version when it has them cached.
+ * <p>
+ * The stream's resume token is saved to {@code drone.change-feed.token-path} every
+ * {@code drone.change-feed.token-save-interval} ms and on shutdown, so a restarted node replays what
+ * it missed while it was down. If the token is too old to resume from, the caches are reloaded instead.
+ * <p>
+ * Standalone servers have no change streams: then drones written since the last poll
+ * ({@code Drone.updatedAt}, reaching {@code drone.change-feed.poll-overlap} ms back for clock skew) are
+ * read every {@code drone.change-feed.poll-interval} ms, and medications only refresh with the
+ * medication cache TTL.
+ */
+@Slf4j
+@Service
+public class ChangeFeed implements MeterBinder {
+
+    private final ChangeStreams changeStreams;
+    private final DroneStore droneRepository;
+    private final FleetCache fleetCache;
+    private final DroneWriteBehind writeBehind;
+    private final MedicationCache medicationCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MongoClusterMonitor clusterMonitor;
+    private final boolean enabled;
+    private final long pollInterval;
+    private final long pollOverlap;
+    private final Path tokenPath;
+
+    // drones written since then may be missing from the cache when the stream starts without a token
+    private final long createdAt = System.currentTimeMillis();
+    private volatile boolean running = true;
+    private volatile boolean polling;
+    private volatile BsonDocument resumeToken;
+    private BsonDocument savedToken;
+    private boolean caughtUp;
+    private long polledAt = createdAt;
+    private Thread thread;
+
+    private final LongAdder droneChanges = new LongAdder();
+    private final LongAdder medicationChanges = new LongAdder();
+    private final LongAdder resyncs = new LongAdder();
+
+    public ChangeFeed(ChangeStreams changeStreams,
+                      DroneStore droneRepository,
+                      FleetCache fleetCache,
+                      DroneWriteBehind writeBehind,
+                      MedicationCache medicationCache,
+                      ApplicationEventPublisher eventPublisher,
+                      MongoClusterMonitor clusterMonitor,
+                      @Value("${drone.change-feed.enabled:false}") boolean enabled,
+                      @Value("${drone.change-feed.poll-interval:1000}") long pollInterval,
+                      @Value("${drone.change-feed.poll-overlap:5000}") long pollOverlap,
+                      @Value("${drone.change-feed.token-path:data/change-feed.token}") String tokenPath) {
+        this.changeStreams = changeStreams;
+        this.droneRepository = droneRepository;
+        this.fleetCache = fleetCache;
+        this.writeBehind = writeBehind;
+        this.medicationCache = medicationCache;
+        this.eventPublisher = eventPublisher;
+        this.clusterMonitor = clusterMonitor;
+        this.enabled = enabled;
+        this.pollInterval = pollInterval;
+        this.pollOverlap = pollOverlap;
+        this.tokenPath = Path.of(tokenPath);
+    }
+
+    /**
+     * Starts following changes once the database is reachable.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        resumeToken = readToken();
+        clusterMonitor.whenWritable(() -> {
+            synchronized (this) {
+                if (thread == null && running) {
+                    thread = new Thread(this::run, "drone-change-feed");
+                    thread.setDaemon(true);
+                    thread.start();
+                }
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${drone.change-feed.token-save-interval:1000}")
+    public void tick() {
+        if (enabled) {
+            saveToken();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        stop();
+        Thread following;
+        synchronized (this) {
+            following = thread;
+        }
+        if (following != null) {
+            // the stream returns to the loop at least once per server await time
+            following.join(5_000);
+        }
+        tick();
+    }
+
+    public boolean isPolling() {
+        return polling;
+    }
+
+    void stop() {
+        running = false;
+    }
+
+    void run() {
+        while (running) {
+            try {
+                if (polling) {
+                    poll();
+                    pause();
+                } else {
+                    follow();
+                }
+            } catch (MongoCommandException e) {
+                switch (e.getErrorCode()) {
+                    case ChangeStreams.NOT_A_REPLICA_SET -> {
+                        log.info("No change streams on a standalone server, polling drone changes every {} ms", pollInterval);
+                        polling = true;
+                    }
+                    case ChangeStreams.HISTORY_LOST, ChangeStreams.RESUME_FAILED -> {
+                        log.warn("Could not resume the change stream, reloading the caches: {}", e.getErrorMessage());
+                        resumeToken = null;
+                        resync();
+                    }
+                    default -> {
+                        log.warn("Change stream failed: {}", e.getMessage());
+                        pause();
+                    }
+                }
+            } catch (RuntimeException e) {
+                log.warn("Change stream failed: {}", e.getMessage());
+                pause();
+            }
+        }
+    }
+
+    /**
+     * Applies changes from the stream until stopped or the stream fails.
+     */
+    void follow() {
+        boolean resumed = resumeToken != null;
+        try (ChangeStreams.Cursor cursor = changeStreams.watch(resumeToken)) {
+            if (!resumed && !caughtUp) {
+                // the stream starts now, pick up what was written between warming the cache and here
+                apply(droneRepository.findChangedSince(createdAt - pollOverlap));
+            }
+            caughtUp = true;
+            while (running) {
+                ChangeStreams.Change change = cursor.tryNext();
+                if (change != null) {
+                    apply(change);
+                }
+                BsonDocument token = change != null ? change.resumeToken() : cursor.getResumeToken();
+                if (token != null) {
+                    resumeToken = token;
+                }
+            }
+        }
+    }
+
+    void poll() {
+        long startedAt = System.currentTimeMillis();
+        apply(droneRepository.findChangedSince(polledAt - pollOverlap));
+        polledAt = startedAt;
+    }
+
+    void apply(ChangeStreams.Change change) {
+        if (change.type() == Drone.class) {
+            if (change.isDelete()) {
+                fleetCache.evict(change.id());
+                droneChanges.increment();
+            } else {
+                apply(change.drone());
+            }
+            return;
+        }
+        if (change.isDelete()) {
+            medicationCache.evict(change.id());
+        } else {
+            medicationCache.put(change.medication());
+        }
+        medicationChanges.increment();
+    }
+
+    private void apply(List<Drone> changed) {
+        changed.forEach(this::apply);
+    }
+
+    private void apply(Drone drone) {
+        Drone cached = fleetCache.peek(drone.getSerialNumber()).orElse(null);
+        if (cached != null && version(cached) >= version(drone)) {
+            return;
+        }
+        if (writeBehind.isEnabled()) {
+            // keeps transitions this node acknowledged but hasn't written yet
+            writeBehind.cache(drone);
+        } else {
+            fleetCache.put(drone);
+        }
+        droneChanges.increment();
+        eventPublisher.publishEvent(new DroneReplicatedEvent(drone));
+    }
+
+    private void resync() {
+        if (fleetCache.isEnabled()) {
+            fleetCache.warm(droneRepository.findAll());
+        }
+        medicationCache.clear();
+        resyncs.increment();
+    }
+
+    private void pause() {
+        if (!running) {
+            return;
+        }
+        try {
+            Thread.sleep(pollInterval);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    // written next to the file and moved over it, so a crash mid-write leaves the previous token
+    synchronized void saveToken() {
+        BsonDocument token = resumeToken;
+        if (token == null || token.equals(savedToken)) {
+            return;
+        }
+        try {
+            if (tokenPath.getParent() != null) {
+                Files.createDirectories(tokenPath.getParent());
+            }
+            Path temporary = tokenPath.resolveSibling(tokenPath.getFileName() + ".tmp");
+            Files.writeString(temporary, token.toJson());
+            Files.move(temporary, tokenPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            savedToken = token;
+        } catch (IOException e) {
+            log.warn("Could not save resume token to {}: {}", tokenPath, e.getMessage());
+        }
+    }
+
+    BsonDocument readToken() {
+        if (!Files.exists(tokenPath)) {
+            return null;
+        }
+        try {
+            BsonDocument token = BsonDocument.parse(Files.readString(tokenPath));
+            savedToken = token;
+            return token;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not read resume token {}, following changes from now: {}", tokenPath, e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("drone.change-feed.changes", droneChanges, LongAdder::sum).tag("collection", "drones").register(registry);
+        FunctionCounter.builder("drone.change-feed.changes", medicationChanges, LongAdder::sum).tag("collection", "medications").register(registry);
+        FunctionCounter.builder("drone.change-feed.resyncs", resyncs, LongAdder::sum).register(registry);
+    }
+
+    private static long version(Drone drone) {
+        return drone.getVersion() == null ? -1 : drone.getVersion();
+    }
+}
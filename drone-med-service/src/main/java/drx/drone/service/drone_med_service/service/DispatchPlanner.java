@@ -0,0 +1,152 @@
+package drx.drone.service.drone_med_service.service;
+
+import drx.drone.service.drone_med_service.dto.MedRequest;
+import drx.drone.service.drone_med_service.model.Drone;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Packs medication orders onto drones with best-fit decreasing: heaviest order first, onto the drone
+ * with the least room left that still takes it (ties go to the higher battery). That fills partly
+ * loaded drones before starting empty ones, so fewer drones go out, fuller.
+ * <p>
+ * Honors the same rules {@link DroneService#checkLoad} applies to every load: the drone's weight limit,
+ * {@link Drone#MAX_MED_COUNT} items, and a battery above {@link Drone#MIN_LOADING_BATTERY} before
+ * each load, which costs {@link Drone#LOAD_BATTERY_COST}. The drones are sorted by room left in a
+ * tree, so planning is O((drones + orders) log drones).
+ */
+public final class DispatchPlanner {
+
+    private static final Comparator<Bin> BEST_FIT = Comparator
+            .comparingDouble((Bin bin) -> bin.room)
+            .thenComparing(Comparator.comparingInt((Bin bin) -> bin.battery).reversed())
+            .thenComparing(bin -> bin.serialNumber);
+
+    private DispatchPlanner() {
+    }
+
+    /**
+     * @param assignments - serialNumber -> orders to load onto it, in loading order
+     * @param unassigned  - orders no drone could take, in the order they were given
+     */
+    public record Plan(Map<String, List<MedRequest>> assignments, List<MedRequest> unassigned) {
+    }
+
+    /**
+     * @param drones - candidate drones, normally the IDLE ones
+     * @param orders - orders to place
+     */
+    public static Plan plan(Collection<Drone> drones, List<MedRequest> orders) {
+        TreeSet<Bin> bins = new TreeSet<>(BEST_FIT);
+        for (Drone drone : drones) {
+            Bin bin = Bin.of(drone);
+            if (bin != null) {
+                bins.add(bin);
+            }
+        }
+
+        List<Integer> byWeight = new ArrayList<>(orders.size());
+        for (int i = 0; i < orders.size(); i++) {
+            byWeight.add(i);
+        }
+        byWeight.sort(Comparator.comparingDouble((Integer i) -> orders.get(i).getWeight()).reversed());
+
+        Map<String, List<MedRequest>> assignments = new LinkedHashMap<>();
+        boolean[] placed = new boolean[orders.size()];
+        for (int i : byWeight) {
+            MedRequest order = orders.get(i);
+            Bin bin = bins.ceiling(Bin.probe(order.getWeight()));
+            // room is rounded, so check the exact rule and move on to roomier drones if it doesn't hold
+            while (bin != null && !bin.fits(order.getWeight())) {
+                bin = bins.higher(bin);
+            }
+            if (bin == null) {
+                continue;
+            }
+            bins.remove(bin);
+            bin.load(order.getWeight());
+            if (bin.loadsLeft > 0 && bin.room > 0) {
+                bins.add(bin);
+            }
+            assignments.computeIfAbsent(bin.serialNumber, k -> new ArrayList<>()).add(order);
+            placed[i] = true;
+        }
+
+        List<MedRequest> unassigned = new ArrayList<>();
+        for (int i = 0; i < orders.size(); i++) {
+            if (!placed[i]) {
+                unassigned.add(orders.get(i));
+            }
+        }
+        return new Plan(assignments, unassigned);
+    }
+
+    /**
+     * How many loads the battery allows: each needs more than the minimum left before it starts.
+     */
+    static int loadsOnBattery(int battery) {
+        if (battery <= Drone.MIN_LOADING_BATTERY) {
+            return 0;
+        }
+        return (battery - Drone.MIN_LOADING_BATTERY - 1) / Drone.LOAD_BATTERY_COST + 1;
+    }
+
+    private static final class Bin {
+
+        private final String serialNumber;
+        private final float weightLimit;
+        private float loadedWeight;
+        private double room;
+        private int battery;
+        private int loadsLeft;
+
+        private Bin(String serialNumber, float weightLimit, float loadedWeight, int battery, int loadsLeft) {
+            this.serialNumber = serialNumber;
+            this.weightLimit = weightLimit;
+            this.loadedWeight = loadedWeight;
+            this.room = weightLimit - loadedWeight;
+            this.battery = battery;
+            this.loadsLeft = loadsLeft;
+        }
+
+        static Bin of(Drone drone) {
+            if (!Drone.LOADABLE_STATES.contains(drone.getState()) || drone.getBatteryCapacity() == null) {
+                return null;
+            }
+            int medCount = drone.getMedCount() != null ? drone.getMedCount()
+                    : drone.getLoadedMeds() == null ? 0 : drone.getLoadedMeds().size();
+            // a legacy drone with meds but no loadedWeight can't be planned for without reading the meds
+            if (drone.getLoadedWeight() == null && medCount > 0) {
+                return null;
+            }
+            float loadedWeight = drone.getLoadedWeight() == null ? 0 : drone.getLoadedWeight();
+            int loadsLeft = Math.min(Drone.MAX_MED_COUNT - medCount, loadsOnBattery(drone.getBatteryCapacity()));
+            if (loadsLeft <= 0 || loadedWeight >= drone.getWeightLimit()) {
+                return null;
+            }
+            return new Bin(drone.getSerialNumber(), drone.getWeightLimit(), loadedWeight, drone.getBatteryCapacity(), loadsLeft);
+        }
+
+        // sorts before every drone with at least this much room, and first among those with exactly that much
+        static Bin probe(float weight) {
+            return new Bin("", 0, -weight, Integer.MAX_VALUE, 0);
+        }
+
+        boolean fits(float weight) {
+            return weight + loadedWeight <= weightLimit;
+        }
+
+        void load(float weight) {
+            loadedWeight += weight;
+            room = weightLimit - loadedWeight;
+            battery -= Drone.LOAD_BATTERY_COST;
+            loadsLeft--;
+        }
+    }
+}
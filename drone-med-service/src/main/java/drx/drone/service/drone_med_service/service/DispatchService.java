@@ -0,0 +1,233 @@
+package drx.drone.service.drone_med_service.service;
+
+import drx.drone.service.drone_med_service.dto.BatchLoadRequest;
+import drx.drone.service.drone_med_service.dto.BatchLoadResult;
+import drx.drone.service.drone_med_service.dto.DispatchStatus;
+import drx.drone.service.drone_med_service.dto.MedRequest;
+import drx.drone.service.drone_med_service.exception.BatchLoadFailedException;
+import drx.drone.service.drone_med_service.exception.ErrorResponse;
+import drx.drone.service.drone_med_service.model.WeightModel;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Queue of medication orders that a background round assigns to IDLE drones every
+ * {@code drone.dispatch.tick} ms. A round takes up to {@code drone.dispatch.batch-size} orders, packs
+ * them with {@link DispatchPlanner} and loads them through {@link DroneService#loadDrones}, so they get
+ * the same checks and the same one-bulk-write path as a batch load. Orders that found no drone, or
+ * whose drone changed under the load, go to the back of the queue, so orders nothing can take don't
+ * keep newer ones out of the rounds; after {@code drone.dispatch.max-rounds} rounds without a drone an
+ * order is dropped. If the load fails partway, only the orders of drones known not to have been
+ * written are queued again, so none is dispatched twice.
+ */
+@Slf4j
+@Service
+public class DispatchService {
+
+    private final DroneService droneService;
+    private final FleetSummaryService summaryService;
+    private final int queueCapacity;
+    private final int batchSize;
+    private final int maxRounds;
+
+    // an order and the rounds it already went through without a drone
+    private record Order(MedRequest request, int rounds) {
+    }
+
+    private final Deque<Order> pending = new ArrayDeque<>(); // guarded by itself
+    private volatile DispatchStatus lastRound = DispatchStatus.builder().build();
+
+    public DispatchService(DroneService droneService,
+                           FleetSummaryService summaryService,
+                           @Value("${drone.dispatch.queue-capacity:100000}") int queueCapacity,
+                           @Value("${drone.dispatch.batch-size:10000}") int batchSize,
+                           @Value("${drone.dispatch.max-rounds:20}") int maxRounds) {
+        this.droneService = droneService;
+        this.summaryService = summaryService;
+        this.queueCapacity = queueCapacity;
+        this.batchSize = batchSize;
+        this.maxRounds = maxRounds;
+    }
+
+    /**
+     * @return - 200 ORDERS QUEUED; 600 DRONE OVER WEIGHT if an order is heavier than any registered drone
+     *           can carry, 607 DISPATCH QUEUE FULL if not all of them fit. Nothing is queued unless all are.
+     */
+    public ErrorResponse submit(List<MedRequest> orders) {
+        float maxOrderWeight = maxOrderWeight();
+        for (MedRequest order : orders) {
+            if (order.getWeight() > maxOrderWeight) {
+                return new ErrorResponse("600", "DRONE OVER WEIGHT");
+            }
+        }
+        synchronized (pending) {
+            if (pending.size() + orders.size() > queueCapacity) {
+                return new ErrorResponse("607", "DISPATCH QUEUE FULL");
+            }
+            for (MedRequest order : orders) {
+                pending.addLast(new Order(order, 0));
+            }
+        }
+        return new ErrorResponse("200", "ORDERS QUEUED");
+    }
+
+    public DispatchStatus getStatus() {
+        DispatchStatus status = lastRound.toBuilder().build();
+        synchronized (pending) {
+            status.setPending(pending.size());
+        }
+        return status;
+    }
+
+    @Scheduled(fixedDelayString = "${drone.dispatch.tick:5000}", initialDelayString = "${drone.dispatch.tick:5000}")
+    public void tick() {
+        try {
+            dispatch();
+        } catch (RuntimeException e) {
+            log.warn("Dispatch round failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Runs one round. Only called from the scheduler, so rounds never overlap.
+     */
+    DispatchStatus dispatch() {
+        List<Order> batch = take();
+        if (batch.isEmpty()) {
+            return getStatus();
+        }
+        long start = System.currentTimeMillis();
+        Map<MedRequest, Order> orders = new IdentityHashMap<>();
+        List<MedRequest> requests = new ArrayList<>(batch.size());
+        for (Order order : batch) {
+            orders.put(order.request(), order);
+            requests.add(order.request());
+        }
+        List<MedRequest> retry = new ArrayList<>();
+        List<MedRequest> notWritten = new ArrayList<>();
+        BatchLoadFailedException failure = null;
+        try {
+            DispatchPlanner.Plan plan = DispatchPlanner.plan(droneService.getIdleDrones().orElseThrow(), requests);
+            retry.addAll(plan.unassigned());
+
+            List<BatchLoadRequest> loads = new ArrayList<>();
+            for (Map.Entry<String, List<MedRequest>> assignment : plan.assignments().entrySet()) {
+                loads.add(BatchLoadRequest.builder().serialNumber(assignment.getKey()).medications(assignment.getValue()).build());
+            }
+            List<BatchLoadResult> results;
+            Set<String> unwritten = Set.of();
+            try {
+                results = loads.isEmpty() ? List.of() : droneService.loadDrones(loads);
+            } catch (BatchLoadFailedException e) {
+                // some drones may already hold their orders: only the ones known not to go back
+                failure = e;
+                results = e.getResults();
+                unwritten = e.getUnwritten();
+            }
+
+            int assigned = 0;
+            int dronesLoaded = 0;
+            for (int i = 0; i < results.size(); i++) {
+                List<MedRequest> loaded = loads.get(i).getMedications();
+                if (unwritten.contains(loads.get(i).getSerialNumber())) {
+                    notWritten.addAll(loaded);
+                    continue;
+                }
+                List<ErrorResponse> responses = results.get(i).getResults();
+                boolean loadedAny = false;
+                for (int j = 0; j < loaded.size(); j++) {
+                    if ("200".equals(responses.get(j).getCode())) {
+                        assigned++;
+                        loadedAny = true;
+                    } else {
+                        retry.add(loaded.get(j));
+                    }
+                }
+                dronesLoaded += loadedAny ? 1 : 0;
+            }
+            int expired = putBack(retry, orders, true);
+            lastRound = DispatchStatus.builder()
+                    .assigned(assigned)
+                    .dronesLoaded(dronesLoaded)
+                    .unassigned(plan.unassigned().size())
+                    .expired(expired)
+                    .lastRunMillis(System.currentTimeMillis() - start)
+                    .build();
+        } catch (RuntimeException e) {
+            // failed before any drone was written: not the orders' fault, so the round doesn't count
+            // against them
+            putBack(requests, orders, false);
+            throw e;
+        }
+        if (failure != null) {
+            putBack(notWritten, orders, false);
+            throw failure;
+        }
+        return getStatus();
+    }
+
+    private List<Order> take() {
+        List<Order> batch = new ArrayList<>();
+        synchronized (pending) {
+            while (batch.size() < batchSize && !pending.isEmpty()) {
+                batch.add(pending.pollFirst());
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Queues the orders again at the back, in their order.
+     *
+     * @param counted - whether this round counts towards drone.dispatch.max-rounds
+     * @return - orders dropped for having gone through too many rounds
+     */
+    private int putBack(List<MedRequest> requests, Map<MedRequest, Order> orders, boolean counted) {
+        int expired = 0;
+        synchronized (pending) {
+            for (MedRequest request : requests) {
+                int rounds = orders.get(request).rounds() + (counted ? 1 : 0);
+                if (rounds >= maxRounds) {
+                    expired++;
+                } else {
+                    pending.addLast(new Order(request, rounds));
+                }
+            }
+        }
+        if (expired > 0) {
+            log.warn("Dropped {} dispatch orders no drone took in {} rounds", expired, maxRounds);
+        }
+        return expired;
+    }
+
+    // the heaviest drone registered; without any, or without a summary, the heaviest weight class
+    private float maxOrderWeight() {
+        Map<WeightModel, Long> byWeightClass;
+        try {
+            byWeightClass = summaryService.getSummary().getByWeightClass();
+        } catch (RuntimeException e) {
+            log.warn("No fleet summary to check dispatch orders against: {}", e.getMessage());
+            byWeightClass = null;
+        }
+        float fleetMax = 0;
+        float classMax = 0;
+        for (WeightModel weightModel : WeightModel.values()) {
+            float limit = droneService.setWeightLimit(weightModel);
+            classMax = Math.max(classMax, limit);
+            if (byWeightClass != null && byWeightClass.getOrDefault(weightModel, 0L) > 0) {
+                fleetMax = Math.max(fleetMax, limit);
+            }
+        }
+        return fleetMax > 0 ? fleetMax : classMax;
+    }
+}
@@ -0,0 +1,11 @@
+package drx.drone.service.drone_med_service.service;
+
+import drx.drone.service.drone_med_service.model.Drone;
+
+/**
+ * Published by {@link DroneService} after a write changed a drone's state, battery or payload.
+ *
+ * @param drone - the drone as stored after the change, version included
+ */
+public record DroneChangedEvent(Drone drone) {
+}
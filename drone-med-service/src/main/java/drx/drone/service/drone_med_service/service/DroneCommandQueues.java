@@ -0,0 +1,246 @@
+package drx.drone.service.drone_med_service.service;
+
+import drx.drone.service.drone_med_service.config.ThreadingConfig;
+import drx.drone.service.drone_med_service.dto.MedRequest;
+import drx.drone.service.drone_med_service.exception.ErrorResponse;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+/**
+ * Single writer per drone. With {@code drone.commands.enabled=true} every command on a drone (loads and
+ * lifecycle transitions) is queued for that drone and run in arrival order on one of
+ * {@code drone.commands.stripes} threads, picked by serial number, so commands on one drone never run
+ * concurrently and never compete for it in the database. Loads that queued up back to back while the
+ * drone was busy are handed to the loader together, up to {@code drone.commands.max-batch} of them,
+ * to be checked and written in one go.
+ * <p>
+ * Callers wait for their own command and get its result or exception. A drone's queue only takes its
+ * turn on the stripe for one round at a time, so a busy drone doesn't starve the others on its stripe.
+ * Turned off, commands run on the calling thread. Once shut down, commands that can no longer run
+ * fail with {@link RejectedExecutionException}.
+ */
+@Component
+public class DroneCommandQueues implements MeterBinder {
+
+    private final boolean enabled;
+    private final int maxBatch;
+    private final ExecutorService[] stripes;
+
+    private final Map<String, Queue<Command>> queues = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadBatches = new LongAdder();
+
+    public DroneCommandQueues(@Value("${drone.commands.enabled:false}") boolean enabled,
+                              @Value("${drone.commands.stripes:16}") int stripes,
+                              @Value("${drone.commands.max-batch:32}") int maxBatch) {
+        this.enabled = enabled;
+        this.maxBatch = Math.max(1, maxBatch);
+        this.stripes = new ExecutorService[enabled ? Math.max(1, stripes) : 0];
+        for (int i = 0; i < this.stripes.length; i++) {
+            this.stripes[i] = ThreadingConfig.dedicatedPool("drone-commands-" + i, 1);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Loads one medication, possibly together with loads queued right before or after it.
+     *
+     * @param loader - loads the given medications onto the drone in order, one response per medication
+     */
+    public ErrorResponse load(String serialNumber, MedRequest request,
+                              BiFunction<String, List<MedRequest>, List<ErrorResponse>> loader) {
+        if (!enabled) {
+            loads.increment();
+            loadBatches.increment();
+            return loader.apply(serialNumber, List.of(request)).get(0);
+        }
+        Load load = new Load(request, loader, new CompletableFuture<>());
+        submit(serialNumber, load);
+        return await(load.result());
+    }
+
+    /**
+     * Runs the command after the drone's earlier commands.
+     */
+    public <T> T run(String serialNumber, Supplier<T> command) {
+        if (!enabled) {
+            return command.get();
+        }
+        Action<T> action = new Action<>(command, new CompletableFuture<>());
+        submit(serialNumber, action);
+        return await(action.result());
+    }
+
+    public int pending() {
+        return pending.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (ExecutorService stripe : stripes) {
+            stripe.shutdown();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (!enabled) {
+            return;
+        }
+        FunctionCounter.builder("drone.commands.loads", loads, LongAdder::sum)
+                .description("Loads run through the drone queues").register(registry);
+        FunctionCounter.builder("drone.commands.load.batches", loadBatches, LongAdder::sum)
+                .description("Load batches written, one or more loads each").register(registry);
+        Gauge.builder("drone.commands.pending", pending, AtomicInteger::get).register(registry);
+    }
+
+    private void submit(String serialNumber, Command command) {
+        pending.incrementAndGet();
+        boolean[] idle = new boolean[1];
+        queues.compute(serialNumber, (key, queue) -> {
+            if (queue == null) {
+                queue = new ArrayDeque<>();
+                idle[0] = true;
+            }
+            queue.add(command);
+            return queue;
+        });
+        // a queue that exists is already scheduled; it removes itself once it ran empty
+        if (idle[0]) {
+            schedule(serialNumber);
+        }
+    }
+
+    private void schedule(String serialNumber) {
+        try {
+            stripes[Math.floorMod(serialNumber.hashCode(), stripes.length)].execute(() -> drain(serialNumber));
+        } catch (RejectedExecutionException e) {
+            // shut down: nothing drains this queue any more, so its commands fail instead of waiting forever
+            Queue<Command> abandoned = queues.remove(serialNumber);
+            if (abandoned != null) {
+                pending.addAndGet(-abandoned.size());
+                abandoned.forEach(command -> command.result().completeExceptionally(e));
+            }
+        }
+    }
+
+    // one round: everything queued so far, with runs of loads merged
+    private void drain(String serialNumber) {
+        List<Command> round = new ArrayList<>();
+        queues.computeIfPresent(serialNumber, (key, queue) -> {
+            round.addAll(queue);
+            queue.clear();
+            return queue;
+        });
+        for (int i = 0; i < round.size(); ) {
+            if (round.get(i) instanceof Load) {
+                int end = i;
+                while (end < round.size() && end - i < maxBatch && round.get(end) instanceof Load) {
+                    end++;
+                }
+                runLoads(serialNumber, round.subList(i, end));
+                i = end;
+            } else {
+                ((Action<?>) round.get(i)).run(pending);
+                i++;
+            }
+        }
+        boolean[] more = new boolean[1];
+        queues.computeIfPresent(serialNumber, (key, queue) -> {
+            more[0] = !queue.isEmpty();
+            return more[0] ? queue : null;
+        });
+        if (more[0]) {
+            schedule(serialNumber);
+        }
+    }
+
+    private void runLoads(String serialNumber, List<Command> batch) {
+        List<MedRequest> requests = new ArrayList<>(batch.size());
+        for (Command command : batch) {
+            requests.add(((Load) command).request());
+        }
+        List<ErrorResponse> responses = null;
+        Throwable failure = null;
+        try {
+            responses = ((Load) batch.get(0)).loader().apply(serialNumber, requests);
+        } catch (RuntimeException | Error e) {
+            failure = e;
+        }
+        loads.add(batch.size());
+        loadBatches.increment();
+        pending.addAndGet(-batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            if (failure == null) {
+                ((Load) batch.get(i)).result().complete(responses.get(i));
+            } else {
+                ((Load) batch.get(i)).result().completeExceptionally(failure);
+            }
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private sealed interface Command permits Load, Action {
+
+        CompletableFuture<?> result();
+    }
+
+    private record Load(MedRequest request,
+                        BiFunction<String, List<MedRequest>, List<ErrorResponse>> loader,
+                        CompletableFuture<ErrorResponse> result) implements Command {
+    }
+
+    private record Action<T>(Supplier<T> work, CompletableFuture<T> result) implements Command {
+
+        void run(AtomicInteger pending) {
+            T value;
+            try {
+                value = work.get();
+            } catch (RuntimeException | Error e) {
+                pending.decrementAndGet();
+                result.completeExceptionally(e);
+                return;
+            }
+            pending.decrementAndGet();
+            result.complete(value);
+        }
+    }
+}
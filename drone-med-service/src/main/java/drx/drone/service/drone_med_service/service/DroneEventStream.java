@@ -0,0 +1,209 @@
+package drx.drone.service.drone_med_service.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import drx.drone.service.drone_med_service.config.ThreadingConfig;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pushes drone changes to connected dashboards over Server-Sent Events.
+ * <p>
+ * Each subscriber first gets a {@code snapshot} event with the whole fleet, then one {@code drone}
+ * event per {@link DroneChangedEvent} (or {@link DroneReplicatedEvent} from other nodes). A change is
+ * serialized once, whatever the number of subscribers, and only queued on the publishing thread; the
+ * writes to the connections happen on {@code drone.events.drain-threads} threads of the stream's own.
+ * A subscriber whose queue is full (a client that stopped reading) is disconnected and picks up a
+ * fresh snapshot when it reconnects.
+ * <p>
+ * So is one whose events have waited longer than {@code drone.events.send-timeout} ms to be written.
+ * A write blocked on such a client can't be interrupted; it keeps its thread until the server's
+ * connection timeout fails it, and the other subscribers are drained by the remaining threads.
+ * <p>
+ * Events can reach a client out of order with the snapshot, so clients keep the drone with the
+ * highest {@code version}.
+ */
+@Slf4j
+@Component
+public class DroneEventStream {
+
+    private final DroneService droneService;
+    private final ObjectMapper objectMapper;
+    private final int bufferSize;
+    private final long timeout;
+    private final long sendTimeoutNanos;
+    private final ExecutorService drains;
+    private final ScheduledExecutorService watchdog;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    public DroneEventStream(DroneService droneService,
+                            ObjectMapper objectMapper,
+                            @Value("${drone.events.buffer-size:256}") int bufferSize,
+                            @Value("${drone.events.timeout:0}") long timeout,
+                            @Value("${drone.events.drain-threads:4}") int drainThreads,
+                            @Value("${drone.events.send-timeout:10000}") long sendTimeout) {
+        this.droneService = droneService;
+        this.objectMapper = objectMapper;
+        this.bufferSize = bufferSize;
+        this.timeout = timeout;
+        this.sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeout);
+        this.drains = ThreadingConfig.dedicatedPool("drone-events", Math.max(1, drainThreads));
+        if (sendTimeout > 0) {
+            long period = Math.max(1, sendTimeout / 2);
+            this.watchdog = ThreadingConfig.dedicatedScheduler("drone-events-watchdog");
+            this.watchdog.scheduleWithFixedDelay(() -> dropStalled(System.nanoTime()), period, period, TimeUnit.MILLISECONDS);
+        } else {
+            this.watchdog = null;
+        }
+    }
+
+    /**
+     * @return - an emitter that gets the fleet snapshot followed by every change
+     */
+    public SseEmitter subscribe() throws JsonProcessingException {
+        Subscriber subscriber = new Subscriber(new SseEmitter(timeout));
+        subscriber.emitter.onCompletion(() -> subscribers.remove(subscriber));
+        subscriber.emitter.onTimeout(() -> subscribers.remove(subscriber));
+        subscriber.emitter.onError(e -> subscribers.remove(subscriber));
+
+        // register before reading the fleet so no change falls between the snapshot and the stream
+        subscribers.add(subscriber);
+        String snapshot = objectMapper.writeValueAsString(droneService.getAllDrones().orElseThrow());
+        if (!subscriber.queue.offerFirst(SseEmitter.event().name("snapshot").data(snapshot))) {
+            // so many changes while reading the fleet that the queue overflowed, let the client retry
+            subscribers.remove(subscriber);
+            subscriber.emitter.complete();
+            return subscriber.emitter;
+        }
+        subscriber.ready.set(true);
+        subscriber.schedule();
+        return subscriber.emitter;
+    }
+
+    // changes written by other nodes, see ChangeFeed
+    @EventListener
+    public void onDroneReplicated(DroneReplicatedEvent event) {
+        onDroneChanged(new DroneChangedEvent(event.drone()));
+    }
+
+    @EventListener
+    public void onDroneChanged(DroneChangedEvent event) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        String data;
+        try {
+            data = objectMapper.writeValueAsString(event.drone());
+        } catch (JsonProcessingException e) {
+            log.warn("Could not serialize drone {}: {}", event.drone().getSerialNumber(), e.getMessage());
+            return;
+        }
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.queue.offerLast(SseEmitter.event().name("drone").data(data))) {
+                subscriber.schedule();
+            } else {
+                subscribers.remove(subscriber);
+                subscriber.emitter.complete();
+            }
+        }
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (watchdog != null) {
+            watchdog.shutdownNow();
+        }
+        drains.shutdownNow();
+    }
+
+    /**
+     * Drops the subscribers whose events have waited longer than the send timeout. Their emitters are
+     * completed by the drain, once the write it is blocked in returns: completing one takes the same
+     * lock as the write.
+     *
+     * @return - subscribers dropped
+     */
+    int dropStalled(long now) {
+        int dropped = 0;
+        for (Subscriber subscriber : subscribers) {
+            long since = subscriber.waitingSince.get();
+            if (since != 0 && now - since > sendTimeoutNanos && subscribers.remove(subscriber)) {
+                subscriber.dropped.set(true);
+                subscriber.queue.clear();
+                dropped++;
+            }
+        }
+        if (dropped > 0) {
+            log.warn("Dropped {} event stream subscribers not written to within {} ms", dropped,
+                    TimeUnit.NANOSECONDS.toMillis(sendTimeoutNanos));
+        }
+        return dropped;
+    }
+
+    private class Subscriber {
+
+        private final SseEmitter emitter;
+        private final LinkedBlockingDeque<SseEmitter.SseEventBuilder> queue;
+        private final AtomicBoolean ready = new AtomicBoolean();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean dropped = new AtomicBoolean();
+        private final AtomicLong waitingSince = new AtomicLong(); // nanoTime the pending drain or write began, 0 if none
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+            // one extra slot for the snapshot
+            this.queue = new LinkedBlockingDeque<>(bufferSize + 1);
+        }
+
+        void schedule() {
+            if (ready.get() && !queue.isEmpty() && draining.compareAndSet(false, true)) {
+                waitingSince.set(System.nanoTime());
+                drains.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                SseEmitter.SseEventBuilder event;
+                while (!dropped.get() && (event = queue.pollFirst()) != null) {
+                    // a busy client that keeps reading is timed per write, not for the whole drain
+                    waitingSince.set(System.nanoTime());
+                    emitter.send(event);
+                }
+            } catch (IOException | IllegalStateException e) {
+                subscribers.remove(this);
+                emitter.completeWithError(e);
+                return;
+            } finally {
+                waitingSince.set(0);
+                draining.set(false);
+            }
+            if (dropped.get()) {
+                emitter.completeWithError(new TimeoutException("event stream client stopped reading"));
+                return;
+            }
+            // an event may have been queued after the last poll but before draining was cleared
+            schedule();
+        }
+    }
+}
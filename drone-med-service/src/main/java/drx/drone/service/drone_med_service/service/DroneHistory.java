@@ -0,0 +1,130 @@
+package drx.drone.service.drone_med_service.service;
+
+import drx.drone.service.drone_med_service.config.MongoClusterMonitor;
+import drx.drone.service.drone_med_service.dto.CursorPage;
+import drx.drone.service.drone_med_service.model.Drone;
+import drx.drone.service.drone_med_service.model.DroneTransition;
+import drx.drone.service.drone_med_service.repository.DroneTransitionRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Append-only history of drone changes (see {@link DroneTransition}). Every {@link DroneChangedEvent}
+ * (registration, loads, state transitions) is queued on the request thread and written in batches of
+ * one insertMany every {@code drone.history.flush-interval} ms, so recording costs a request no
+ * database work. At most {@code drone.history.queue-capacity} entries wait; beyond that entries are
+ * dropped and counted rather than slowing requests down.
+ */
+@Slf4j
+@Service
+public class DroneHistory implements MeterBinder {
+
+    private final DroneTransitionRepository repository;
+    private final MongoClusterMonitor clusterMonitor;
+    private final BlockingQueue<DroneTransition> queue;
+
+    private volatile boolean prepared;
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    public DroneHistory(DroneTransitionRepository repository,
+                        MongoClusterMonitor clusterMonitor,
+                        @Value("${drone.history.queue-capacity:100000}") int queueCapacity) {
+        this.repository = repository;
+        this.clusterMonitor = clusterMonitor;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    @EventListener
+    public void onDroneChanged(DroneChangedEvent event) {
+        Drone drone = event.drone();
+        DroneTransition transition = DroneTransition.builder()
+                .serialNumber(drone.getSerialNumber())
+                .at(Instant.now())
+                .state(drone.getState())
+                .batteryCapacity(drone.getBatteryCapacity())
+                .loadedWeight(drone.getLoadedWeight())
+                .medCount(drone.getMedCount())
+                .build();
+        if (!queue.offer(transition)) {
+            dropped.increment();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${drone.history.flush-interval:1000}")
+    public void tick() {
+        flush();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * Writes what is queued. Called from the scheduler and on shutdown, which don't overlap.
+     *
+     * @return - entries written
+     */
+    synchronized int flush() {
+        if (queue.isEmpty() || !clusterMonitor.isWritable()) {
+            return 0;
+        }
+        List<DroneTransition> batch = new ArrayList<>(queue.size());
+        queue.drainTo(batch);
+        try {
+            if (!prepared) {
+                repository.prepare();
+                prepared = true;
+            }
+            repository.append(batch);
+        } catch (RuntimeException e) {
+            log.warn("Could not write {} history entries: {}", batch.size(), e.getMessage());
+            // newer entries may have taken the room meanwhile; what doesn't fit is lost
+            for (DroneTransition transition : batch) {
+                if (!queue.offer(transition)) {
+                    dropped.increment();
+                }
+            }
+            return 0;
+        }
+        recorded.add(batch.size());
+        return batch.size();
+    }
+
+    /**
+     * @param serialNumber - only this drone's history, the whole fleet's if null
+     * @param from         - from this time on, the beginning if null
+     * @param to           - before this time, up to now if null
+     * @param limit        - at most this many entries (max {@link CursorPage#MAX_LIMIT}), the earliest first
+     */
+    public List<DroneTransition> getHistory(String serialNumber, Instant from, Instant to, int limit) {
+        return repository.findRange(serialNumber, from, to, CursorPage.checkLimit(limit));
+    }
+
+    public int pending() {
+        return queue.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("drone.history.entries", recorded, LongAdder::sum).tag("outcome", "written").register(registry);
+        FunctionCounter.builder("drone.history.entries", dropped, LongAdder::sum).tag("outcome", "dropped").register(registry);
+        Gauge.builder("drone.history.pending", queue, BlockingQueue::size).register(registry);
+    }
+}
@@ -0,0 +1,96 @@
+package drx.drone.service.drone_med_service.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters {@link DroneService} records on its hot paths. Every counter and timer is registered up front
+ * (or once, on the first unknown code), so recording is a map lookup and an increment: no tags, ids or
+ * samples are allocated per call.
+ * <ul>
+ *     <li>{@code drone.service.calls} - timer per {@code operation}: register, load, batchLoad, transition</li>
+ *     <li>{@code drone.load.outcomes} - counter per ErrorResponse {@code code} and {@code mode} (single, batch)</li>
+ * </ul>
+ */
+@Component
+public class DroneMetrics {
+
+    private static final String[] LOAD_CODES = {"200", "600", "601", "602", "603", "604", "606"};
+
+    private final MeterRegistry registry;
+    private final Timer registerTimer;
+    private final Timer loadTimer;
+    private final Timer batchLoadTimer;
+    private final Timer transitionTimer;
+    private final Map<String, Counter> singleOutcomes = new ConcurrentHashMap<>();
+    private final Map<String, Counter> batchOutcomes = new ConcurrentHashMap<>();
+
+    public DroneMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.registerTimer = timer("register");
+        this.loadTimer = timer("load");
+        this.batchLoadTimer = timer("batchLoad");
+        this.transitionTimer = timer("transition");
+        for (String code : LOAD_CODES) {
+            singleOutcomes.put(code, outcome(code, "single"));
+            batchOutcomes.put(code, outcome(code, "batch"));
+        }
+    }
+
+    /**
+     * @param startNanos - System.nanoTime() when the call started
+     */
+    public void registered(long startNanos) {
+        record(registerTimer, startNanos);
+    }
+
+    public void loaded(String code, long startNanos) {
+        record(loadTimer, startNanos);
+        count(singleOutcomes, code, "single");
+    }
+
+    public void batchLoaded(long startNanos) {
+        record(batchLoadTimer, startNanos);
+    }
+
+    public void batchOutcome(String code) {
+        count(batchOutcomes, code, "batch");
+    }
+
+    public void transitioned(long startNanos) {
+        record(transitionTimer, startNanos);
+    }
+
+    private Timer timer(String operation) {
+        return Timer.builder("drone.service.calls")
+                .description("DroneService latency by operation")
+                .tag("operation", operation)
+                .register(registry);
+    }
+
+    private Counter outcome(String code, String mode) {
+        return Counter.builder("drone.load.outcomes")
+                .description("Medication loads by response code")
+                .tag("code", code)
+                .tag("mode", mode)
+                .register(registry);
+    }
+
+    private void count(Map<String, Counter> outcomes, String code, String mode) {
+        Counter counter = outcomes.get(code);
+        if (counter == null) {
+            counter = outcomes.computeIfAbsent(code, c -> outcome(c, mode));
+        }
+        counter.increment();
+    }
+
+    private static void record(Timer timer, long startNanos) {
+        timer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+}
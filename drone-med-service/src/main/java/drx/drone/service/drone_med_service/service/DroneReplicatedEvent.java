@@ -0,0 +1,13 @@
+package drx.drone.service.drone_med_service.service;
+
+import drx.drone.service.drone_med_service.model.Drone;
+
+/**
+ * Published by the {@link ChangeFeed} for a drone change this node learnt of from the database, i.e.
+ * one written by another node. Unlike {@link DroneChangedEvent} it is not recorded in the history; the
+ * node that wrote the change did that.
+ *
+ * @param drone - the drone as stored after the change, version included
+ */
+public record DroneReplicatedEvent(Drone drone) {
+}
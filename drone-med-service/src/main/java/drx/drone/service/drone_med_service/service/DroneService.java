@@ -1,29 +1,49 @@
 package drx.drone.service.drone_med_service.service;
 
+import drx.drone.service.drone_med_service.dto.BatchLoadRequest;
+import drx.drone.service.drone_med_service.dto.BatchLoadResult;
+import drx.drone.service.drone_med_service.dto.CursorPage;
 import drx.drone.service.drone_med_service.dto.DroneRequest;
 import drx.drone.service.drone_med_service.dto.MedRequest;
+import drx.drone.service.drone_med_service.exception.BatchLoadFailedException;
+import drx.drone.service.drone_med_service.exception.DroneNotExistException;
+import drx.drone.service.drone_med_service.exception.DroneStateConflictException;
 import drx.drone.service.drone_med_service.exception.ErrorResponse;
 import drx.drone.service.drone_med_service.exception.MedicationNotFoundException;
 import drx.drone.service.drone_med_service.model.Drone;
 import drx.drone.service.drone_med_service.model.Medication;
 import drx.drone.service.drone_med_service.model.State;
 import drx.drone.service.drone_med_service.model.WeightModel;
-import drx.drone.service.drone_med_service.repository.DroneRepository;
-import drx.drone.service.drone_med_service.repository.MedicationRepository;
+import drx.drone.service.drone_med_service.repository.DroneStore;
+import drx.drone.service.drone_med_service.repository.MedicationStore;
 import lombok.RequiredArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
 public class DroneService {
 
-    private final DroneRepository droneRepository;
-    private final MedicationRepository medicationRepository;
+    static final int MAX_LOAD_ATTEMPTS = 3;
+
+    private final DroneStore droneRepository;
+    private final MedicationStore medicationRepository;
+    private final FleetCache fleetCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final DroneMetrics metrics;
+    private final MedicationCache medicationCache;
+    private final DroneWriteBehind writeBehind;
+    private final DroneCommandQueues commandQueues;
 
     /**
      *
@@ -38,20 +58,46 @@ public class DroneService {
      * @return - returns Optional of Drone
      */
     public Optional<Drone> registerDrone(DroneRequest droneRequest){
-        Drone drone = Drone.builder()
+        long start = System.nanoTime();
+        Drone drone = newDrone(droneRequest);
+        droneRepository.save(drone);
+        changed(drone);
+        metrics.registered(start);
+        return Optional.of(drone);
+    }
+
+    Drone newDrone(DroneRequest droneRequest) {
+        return Drone.builder()
                 .serialNumber(droneRequest.getSerialNumber())
                 .batteryCapacity(100)
                 .weightClass(droneRequest.getWeightClass())
                 .weightLimit(setWeightLimit(droneRequest.getWeightClass()))
                 .state(State.IDLE) // Default = State.Idle
                 .loadedMeds(new ArrayList<>())
+                .loadedWeight(0f)
+                .medCount(0)
+                .updatedAt(System.currentTimeMillis())
                 .build();
-        droneRepository.save(drone);
-        return Optional.of(drone);
+    }
+
+    /**
+     * Whether drone commands go through {@link DroneCommandQueues} or transitions through
+     * {@link DroneWriteBehind}. Both live in this service and block, so the reactive stack hands its
+     * lifecycle calls (and the reads that must see their pending writes) over to it then.
+     */
+    public boolean isLifecycleQueued() {
+        return commandQueues.isEnabled() || writeBehind.isEnabled();
     }
 
     public Optional<Drone> getDroneById(String serialNumber){
-        return droneRepository.findById(serialNumber);
+        Optional<Drone> cached = fleetCache.get(serialNumber);
+        if (cached.isPresent()) {
+            return cached;
+        }
+        writeBehind.flush(serialNumber);
+        Optional<Drone> drone = droneRepository.findById(serialNumber);
+        drone.ifPresent(this::cache);
+        return drone;
     }
 
     public float setWeightLimit(WeightModel weightModel){
@@ -65,70 +111,275 @@ public class DroneService {
         return weightLimit;
     }
 
+    /**
+     * Loads a medication with a single conditional update on the drone (see
+     * {@link DroneStore#loadMedication}), so concurrent loads onto one drone can't lose each
+     * other's changes. Only when that update is refused is the drone read back to tell why.
+     *
+     * @return - 200 MEDS LOADED, or 600 (over weight), 601 (battery), 602 (med count), 603 (no drone),
+     *           604 (lost a race too often), 606 (drone is out delivering)
+     */
     public ErrorResponse loadDrone(String serialNumber, MedRequest medRequest) throws Exception {
-        Optional<Drone> optionalDrone = droneRepository.findById(serialNumber);
-        if (optionalDrone.isPresent()) {
+        long start = System.nanoTime();
+        ErrorResponse response = commandQueues.load(serialNumber, medRequest, this::loadQueued);
+        metrics.loaded(response.getCode(), start);
+        return response;
+    }
+
+    /**
+     * Loads that queued up for one drone (see {@link DroneCommandQueues}): more than one are checked
+     * against one read of the drone and written with one update, like a batch. If the drone changed
+     * under that update (another node), they fall back to one conditional update each.
+     */
+    private List<ErrorResponse> loadQueued(String serialNumber, List<MedRequest> medRequests) {
+        if (medRequests.size() == 1) {
+            return List.of(load(serialNumber, medRequests.get(0)));
+        }
+        List<ErrorResponse> responses = new ArrayList<>(applyLoads(List.of(BatchLoadRequest.builder()
+                .serialNumber(serialNumber)
+                .medications(medRequests)
+                .build())).get(0).getResults());
+        for (int i = 0; i < responses.size(); i++) {
+            if ("604".equals(responses.get(i).getCode())) {
+                responses.set(i, load(serialNumber, medRequests.get(i)));
+            }
+        }
+        return responses;
+    }
+
+    private ErrorResponse load(String serialNumber, MedRequest medRequest) {
+        Medication medication = newMedication(medRequest);
+        // saved before the drone points at it: if saving fails nothing was loaded, so a retry (the
+        // idempotency key is given up on errors) can't load the drone twice
+        medicationRepository.save(medication);
+        medicationCache.evictAll(List.of(medication));
+        ErrorResponse response = loadSaved(serialNumber, medication);
+        if (!"200".equals(response.getCode()) && medRequest.getId() == null) {
+            // no drone holds it; a client-supplied id may be an existing medication, that one stays
+            medicationRepository.deleteById(medication.getId());
+        }
+        return response;
+    }
+
+    private ErrorResponse loadSaved(String serialNumber, Medication medication) {
+        float medWeight = medication.getWeight();
+        // the load's guard has to see the state this drone was last acknowledged in
+        writeBehind.flush(serialNumber);
+
+        for (int attempt = 0; attempt < MAX_LOAD_ATTEMPTS; attempt++) {
+            Drone loaded = droneRepository.loadMedication(serialNumber, medication.getId(), medWeight);
+            if (loaded != null) {
+                changed(loaded);
+                return new ErrorResponse("200", "MEDS LOADED");
+            }
+
+            Optional<Drone> optionalDrone = droneRepository.findById(serialNumber);
+            if (optionalDrone.isEmpty()) {
+                return new ErrorResponse("603", "DRONE DOES NOT EXIST");
+            }
             Drone drone = optionalDrone.get();
+            cache(drone);
 
-            // Check battery capacity
-            if (drone.getBatteryCapacity() <= 25) {
-                drone.setState(State.LOADED);
-                droneRepository.save(drone);
-                return new ErrorResponse("601", "BATTERY LEVEL BELOW 25%");
+            // stored before loadedWeight/medCount existed, fill them in once and retry
+            if (drone.getLoadedWeight() == null || drone.getMedCount() == null) {
+                int medCount = drone.getLoadedMeds() == null ? 0 : drone.getLoadedMeds().size();
+                droneRepository.backfillPayload(serialNumber, getTotalLoadedWeight(drone), medCount);
+                continue;
             }
 
-            float medWeight = medRequest.getWeight();
-            float totalLoadedWeight = getTotalLoadedWeight(drone);
-            float droneWeightLimit = drone.getWeightLimit();
-            float maxAllowableWeight = droneWeightLimit * 0.9f; // 90% of weight limit for safety
-
-            // Check maximum medication count
-            int maxMedCount = 10;
-            if (drone.getLoadedMeds().size() >= maxMedCount) {
-                drone.setState(State.LOADED);
-                droneRepository.save(drone);
-                return new ErrorResponse("602", "MAXIMUM MEDICATION COUNT REACHED");
+            ErrorResponse rejection = checkLoad(drone, medWeight);
+            if (rejection != null) {
+                if (drone.getState() == State.IDLE || drone.getState() == State.LOADING) {
+                    changed(droneRepository.transitionState(serialNumber, List.of(State.IDLE, State.LOADING), State.LOADED));
+                }
+                return rejection;
             }
+            // drone changed between the update and the read, try again
+        }
+        return new ErrorResponse("604", "DRONE MODIFIED CONCURRENTLY");
+    }
 
-            // Check safe weight threshold
-            /*if (medWeight + totalLoadedWeight > maxAllowableWeight) {
-                drone.setState(State.LOADED);
-                droneRepository.save(drone);
-                return new ErrorResponse("605", "EXCEEDS SAFE WEIGHT THRESHOLD");
-            }*/
+    /**
+     * Same rules, in the same order, as the guard on {@link DroneStore#loadMedication}.
+     *
+     * @return - the rejection for loading medWeight onto drone, or null if it fits
+     */
+    public ErrorResponse checkLoad(Drone drone, float medWeight) {
+        if (!Drone.LOADABLE_STATES.contains(drone.getState())) {
+            return new ErrorResponse("606", "DRONE NOT AVAILABLE FOR LOADING");
+        }
+        if (drone.getBatteryCapacity() <= Drone.MIN_LOADING_BATTERY) {
+            return new ErrorResponse("601", "BATTERY LEVEL BELOW 25%");
+        }
+        if (drone.getMedCount() >= Drone.MAX_MED_COUNT) {
+            return new ErrorResponse("602", "MAXIMUM MEDICATION COUNT REACHED");
+        }
+        if (medWeight + drone.getLoadedWeight() > drone.getWeightLimit()) {
+            return new ErrorResponse("600", "DRONE OVER WEIGHT");
+        }
+        return null;
+    }
 
-            if (medWeight + totalLoadedWeight == droneWeightLimit) {
-                Medication medication = buildMedication(medRequest);
-                medicationRepository.save(medication);
+    /**
+     * Loads many drones in one go. Every medication is checked with the same rules as
+     * {@link #loadDrone}, against the drone as the earlier items of the batch left it. The accepted
+     * medications are then saved with one bulk upsert and the drones written back, each guarded on
+     * its version.
+     *
+     * @return - per request entry, one response per medication; 604 for the medications of a drone
+     *           that someone else changed while the batch was being applied
+     * @throws BatchLoadFailedException - if writing the drones back failed, with the drones known not
+     *                                    to have been written
+     */
+    public List<BatchLoadResult> loadDrones(List<BatchLoadRequest> requests) {
+        long start = System.nanoTime();
+        List<BatchLoadResult> results = applyLoads(requests);
+        for (BatchLoadResult result : results) {
+            for (ErrorResponse response : result.getResults()) {
+                metrics.batchOutcome(response.getCode());
+            }
+        }
+        metrics.batchLoaded(start);
+        return results;
+    }
 
-                String medID = medication.getId();
-                drone.getLoadedMeds().add(medID);
-                drone.setState(State.LOADED);
-                drone.setBatteryCapacity(drone.getBatteryCapacity() - 15);
+    private List<BatchLoadResult> applyLoads(List<BatchLoadRequest> requests) {
+        Set<String> serialNumbers = new HashSet<>();
+        for (BatchLoadRequest request : requests) {
+            if (request.getSerialNumber() != null) {
+                serialNumbers.add(request.getSerialNumber());
+            }
+        }
+        writeBehind.flush(serialNumbers);
+        Map<String, Drone> drones = new HashMap<>();
+        for (Drone drone : droneRepository.findAllById(serialNumbers)) {
+            drones.put(drone.getSerialNumber(), copyForLoading(drone));
+        }
 
-                droneRepository.save(drone);
-                return new ErrorResponse("200", "MEDS LOADED");
+        Set<String> changed = new LinkedHashSet<>();
+        Map<String, List<Medication>> accepted = new HashMap<>();
+        Set<String> created = new HashSet<>(); // ids made up here rather than supplied by the client
+        List<BatchLoadResult> results = new ArrayList<>();
+        for (BatchLoadRequest request : requests) {
+            Drone drone = drones.get(request.getSerialNumber());
+            List<ErrorResponse> responses = new ArrayList<>();
+            List<MedRequest> medRequests = request.getMedications() == null ? List.of() : request.getMedications();
+            for (MedRequest medRequest : medRequests) {
+                if (drone == null) {
+                    responses.add(new ErrorResponse("603", "DRONE DOES NOT EXIST"));
+                    continue;
+                }
+                ErrorResponse rejection = checkLoad(drone, medRequest.getWeight());
+                if (rejection != null) {
+                    if (drone.getState() == State.IDLE || drone.getState() == State.LOADING) {
+                        drone.setState(State.LOADED);
+                        changed.add(drone.getSerialNumber());
+                    }
+                    responses.add(rejection);
+                    continue;
+                }
+                Medication medication = newMedication(medRequest);
+                if (medRequest.getId() == null) {
+                    created.add(medication.getId());
+                }
+                applyLoad(drone, medication);
+                accepted.computeIfAbsent(drone.getSerialNumber(), k -> new ArrayList<>()).add(medication);
+                changed.add(drone.getSerialNumber());
+                responses.add(new ErrorResponse("200", "MEDS LOADED"));
             }
+            results.add(BatchLoadResult.builder().serialNumber(request.getSerialNumber()).results(responses).build());
+        }
 
-            if (medWeight + totalLoadedWeight < droneWeightLimit) {
-                Medication medication = buildMedication(medRequest);
-                medicationRepository.save(medication);
+        // saved before any drone points at them, like a single load; the ones of drones that changed
+        // under the batch are deleted again, unless the client supplied the id (see loadDrone)
+        List<Medication> medications = new ArrayList<>();
+        accepted.values().forEach(medications::addAll);
+        medicationRepository.bulkSave(medications);
+        medicationCache.evictAll(medications);
+
+        Set<String> applied = new HashSet<>();
+        List<Drone> stored;
+        try {
+            stored = droneRepository.updateAll(changed.stream().map(drones::get).toList());
+        } catch (RuntimeException e) {
+            throw new BatchLoadFailedException(results, notWritten(accepted, e), e);
+        }
+        for (Drone drone : stored) {
+            applied.add(drone.getSerialNumber());
+            changed(drone);
+        }
+        List<String> orphaned = new ArrayList<>();
+        accepted.forEach((serialNumber, meds) -> {
+            if (!applied.contains(serialNumber)) {
+                meds.stream().map(Medication::getId).filter(created::contains).forEach(orphaned::add);
+            }
+        });
 
-                String medID = medication.getId();
-                drone.getLoadedMeds().add(medID);
-                drone.setState(State.LOADING);
-                drone.setBatteryCapacity(drone.getBatteryCapacity() - 15);
+        for (BatchLoadResult result : results) {
+            if (accepted.containsKey(result.getSerialNumber()) && !applied.contains(result.getSerialNumber())) {
+                result.setResults(result.getResults().stream()
+                        .map(r -> "200".equals(r.getCode()) ? new ErrorResponse("604", "DRONE MODIFIED CONCURRENTLY") : r)
+                        .toList());
+            }
+        }
+        if (!orphaned.isEmpty()) {
+            try {
+                medicationRepository.deleteAllById(orphaned);
+            } catch (RuntimeException e) {
+                Set<String> unwritten = new HashSet<>(accepted.keySet());
+                unwritten.removeAll(applied);
+                throw new BatchLoadFailedException(results, unwritten, e);
+            }
+        }
+        return results;
+    }
 
-                droneRepository.save(drone);
-                return new ErrorResponse("200", "MEDS LOADED");
-            } else {
-                drone.setState(State.LOADED);
-                droneRepository.save(drone);
-                return new ErrorResponse("600", "DRONE OVER WEIGHT");
+    /**
+     * The drones of a failed write-back known not to hold their new medications, read back from the
+     * store. If that read fails too, nothing is known and none are returned.
+     */
+    private Set<String> notWritten(Map<String, List<Medication>> accepted, RuntimeException failure) {
+        Set<String> unwritten = new HashSet<>(accepted.keySet());
+        try {
+            for (Drone drone : droneRepository.findAllById(accepted.keySet())) {
+                List<String> ids = accepted.get(drone.getSerialNumber()).stream().map(Medication::getId).toList();
+                if (drone.getLoadedMeds() != null && drone.getLoadedMeds().containsAll(ids)) {
+                    unwritten.remove(drone.getSerialNumber());
+                }
             }
-        } else {
-            return new ErrorResponse("603", "DRONE DOES NOT EXIST");
+        } catch (RuntimeException e) {
+            failure.addSuppressed(e);
+            return Set.of();
+        }
+        return unwritten;
+    }
+
+    private Drone copyForLoading(Drone drone) {
+        Drone copy = drone.toBuilder()
+                .loadedMeds(drone.getLoadedMeds() == null ? new ArrayList<>() : new ArrayList<>(drone.getLoadedMeds()))
+                .build();
+        if (copy.getLoadedWeight() == null || copy.getMedCount() == null) {
+            copy.setLoadedWeight(getTotalLoadedWeight(copy));
+            copy.setMedCount(copy.getLoadedMeds().size());
         }
+        return copy;
+    }
+
+    // in-memory twin of DroneStore.loadMedication
+    private static void applyLoad(Drone drone, Medication medication) {
+        drone.getLoadedMeds().add(medication.getId());
+        drone.setLoadedWeight(drone.getLoadedWeight() + medication.getWeight());
+        drone.setMedCount(drone.getMedCount() + 1);
+        drone.setBatteryCapacity(drone.getBatteryCapacity() - Drone.LOAD_BATTERY_COST);
+        drone.setState(drone.getLoadedWeight() >= drone.getWeightLimit() ? State.LOADED : State.LOADING);
+    }
+
+    Medication newMedication(MedRequest medRequest) {
+        Medication medication = buildMedication(medRequest);
+        if (medication.getId() == null) {
+            medication.setId(new ObjectId().toHexString());
+        }
+        return medication;
     }
 
     public Medication buildMedication(MedRequest request){
@@ -143,47 +394,90 @@ public class DroneService {
     /**
      *
      * @param drone - Drone in question
-     * @return - current loaded weight on Drone
+     * @return - current loaded weight on Drone, looked up with a single query for all loaded meds
      */
     public float getTotalLoadedWeight(Drone drone){
-        if(drone.getLoadedMeds() == null){
+        if(drone.getLoadedMeds() == null || drone.getLoadedMeds().isEmpty()){
             return 0;
         }
-        return drone.getLoadedMeds().stream()
-                .map(medId -> medicationRepository.findById(medId)
-                        .orElseThrow(() -> new MedicationNotFoundException(medId)))
-                .map(Medication::getWeight)
-                .reduce(0f, Float::sum);
+        Map<String, Medication> meds = findMedsById(drone.getLoadedMeds());
+        float totalLoadedWeight = 0;
+        for (String medId : drone.getLoadedMeds()) {
+            Medication med = meds.get(medId);
+            if (med == null) {
+                throw new MedicationNotFoundException(medId);
+            }
+            totalLoadedWeight += med.getWeight();
+        }
+        return totalLoadedWeight;
     }
 
     public Optional<List<Medication>> getLoadedMeds(String serialNumber){
+        writeBehind.flush(serialNumber);
         Optional<Drone> droneOptional = droneRepository.findById(serialNumber);
         List<Medication> meds = new ArrayList<>();
-        if(droneOptional.isPresent()){
+        if(droneOptional.isPresent() && !droneOptional.get().getLoadedMeds().isEmpty()){
             List<String> loadedMedsIds = droneOptional.get().getLoadedMeds();
+            Map<String, Medication> medsById = findMedsById(loadedMedsIds);
             for (String loadedMedsId : loadedMedsIds) {
-                Optional<Medication> med = medicationRepository.findById(loadedMedsId);
-                med.ifPresent(meds::add);
-
+                Medication med = medsById.get(loadedMedsId);
+                if (med != null) {
+                    meds.add(med);
+                }
             }
         }
 
         return Optional.of(meds);
     }
 
+    /**
+     * Cached meds first, then one $in query for the rest instead of a findById per loaded med.
+     */
+    private Map<String, Medication> findMedsById(List<String> medIds) {
+        Map<String, Medication> meds = new HashMap<>(medicationCache.getAll(medIds));
+        Set<String> missing = new HashSet<>(medIds);
+        missing.removeAll(meds.keySet());
+        if (missing.isEmpty()) {
+            return meds;
+        }
+        for (Medication med : medicationRepository.findAllById(missing)) {
+            meds.put(med.getId(), med);
+            medicationCache.put(med);
+        }
+        return meds;
+    }
+
     public Optional<List<Drone>> getIdleDrones() {
-        List<Drone> idleDrones = droneRepository.findAll().stream()
-                .filter(drone -> drone.getState() == State.IDLE)
-                .collect(Collectors.toList());
-        return Optional.of(idleDrones);
+        return Optional.of(findByState(State.IDLE));
     }
 
     public Optional<List<Drone>> getAllDrones(){
-        return Optional.of(droneRepository.findAll());
+        return Optional.of(fleetCache.findAll().orElseGet(() -> {
+            writeBehind.flushAll();
+            return droneRepository.findAll();
+        }));
+    }
+
+    /**
+     *
+     * @param cursor - nextCursor of the previous page, null for the first page
+     * @param limit  - page size, at most {@link CursorPage#MAX_LIMIT}
+     * @param fields - drone properties to return, all if empty
+     * @return - one page of drones in serialNumber order; at most limit drones are read per call
+     */
+    public CursorPage<?> getDronePage(String cursor, int limit, List<String> fields) {
+        int pageSize = CursorPage.checkLimit(limit);
+        String after = CursorPage.decode(cursor);
+        writeBehind.flushAll();
+        if (fields == null || fields.isEmpty()) {
+            return CursorPage.of(droneRepository.findPage(after, pageSize + 1), pageSize, Drone::getSerialNumber);
+        }
+        return CursorPage.of(droneRepository.findPage(after, pageSize + 1, fields), pageSize,
+                row -> String.valueOf(row.get("serialNumber")));
     }
 
     public int getBatteryLevel(String serialNumber) {
-        Optional<Drone> d = droneRepository.findById(serialNumber);
+        Optional<Drone> d = getDroneById(serialNumber);
         if (d.isPresent()) {
             return d.get().getBatteryCapacity();
         }
@@ -192,90 +486,115 @@ public class DroneService {
 
     // 1
     public Optional<List<Drone>> getLoadedDrones() {
-        List<Drone> loadedDrones = new ArrayList<>();
-        List<Drone> drones = droneRepository.findAll();
-        for (Drone drone : drones) {
-            if (drone.getState() == State.LOADED) {
-                loadedDrones.add(drone);
-            }
-        }
-        return Optional.of(loadedDrones);
+        return Optional.of(findByState(State.LOADED));
     }
 
     public void sendDroneForDelivery(String serialNumber) {
-        Optional<Drone> drone = droneRepository.findById(serialNumber);
-        if (drone.isPresent()) {
-            Drone dObject = drone.get();
-            dObject.setState(State.DELIVERING);
-            droneRepository.save(dObject);
-        }
+        commandQueues.run(serialNumber, () -> transition(serialNumber, State.LOADED, State.DELIVERING));
     }
 
     // 2
     public Optional<List<Drone>> getDronesMarkedForDelivery() {
-        List<Drone> dronesOutForDelivery = new ArrayList<>();
-        List<Drone> drones = droneRepository.findAll();
-        for (Drone drone : drones) {
-            if (drone.getState() == State.DELIVERING) {
-                dronesOutForDelivery.add(drone);
-            }
-        }
-        return Optional.of(dronesOutForDelivery);
+        return Optional.of(findByState(State.DELIVERING));
     }
 
     public void deliverDrone(String serialNumber) {
-        Optional<Drone> drone = droneRepository.findById(serialNumber);
-        if (drone.isPresent()) {
-            Drone dObject = drone.get();
-            dObject.setState(State.DELIVERED);
-            droneRepository.save(dObject);
-        }
+        commandQueues.run(serialNumber, () -> transition(serialNumber, State.DELIVERING, State.DELIVERED));
     }
 
     // 3
     public Optional<List<Drone>> getDronesMarkedAsDelivered() {
-        List<Drone> deliveredDrones = new ArrayList<>();
-        List<Drone> drones = droneRepository.findAll();
-        for (Drone drone : drones) {
-            if (drone.getState() == State.DELIVERED) {
-                deliveredDrones.add(drone);
-            }
-        }
-        return Optional.of(deliveredDrones);
+        return Optional.of(findByState(State.DELIVERED));
     }
 
     public void returnDrone(String serialNumber) {
-        Optional<Drone> drone = droneRepository.findById(serialNumber);
+        commandQueues.run(serialNumber, () -> unload(serialNumber));
+    }
 
-        if (drone.isPresent()) {
-            Drone dObject = drone.get();
-            dObject.setState(State.RETURNING);
-            dObject.setLoadedMeds(new ArrayList<>()); // empty meds
-            droneRepository.save(dObject);
+    private Drone unload(String serialNumber) {
+        long start = System.nanoTime();
+        if (writeBehind.isEnabled()) {
+            Drone drone = writeBehind.transition(serialNumber, State.DELIVERED, State.RETURNING, true);
+            // already in the cache
+            eventPublisher.publishEvent(new DroneChangedEvent(drone));
+            metrics.transitioned(start);
+            return drone;
+        }
+        // empty meds
+        Drone drone = droneRepository.unload(serialNumber, State.DELIVERED, State.RETURNING);
+        if (drone == null) {
+            throw transitionRefused(serialNumber, State.DELIVERED);
         }
+        changed(drone);
+        metrics.transitioned(start);
+        return drone;
     }
 
 
     public Optional<List<Drone>> getReturningDrones() {
-        List<Drone> deliveredDrones = new ArrayList<>();
-        List<Drone> drones = droneRepository.findAll();
-        for (Drone drone : drones) {
-            if (drone.getState() == State.RETURNING) {
-                deliveredDrones.add(drone);
-            }
-        }
-        return Optional.of(deliveredDrones);
+        return Optional.of(findByState(State.RETURNING));
     }
 
 
     public void markIdle(String serialNumber) {
-        Optional<Drone> drone = droneRepository.findById(serialNumber);
+        commandQueues.run(serialNumber, () -> transition(serialNumber, State.RETURNING, State.IDLE));
+    }
+
+    /**
+     * Lifecycle transitions are a compare-and-set on the drone's current state, so of two concurrent
+     * callers only one wins and the other gets a {@link DroneStateConflictException}. With write-behind
+     * on, the compare-and-set runs against the cache and the write follows (see {@link DroneWriteBehind}).
+     */
+    private Drone transition(String serialNumber, State from, State to) {
+        long start = System.nanoTime();
+        if (writeBehind.isEnabled()) {
+            Drone drone = writeBehind.transition(serialNumber, from, to, false);
+            // already in the cache
+            eventPublisher.publishEvent(new DroneChangedEvent(drone));
+            metrics.transitioned(start);
+            return drone;
+        }
+        Drone drone = droneRepository.transitionState(serialNumber, List.of(from), to);
+        if (drone == null) {
+            throw transitionRefused(serialNumber, from);
+        }
+        changed(drone);
+        metrics.transitioned(start);
+        return drone;
+    }
 
-        if (drone.isPresent()) {
-            Drone dObject = drone.get();
-            dObject.setState(State.IDLE);
-            // dObject.setLoadedMeds(new ArrayList<>()); // empty meds
-            droneRepository.save(dObject);
+    /**
+     * Every drone a write hands back goes through here: into the {@link FleetCache} and out to
+     * listeners of {@link DroneChangedEvent}, e.g. the dashboard event stream.
+     */
+    private void changed(Drone drone) {
+        if (drone == null) {
+            return;
         }
+        cache(drone);
+        eventPublisher.publishEvent(new DroneChangedEvent(drone));
+    }
+
+    // with write-behind on, the cache may be ahead of what was read or written (see DroneWriteBehind#cache)
+    private void cache(Drone drone) {
+        if (writeBehind.isEnabled()) {
+            writeBehind.cache(drone);
+        } else {
+            fleetCache.put(drone);
+        }
+    }
+
+    private List<Drone> findByState(State state) {
+        return fleetCache.findByState(state).orElseGet(() -> {
+            // the cache is missing drones, so the database answers and has to be caught up first
+            writeBehind.flushAll();
+            return droneRepository.findByState(state);
+        });
+    }
+
+    private RuntimeException transitionRefused(String serialNumber, State expected) {
+        return droneRepository.findById(serialNumber)
+                .<RuntimeException>map(drone -> new DroneStateConflictException(serialNumber, expected, drone.getState()))
+                .orElseGet(() -> new DroneNotExistException(serialNumber));
     }
 }
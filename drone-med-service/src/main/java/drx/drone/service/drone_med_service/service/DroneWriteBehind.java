@@ -0,0 +1,259 @@
+package drx.drone.service.drone_med_service.service;
+
+import drx.drone.service.drone_med_service.config.ThreadingConfig;
+import drx.drone.service.drone_med_service.exception.DroneNotExistException;
+import drx.drone.service.drone_med_service.exception.DroneStateConflictException;
+import drx.drone.service.drone_med_service.model.Drone;
+import drx.drone.service.drone_med_service.model.State;
+import drx.drone.service.drone_med_service.repository.DroneRepositoryCustom.StateChange;
+import drx.drone.service.drone_med_service.repository.DroneStore;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-behind for the state-only lifecycle transitions (send for delivery, deliver, return, mark
+ * idle). With {@code drone.write-behind.enabled=true} a transition is checked and applied against the
+ * {@link FleetCache} and acknowledged at once; the database catches up every
+ * {@code drone.write-behind.flush-interval} ms with one unordered bulk update. A drone's transitions
+ * since the last flush are coalesced into one update that takes it from the state it has in the
+ * database to the one it has now, guarded on the former, so the database only ever moves forward
+ * along the same path the cache did.
+ * <p>
+ * Anything that writes a drone's payload (loads) or reads it from the database first flushes that
+ * drone, so it never works on a state older than the one acknowledged; reads of many drones from the
+ * database (lists the cache can't serve, pages, exports, the summary) flush them all. What a crash
+ * loses is at most one interval of transitions; the cache is the authoritative view in between,
+ * which is why this needs {@code drone.cache.enabled} and stays off without it.
+ */
+@Slf4j
+@Service
+public class DroneWriteBehind implements MeterBinder {
+
+    private final DroneStore droneRepository;
+    private final FleetCache fleetCache;
+    private final boolean enabled;
+    private final long flushInterval;
+    private ScheduledExecutorService flusher;
+
+    private final Map<String, StateChange> pending = new ConcurrentHashMap<>();
+    // flushes of the same drone must land in the order they were drained
+    private final Object flushLock = new Object();
+
+    private final LongAdder acknowledged = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+
+    public DroneWriteBehind(DroneStore droneRepository,
+                            FleetCache fleetCache,
+                            @Value("${drone.write-behind.enabled:false}") boolean enabled,
+                            @Value("${drone.write-behind.flush-interval:200}") long flushInterval) {
+        this.droneRepository = droneRepository;
+        this.fleetCache = fleetCache;
+        this.flushInterval = flushInterval;
+        if (enabled && !fleetCache.isEnabled()) {
+            log.warn("drone.write-behind.enabled needs drone.cache.enabled, transitions are written through");
+        }
+        this.enabled = enabled && fleetCache.isEnabled();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Moves the drone from {@code from} to {@code to} in the cache and queues the write. Transitions of
+     * one drone are applied one at a time, so of two concurrent callers only one wins.
+     *
+     * @param unload - also empty the drone's payload
+     * @return - the drone as it is now, one version up
+     */
+    public Drone transition(String serialNumber, State from, State to, boolean unload) {
+        while (true) {
+            if (fleetCache.peek(serialNumber).isEmpty()) {
+                // evicted: the database has to catch up before it can be read again
+                flush(serialNumber);
+                cache(droneRepository.findById(serialNumber).orElseThrow(() -> new DroneNotExistException(serialNumber)));
+            }
+            Drone[] next = new Drone[1];
+            pending.compute(serialNumber, (key, waiting) -> {
+                next[0] = fleetCache.update(serialNumber, current -> {
+                    if (current.getState() != from) {
+                        throw new DroneStateConflictException(serialNumber, from, current.getState());
+                    }
+                    return moved(current, to, unload, 1);
+                });
+                if (next[0] == null) {
+                    // evicted since the check above, go round again
+                    return waiting;
+                }
+                return waiting == null
+                        ? new StateChange(serialNumber, from, to, unload, 1)
+                        : new StateChange(serialNumber, waiting.from(), to, waiting.unload() || unload, waiting.changes() + 1);
+            });
+            if (next[0] != null) {
+                acknowledged.increment();
+                return next[0];
+            }
+        }
+    }
+
+    /**
+     * Caches a drone read from or written to the database. Its state there may still be behind the
+     * transitions queued for it, so those are laid over it: another write to the drone (a load, a
+     * battery reading) must not undo a transition that was already acknowledged.
+     */
+    public void cache(Drone stored) {
+        if (!enabled || stored == null) {
+            fleetCache.put(stored);
+            return;
+        }
+        pending.compute(stored.getSerialNumber(), (key, waiting) -> {
+            fleetCache.put(waiting == null ? stored : moved(stored, waiting.to(), waiting.unload(), waiting.changes()));
+            return waiting;
+        });
+    }
+
+    /**
+     * Flushes every {@code drone.write-behind.flush-interval} ms on a thread of its own, so other
+     * scheduled work can't stretch how much a crash loses.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (enabled && flusher == null) {
+            flusher = ThreadingConfig.dedicatedScheduler("drone-write-behind");
+            flusher.scheduleWithFixedDelay(this::tick, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void tick() {
+        if (droneRepository.isAvailable()) {
+            try {
+                flushAll();
+            } catch (RuntimeException e) {
+                log.warn("Could not write {} drone transitions: {}", pending.size(), e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        ScheduledExecutorService running;
+        synchronized (this) {
+            running = flusher;
+        }
+        if (running != null) {
+            running.shutdown();
+            running.awaitTermination(5, TimeUnit.SECONDS);
+        }
+        tick();
+    }
+
+    /**
+     * Writes this drone's queued transitions, if any. Callers about to read or write the drone in the
+     * database call this first.
+     */
+    public void flush(String serialNumber) {
+        if (enabled && pending.containsKey(serialNumber)) {
+            flush(List.of(serialNumber));
+        }
+    }
+
+    /**
+     * Writes every queued transition. Callers about to read many drones from the database call this
+     * first.
+     */
+    public void flushAll() {
+        if (enabled && !pending.isEmpty()) {
+            flush(Set.copyOf(pending.keySet()));
+        }
+    }
+
+    /**
+     * Writes the queued transitions of these drones. If the write fails they are queued again and the
+     * exception is rethrown.
+     *
+     * @return - drones written
+     */
+    public int flush(Collection<String> serialNumbers) {
+        if (!enabled || pending.isEmpty()) {
+            return 0;
+        }
+        synchronized (flushLock) {
+            Map<String, StateChange> batch = new LinkedHashMap<>();
+            for (String serialNumber : serialNumbers) {
+                StateChange change = pending.remove(serialNumber);
+                if (change != null) {
+                    batch.put(serialNumber, change);
+                }
+            }
+            try {
+                write(batch);
+            } catch (RuntimeException e) {
+                // transitions acknowledged meanwhile go on from where these left off
+                batch.forEach((serialNumber, change) -> pending.merge(serialNumber, change, (later, earlier) ->
+                        new StateChange(serialNumber, earlier.from(), later.to(), earlier.unload() || later.unload(),
+                                earlier.changes() + later.changes())));
+                throw e;
+            }
+            return batch.size();
+        }
+    }
+
+    public int pending() {
+        return pending.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("drone.write-behind.transitions", acknowledged, LongAdder::sum).register(registry);
+        // transitions vs. writes is how much was coalesced
+        FunctionCounter.builder("drone.write-behind.writes", written, LongAdder::sum).register(registry);
+        FunctionCounter.builder("drone.write-behind.conflicts", conflicts, LongAdder::sum).register(registry);
+        Gauge.builder("drone.write-behind.pending", pending, Map::size).register(registry);
+    }
+
+    // the drone after this many transitions, ending in state to
+    private static Drone moved(Drone drone, State to, boolean unload, int changes) {
+        Drone.DroneBuilder builder = drone.toBuilder()
+                .state(to)
+                .version(drone.getVersion() == null ? null : drone.getVersion() + changes);
+        if (unload) {
+            builder.loadedMeds(new ArrayList<>()).loadedWeight(0f).medCount(0);
+        }
+        return builder.build();
+    }
+
+    private void write(Map<String, StateChange> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<Drone> refused = droneRepository.bulkTransition(batch.values());
+        written.add(batch.size() - refused.size());
+        for (Drone stored : refused) {
+            // only a write that bypassed this node gets here; its version of the drone wins
+            conflicts.increment();
+            log.warn("Drone {} was {} in the database, dropped write-behind transition to {}",
+                    stored.getSerialNumber(), stored.getState(), batch.get(stored.getSerialNumber()).to());
+            fleetCache.replace(stored);
+        }
+    }
+}
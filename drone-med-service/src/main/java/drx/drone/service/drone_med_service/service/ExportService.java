@@ -0,0 +1,73 @@
+package drx.drone.service.drone_med_service.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import drx.drone.service.drone_med_service.model.Drone;
+import drx.drone.service.drone_med_service.model.Medication;
+import drx.drone.service.drone_med_service.model.State;
+import drx.drone.service.drone_med_service.model.WeightModel;
+import drx.drone.service.drone_med_service.repository.DroneStore;
+import drx.drone.service.drone_med_service.repository.MedicationStore;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Newline-delimited JSON exports of whole collections. Documents go from the Mongo cursor straight to
+ * the output stream one at a time, so heap use doesn't grow with the collection. A client that reads
+ * slowly blocks the write, which in turn holds back the next cursor batch.
+ */
+@Service
+@RequiredArgsConstructor
+public class ExportService {
+
+    private final DroneStore droneRepository;
+    private final MedicationStore medicationRepository;
+    private final DroneWriteBehind writeBehind;
+    private final ObjectMapper objectMapper;
+
+    /**
+     *
+     * @param state       - only drones in this state, all if null
+     * @param weightClass - only drones of this weight class, all if null
+     * @param out         - receives one drone JSON object per line
+     * @return - number of drones written
+     */
+    public long exportDrones(State state, WeightModel weightClass, OutputStream out) throws IOException {
+        writeBehind.flushAll();
+        try (Stream<Drone> drones = droneRepository.streamAll(state, weightClass)) {
+            return writeLines(drones.iterator(), Drone.class, out);
+        }
+    }
+
+    /**
+     *
+     * @param out - receives one medication JSON object per line
+     * @return - number of medications written
+     */
+    public long exportMedications(OutputStream out) throws IOException {
+        try (Stream<Medication> medications = medicationRepository.streamAll()) {
+            return writeLines(medications.iterator(), Medication.class, out);
+        }
+    }
+
+    private long writeLines(Iterator<?> documents, Class<?> type, OutputStream out) throws IOException {
+        // the generator buffers, so flushing after every document would only mean more, smaller writes
+        ObjectWriter writer = objectMapper.writerFor(type).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        long count = 0;
+        try (JsonGenerator generator = writer.createGenerator(out).setRootValueSeparator(null)) {
+            while (documents.hasNext()) {
+                writer.writeValue(generator, documents.next());
+                generator.writeRaw('\n');
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,263 @@
+package drx.drone.service.drone_med_service.service;
+
+import drx.drone.service.drone_med_service.model.Drone;
+import drx.drone.service.drone_med_service.model.State;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+/**
+ * Optional in-process copy of the fleet: serialNumber -> Drone plus a set of serial numbers per
+ * {@link State}. {@link DroneService} writes every drone it gets back from Mongo through to it.
+ * <p>
+ * Point reads are served from the cache and fall back to Mongo on a miss. The state listings and
+ * the full list are only served from memory while the cache holds the whole fleet: once it has
+ * evicted anything they go back to Mongo. Entries are evicted oldest-inserted first when the cache
+ * grows past {@code drone.cache.max-size}.
+ */
+@Component
+public class FleetCache implements MeterBinder {
+
+    private final boolean enabled;
+    private final int maxSize;
+
+    private final Map<String, Drone> drones = new ConcurrentHashMap<>();
+    private final Map<State, Set<String>> byState = new EnumMap<>(State.class);
+    private final Queue<String> insertionOrder = new ConcurrentLinkedQueue<>();
+    private volatile boolean complete;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public FleetCache(@Value("${drone.cache.enabled:false}") boolean enabled,
+                      @Value("${drone.cache.max-size:100000}") int maxSize) {
+        this.enabled = enabled;
+        this.maxSize = maxSize;
+        for (State state : State.values()) {
+            byState.put(state, ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Loads the given fleet (newer cached versions win). Marks the cache complete if all of it fit.
+     */
+    public void warm(Collection<Drone> fleet) {
+        if (!enabled) {
+            return;
+        }
+        long evictedBefore = evictions.sum();
+        for (Drone drone : fleet) {
+            put(drone);
+        }
+        complete = fleet.size() <= maxSize && evictions.sum() == evictedBefore;
+    }
+
+    public Optional<Drone> get(String serialNumber) {
+        Drone drone = enabled ? drones.get(serialNumber) : null;
+        if (drone == null) {
+            if (enabled) {
+                misses.increment();
+            }
+            return Optional.empty();
+        }
+        hits.increment();
+        return Optional.of(drone);
+    }
+
+    /**
+     * Like {@link #get} but not counted as a hit or miss, for housekeeping rather than serving reads.
+     */
+    public Optional<Drone> peek(String serialNumber) {
+        return enabled ? Optional.ofNullable(drones.get(serialNumber)) : Optional.empty();
+    }
+
+    /**
+     * @return - drones in the given state, or empty if the cache can't answer for the whole fleet
+     */
+    public Optional<List<Drone>> findByState(State state) {
+        if (!complete) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        return Optional.of(collect(state));
+    }
+
+    /**
+     * @return - every drone, or empty if the cache can't answer for the whole fleet
+     */
+    public Optional<List<Drone>> findAll() {
+        if (!complete) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        return Optional.of(new ArrayList<>(drones.values()));
+    }
+
+    /**
+     * @return - drones per state, or empty if the cache can't answer for the whole fleet
+     */
+    public Optional<Map<State, Long>> countByState() {
+        if (!complete) {
+            return Optional.empty();
+        }
+        Map<State, Long> counts = new EnumMap<>(State.class);
+        byState.forEach((state, serialNumbers) -> counts.put(state, (long) serialNumbers.size()));
+        return Optional.of(counts);
+    }
+
+    /**
+     * Stores the drone unless the cache already holds a newer version of it.
+     */
+    public void put(Drone drone) {
+        if (!enabled || drone == null || drone.getSerialNumber() == null) {
+            return;
+        }
+        boolean[] inserted = new boolean[1];
+        drones.compute(drone.getSerialNumber(), (serialNumber, cached) -> {
+            if (cached != null && version(cached) > version(drone)) {
+                return cached;
+            }
+            inserted[0] = cached == null;
+            reindex(serialNumber, cached, drone);
+            return drone;
+        });
+        if (inserted[0]) {
+            insertionOrder.add(drone.getSerialNumber());
+            evictOverflow();
+        }
+    }
+
+    /**
+     * Stores the drone over whatever is cached, newer or not: for when the cache turned out to be ahead
+     * of the database (see {@link DroneWriteBehind}).
+     */
+    public void replace(Drone drone) {
+        if (!enabled || drone == null || drone.getSerialNumber() == null) {
+            return;
+        }
+        Drone replaced = drones.computeIfPresent(drone.getSerialNumber(), (serialNumber, cached) -> {
+            reindex(serialNumber, cached, drone);
+            return drone;
+        });
+        if (replaced == null) {
+            put(drone);
+        }
+    }
+
+    /**
+     * Changes the cached drone in place: the change gets the drone as cached right now and nothing else
+     * touches it until the change returns, so a patch of some fields can't undo another writer's change
+     * to the rest. An exception from the change leaves the drone as it was.
+     *
+     * @return - the drone after the change, or null if it isn't cached
+     */
+    public Drone update(String serialNumber, UnaryOperator<Drone> change) {
+        if (!enabled || serialNumber == null) {
+            return null;
+        }
+        return drones.computeIfPresent(serialNumber, (key, cached) -> {
+            Drone next = change.apply(cached);
+            if (next != cached) {
+                reindex(key, cached, next);
+            }
+            return next;
+        });
+    }
+
+    /**
+     * Drops the drone, to be called when it was deleted. The cache stays complete.
+     */
+    public void evict(String serialNumber) {
+        if (enabled && serialNumber != null) {
+            remove(serialNumber);
+        }
+    }
+
+    public long size() {
+        return drones.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (!enabled) {
+            return;
+        }
+        FunctionCounter.builder("drone.fleet.cache.hits", hits, LongAdder::sum).register(registry);
+        FunctionCounter.builder("drone.fleet.cache.misses", misses, LongAdder::sum).register(registry);
+        FunctionCounter.builder("drone.fleet.cache.evictions", evictions, LongAdder::sum).register(registry);
+        Gauge.builder("drone.fleet.cache.size", drones, Map::size).register(registry);
+    }
+
+    private void evictOverflow() {
+        while (drones.size() > maxSize) {
+            String oldest = insertionOrder.poll();
+            if (oldest == null) {
+                return;
+            }
+            if (remove(oldest)) {
+                evictions.increment();
+                complete = false;
+            }
+        }
+    }
+
+    private boolean remove(String serialNumber) {
+        boolean[] removed = new boolean[1];
+        drones.computeIfPresent(serialNumber, (key, cached) -> {
+            if (cached.getState() != null) {
+                byState.get(cached.getState()).remove(key);
+            }
+            removed[0] = true;
+            return null;
+        });
+        return removed[0];
+    }
+
+    private void reindex(String serialNumber, Drone before, Drone after) {
+        if (before != null && before.getState() != null) {
+            byState.get(before.getState()).remove(serialNumber);
+        }
+        if (after.getState() != null) {
+            byState.get(after.getState()).add(serialNumber);
+        }
+    }
+
+    private List<Drone> collect(State state) {
+        Set<String> serialNumbers = byState.get(state);
+        List<Drone> result = new ArrayList<>(serialNumbers.size());
+        for (String serialNumber : serialNumbers) {
+            Drone drone = drones.get(serialNumber);
+            if (drone != null && drone.getState() == state) {
+                result.add(drone);
+            }
+        }
+        return result;
+    }
+
+    private static long version(Drone drone) {
+        return drone.getVersion() == null ? -1 : drone.getVersion();
+    }
+}
@@ -0,0 +1,72 @@
+package drx.drone.service.drone_med_service.service;
+
+import drx.drone.service.drone_med_service.model.State;
+import drx.drone.service.drone_med_service.repository.DroneStore;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@code drone.fleet.size} gauge per {@link State}. Scrapes only read the last counts; they are
+ * refreshed every {@code drone.metrics.fleet-refresh} ms from the {@link FleetCache} when it holds
+ * the whole fleet, otherwise with one $group query, skipped while the store isn't available.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FleetSizeGauges implements MeterBinder {
+
+    private final DroneStore droneRepository;
+    private final FleetCache fleetCache;
+    private final DroneWriteBehind writeBehind;
+
+    private final Map<State, AtomicLong> counts = newCounts();
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        counts.forEach((state, count) -> Gauge.builder("drone.fleet.size", count, AtomicLong::get)
+                .description("Drones per state")
+                .tag("state", state.name())
+                .register(registry));
+    }
+
+    @Scheduled(fixedDelayString = "${drone.metrics.fleet-refresh:30000}")
+    public void refresh() {
+        Map<State, Long> latest = fleetCache.countByState().orElse(null);
+        if (latest == null) {
+            if (!droneRepository.isAvailable()) {
+                return;
+            }
+            try {
+                writeBehind.flushAll();
+                latest = droneRepository.countByState();
+            } catch (RuntimeException e) {
+                log.warn("Could not count drones by state", e);
+                return;
+            }
+        }
+        for (Map.Entry<State, AtomicLong> count : counts.entrySet()) {
+            count.getValue().set(latest.getOrDefault(count.getKey(), 0L));
+        }
+    }
+
+    long count(State state) {
+        return counts.get(state).get();
+    }
+
+    private static Map<State, AtomicLong> newCounts() {
+        Map<State, AtomicLong> counts = new EnumMap<>(State.class);
+        for (State state : State.values()) {
+            counts.put(state, new AtomicLong());
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,122 @@
+package drx.drone.service.drone_med_service.service;
+
+import drx.drone.service.drone_med_service.model.Drone;
+import drx.drone.service.drone_med_service.repository.DroneSnapshot;
+import drx.drone.service.drone_med_service.repository.DroneStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Warm start for the fleet. With {@code drone.snapshot.enabled=true} the whole fleet is written to
+ * {@code drone.snapshot.path} (a {@link DroneSnapshot}) every {@code drone.snapshot.interval} ms, and
+ * {@link #loadFleet()} reads it back instead of scanning the collection: the file is memory-mapped, then
+ * only drones written since it was taken are fetched from the database and laid over it.
+ * <p>
+ * Drones are stamped with {@code Drone.updatedAt} by the app on every write, so the catch-up query
+ * reaches {@link #RECONCILE_MARGIN_MILLIS} further back to cover clock skew between nodes. Drones
+ * deleted after the snapshot are not noticed; the fleet has no delete endpoint.
+ */
+@Slf4j
+@Service
+public class FleetSnapshots {
+
+    static final long RECONCILE_MARGIN_MILLIS = 60_000;
+
+    private final DroneStore droneRepository;
+    private final boolean enabled;
+    private final Path path;
+
+    public FleetSnapshots(DroneStore droneRepository,
+                          @Value("${drone.snapshot.enabled:false}") boolean enabled,
+                          @Value("${drone.snapshot.path:data/fleet.snapshot}") String path) {
+        this.droneRepository = droneRepository;
+        this.enabled = enabled;
+        this.path = Path.of(path);
+    }
+
+    /**
+     * The whole fleet: from the snapshot plus what changed since, or with one full scan when snapshots
+     * are off or none could be read.
+     */
+    public List<Drone> loadFleet() {
+        long start = System.nanoTime();
+        DroneSnapshot snapshot = enabled ? read() : null;
+        if (snapshot == null) {
+            return droneRepository.findAll();
+        }
+        DroneSnapshot.Columns columns = snapshot.getColumns();
+        long mapped = System.nanoTime();
+        List<Drone> changed = droneRepository.findChangedSince(snapshot.getWrittenAt() - RECONCILE_MARGIN_MILLIS);
+        Map<String, Drone> newer = new ConcurrentHashMap<>();
+        for (Drone drone : changed) {
+            newer.put(drone.getSerialNumber(), drone);
+        }
+        // rows become drones in parallel, each taken from the changed ones instead if it is among them;
+        // the changed drones left over were registered after the snapshot
+        List<Drone> fleet = new ArrayList<>(columns.size() + changed.size());
+        fleet.addAll(IntStream.range(0, columns.size()).parallel()
+                .mapToObj(row -> {
+                    Drone drone = newer.isEmpty() ? null : newer.remove(columns.serialNumbers()[row]);
+                    return drone != null ? drone : columns.drone(row);
+                })
+                .toList());
+        fleet.addAll(newer.values());
+        log.info("Fleet of {} drones loaded in {} ms: {} read from {} in {} ms, {} changed since", fleet.size(),
+                (System.nanoTime() - start) / 1_000_000, columns.size(), path, (mapped - start) / 1_000_000,
+                changed.size());
+        return fleet;
+    }
+
+    @Scheduled(initialDelayString = "${drone.snapshot.interval:600000}",
+            fixedDelayString = "${drone.snapshot.interval:600000}")
+    public void tick() {
+        if (!enabled || !droneRepository.isAvailable()) {
+            return;
+        }
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not write fleet snapshot {}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the fleet as stored in the database (not the {@link FleetCache}, which write-behind may
+     * keep ahead of it). The snapshot is dated from before the scan, so whatever the scan missed is
+     * picked up by the catch-up query.
+     */
+    public synchronized void snapshot() throws IOException {
+        long startedAt = System.currentTimeMillis();
+        List<Drone> fleet;
+        try (Stream<Drone> drones = droneRepository.streamAll(null, null)) {
+            fleet = drones.toList();
+        }
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        DroneSnapshot.write(path, startedAt, DroneSnapshot.Columns.of(fleet), List.of());
+        log.info("Fleet snapshot of {} drones written to {} in {} ms", fleet.size(), path,
+                System.currentTimeMillis() - startedAt);
+    }
+
+    private DroneSnapshot read() {
+        try {
+            return DroneSnapshot.read(path);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not read fleet snapshot {}, scanning the fleet instead: {}", path, e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package drx.drone.service.drone_med_service.service;
+
+import drx.drone.service.drone_med_service.dto.FleetSummary;
+import drx.drone.service.drone_med_service.repository.DroneStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Serves {@link FleetSummary} for dashboards. The figures come from one aggregation
+ * ({@link DroneStore#summarize}) and are reused for {@code drone.summary.max-age} ms, so however
+ * many dashboards poll, the collection is scanned at most once per interval.
+ */
+@Service
+public class FleetSummaryService {
+
+    private final DroneStore droneRepository;
+    private final DroneWriteBehind writeBehind;
+    private final long maxAgeMillis;
+
+    private volatile FleetSummary last;
+
+    public FleetSummaryService(DroneStore droneRepository,
+                               DroneWriteBehind writeBehind,
+                               @Value("${drone.summary.max-age:5000}") long maxAgeMillis) {
+        this.droneRepository = droneRepository;
+        this.writeBehind = writeBehind;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    public FleetSummary getSummary() {
+        FleetSummary summary = last;
+        if (fresh(summary)) {
+            return summary;
+        }
+        synchronized (this) {
+            // another request may have refreshed it while this one waited
+            summary = last;
+            if (!fresh(summary)) {
+                writeBehind.flushAll();
+                summary = droneRepository.summarize();
+                last = summary;
+            }
+            return summary;
+        }
+    }
+
+    private boolean fresh(FleetSummary summary) {
+        return summary != null && System.currentTimeMillis() - summary.getComputedAt() < maxAgeMillis;
+    }
+}
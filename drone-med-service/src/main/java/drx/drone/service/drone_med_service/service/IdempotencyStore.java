@@ -0,0 +1,229 @@
+package drx.drone.service.drone_med_service.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import drx.drone.service.drone_med_service.dto.MedRequest;
+import drx.drone.service.drone_med_service.exception.ErrorResponse;
+import drx.drone.service.drone_med_service.model.IdempotencyRecord;
+import drx.drone.service.drone_med_service.repository.IdempotencyRecordRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Makes loadMeds retry-safe. A load sent with an Idempotency-Key runs once per (drone, key); a retry
+ * with the same key and body gets the first response back without touching the database, one that
+ * arrives while the first is still running waits for it. The same key with a different body is
+ * refused with 609.
+ * <p>
+ * Responses are kept in memory for {@code drone.idempotency.ttl} ms, at most
+ * {@code drone.idempotency.max-size} of them, and with {@code drone.idempotency.persist=true} also in
+ * the idempotencyKeys collection so retries landing on another node or after a restart are caught.
+ * 604 and errors are not kept: nothing was written, so a retry should run again.
+ */
+@Slf4j
+@Service
+public class IdempotencyStore implements MeterBinder {
+
+    private final IdempotencyRecordRepository repository;
+    private final boolean persist;
+    private final Duration ttl;
+    private final long replayWaitMillis;
+    private final Cache<String, Entry> entries;
+
+    private volatile boolean prepared;
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder refused = new LongAdder();
+
+    private record Entry(MedRequest request, CompletableFuture<ErrorResponse> response) {
+    }
+
+    public IdempotencyStore(IdempotencyRecordRepository repository,
+                            @Value("${drone.idempotency.max-size:100000}") long maxSize,
+                            @Value("${drone.idempotency.ttl:86400000}") long ttlMillis,
+                            @Value("${drone.idempotency.persist:false}") boolean persist,
+                            @Value("${drone.idempotency.replay-wait:10000}") long replayWaitMillis) {
+        this.repository = repository;
+        this.persist = persist;
+        this.ttl = Duration.ofMillis(ttlMillis);
+        this.replayWaitMillis = replayWaitMillis;
+        this.entries = Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(ttl).build();
+    }
+
+    /**
+     * Runs the load unless this key was seen for this drone, in which case its response is returned.
+     *
+     * @return - the load's response, a replay of it, 609 IDEMPOTENCY KEY REUSED or 610 REQUEST IN PROGRESS
+     *           if the first request is still running after drone.idempotency.replay-wait ms
+     */
+    public ErrorResponse execute(String serialNumber, String key, MedRequest request,
+                                 Callable<ErrorResponse> load) throws Exception {
+        String id = id(serialNumber, key);
+        CompletableFuture<ErrorResponse> claimed = new CompletableFuture<>();
+        Entry existing = entries.asMap().putIfAbsent(id, new Entry(request, claimed));
+        if (existing != null) {
+            ErrorResponse replay = replay(existing, request);
+            // null when the first attempt failed and gave the key up: run it as this request
+            return replay != null ? replay : execute(serialNumber, key, request, load);
+        }
+
+        ErrorResponse response;
+        try {
+            response = persist ? stored(id, request) : null;
+            if (response != null) {
+                replayed.increment();
+            } else {
+                response = load.call();
+                executed.increment();
+                save(id, request, response);
+            }
+        } catch (Exception e) {
+            release(id, claimed, e);
+            throw e;
+        }
+        complete(id, claimed, response);
+        return response;
+    }
+
+    /**
+     * {@link #execute} for the reactive stack; the idempotencyKeys collection is read and written on
+     * the bounded elastic pool.
+     */
+    public Mono<ErrorResponse> executeReactive(String serialNumber, String key, MedRequest request,
+                                               Supplier<Mono<ErrorResponse>> load) {
+        return Mono.defer(() -> {
+            String id = id(serialNumber, key);
+            CompletableFuture<ErrorResponse> claimed = new CompletableFuture<>();
+            Entry existing = entries.asMap().putIfAbsent(id, new Entry(request, claimed));
+            if (existing != null) {
+                if (!existing.request().equals(request)) {
+                    refused.increment();
+                    return Mono.just(keyReused());
+                }
+                return Mono.fromFuture(existing.response(), true)
+                        .timeout(Duration.ofMillis(replayWaitMillis), Mono.just(inProgress()))
+                        .doOnNext(response -> replayed.increment())
+                        .onErrorResume(e -> executeReactive(serialNumber, key, request, load));
+            }
+
+            Mono<ErrorResponse> stored = persist
+                    ? Mono.fromCallable(() -> stored(id, request)).subscribeOn(Schedulers.boundedElastic())
+                            .doOnNext(response -> replayed.increment())
+                    : Mono.empty();
+            return stored
+                    .switchIfEmpty(Mono.defer(load).flatMap(response -> {
+                        executed.increment();
+                        return persist
+                                ? Mono.fromRunnable(() -> save(id, request, response))
+                                        .subscribeOn(Schedulers.boundedElastic()).thenReturn(response)
+                                : Mono.just(response);
+                    }))
+                    .doOnNext(response -> complete(id, claimed, response))
+                    .doOnError(e -> release(id, claimed, e))
+                    // a client that went away or a load without a response gives the key up too,
+                    // otherwise retries would wait on it and get 610 until it expires
+                    .doOnCancel(() -> release(id, claimed, new CancellationException("request cancelled")))
+                    .switchIfEmpty(Mono.fromRunnable(() -> release(id, claimed, new IllegalStateException("no response"))));
+        });
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("drone.idempotency.requests", executed, LongAdder::sum).tag("outcome", "executed").register(registry);
+        FunctionCounter.builder("drone.idempotency.requests", replayed, LongAdder::sum).tag("outcome", "replayed").register(registry);
+        FunctionCounter.builder("drone.idempotency.requests", refused, LongAdder::sum).tag("outcome", "refused").register(registry);
+    }
+
+    private ErrorResponse replay(Entry existing, MedRequest request) throws InterruptedException {
+        if (!existing.request().equals(request)) {
+            refused.increment();
+            return keyReused();
+        }
+        try {
+            ErrorResponse response = existing.response().get(replayWaitMillis, TimeUnit.MILLISECONDS);
+            replayed.increment();
+            return response;
+        } catch (TimeoutException e) {
+            return inProgress();
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    private void complete(String id, CompletableFuture<ErrorResponse> claimed, ErrorResponse response) {
+        claimed.complete(response);
+        if ("604".equals(response.getCode())) {
+            entries.asMap().remove(id);
+        }
+    }
+
+    private void release(String id, CompletableFuture<ErrorResponse> claimed, Throwable error) {
+        if (claimed.isDone()) {
+            // answered already, e.g. cancelled after the response was out
+            return;
+        }
+        entries.asMap().remove(id);
+        claimed.completeExceptionally(error);
+    }
+
+    private ErrorResponse stored(String id, MedRequest request) {
+        IdempotencyRecord record = repository.findById(id).orElse(null);
+        if (record == null) {
+            return null;
+        }
+        return record.getRequest() != null && record.getRequest().equals(request)
+                ? new ErrorResponse(record.getCode(), record.getMessage())
+                : keyReused();
+    }
+
+    private void save(String id, MedRequest request, ErrorResponse response) {
+        if (!persist || "604".equals(response.getCode())) {
+            return;
+        }
+        try {
+            if (!prepared) {
+                repository.prepare(ttl);
+                prepared = true;
+            }
+            repository.save(IdempotencyRecord.builder()
+                    .id(id)
+                    .request(request)
+                    .code(response.getCode())
+                    .message(response.getMessage())
+                    .createdAt(Instant.now())
+                    .build());
+        } catch (RuntimeException e) {
+            // the load went through; only a retry on another node would run it again
+            log.warn("Could not persist idempotency key {}: {}", id, e.getMessage());
+        }
+    }
+
+    private static String id(String serialNumber, String key) {
+        return serialNumber + ":" + key;
+    }
+
+    private static ErrorResponse keyReused() {
+        return new ErrorResponse("609", "IDEMPOTENCY KEY REUSED");
+    }
+
+    private static ErrorResponse inProgress() {
+        return new ErrorResponse("610", "REQUEST IN PROGRESS");
+    }
+}
@@ -0,0 +1,111 @@
+package drx.drone.service.drone_med_service.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import drx.drone.service.drone_med_service.model.Medication;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * In-process copy of the medication catalog: id -> Medication, read through by {@link MedicationService}
+ * and {@link DroneService} so repeated lookups of the same meds (a drone card asks for each of its
+ * meds) don't go to Mongo.
+ * <p>
+ * Holds at most {@code drone.medication-cache.max-size} entries, least recently used evicted first,
+ * each for {@code drone.medication-cache.ttl} ms after it was read from Mongo. Writes through the
+ * services evict the ids they saved, the TTL bounds how long a write from anywhere else goes unseen
+ * (unless the {@link ChangeFeed} applies it first).
+ * Hit/miss/eviction counts are published as {@code cache.*{cache=medications}}.
+ */
+@Component
+public class MedicationCache implements MeterBinder {
+
+    private final Cache<String, Medication> medications;
+
+    public MedicationCache(@Value("${drone.medication-cache.enabled:true}") boolean enabled,
+                           @Value("${drone.medication-cache.max-size:10000}") long maxSize,
+                           @Value("${drone.medication-cache.ttl:600000}") long ttlMillis) {
+        this.medications = enabled
+                ? Caffeine.newBuilder()
+                        .maximumSize(maxSize)
+                        .expireAfterWrite(Duration.ofMillis(ttlMillis))
+                        .recordStats()
+                        .build()
+                : null;
+    }
+
+    public boolean isEnabled() {
+        return medications != null;
+    }
+
+    public Optional<Medication> get(String id) {
+        return medications == null ? Optional.empty() : Optional.ofNullable(medications.getIfPresent(id));
+    }
+
+    /**
+     * @return - the cached meds among the given ids, keyed by id
+     */
+    public Map<String, Medication> getAll(Collection<String> ids) {
+        return medications == null ? Map.of() : medications.getAllPresent(ids);
+    }
+
+    /**
+     * Stores a medication as just read from Mongo.
+     */
+    public void put(Medication medication) {
+        if (medications != null && medication != null && medication.getId() != null) {
+            medications.put(medication.getId(), medication);
+        }
+    }
+
+    public void putAll(Iterable<Medication> read) {
+        for (Medication medication : read) {
+            put(medication);
+        }
+    }
+
+    /**
+     * Drops the given meds, to be called when they were (re)written.
+     */
+    public void evictAll(Collection<Medication> written) {
+        if (medications == null) {
+            return;
+        }
+        for (Medication medication : written) {
+            if (medication.getId() != null) {
+                medications.invalidate(medication.getId());
+            }
+        }
+    }
+
+    public void evict(String id) {
+        if (medications != null && id != null) {
+            medications.invalidate(id);
+        }
+    }
+
+    public void clear() {
+        if (medications != null) {
+            medications.invalidateAll();
+        }
+    }
+
+    public long size() {
+        return medications == null ? 0 : medications.estimatedSize();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (medications != null) {
+            CaffeineCacheMetrics.monitor(registry, medications, "medications");
+        }
+    }
+}
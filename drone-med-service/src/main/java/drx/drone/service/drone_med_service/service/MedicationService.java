@@ -1,7 +1,8 @@
 package drx.drone.service.drone_med_service.service;
 
+import drx.drone.service.drone_med_service.dto.CursorPage;
 import drx.drone.service.drone_med_service.model.Medication;
-import drx.drone.service.drone_med_service.repository.MedicationRepository;
+import drx.drone.service.drone_med_service.repository.MedicationStore;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
@@ -11,13 +12,37 @@ import java.util.Optional;
 @Service
 @RequiredArgsConstructor
 public class MedicationService {
-    private final MedicationRepository repository;
+    private final MedicationStore repository;
+    private final MedicationCache cache;
 
     public Optional<List<Medication>> getAllMedications() {
         return Optional.of(repository.findAll());
     }
 
+    /**
+     *
+     * @param cursor - nextCursor of the previous page, null for the first page
+     * @param limit  - page size, at most {@link CursorPage#MAX_LIMIT}
+     * @param fields - medication properties to return (e.g. leave out img_url), all if empty
+     * @return - one page of medications in id order
+     */
+    public CursorPage<?> getMedicationPage(String cursor, int limit, List<String> fields) {
+        int pageSize = CursorPage.checkLimit(limit);
+        String after = CursorPage.decode(cursor);
+        if (fields == null || fields.isEmpty()) {
+            return CursorPage.of(repository.findPage(after, pageSize + 1), pageSize, Medication::getId);
+        }
+        return CursorPage.of(repository.findPage(after, pageSize + 1, fields), pageSize,
+                row -> String.valueOf(row.get("id")));
+    }
+
     public Optional<Medication> getMedication(String id) {
-        return repository.findById(id);
+        Optional<Medication> cached = cache.get(id);
+        if (cached.isPresent()) {
+            return cached;
+        }
+        Optional<Medication> medication = repository.findById(id);
+        medication.ifPresent(cache::put);
+        return medication;
     }
 }
@@ -0,0 +1,100 @@
+package drx.drone.service.drone_med_service.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link DroneEventStream} for the {@code reactive} profile: a {@code snapshot} event with the whole
+ * fleet, then a {@code drone} event per {@link DroneChangedEvent}, serialized once for all subscribers.
+ * Each subscriber buffers up to {@code drone.events.buffer-size} events; one that falls further behind
+ * is completed and picks up a fresh snapshot when it reconnects.
+ */
+@Slf4j
+@Component
+@Profile("reactive")
+public class ReactiveDroneEvents {
+
+    private final ReactiveDroneService droneService;
+    private final ObjectMapper objectMapper;
+    private final int bufferSize;
+
+    private final Set<Sinks.Many<String>> subscribers = ConcurrentHashMap.newKeySet();
+
+    public ReactiveDroneEvents(ReactiveDroneService droneService,
+                               ObjectMapper objectMapper,
+                               @Value("${drone.events.buffer-size:256}") int bufferSize) {
+        this.droneService = droneService;
+        this.objectMapper = objectMapper;
+        this.bufferSize = bufferSize;
+    }
+
+    public Flux<ServerSentEvent<String>> subscribe() {
+        return Flux.defer(() -> {
+            Sinks.Many<String> sink = Sinks.many().unicast().onBackpressureBuffer(Queues.<String>get(bufferSize).get());
+            // register before reading the fleet so no change falls between the snapshot and the stream
+            subscribers.add(sink);
+            Flux<ServerSentEvent<String>> snapshot = droneService.getAllDrones().collectList()
+                    .map(drones -> event("snapshot", write(drones)))
+                    .flux();
+            Flux<ServerSentEvent<String>> changes = sink.asFlux().map(data -> event("drone", data));
+            return Flux.concat(snapshot, changes).doFinally(signal -> subscribers.remove(sink));
+        });
+    }
+
+    // changes written by other nodes, see ChangeFeed
+    @EventListener
+    public void onDroneReplicated(DroneReplicatedEvent event) {
+        onDroneChanged(new DroneChangedEvent(event.drone()));
+    }
+
+    @EventListener
+    public void onDroneChanged(DroneChangedEvent event) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        String data;
+        try {
+            data = objectMapper.writeValueAsString(event.drone());
+        } catch (JsonProcessingException e) {
+            log.warn("Could not serialize drone {}: {}", event.drone().getSerialNumber(), e.getMessage());
+            return;
+        }
+        for (Sinks.Many<String> sink : subscribers) {
+            // changes are published from many request threads, a sink takes one producer at a time
+            synchronized (sink) {
+                if (sink.tryEmitNext(data) == Sinks.EmitResult.FAIL_OVERFLOW) {
+                    subscribers.remove(sink);
+                    sink.tryEmitComplete();
+                }
+            }
+        }
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    private String write(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static ServerSentEvent<String> event(String name, String data) {
+        return ServerSentEvent.builder(data).event(name).build();
+    }
+}
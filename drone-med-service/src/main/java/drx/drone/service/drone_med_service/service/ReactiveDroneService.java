@@ -0,0 +1,328 @@
+package drx.drone.service.drone_med_service.service;
+
+import drx.drone.service.drone_med_service.dto.BatchLoadRequest;
+import drx.drone.service.drone_med_service.dto.BatchLoadResult;
+import drx.drone.service.drone_med_service.dto.CursorPage;
+import drx.drone.service.drone_med_service.dto.DroneRequest;
+import drx.drone.service.drone_med_service.dto.MedRequest;
+import drx.drone.service.drone_med_service.exception.DroneNotExistException;
+import drx.drone.service.drone_med_service.exception.DroneStateConflictException;
+import drx.drone.service.drone_med_service.exception.ErrorResponse;
+import drx.drone.service.drone_med_service.exception.MedicationNotFoundException;
+import drx.drone.service.drone_med_service.model.Drone;
+import drx.drone.service.drone_med_service.model.Medication;
+import drx.drone.service.drone_med_service.model.State;
+import drx.drone.service.drone_med_service.model.WeightModel;
+import drx.drone.service.drone_med_service.repository.ReactiveDroneRepository;
+import drx.drone.service.drone_med_service.repository.ReactiveMedicationRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * {@link DroneService} on the reactive repositories, for the {@code reactive} profile. Same rules (the
+ * load checks are {@link DroneService#checkLoad}), same responses, same {@link FleetCache} and
+ * {@link DroneChangedEvent}s; nothing here blocks, so requests are served from the event loop.
+ * <p>
+ * With {@code drone.commands.enabled} or {@code drone.write-behind.enabled} on, loads, transitions and
+ * the single-drone reads go through {@link DroneService} instead, on the bounded elastic pool: the
+ * command queues and the pending writes live there, and bypassing them would race the queued commands
+ * and read drones the database hasn't caught up with.
+ */
+@Service
+@Profile("reactive")
+@RequiredArgsConstructor
+public class ReactiveDroneService {
+
+    private final ReactiveDroneRepository droneRepository;
+    private final ReactiveMedicationRepository medicationRepository;
+    private final DroneService droneService;
+    private final FleetCache fleetCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final DroneMetrics metrics;
+    private final MedicationCache medicationCache;
+
+    /**
+     * @see DroneService#registerDrone
+     */
+    public Mono<Drone> registerDrone(DroneRequest droneRequest) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return droneRepository.save(droneService.newDrone(droneRequest))
+                    .doOnNext(drone -> {
+                        changed(drone);
+                        metrics.registered(start);
+                    });
+        });
+    }
+
+    public Mono<Drone> getDroneById(String serialNumber) {
+        if (droneService.isLifecycleQueued()) {
+            return callBlocking(() -> droneService.getDroneById(serialNumber).orElse(null));
+        }
+        return Mono.defer(() -> Mono.justOrEmpty(fleetCache.get(serialNumber)))
+                .switchIfEmpty(droneRepository.findById(serialNumber).doOnNext(fleetCache::put));
+    }
+
+    /**
+     * @see DroneService#loadDrone
+     */
+    public Mono<ErrorResponse> loadDrone(String serialNumber, MedRequest medRequest) {
+        if (droneService.isLifecycleQueued()) {
+            return callBlocking(() -> droneService.loadDrone(serialNumber, medRequest));
+        }
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            Medication medication = droneService.newMedication(medRequest);
+            // saved before the drone points at it, like DroneService#loadDrone: if saving fails or the
+            // request is cancelled before the update, nothing was loaded and a retry can't load twice
+            return medicationRepository.save(medication)
+                    .doOnNext(saved -> medicationCache.evictAll(List.of(saved)))
+                    .then(Mono.defer(() -> load(serialNumber, medication, 0)))
+                    .flatMap(response -> "200".equals(response.getCode()) || medRequest.getId() != null
+                            ? Mono.just(response)
+                            // no drone holds it; a client-supplied id may be an existing medication, that one stays
+                            : medicationRepository.deleteById(medication.getId()).thenReturn(response))
+                    .doOnNext(response -> metrics.loaded(response.getCode(), start));
+        });
+    }
+
+    private Mono<ErrorResponse> load(String serialNumber, Medication medication, int attempt) {
+        if (attempt >= DroneService.MAX_LOAD_ATTEMPTS) {
+            return Mono.just(new ErrorResponse("604", "DRONE MODIFIED CONCURRENTLY"));
+        }
+        return droneRepository.loadMedication(serialNumber, medication.getId(), medication.getWeight())
+                .map(loaded -> {
+                    changed(loaded);
+                    return new ErrorResponse("200", "MEDS LOADED");
+                })
+                .switchIfEmpty(Mono.defer(() -> droneRepository.findById(serialNumber)
+                        .flatMap(drone -> refused(serialNumber, medication, drone, attempt))
+                        .defaultIfEmpty(new ErrorResponse("603", "DRONE DOES NOT EXIST"))));
+    }
+
+    // the conditional update didn't apply: tell why from the drone as it is now, or try again
+    private Mono<ErrorResponse> refused(String serialNumber, Medication medication, Drone drone, int attempt) {
+        fleetCache.put(drone);
+
+        // stored before loadedWeight/medCount existed, fill them in once and retry
+        if (drone.getLoadedWeight() == null || drone.getMedCount() == null) {
+            int medCount = drone.getLoadedMeds() == null ? 0 : drone.getLoadedMeds().size();
+            return getTotalLoadedWeight(drone)
+                    .flatMap(weight -> droneRepository.backfillPayload(serialNumber, weight, medCount))
+                    .then(Mono.defer(() -> load(serialNumber, medication, attempt + 1)));
+        }
+
+        ErrorResponse rejection = droneService.checkLoad(drone, medication.getWeight());
+        if (rejection == null) {
+            // drone changed between the update and the read, try again
+            return load(serialNumber, medication, attempt + 1);
+        }
+        if (drone.getState() == State.IDLE || drone.getState() == State.LOADING) {
+            return droneRepository.transitionState(serialNumber, List.of(State.IDLE, State.LOADING), State.LOADED)
+                    .doOnNext(this::changed)
+                    .thenReturn(rejection);
+        }
+        return Mono.just(rejection);
+    }
+
+    /**
+     * Runs {@link DroneService#loadDrones} on the bounded elastic pool: a batch is two bulk writes
+     * whichever stack serves it, so it isn't worth a second implementation.
+     */
+    public Mono<List<BatchLoadResult>> loadDrones(List<BatchLoadRequest> requests) {
+        return Mono.fromCallable(() -> droneService.loadDrones(requests)).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * @see DroneService#getTotalLoadedWeight
+     */
+    public Mono<Float> getTotalLoadedWeight(Drone drone) {
+        if (drone.getLoadedMeds() == null || drone.getLoadedMeds().isEmpty()) {
+            return Mono.just(0f);
+        }
+        return findMedsById(drone.getLoadedMeds()).map(meds -> {
+            float totalLoadedWeight = 0;
+            for (String medId : drone.getLoadedMeds()) {
+                Medication med = meds.get(medId);
+                if (med == null) {
+                    throw new MedicationNotFoundException(medId);
+                }
+                totalLoadedWeight += med.getWeight();
+            }
+            return totalLoadedWeight;
+        });
+    }
+
+    /**
+     * @return - the drone's meds in loading order, unknown ids skipped
+     */
+    public Flux<Medication> getLoadedMeds(String serialNumber) {
+        if (droneService.isLifecycleQueued()) {
+            return callBlocking(() -> droneService.getLoadedMeds(serialNumber).orElse(List.of())).flatMapIterable(meds -> meds);
+        }
+        return droneRepository.findById(serialNumber)
+                .filter(drone -> drone.getLoadedMeds() != null && !drone.getLoadedMeds().isEmpty())
+                .flatMapMany(drone -> findMedsById(drone.getLoadedMeds())
+                        .flatMapIterable(meds -> drone.getLoadedMeds().stream().map(meds::get).filter(Objects::nonNull).toList()));
+    }
+
+    // cached meds first, one $in query for the rest, like DroneService
+    private Mono<Map<String, Medication>> findMedsById(List<String> medIds) {
+        return Mono.defer(() -> {
+            Map<String, Medication> cached = medicationCache.getAll(medIds);
+            Set<String> missing = new HashSet<>(medIds);
+            missing.removeAll(cached.keySet());
+            if (missing.isEmpty()) {
+                return Mono.just(cached);
+            }
+            return medicationRepository.findAllById(missing)
+                    .doOnNext(medicationCache::put)
+                    .collectMap(Medication::getId, med -> med, () -> new HashMap<>(cached));
+        });
+    }
+
+    public Flux<Drone> getAllDrones() {
+        return Flux.defer(() -> fleetCache.findAll().map(Flux::fromIterable).orElseGet(droneRepository::findAll));
+    }
+
+    /**
+     * @see DroneService#getDronePage
+     */
+    public Mono<CursorPage<?>> getDronePage(String cursor, int limit, List<String> fields) {
+        return Mono.defer(() -> {
+            int pageSize = CursorPage.checkLimit(limit);
+            String after = CursorPage.decode(cursor);
+            if (fields == null || fields.isEmpty()) {
+                return droneRepository.findPage(after, pageSize + 1).collectList()
+                        .map(rows -> CursorPage.of(rows, pageSize, Drone::getSerialNumber));
+            }
+            return droneRepository.findPage(after, pageSize + 1, fields).collectList()
+                    .map(rows -> CursorPage.of(rows, pageSize, row -> String.valueOf(row.get("serialNumber"))));
+        });
+    }
+
+    /**
+     * @param state       - only drones in this state, all if null
+     * @param weightClass - only drones of this weight class, all if null
+     */
+    public Flux<Drone> exportDrones(State state, WeightModel weightClass) {
+        return droneRepository.findAll(state, weightClass);
+    }
+
+    public Mono<Integer> getBatteryLevel(String serialNumber) {
+        return getDroneById(serialNumber).map(Drone::getBatteryCapacity).defaultIfEmpty(0);
+    }
+
+    public Flux<Drone> getIdleDrones() {
+        return findByState(State.IDLE);
+    }
+
+    public Flux<Drone> getLoadedDrones() {
+        return findByState(State.LOADED);
+    }
+
+    public Flux<Drone> getDronesMarkedForDelivery() {
+        return findByState(State.DELIVERING);
+    }
+
+    public Flux<Drone> getDronesMarkedAsDelivered() {
+        return findByState(State.DELIVERED);
+    }
+
+    public Flux<Drone> getReturningDrones() {
+        return findByState(State.RETURNING);
+    }
+
+    public Mono<Void> sendDroneForDelivery(String serialNumber) {
+        if (droneService.isLifecycleQueued()) {
+            return runBlocking(() -> droneService.sendDroneForDelivery(serialNumber));
+        }
+        return transition(serialNumber, State.LOADED, State.DELIVERING);
+    }
+
+    public Mono<Void> deliverDrone(String serialNumber) {
+        if (droneService.isLifecycleQueued()) {
+            return runBlocking(() -> droneService.deliverDrone(serialNumber));
+        }
+        return transition(serialNumber, State.DELIVERING, State.DELIVERED);
+    }
+
+    public Mono<Void> returnDrone(String serialNumber) {
+        if (droneService.isLifecycleQueued()) {
+            return runBlocking(() -> droneService.returnDrone(serialNumber));
+        }
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            // empty meds
+            return droneRepository.unload(serialNumber, State.DELIVERED, State.RETURNING)
+                    .switchIfEmpty(transitionRefused(serialNumber, State.DELIVERED))
+                    .doOnNext(drone -> {
+                        changed(drone);
+                        metrics.transitioned(start);
+                    })
+                    .then();
+        });
+    }
+
+    public Mono<Void> markIdle(String serialNumber) {
+        if (droneService.isLifecycleQueued()) {
+            return runBlocking(() -> droneService.markIdle(serialNumber));
+        }
+        return transition(serialNumber, State.RETURNING, State.IDLE);
+    }
+
+    /**
+     * Compare-and-set on the state like {@link DroneService}: the loser of a race gets a
+     * {@link DroneStateConflictException}.
+     */
+    private Mono<Void> transition(String serialNumber, State from, State to) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return droneRepository.transitionState(serialNumber, List.of(from), to)
+                    .switchIfEmpty(transitionRefused(serialNumber, from))
+                    .doOnNext(drone -> {
+                        changed(drone);
+                        metrics.transitioned(start);
+                    })
+                    .then();
+        });
+    }
+
+    // DroneService calls block, on a command queue or a write-behind flush
+    private static <T> Mono<T> callBlocking(Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private static Mono<Void> runBlocking(Runnable run) {
+        return Mono.fromRunnable(run).subscribeOn(Schedulers.boundedElastic()).then();
+    }
+
+    private void changed(Drone drone) {
+        fleetCache.put(drone);
+        eventPublisher.publishEvent(new DroneChangedEvent(drone));
+    }
+
+    private Flux<Drone> findByState(State state) {
+        return Flux.defer(() -> fleetCache.findByState(state).map(Flux::fromIterable)
+                .orElseGet(() -> droneRepository.findByState(state)));
+    }
+
+    private Mono<Drone> transitionRefused(String serialNumber, State expected) {
+        return droneRepository.findById(serialNumber)
+                .<Drone>flatMap(drone -> Mono.error(new DroneStateConflictException(serialNumber, expected, drone.getState())))
+                .switchIfEmpty(Mono.error(() -> new DroneNotExistException(serialNumber)));
+    }
+}
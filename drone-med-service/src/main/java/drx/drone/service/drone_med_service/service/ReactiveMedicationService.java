@@ -0,0 +1,49 @@
+package drx.drone.service.drone_med_service.service;
+
+import drx.drone.service.drone_med_service.dto.CursorPage;
+import drx.drone.service.drone_med_service.model.Medication;
+import drx.drone.service.drone_med_service.repository.ReactiveMedicationRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * {@link MedicationService} on the reactive repository, for the {@code reactive} profile.
+ */
+@Service
+@Profile("reactive")
+@RequiredArgsConstructor
+public class ReactiveMedicationService {
+
+    private final ReactiveMedicationRepository repository;
+    private final MedicationCache cache;
+
+    public Flux<Medication> getAllMedications() {
+        return repository.findAll();
+    }
+
+    /**
+     * @see MedicationService#getMedicationPage
+     */
+    public Mono<CursorPage<?>> getMedicationPage(String cursor, int limit, List<String> fields) {
+        return Mono.defer(() -> {
+            int pageSize = CursorPage.checkLimit(limit);
+            String after = CursorPage.decode(cursor);
+            if (fields == null || fields.isEmpty()) {
+                return repository.findPage(after, pageSize + 1).collectList()
+                        .map(rows -> CursorPage.of(rows, pageSize, Medication::getId));
+            }
+            return repository.findPage(after, pageSize + 1, fields).collectList()
+                    .map(rows -> CursorPage.of(rows, pageSize, row -> String.valueOf(row.get("id"))));
+        });
+    }
+
+    public Mono<Medication> getMedication(String id) {
+        return Mono.defer(() -> Mono.justOrEmpty(cache.get(id)))
+                .switchIfEmpty(repository.findById(id).doOnNext(cache::put));
+    }
+}
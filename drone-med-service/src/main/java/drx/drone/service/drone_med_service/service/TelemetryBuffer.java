@@ -0,0 +1,226 @@
+package drx.drone.service.drone_med_service.service;
+
+import drx.drone.service.drone_med_service.config.ThreadingConfig;
+import drx.drone.service.drone_med_service.dto.TelemetryReading;
+import drx.drone.service.drone_med_service.exception.ErrorResponse;
+import drx.drone.service.drone_med_service.repository.DroneStore;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ingests drone battery readings without a database write per reading. Readings are coalesced to the
+ * latest one per drone in memory and written with one unordered bulk update
+ * ({@link DroneStore#applyTelemetry}) every {@code drone.telemetry.flush-interval} ms, or as soon
+ * as {@code drone.telemetry.flush-size} drones have a reading waiting.
+ * <p>
+ * At most {@code drone.telemetry.buffer-size} drones can have a reading waiting. A batch that would
+ * go over is refused as a whole with 608, so senders slow down instead of the buffer growing; a
+ * reading for a drone that is already waiting never needs more room.
+ */
+@Slf4j
+@Service
+public class TelemetryBuffer implements MeterBinder {
+
+    private final DroneStore droneRepository;
+    private final FleetCache fleetCache;
+    private final TaskExecutor applicationTaskExecutor;
+    private final int bufferSize;
+    private final int flushSize;
+    private final long flushInterval;
+    private ScheduledExecutorService flusher;
+
+    private final Map<String, TelemetryReading> latest = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushing = new AtomicBoolean();
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder refused = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private Timer flushes;
+
+    public TelemetryBuffer(DroneStore droneRepository,
+                           FleetCache fleetCache,
+                           @Qualifier("applicationTaskExecutor") TaskExecutor applicationTaskExecutor,
+                           @Value("${drone.telemetry.buffer-size:200000}") int bufferSize,
+                           @Value("${drone.telemetry.flush-size:10000}") int flushSize,
+                           @Value("${drone.telemetry.flush-interval:1000}") long flushInterval) {
+        this.droneRepository = droneRepository;
+        this.fleetCache = fleetCache;
+        this.applicationTaskExecutor = applicationTaskExecutor;
+        this.bufferSize = bufferSize;
+        this.flushSize = flushSize;
+        this.flushInterval = flushInterval;
+    }
+
+    /**
+     * Seconds until the buffer is next flushed: how long a sender refused with 608 should wait.
+     */
+    public long retryAfterSeconds() {
+        return Math.max(1, (flushInterval + 999) / 1000);
+    }
+
+    /**
+     * @return - 200 READINGS ACCEPTED, 605 INVALID READING if one has no drone or a battery outside 0-100,
+     *           608 TELEMETRY BUFFER FULL if the batch doesn't fit. Nothing is buffered unless all of it is.
+     */
+    public ErrorResponse submit(List<TelemetryReading> readings) {
+        Set<String> newDrones = new HashSet<>();
+        for (TelemetryReading reading : readings) {
+            if (reading.getSerialNumber() == null || reading.getBattery() < 0 || reading.getBattery() > 100) {
+                refused.add(readings.size());
+                return new ErrorResponse("605", "INVALID READING");
+            }
+            if (!latest.containsKey(reading.getSerialNumber())) {
+                newDrones.add(reading.getSerialNumber());
+            }
+        }
+        // concurrent batches can overshoot by what they add between this check and the merge, that's fine
+        if (latest.size() + newDrones.size() > bufferSize) {
+            refused.add(readings.size());
+            return new ErrorResponse("608", "TELEMETRY BUFFER FULL");
+        }
+
+        long now = System.currentTimeMillis();
+        for (TelemetryReading reading : readings) {
+            TelemetryReading stamped = reading.getTimestamp() > 0 ? reading : reading.toBuilder().timestamp(now).build();
+            latest.merge(stamped.getSerialNumber(), stamped, TelemetryBuffer::newer);
+        }
+        accepted.add(readings.size());
+
+        if (latest.size() >= flushSize && !flushing.get()) {
+            applicationTaskExecutor.execute(this::flush);
+        }
+        return new ErrorResponse("200", "READINGS ACCEPTED");
+    }
+
+    /**
+     * Flushes every {@code drone.telemetry.flush-interval} ms on a thread of its own, not behind the
+     * other scheduled jobs.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (flusher == null) {
+            flusher = ThreadingConfig.dedicatedScheduler("drone-telemetry-flush");
+            flusher.scheduleWithFixedDelay(this::tick, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void tick() {
+        flush();
+    }
+
+    // don't drop what's waiting on a clean shutdown
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        ScheduledExecutorService running;
+        synchronized (this) {
+            running = flusher;
+        }
+        if (running != null) {
+            running.shutdown();
+            running.awaitTermination(5, TimeUnit.SECONDS);
+        }
+        flush();
+    }
+
+    /**
+     * Writes the waiting readings. Rounds never overlap: a call while one is running returns at once.
+     *
+     * @return - drones updated
+     */
+    int flush() {
+        if (latest.isEmpty() || !droneRepository.isAvailable() || !flushing.compareAndSet(false, true)) {
+            return 0;
+        }
+        try {
+            long start = System.nanoTime();
+            List<TelemetryReading> batch = drain();
+            int updated;
+            try {
+                updated = droneRepository.applyTelemetry(batch);
+            } catch (RuntimeException e) {
+                log.warn("Could not write {} telemetry readings: {}", batch.size(), e.getMessage());
+                // keep them for the next round, unless newer ones arrived meanwhile
+                for (TelemetryReading reading : batch) {
+                    latest.merge(reading.getSerialNumber(), reading, TelemetryBuffer::newer);
+                }
+                return 0;
+            }
+            for (TelemetryReading reading : batch) {
+                applyToCache(reading);
+            }
+            written.add(updated);
+            if (flushes != null) {
+                flushes.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+            return updated;
+        } finally {
+            flushing.set(false);
+        }
+    }
+
+    public int pending() {
+        return latest.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("drone.telemetry.readings", accepted, LongAdder::sum).tag("outcome", "accepted").register(registry);
+        FunctionCounter.builder("drone.telemetry.readings", refused, LongAdder::sum).tag("outcome", "refused").register(registry);
+        // readings accepted vs. drones written is how much the buffer coalesced
+        FunctionCounter.builder("drone.telemetry.writes", written, LongAdder::sum).register(registry);
+        Gauge.builder("drone.telemetry.pending", latest, Map::size).register(registry);
+        flushes = Timer.builder("drone.telemetry.flushes").register(registry);
+    }
+
+    // takes each drone's reading out unless a newer one replaced it in the meantime, that one waits for the next round
+    private List<TelemetryReading> drain() {
+        List<TelemetryReading> batch = new ArrayList<>(latest.size());
+        for (Map.Entry<String, TelemetryReading> entry : latest.entrySet()) {
+            if (latest.remove(entry.getKey(), entry.getValue())) {
+                batch.add(entry.getValue());
+            }
+        }
+        return batch;
+    }
+
+    // the bulk write doesn't return the drones, so bring a cached one up to date the way the update did;
+    // only the battery is patched, a transition acknowledged meanwhile (write-behind) stays
+    private void applyToCache(TelemetryReading reading) {
+        fleetCache.update(reading.getSerialNumber(), cached -> {
+            if (cached.getBatteryReportedAt() != null && cached.getBatteryReportedAt() >= reading.getTimestamp()) {
+                return cached;
+            }
+            return cached.toBuilder()
+                    .batteryCapacity(reading.getBattery())
+                    .batteryReportedAt(reading.getTimestamp())
+                    .version(cached.getVersion() == null ? null : cached.getVersion() + 1)
+                    .build();
+        });
+    }
+
+    private static TelemetryReading newer(TelemetryReading current, TelemetryReading next) {
+        return next.getTimestamp() >= current.getTimestamp() ? next : current;
+    }
+}
@@ -1,13 +1,23 @@
 package drx.drone.service.drone_med_service;
 
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
 
 @SpringBootTest
 class DroneMedServiceApplicationTests {
 
+	@Autowired
+	private ApplicationContext context;
+
 	@Test
 	void contextLoads() {
+		// the reactive Mongo client is only created with the reactive profile
+		assertThat(context.getBeansOfType(ReactiveMongoTemplate.class)).isEmpty();
 	}
 
 }
@@ -0,0 +1,65 @@
+package drx.drone.service.drone_med_service;
+
+import drx.drone.service.drone_med_service.dto.DroneRequest;
+import drx.drone.service.drone_med_service.dto.MedRequest;
+import drx.drone.service.drone_med_service.model.Drone;
+import drx.drone.service.drone_med_service.model.State;
+import drx.drone.service.drone_med_service.model.WeightModel;
+import drx.drone.service.drone_med_service.repository.DroneStore;
+import drx.drone.service.drone_med_service.repository.EmbeddedStore;
+import drx.drone.service.drone_med_service.service.DroneService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("embedded")
+class EmbeddedProfileTests {
+
+	@TempDir
+	static Path dataDir;
+
+	@DynamicPropertySource
+	static void snapshotPath(DynamicPropertyRegistry registry) {
+		registry.add("drone.embedded.snapshot-path", () -> dataDir.resolve("drones.snapshot").toString());
+	}
+
+	@Autowired
+	private DroneService droneService;
+
+	@Autowired
+	private DroneStore droneRepository;
+
+	@Autowired
+	private EmbeddedStore store;
+
+	@Test
+	void servesDronesWithoutMongoAndRestoresThemFromTheSnapshot() throws Exception {
+		droneService.registerDrone(DroneRequest.builder().serialNumber("edge-1").weightClass(WeightModel.HEAVY_WEIGHT).build());
+		MedRequest medRequest = MedRequest.builder().name("aspirin").code("ASP").weight(120).build();
+		assertThat(droneService.loadDrone("edge-1", medRequest).getCode()).isEqualTo("200");
+		assertThat(droneRepository.isAvailable()).isTrue();
+		assertThat(droneRepository.findByState(State.LOADING)).extracting(Drone::getSerialNumber).containsExactly("edge-1");
+
+		store.snapshot();
+		DroneStore restored = new EmbeddedStore(dataDir.resolve("drones.snapshot").toString()).droneStore();
+
+		Drone drone = restored.findById("edge-1").orElseThrow();
+		assertThat(drone.getState()).isEqualTo(State.LOADING);
+		assertThat(drone.getLoadedWeight()).isEqualTo(120f);
+		assertThat(drone.getMedCount()).isEqualTo(1);
+		assertThat(drone.getBatteryCapacity()).isEqualTo(85);
+		assertThat(drone.getVersion()).isEqualTo(1L);
+		assertThat(drone.getLoadedMeds()).hasSize(1);
+		assertThat(droneService.getLoadedMeds("edge-1").orElseThrow()).extracting("name").containsExactly("aspirin");
+	}
+
+}
@@ -0,0 +1,28 @@
+package drx.drone.service.drone_med_service;
+
+import drx.drone.service.drone_med_service.controller.DroneController;
+import drx.drone.service.drone_med_service.controller.ReactiveDroneController;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("reactive")
+class ReactiveProfileTests {
+
+	@Autowired
+	private ApplicationContext context;
+
+	@Test
+	void servesTheApiFromTheReactiveControllers() {
+		assertThat(context.getBeansOfType(ReactiveDroneController.class)).hasSize(1);
+		assertThat(context.getBeansOfType(DroneController.class)).isEmpty();
+		assertThat(context.getBeansOfType(ReactiveMongoTemplate.class)).hasSize(1);
+	}
+
+}
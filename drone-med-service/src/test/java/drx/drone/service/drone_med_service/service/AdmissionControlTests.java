@@ -0,0 +1,111 @@
+package drx.drone.service.drone_med_service.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import drx.drone.service.drone_med_service.config.AdmissionFilter;
+import drx.drone.service.drone_med_service.service.AdmissionControl.Admission;
+import drx.drone.service.drone_med_service.service.AdmissionControl.EndpointClass;
+import drx.drone.service.drone_med_service.service.AdmissionControl.Outcome;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdmissionControlTests {
+
+    @Test
+    void fullListingsAreToldApartFromSingleReadsAndLifecycleCalls() {
+        assertThat(AdmissionControl.classify("GET", "/api/v1/drones")).isEqualTo(EndpointClass.LISTING);
+        assertThat(AdmissionControl.classify("GET", "/api/v1/drones/available")).isEqualTo(EndpointClass.LISTING);
+        assertThat(AdmissionControl.classify("GET", "/api/v1/drones/loaded")).isEqualTo(EndpointClass.LISTING);
+        assertThat(AdmissionControl.classify("GET", "/api/v1/medications/export")).isEqualTo(EndpointClass.LISTING);
+        assertThat(AdmissionControl.classify("GET", "/api/v1/drones/d1")).isEqualTo(EndpointClass.READ);
+        assertThat(AdmissionControl.classify("GET", "/api/v1/drones/summary")).isEqualTo(EndpointClass.READ);
+        assertThat(AdmissionControl.classify("POST", "/api/v1/drones/d1/loadMeds")).isEqualTo(EndpointClass.LIFECYCLE);
+        assertThat(AdmissionControl.classify("PATCH", "/api/v1/drones/d1/deliver")).isEqualTo(EndpointClass.LIFECYCLE);
+    }
+
+    @Test
+    void aClientOverItsRateIsThrottledWithoutAffectingOthers() {
+        AdmissionControl control = control(0.5, 2, 0);
+
+        assertThat(control.admit("runaway", EndpointClass.LISTING).isAdmitted()).isTrue();
+        assertThat(control.admit("runaway", EndpointClass.LISTING).isAdmitted()).isTrue();
+        Admission throttled = control.admit("runaway", EndpointClass.LISTING);
+
+        assertThat(throttled.outcome()).isEqualTo(Outcome.THROTTLED);
+        assertThat(throttled.retryAfterMillis()).isBetween(1_000L, 2_000L);
+        assertThat(control.admit("dashboard", EndpointClass.LISTING).isAdmitted()).isTrue();
+        assertThat(control.admit("runaway", EndpointClass.LIFECYCLE).isAdmitted()).isTrue();
+    }
+
+    @Test
+    void listingsAreShedBeforeReadsAndLifecycleCalls() {
+        AdmissionControl control = control(0, 0, 2);
+
+        assertThat(control.admit("a", EndpointClass.LISTING).isAdmitted()).isTrue();
+        assertThat(control.admit("a", EndpointClass.LISTING).isAdmitted()).isTrue();
+        assertThat(control.admit("a", EndpointClass.LISTING).outcome()).isEqualTo(Outcome.SHED);
+        assertThat(control.admit("a", EndpointClass.READ).isAdmitted()).isTrue();
+        assertThat(control.admit("a", EndpointClass.READ).outcome()).isEqualTo(Outcome.SHED);
+        assertThat(control.admit("a", EndpointClass.LIFECYCLE).isAdmitted()).isTrue();
+        assertThat(control.admit("a", EndpointClass.LIFECYCLE).outcome()).isEqualTo(Outcome.SHED);
+        assertThat(control.inFlight()).isEqualTo(4);
+
+        control.release();
+        control.release();
+        control.release();
+        assertThat(control.admit("a", EndpointClass.LISTING).isAdmitted()).isTrue();
+    }
+
+    @Test
+    void outcomesAndLimitsAreExported() {
+        AdmissionControl control = control(0, 0, 1);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        control.bindTo(registry);
+
+        control.admit("a", EndpointClass.LISTING);
+        control.admit("a", EndpointClass.LISTING);
+
+        assertThat(registry.get("drone.admission.requests").tag("class", "listing").tag("outcome", "admitted")
+                .functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("drone.admission.requests").tag("class", "listing").tag("outcome", "shed")
+                .functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("drone.admission.limit").tag("class", "listing").tag("limit", "concurrency")
+                .gauge().value()).isEqualTo(1);
+        assertThat(registry.get("drone.admission.in-flight").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void refusedRequestsGetTheirStatusAndANumberedCode() throws Exception {
+        AdmissionControl throttling = control(0.5, 1, 0);
+        AdmissionFilter filter = new AdmissionFilter(throttling, new ObjectMapper());
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/v1/drones"), new MockHttpServletResponse(), new MockFilterChain());
+        MockHttpServletResponse throttled = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/v1/drones"), throttled, new MockFilterChain());
+
+        assertThat(throttled.getStatus()).isEqualTo(429);
+        assertThat(throttled.getHeader("Retry-After")).isEqualTo("2");
+        assertThat(throttled.getContentAsString()).contains("\"code\":\"611\"");
+
+        AdmissionControl shedding = control(0, 0, 1);
+        shedding.admit("busy", EndpointClass.LISTING);
+        MockHttpServletResponse shed = new MockHttpServletResponse();
+        new AdmissionFilter(shedding, new ObjectMapper())
+                .doFilter(new MockHttpServletRequest("GET", "/api/v1/drones"), shed, new MockFilterChain());
+
+        assertThat(shed.getStatus()).isEqualTo(503);
+        assertThat(shed.getHeader("Retry-After")).isEqualTo("1");
+        assertThat(shed.getContentAsString()).contains("\"code\":\"612\"");
+    }
+
+    // lifecycle and read calls unthrottled, with room on top of the listings' concurrency if that is limited
+    private static AdmissionControl control(double listingRate, double listingBurst, int listingConcurrency) {
+        return new AdmissionControl(true, "", 1_000,
+                0, 0, listingConcurrency > 0 ? listingConcurrency + 2 : 0,
+                0, 0, listingConcurrency > 0 ? listingConcurrency + 1 : 0,
+                listingRate, listingBurst, listingConcurrency);
+    }
+}
@@ -0,0 +1,139 @@
+package drx.drone.service.drone_med_service.service;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.ServerAddress;
+import drx.drone.service.drone_med_service.config.MongoClusterMonitor;
+import drx.drone.service.drone_med_service.model.Drone;
+import drx.drone.service.drone_med_service.model.Medication;
+import drx.drone.service.drone_med_service.model.State;
+import drx.drone.service.drone_med_service.repository.ChangeStreams;
+import drx.drone.service.drone_med_service.repository.ChangeStreams.Change;
+import drx.drone.service.drone_med_service.repository.DroneRepository;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ChangeFeedTests {
+
+    @TempDir
+    Path dir;
+
+    private ChangeStreams changeStreams;
+    private DroneRepository droneRepository;
+    private FleetCache fleetCache;
+    private MedicationCache medicationCache;
+    private final List<Object> events = new ArrayList<>();
+    private ChangeFeed feed;
+
+    @BeforeEach
+    void setUp() {
+        changeStreams = mock(ChangeStreams.class);
+        droneRepository = mock(DroneRepository.class);
+        fleetCache = new FleetCache(true, 100);
+        medicationCache = new MedicationCache(true, 100, 60_000);
+        feed = feed();
+    }
+
+    @Test
+    void changesFromOtherNodesAreAppliedAndRepublished() {
+        fleetCache.put(drone("d1", State.IDLE, 3L));
+        fleetCache.put(drone("d2", State.IDLE, 3L));
+
+        feed.apply(droneChange(drone("d1", State.LOADING, 4L)));
+        feed.apply(droneChange(drone("d2", State.IDLE, 3L)));
+        feed.apply(new Change(Drone.class, "d2", null, null, token(3)));
+
+        assertThat(fleetCache.peek("d1")).get().extracting(Drone::getState).isEqualTo(State.LOADING);
+        assertThat(fleetCache.peek("d2")).isEmpty();
+        assertThat(events).singleElement().isInstanceOfSatisfying(DroneReplicatedEvent.class,
+                event -> assertThat(event.drone().getVersion()).isEqualTo(4L));
+    }
+
+    @Test
+    void medicationChangesRefreshTheMedicationCache() {
+        medicationCache.put(Medication.builder().id("m1").name("old").weight(10f).build());
+        medicationCache.put(Medication.builder().id("m2").name("gone").weight(10f).build());
+
+        feed.apply(new Change(Medication.class, "m1", null, Medication.builder().id("m1").name("new").weight(12f).build(), token(1)));
+        feed.apply(new Change(Medication.class, "m2", null, null, token(2)));
+
+        assertThat(medicationCache.get("m1")).get().extracting(Medication::getName).isEqualTo("new");
+        assertThat(medicationCache.get("m2")).isEmpty();
+    }
+
+    @Test
+    void resumeTokenIsSavedAndPickedUpAfterARestart() {
+        ChangeStreams.Cursor cursor = mock(ChangeStreams.Cursor.class);
+        when(changeStreams.watch(null)).thenReturn(cursor);
+        when(cursor.tryNext()).thenReturn(droneChange(drone("d1", State.LOADED, 2L))).thenAnswer(inv -> {
+            feed.stop();
+            return null;
+        });
+        when(cursor.getResumeToken()).thenReturn(token(2));
+        when(droneRepository.findChangedSince(anyLong())).thenReturn(List.of());
+
+        feed.follow();
+        feed.saveToken();
+
+        verify(droneRepository).findChangedSince(anyLong());
+        assertThat(fleetCache.peek("d1")).isPresent();
+        assertThat(feed().readToken()).isEqualTo(token(2));
+    }
+
+    @Test
+    void standaloneServersArePolled() {
+        when(changeStreams.watch(any())).thenThrow(new MongoCommandException(new BsonDocument("ok", new BsonInt32(0))
+                .append("code", new BsonInt32(ChangeStreams.NOT_A_REPLICA_SET))
+                .append("errmsg", new BsonString("The $changeStream stage is only supported on replica sets")),
+                new ServerAddress()));
+        when(droneRepository.findChangedSince(anyLong())).thenAnswer(inv -> {
+            feed.stop();
+            return List.of(drone("d1", State.DELIVERING, 5L));
+        });
+
+        feed.run();
+
+        assertThat(feed.isPolling()).isTrue();
+        assertThat(fleetCache.peek("d1")).get().extracting(Drone::getVersion).isEqualTo(5L);
+        verify(droneRepository, never()).findAll();
+    }
+
+    private ChangeFeed feed() {
+        return new ChangeFeed(changeStreams, droneRepository, fleetCache,
+                new DroneWriteBehind(droneRepository, fleetCache, false, 200), medicationCache, events::add,
+                new MongoClusterMonitor(), true, 10, 5_000, dir.resolve("change-feed.token").toString());
+    }
+
+    private static Change droneChange(Drone drone) {
+        return new Change(Drone.class, drone.getSerialNumber(), drone, null, token(drone.getVersion().intValue()));
+    }
+
+    private static BsonDocument token(int position) {
+        return new BsonDocument("_data", new BsonString("token-" + position));
+    }
+
+    private static Drone drone(String serialNumber, State state, Long version) {
+        return Drone.builder()
+                .serialNumber(serialNumber)
+                .state(state)
+                .batteryCapacity(90)
+                .loadedMeds(new ArrayList<>())
+                .version(version)
+                .build();
+    }
+}
@@ -0,0 +1,106 @@
+package drx.drone.service.drone_med_service.service;
+
+import drx.drone.service.drone_med_service.dto.MedRequest;
+import drx.drone.service.drone_med_service.model.Drone;
+import drx.drone.service.drone_med_service.model.State;
+import drx.drone.service.drone_med_service.model.WeightModel;
+import drx.drone.service.drone_med_service.repository.DroneRepository;
+import drx.drone.service.drone_med_service.repository.MedicationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class DispatchPlannerTests {
+
+    private final DroneService droneService = new DroneService(mock(DroneRepository.class),
+            mock(MedicationRepository.class), new FleetCache(false, 0), event -> { },
+            new DroneMetrics(new SimpleMeterRegistry()), new MedicationCache(false, 0, 0),
+            new DroneWriteBehind(mock(DroneRepository.class), new FleetCache(false, 0), false, 200),
+            new DroneCommandQueues(false, 0, 0));
+
+    @Test
+    void everyAssignmentPassesTheLoadChecks() {
+        Random random = new Random(7);
+        List<Drone> drones = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            WeightModel weightModel = WeightModel.values()[random.nextInt(WeightModel.values().length)];
+            drones.add(drone("d" + i, weightModel, 20 + random.nextInt(81)));
+        }
+        List<MedRequest> orders = new ArrayList<>();
+        for (int i = 0; i < 3_000; i++) {
+            orders.add(order(1 + random.nextInt(250)));
+        }
+
+        DispatchPlanner.Plan plan = DispatchPlanner.plan(drones, orders);
+
+        Map<String, Drone> bySerial = drones.stream().collect(Collectors.toMap(Drone::getSerialNumber, Function.identity()));
+        int assigned = 0;
+        for (Map.Entry<String, List<MedRequest>> assignment : plan.assignments().entrySet()) {
+            Drone drone = bySerial.get(assignment.getKey());
+            for (MedRequest order : assignment.getValue()) {
+                assertThat(droneService.checkLoad(drone, order.getWeight())).isNull();
+                drone.setLoadedWeight(drone.getLoadedWeight() + order.getWeight());
+                drone.setMedCount(drone.getMedCount() + 1);
+                drone.setBatteryCapacity(drone.getBatteryCapacity() - Drone.LOAD_BATTERY_COST);
+                assigned++;
+            }
+        }
+        assertThat(assigned + plan.unassigned().size()).isEqualTo(orders.size());
+        assertThat(assigned).isPositive();
+    }
+
+    @Test
+    void fillsFewerDronesAndPrefersTheHigherBattery() {
+        List<Drone> drones = List.of(
+                drone("low", WeightModel.HEAVY_WEIGHT, 60),
+                drone("high", WeightModel.HEAVY_WEIGHT, 100),
+                drone("spare", WeightModel.HEAVY_WEIGHT, 100));
+
+        DispatchPlanner.Plan plan = DispatchPlanner.plan(drones, List.of(order(200), order(300), order(150), order(100)));
+
+        // 300 and 200 fill one drone, 150 and 100 share the next rather than each starting one
+        assertThat(plan.assignments()).hasSize(2).containsKeys("high", "spare");
+        assertThat(plan.unassigned()).isEmpty();
+    }
+
+    @Test
+    void batteryLimitsHowManyLoadsADroneTakes() {
+        assertThat(DispatchPlanner.loadsOnBattery(100)).isEqualTo(5);
+        assertThat(DispatchPlanner.loadsOnBattery(40)).isEqualTo(1);
+        assertThat(DispatchPlanner.loadsOnBattery(25)).isZero();
+
+        List<MedRequest> orders = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            orders.add(order(1));
+        }
+        DispatchPlanner.Plan plan = DispatchPlanner.plan(List.of(drone("d1", WeightModel.HEAVY_WEIGHT, 100)), orders);
+
+        assertThat(plan.assignments().get("d1")).hasSize(5);
+        assertThat(plan.unassigned()).hasSize(3);
+    }
+
+    private Drone drone(String serialNumber, WeightModel weightModel, int battery) {
+        return Drone.builder()
+                .serialNumber(serialNumber)
+                .weightClass(weightModel)
+                .weightLimit(droneService.setWeightLimit(weightModel))
+                .batteryCapacity(battery)
+                .state(State.IDLE)
+                .loadedWeight(0f)
+                .medCount(0)
+                .build();
+    }
+
+    private static MedRequest order(float weight) {
+        return MedRequest.builder().name("med").code("MED_1").weight(weight).build();
+    }
+}
@@ -0,0 +1,194 @@
+package drx.drone.service.drone_med_service.service;
+
+import drx.drone.service.drone_med_service.dto.BatchLoadRequest;
+import drx.drone.service.drone_med_service.dto.BatchLoadResult;
+import drx.drone.service.drone_med_service.dto.FleetSummary;
+import drx.drone.service.drone_med_service.dto.MedRequest;
+import drx.drone.service.drone_med_service.exception.BatchLoadFailedException;
+import drx.drone.service.drone_med_service.exception.ErrorResponse;
+import drx.drone.service.drone_med_service.model.Drone;
+import drx.drone.service.drone_med_service.model.State;
+import drx.drone.service.drone_med_service.model.WeightModel;
+import drx.drone.service.drone_med_service.repository.DroneStore;
+import drx.drone.service.drone_med_service.repository.MedicationStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DispatchServiceTests {
+
+    @Test
+    void ordersThatDidNotLoadStayQueuedForTheNextRound() {
+        DroneService droneService = droneService();
+        Drone idle = idle("d1", 500);
+        when(droneService.getIdleDrones()).thenReturn(Optional.of(List.of(idle)));
+        when(droneService.loadDrones(anyList())).thenAnswer(inv -> {
+            BatchLoadRequest load = inv.<List<BatchLoadRequest>>getArgument(0).get(0);
+            return List.of(BatchLoadResult.builder().serialNumber(load.getSerialNumber()).results(List.of(
+                    new ErrorResponse("200", "MEDS LOADED"),
+                    new ErrorResponse("604", "DRONE MODIFIED CONCURRENTLY"))).build());
+        });
+        DispatchService dispatch = new DispatchService(droneService, summary(WeightModel.HEAVY_WEIGHT), 10, 100, 20);
+
+        assertThat(dispatch.submit(List.of(order(501))).getCode()).isEqualTo("600");
+        assertThat(dispatch.submit(List.of(order(400), order(100), order(200))).getCode()).isEqualTo("200");
+        assertThat(dispatch.submit(List.of(order(1), order(1), order(1), order(1), order(1), order(1), order(1), order(1))).getCode())
+                .isEqualTo("607");
+
+        var status = dispatch.dispatch();
+
+        // 400 and 100 went to the one drone and the 100 lost a race there; 200 didn't fit anywhere
+        assertThat(status.getAssigned()).isEqualTo(1);
+        assertThat(status.getDronesLoaded()).isEqualTo(1);
+        assertThat(status.getUnassigned()).isEqualTo(1);
+        assertThat(status.getPending()).isEqualTo(2);
+    }
+
+    @Test
+    void ordersNoIdleDroneCanTakeDoNotStarveNewerOnes() {
+        DroneService droneService = droneService();
+        // the only idle drone is a light one, the heavy drones are all out
+        when(droneService.getIdleDrones()).thenReturn(Optional.of(List.of(idle("d1", 200))));
+        List<MedRequest> loaded = new ArrayList<>();
+        when(droneService.loadDrones(anyList())).thenAnswer(inv -> {
+            List<BatchLoadResult> results = new ArrayList<>();
+            for (BatchLoadRequest load : inv.<List<BatchLoadRequest>>getArgument(0)) {
+                loaded.addAll(load.getMedications());
+                results.add(BatchLoadResult.builder().serialNumber(load.getSerialNumber())
+                        .results(load.getMedications().stream().map(m -> new ErrorResponse("200", "MEDS LOADED")).toList())
+                        .build());
+            }
+            return results;
+        });
+        DispatchService dispatch = new DispatchService(droneService,
+                summary(WeightModel.LIGHT_WEIGHT, WeightModel.HEAVY_WEIGHT), 100, 3, 2);
+        MedRequest fits = order(150);
+
+        // more orders too heavy for the idle drone than a round takes, then one it can take
+        assertThat(dispatch.submit(List.of(order(400), order(400), order(400), order(400))).getCode()).isEqualTo("200");
+        assertThat(dispatch.submit(List.of(fits)).getCode()).isEqualTo("200");
+
+        var first = dispatch.dispatch();
+        assertThat(first.getAssigned()).isZero();
+        assertThat(first.getPending()).isEqualTo(5);
+
+        var second = dispatch.dispatch();
+        assertThat(second.getAssigned()).isEqualTo(1);
+        assertThat(loaded).containsExactly(fits);
+
+        // the heavy orders have had their rounds by now
+        dispatch.dispatch();
+        var last = dispatch.dispatch();
+        assertThat(last.getPending()).isZero();
+        assertThat(first.getExpired() + second.getExpired()).isEqualTo(1);
+    }
+
+    @Test
+    void onlyOrdersOfDronesTheFailedLoadDidNotWriteAreQueuedAgain() {
+        DroneStore droneStore = mock(DroneStore.class);
+        Map<String, Drone> stored = new LinkedHashMap<>();
+        stored.put("d1", idle("d1", 500));
+        stored.put("d2", idle("d2", 500));
+        when(droneStore.findByState(State.IDLE)).thenAnswer(inv -> stored.values().stream()
+                .filter(drone -> drone.getState() == State.IDLE).toList());
+        when(droneStore.findAllById(anyIterable())).thenAnswer(inv -> {
+            List<Drone> found = new ArrayList<>();
+            inv.<Iterable<String>>getArgument(0).forEach(serialNumber -> found.add(stored.get(serialNumber)));
+            return found;
+        });
+        // the first drone of the first round is written, then the database goes away
+        AtomicBoolean failed = new AtomicBoolean();
+        List<Drone> written = new ArrayList<>();
+        when(droneStore.updateAll(anyCollection())).thenAnswer(inv -> {
+            for (Drone drone : inv.<Collection<Drone>>getArgument(0)) {
+                stored.put(drone.getSerialNumber(), drone);
+                written.add(drone);
+                if (failed.compareAndSet(false, true)) {
+                    throw new DataAccessResourceFailureException("connection lost");
+                }
+            }
+            return List.copyOf(inv.<Collection<Drone>>getArgument(0));
+        });
+        DroneService droneService = new DroneService(droneStore, mock(MedicationStore.class), new FleetCache(false, 0), event -> { },
+                new DroneMetrics(new SimpleMeterRegistry()), new MedicationCache(false, 0, 0),
+                new DroneWriteBehind(droneStore, new FleetCache(false, 0), false, 200), new DroneCommandQueues(false, 0, 0));
+        DispatchService dispatch = new DispatchService(droneService, summary(WeightModel.HEAVY_WEIGHT), 10, 10, 20);
+        assertThat(dispatch.submit(List.of(order(400), order(300))).getCode()).isEqualTo("200");
+
+        assertThatThrownBy(dispatch::dispatch).isInstanceOf(BatchLoadFailedException.class)
+                .satisfies(e -> assertThat(((BatchLoadFailedException) e).getUnwritten())
+                        .containsExactly(stored.get("d1").getState() == State.IDLE ? "d1" : "d2"));
+        assertThat(dispatch.getStatus().getPending()).isEqualTo(1);
+
+        var next = dispatch.dispatch();
+        assertThat(next.getAssigned()).isEqualTo(1);
+        assertThat(next.getPending()).isZero();
+        // each order went to one drone, once
+        assertThat(written).extracting(Drone::getSerialNumber).containsExactlyInAnyOrder("d1", "d2");
+        assertThat(written).extracting(Drone::getLoadedWeight).containsExactlyInAnyOrder(400f, 300f);
+    }
+
+    @Test
+    void ordersAreCheckedAgainstTheDronesThatExist() {
+        DroneService droneService = droneService();
+
+        DispatchService lightFleet = new DispatchService(droneService, summary(WeightModel.LIGHT_WEIGHT), 10, 10, 20);
+        DispatchService noFleet = new DispatchService(droneService, summary(), 10, 10, 20);
+
+        assertThat(lightFleet.submit(List.of(order(201))).getCode()).isEqualTo("600");
+        assertThat(lightFleet.submit(List.of(order(200))).getCode()).isEqualTo("200");
+        // nothing registered yet, so nothing to go by but the weight classes
+        assertThat(noFleet.submit(List.of(order(500))).getCode()).isEqualTo("200");
+    }
+
+    private static DroneService droneService() {
+        DroneService droneService = mock(DroneService.class);
+        when(droneService.setWeightLimit(any())).thenAnswer(inv -> switch (inv.<WeightModel>getArgument(0)) {
+            case LIGHT_WEIGHT -> 200f;
+            case MIDDLE_WEIGHT -> 300f;
+            case CRUISER_WEIGHT -> 400f;
+            case HEAVY_WEIGHT -> 500f;
+        });
+        return droneService;
+    }
+
+    private static FleetSummaryService summary(WeightModel... registered) {
+        Map<WeightModel, Long> byWeightClass = new EnumMap<>(WeightModel.class);
+        for (WeightModel weightModel : WeightModel.values()) {
+            byWeightClass.put(weightModel, 0L);
+        }
+        for (WeightModel weightModel : registered) {
+            byWeightClass.put(weightModel, 1L);
+        }
+        FleetSummaryService summaryService = mock(FleetSummaryService.class);
+        when(summaryService.getSummary()).thenReturn(FleetSummary.builder().byWeightClass(byWeightClass).build());
+        return summaryService;
+    }
+
+    private static Drone idle(String serialNumber, float weightLimit) {
+        return Drone.builder().serialNumber(serialNumber).weightClass(WeightModel.HEAVY_WEIGHT).weightLimit(weightLimit)
+                .batteryCapacity(100).state(State.IDLE).loadedWeight(0f).medCount(0).build();
+    }
+
+    private static MedRequest order(float weight) {
+        return MedRequest.builder().name("med").code("MED_1").weight(weight).build();
+    }
+}
@@ -0,0 +1,141 @@
+package drx.drone.service.drone_med_service.service;
+
+import drx.drone.service.drone_med_service.dto.MedRequest;
+import drx.drone.service.drone_med_service.exception.DroneStateConflictException;
+import drx.drone.service.drone_med_service.exception.ErrorResponse;
+import drx.drone.service.drone_med_service.model.State;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DroneCommandQueuesTests {
+
+    private final DroneCommandQueues queues = new DroneCommandQueues(true, 2, 32);
+    private final ExecutorService callers = Executors.newFixedThreadPool(8);
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+        queues.shutdown();
+    }
+
+    @Test
+    void loadsQueuedBehindABusyDroneAreMergedIntoOneBatch() throws Exception {
+        CountDownLatch busy = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> batches = Collections.synchronizedList(new ArrayList<>());
+        BiFunction<String, List<MedRequest>, List<ErrorResponse>> loader = (serialNumber, requests) -> {
+            batches.add(requests.size());
+            if (batches.size() == 1) {
+                busy.countDown();
+                await(release);
+            }
+            return requests.stream().map(request -> new ErrorResponse("200", request.getName())).toList();
+        };
+
+        Future<ErrorResponse> first = callers.submit(() -> queues.load("d1", med("first"), loader));
+        busy.await(5, TimeUnit.SECONDS);
+        List<Future<ErrorResponse>> queued = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            String name = "queued" + i;
+            queued.add(callers.submit(() -> queues.load("d1", med(name), loader)));
+        }
+        waitFor(() -> queues.pending() == 6);
+        release.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS).getMessage()).isEqualTo("first");
+        for (int i = 0; i < 5; i++) {
+            assertThat(queued.get(i).get(5, TimeUnit.SECONDS).getCode()).isEqualTo("200");
+        }
+        assertThat(batches).containsExactly(1, 5);
+        assertThat(queues.pending()).isZero();
+    }
+
+    @Test
+    void commandsOnOneDroneRunInOrderAndReportTheirOwnFailures() throws Exception {
+        List<String> ran = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch release = new CountDownLatch(1);
+        Future<?> blocker = callers.submit(() -> queues.run("d1", () -> {
+            await(release);
+            return ran.add("blocker");
+        }));
+        waitFor(() -> queues.pending() == 1);
+        Future<?> conflict = callers.submit(() -> queues.run("d1", () -> {
+            ran.add("conflict");
+            throw new DroneStateConflictException("d1", State.LOADED, State.IDLE);
+        }));
+        waitFor(() -> queues.pending() == 2);
+        Future<Boolean> after = callers.submit(() -> queues.run("d1", () -> ran.add("after")));
+        waitFor(() -> queues.pending() == 3);
+        release.countDown();
+
+        blocker.get(5, TimeUnit.SECONDS);
+        assertThatThrownBy(() -> conflict.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(DroneStateConflictException.class);
+        assertThat(after.get(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(ran).containsExactly("blocker", "conflict", "after");
+    }
+
+    @Test
+    void commandsThatCanNoLongerRunAfterShutdownFail() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Future<?> blocker = callers.submit(() -> queues.run("d1", () -> {
+            await(release);
+            return true;
+        }));
+        waitFor(() -> queues.pending() == 1);
+        Future<ErrorResponse> queued = callers.submit(() -> queues.load("d1", med("queued"),
+                (serialNumber, requests) -> List.of(new ErrorResponse("200", "MEDS LOADED"))));
+        waitFor(() -> queues.pending() == 2);
+        queues.shutdown();
+        release.countDown();
+
+        blocker.get(5, TimeUnit.SECONDS);
+        assertThatThrownBy(() -> queued.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(RejectedExecutionException.class);
+        assertThatThrownBy(() -> queues.run("d2", () -> true)).isInstanceOf(RejectedExecutionException.class);
+        assertThat(queues.pending()).isZero();
+    }
+
+    @Test
+    void turnedOffCommandsRunOnTheCallingThread() {
+        DroneCommandQueues off = new DroneCommandQueues(false, 0, 0);
+        Thread caller = Thread.currentThread();
+
+        assertThat(off.run("d1", Thread::currentThread)).isSameAs(caller);
+        assertThat(off.load("d1", med("m"), (serialNumber, requests) -> List.of(new ErrorResponse("200", "MEDS LOADED"))).getCode())
+                .isEqualTo("200");
+    }
+
+    private static MedRequest med(String name) {
+        return MedRequest.builder().name(name).weight(10).build();
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package drx.drone.service.drone_med_service.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import drx.drone.service.drone_med_service.model.Drone;
+import drx.drone.service.drone_med_service.model.State;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedConstruction;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockConstruction;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DroneEventStreamTests {
+
+    private final Drone drone = Drone.builder().serialNumber("d1").state(State.IDLE).batteryCapacity(100).build();
+
+    @Test
+    void subscriberThatStopsReadingIsDroppedInsteadOfBlockingPublishers() throws Exception {
+        CountDownLatch writing = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        try (MockedConstruction<SseEmitter> ignored = stuckEmitters(writing, release)) {
+            DroneEventStream stream = new DroneEventStream(droneService(), new ObjectMapper(), 2, 0, 2, 0);
+
+            stream.subscribe();
+            stream.subscribe();
+            // both drains are stuck writing the snapshot, like clients that no longer read
+            assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(stream.subscriberCount()).isEqualTo(2);
+
+            stream.onDroneChanged(new DroneChangedEvent(drone));
+            stream.onDroneChanged(new DroneChangedEvent(drone));
+            stream.onDroneChanged(new DroneChangedEvent(drone));
+            assertThat(stream.subscriberCount()).isEqualTo(2);
+
+            stream.onDroneChanged(new DroneChangedEvent(drone));
+            assertThat(stream.subscriberCount()).isZero();
+
+            release.countDown();
+            stream.shutdown();
+        }
+    }
+
+    @Test
+    void subscribersNotWrittenToWithinTheSendTimeoutAreDropped() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try (MockedConstruction<SseEmitter> emitters = stuckEmitters(writing, release)) {
+            DroneEventStream stream = new DroneEventStream(droneService(), new ObjectMapper(), 16, 0, 1, 60_000);
+
+            stream.subscribe();
+            assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+            // the one drain thread is stuck on the first client, the second waits behind it
+            stream.subscribe();
+            stream.onDroneChanged(new DroneChangedEvent(drone));
+
+            assertThat(stream.dropStalled(System.nanoTime())).isZero();
+            assertThat(stream.dropStalled(System.nanoTime() + TimeUnit.MINUTES.toNanos(2))).isEqualTo(2);
+            assertThat(stream.subscriberCount()).isZero();
+
+            release.countDown();
+            SseEmitter stuck = emitters.constructed().get(0);
+            SseEmitter waiting = emitters.constructed().get(1);
+            verify(stuck, timeout(5_000)).completeWithError(any(TimeoutException.class));
+            verify(waiting, timeout(5_000)).completeWithError(any(TimeoutException.class));
+            verify(waiting, never()).send(any(SseEmitter.SseEventBuilder.class));
+            stream.shutdown();
+        }
+    }
+
+    private static DroneService droneService() {
+        DroneService droneService = mock(DroneService.class);
+        when(droneService.getAllDrones()).thenReturn(Optional.of(List.of()));
+        return droneService;
+    }
+
+    // emitters whose writes block until released
+    private static MockedConstruction<SseEmitter> stuckEmitters(CountDownLatch writing, CountDownLatch release) {
+        return mockConstruction(SseEmitter.class, (emitter, context) -> doAnswer(inv -> {
+            writing.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(emitter).send(any(SseEmitter.SseEventBuilder.class)));
+    }
+}
@@ -0,0 +1,76 @@
+package drx.drone.service.drone_med_service.service;
+
+import drx.drone.service.drone_med_service.config.MongoClusterMonitor;
+import drx.drone.service.drone_med_service.model.Drone;
+import drx.drone.service.drone_med_service.model.DroneTransition;
+import drx.drone.service.drone_med_service.model.State;
+import drx.drone.service.drone_med_service.repository.DroneTransitionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Collection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DroneHistoryTests {
+
+    private DroneTransitionRepository repository;
+    private MongoClusterMonitor clusterMonitor;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(DroneTransitionRepository.class);
+        clusterMonitor = mock(MongoClusterMonitor.class);
+        when(clusterMonitor.isWritable()).thenReturn(true);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void changesAreWrittenInOneBatchPerFlush() {
+        DroneHistory history = new DroneHistory(repository, clusterMonitor, 10);
+
+        history.onDroneChanged(new DroneChangedEvent(drone("d1", State.LOADING)));
+        history.onDroneChanged(new DroneChangedEvent(drone("d1", State.LOADED)));
+        history.onDroneChanged(new DroneChangedEvent(drone("d2", State.DELIVERING)));
+        assertThat(history.flush()).isEqualTo(3);
+        history.onDroneChanged(new DroneChangedEvent(drone("d2", State.DELIVERED)));
+        assertThat(history.flush()).isEqualTo(1);
+
+        ArgumentCaptor<Collection<DroneTransition>> batches = ArgumentCaptor.forClass(Collection.class);
+        verify(repository, times(2)).append(batches.capture());
+        assertThat(batches.getAllValues().get(0)).extracting(DroneTransition::getState)
+                .containsExactly(State.LOADING, State.LOADED, State.DELIVERING);
+        verify(repository, times(1)).prepare();
+    }
+
+    @Test
+    void fullQueueDropsInsteadOfBlocking() {
+        DroneHistory history = new DroneHistory(repository, clusterMonitor, 2);
+
+        for (int i = 0; i < 5; i++) {
+            history.onDroneChanged(new DroneChangedEvent(drone("d" + i, State.IDLE)));
+        }
+        assertThat(history.pending()).isEqualTo(2);
+    }
+
+    @Test
+    void failedWriteIsRetriedNextRound() {
+        DroneHistory history = new DroneHistory(repository, clusterMonitor, 10);
+        doThrow(new IllegalStateException("no primary")).when(repository).append(anyCollection());
+
+        history.onDroneChanged(new DroneChangedEvent(drone("d1", State.LOADING)));
+        assertThat(history.flush()).isZero();
+        assertThat(history.pending()).isEqualTo(1);
+    }
+
+    private static Drone drone(String serialNumber, State state) {
+        return Drone.builder().serialNumber(serialNumber).state(state).batteryCapacity(80).loadedWeight(0f).medCount(0).build();
+    }
+}
@@ -0,0 +1,132 @@
+package drx.drone.service.drone_med_service.service;
+
+import drx.drone.service.drone_med_service.dto.MedRequest;
+import drx.drone.service.drone_med_service.exception.DroneStateConflictException;
+import drx.drone.service.drone_med_service.model.Drone;
+import drx.drone.service.drone_med_service.model.Medication;
+import drx.drone.service.drone_med_service.model.State;
+import drx.drone.service.drone_med_service.model.WeightModel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * {@link DroneLifecycleStressTests} against a real database: concurrent lifecycle calls and loads on
+ * one drone, decided by the conditional updates on its state. Each transition can only win once per
+ * trip, so it never gets ahead of the one before it in the cycle by more than one. Needs a real
+ * database, so it only runs with {@code -Dspring.data.mongodb.uri=...}. The seeded drone and the
+ * medications loaded onto it are removed afterwards.
+ */
+@SpringBootTest
+@EnabledIfSystemProperty(named = "spring.data.mongodb.uri", matches = ".+")
+class DroneLifecycleMongoTests {
+
+    private static final String SERIAL = "lifecycle-race-1";
+    private static final String MED_NAME = "lifecycle-race";
+    private static final int THREADS = 32;
+    private static final int CALLS = 2_000;
+
+    @Autowired
+    private DroneService droneService;
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @AfterEach
+    void cleanUp() {
+        mongoTemplate.remove(query(where("serialNumber").is(SERIAL)), Drone.class);
+        mongoTemplate.remove(query(where("name").is(MED_NAME)), Medication.class);
+    }
+
+    @Test
+    void concurrentTransitionsOnOneDroneEachWinOncePerTrip() throws Exception {
+        mongoTemplate.insert(Drone.builder()
+                .serialNumber(SERIAL)
+                .weightClass(WeightModel.HEAVY_WEIGHT)
+                .weightLimit(500)
+                .batteryCapacity(100)
+                .state(State.LOADED)
+                .loadedMeds(new ArrayList<>(List.of("m0")))
+                .loadedWeight(500f)
+                .medCount(1)
+                .version(0L)
+                .build());
+
+        // in the order of the cycle: LOADED -> DELIVERING -> DELIVERED -> RETURNING -> IDLE, then loaded again
+        List<Runnable> transitions = List.of(
+                () -> droneService.sendDroneForDelivery(SERIAL),
+                () -> droneService.deliverDrone(SERIAL),
+                () -> droneService.returnDrone(SERIAL),
+                () -> droneService.markIdle(SERIAL));
+        MedRequest fullLoad = MedRequest.builder().name(MED_NAME).code("RACE").weight(500).build();
+
+        AtomicIntegerArray wins = new AtomicIntegerArray(transitions.size());
+        AtomicInteger conflicts = new AtomicInteger();
+        List<Throwable> unexpected = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        for (int i = 0; i < CALLS; i++) {
+            int op = i % (transitions.size() + 1);
+            pool.execute(() -> {
+                try {
+                    start.await();
+                    if (op == transitions.size()) {
+                        // fills the drone, or once the battery is spent is refused and sends it off LOADED
+                        assertThat(droneService.loadDrone(SERIAL, fullLoad).getCode()).isIn("200", "600", "601", "604", "606");
+                        return;
+                    }
+                    transitions.get(op).run();
+                    wins.incrementAndGet(op);
+                } catch (DroneStateConflictException e) {
+                    conflicts.incrementAndGet();
+                } catch (Throwable e) {
+                    synchronized (unexpected) {
+                        unexpected.add(e);
+                    }
+                }
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertThat(pool.awaitTermination(5, TimeUnit.MINUTES)).isTrue();
+
+        assertThat(unexpected).isEmpty();
+        int transitionCalls = CALLS / (transitions.size() + 1) * transitions.size();
+        int won = 0;
+        for (int op = 0; op < transitions.size(); op++) {
+            won += wins.get(op);
+        }
+        assertThat(won + conflicts.get()).isEqualTo(transitionCalls);
+        assertThat(wins.get(0)).isPositive();
+        for (int op = 1; op < transitions.size(); op++) {
+            assertThat(wins.get(op - 1) - wins.get(op)).isBetween(0, 1);
+        }
+
+        // where the drone stopped follows from how far its last trip got
+        int stepsOfLastTrip = 1;
+        while (stepsOfLastTrip < transitions.size() && wins.get(stepsOfLastTrip) == wins.get(0)) {
+            stepsOfLastTrip++;
+        }
+        Drone stored = mongoTemplate.findOne(query(where("serialNumber").is(SERIAL)), Drone.class);
+        if (stepsOfLastTrip == transitions.size()) {
+            assertThat(stored.getState()).isIn(State.IDLE, State.LOADING, State.LOADED);
+        } else {
+            assertThat(stored.getState()).isEqualTo(List.of(State.DELIVERING, State.DELIVERED, State.RETURNING).get(stepsOfLastTrip - 1));
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package drx.drone.service.drone_med_service.service;
+
+import drx.drone.service.drone_med_service.dto.MedRequest;
+import drx.drone.service.drone_med_service.exception.DroneStateConflictException;
+import drx.drone.service.drone_med_service.model.Drone;
+import drx.drone.service.drone_med_service.model.State;
+import drx.drone.service.drone_med_service.model.WeightModel;
+import drx.drone.service.drone_med_service.repository.DroneRepository;
+import drx.drone.service.drone_med_service.repository.MedicationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyFloat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Fires thousands of concurrent lifecycle calls at one drone. The repository stand-in applies the
+ * same compare-and-set the Mongo updates do; the service must report exactly the calls that won,
+ * with and without the {@link DroneCommandQueues}.
+ */
+class DroneLifecycleStressTests {
+
+    private static final String SERIAL = "d1";
+    private static final int THREADS = 32;
+    private static final int CALLS = 10_000;
+
+    private static final Map<State, State> NEXT = Map.of(
+            State.LOADED, State.DELIVERING,
+            State.DELIVERING, State.DELIVERED,
+            State.DELIVERED, State.RETURNING,
+            State.RETURNING, State.IDLE);
+
+    @ParameterizedTest(name = "command queues: {0}")
+    @ValueSource(booleans = {false, true})
+    void concurrentTransitionsOnOneDroneAreSerialized(boolean queued) throws Exception {
+        CasDrone store = new CasDrone();
+        DroneRepository droneRepository = mock(DroneRepository.class);
+        when(droneRepository.findById(SERIAL)).thenAnswer(inv -> Optional.of(store.snapshot()));
+        when(droneRepository.transitionState(eq(SERIAL), any(), any()))
+                .thenAnswer(inv -> store.transition(inv.getArgument(1), inv.getArgument(2), false));
+        when(droneRepository.unload(eq(SERIAL), any(), any()))
+                .thenAnswer(inv -> store.transition(List.of(inv.<State>getArgument(1)), inv.getArgument(2), true));
+        when(droneRepository.loadMedication(eq(SERIAL), any(), anyFloat()))
+                .thenAnswer(inv -> store.load(inv.getArgument(2)));
+        when(droneRepository.findAllById(any())).thenAnswer(inv -> List.of(store.snapshot()));
+        when(droneRepository.updateAll(anyCollection())).thenAnswer(inv -> store.update(inv.getArgument(0)));
+        DroneCommandQueues commandQueues = new DroneCommandQueues(queued, 4, 32);
+        DroneService service = new DroneService(droneRepository, mock(MedicationRepository.class), new FleetCache(false, 0), event -> { },
+                new DroneMetrics(new SimpleMeterRegistry()), new MedicationCache(false, 0, 0),
+                new DroneWriteBehind(droneRepository, new FleetCache(false, 0), false, 200), commandQueues);
+
+        List<ThrowingCall> calls = List.of(
+                () -> service.sendDroneForDelivery(SERIAL),
+                () -> service.deliverDrone(SERIAL),
+                () -> service.returnDrone(SERIAL),
+                () -> service.markIdle(SERIAL),
+                () -> assertThat(service.loadDrone(SERIAL, MedRequest.builder().weight(500).build()).getCode())
+                        .isIn("200", "600", "606"));
+
+        AtomicInteger transitionsWon = new AtomicInteger();
+        AtomicInteger conflicts = new AtomicInteger();
+        List<Throwable> unexpected = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        for (int i = 0; i < CALLS; i++) {
+            int op = i % calls.size();
+            pool.execute(() -> {
+                try {
+                    start.await();
+                    calls.get(op).run();
+                    if (op < 4) {
+                        transitionsWon.incrementAndGet();
+                    }
+                } catch (DroneStateConflictException e) {
+                    conflicts.incrementAndGet();
+                } catch (Throwable e) {
+                    synchronized (unexpected) {
+                        unexpected.add(e);
+                    }
+                }
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertThat(pool.awaitTermination(1, TimeUnit.MINUTES)).isTrue();
+        commandQueues.shutdown();
+
+        assertThat(unexpected).isEmpty();
+        assertThat(transitionsWon.get() + conflicts.get()).isEqualTo(CALLS / calls.size() * 4);
+        assertThat(transitionsWon.get()).isEqualTo(store.lifecycleMoves.get()).isPositive();
+        assertThat(store.snapshot().getVersion()).isEqualTo(store.writes.get());
+    }
+
+    @FunctionalInterface
+    private interface ThrowingCall {
+        void run() throws Exception;
+    }
+
+    /**
+     * One drone behind a lock, updated the way the conditional Mongo updates do.
+     */
+    private static class CasDrone {
+
+        private final AtomicInteger writes = new AtomicInteger();
+        private final AtomicInteger lifecycleMoves = new AtomicInteger();
+        private final Map<String, Drone> docs = new ConcurrentHashMap<>();
+
+        CasDrone() {
+            docs.put(SERIAL, Drone.builder()
+                    .serialNumber(SERIAL)
+                    .weightClass(WeightModel.HEAVY_WEIGHT)
+                    .weightLimit(500)
+                    .batteryCapacity(100)
+                    .state(State.LOADED)
+                    .loadedMeds(new ArrayList<>(List.of("m0")))
+                    .loadedWeight(500f)
+                    .medCount(1)
+                    .version(0L)
+                    .build());
+        }
+
+        synchronized Drone snapshot() {
+            Drone d = docs.get(SERIAL);
+            return d.toBuilder().loadedMeds(new ArrayList<>(d.getLoadedMeds())).build();
+        }
+
+        synchronized Drone transition(Collection<State> from, State to, boolean unload) {
+            Drone d = docs.get(SERIAL);
+            if (!from.contains(d.getState())) {
+                return null;
+            }
+            if (to != State.LOADED) {
+                assertThat(NEXT.get(d.getState())).isEqualTo(to);
+                lifecycleMoves.incrementAndGet();
+            }
+            d.setState(to);
+            if (unload) {
+                d.setLoadedMeds(new ArrayList<>());
+                d.setLoadedWeight(0f);
+                d.setMedCount(0);
+            }
+            return bump(d);
+        }
+
+        synchronized Drone load(float weight) {
+            Drone d = docs.get(SERIAL);
+            if (!Drone.LOADABLE_STATES.contains(d.getState()) || d.getLoadedWeight() + weight > d.getWeightLimit()) {
+                return null;
+            }
+            d.setLoadedWeight(d.getLoadedWeight() + weight);
+            d.setMedCount(d.getMedCount() + 1);
+            d.getLoadedMeds().add("m" + writes.get());
+            d.setState(d.getLoadedWeight() >= d.getWeightLimit() ? State.LOADED : State.LOADING);
+            return bump(d);
+        }
+
+        // updateAll: the whole drone written back if its version is still the one read
+        synchronized List<Drone> update(Collection<Drone> written) {
+            List<Drone> applied = new ArrayList<>();
+            for (Drone drone : written) {
+                Drone d = docs.get(SERIAL);
+                if (!d.getVersion().equals(drone.getVersion())) {
+                    continue;
+                }
+                assertThat(drone.getState()).isIn(State.LOADING, State.LOADED);
+                docs.put(SERIAL, drone.toBuilder().loadedMeds(new ArrayList<>(drone.getLoadedMeds())).build());
+                applied.add(bump(docs.get(SERIAL)));
+            }
+            return applied;
+        }
+
+        private Drone bump(Drone d) {
+            d.setVersion(d.getVersion() + 1);
+            writes.incrementAndGet();
+            return snapshot();
+        }
+    }
+}
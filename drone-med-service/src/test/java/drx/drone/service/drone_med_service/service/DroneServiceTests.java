@@ -0,0 +1,414 @@
+package drx.drone.service.drone_med_service.service;
+
+import drx.drone.service.drone_med_service.dto.BatchLoadRequest;
+import drx.drone.service.drone_med_service.dto.BatchLoadResult;
+import drx.drone.service.drone_med_service.dto.CursorPage;
+import drx.drone.service.drone_med_service.dto.MedRequest;
+import drx.drone.service.drone_med_service.exception.DroneNotExistException;
+import drx.drone.service.drone_med_service.exception.DroneStateConflictException;
+import drx.drone.service.drone_med_service.exception.ErrorResponse;
+import drx.drone.service.drone_med_service.exception.InvalidPageRequestException;
+import drx.drone.service.drone_med_service.exception.MedicationNotFoundException;
+import drx.drone.service.drone_med_service.model.Drone;
+import drx.drone.service.drone_med_service.model.Medication;
+import drx.drone.service.drone_med_service.model.State;
+import drx.drone.service.drone_med_service.model.WeightModel;
+import drx.drone.service.drone_med_service.repository.DroneRepository;
+import drx.drone.service.drone_med_service.repository.MedicationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.invocation.InvocationOnMock;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyFloat;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DroneServiceTests {
+
+    private DroneRepository droneRepository;
+    private MedicationRepository medicationRepository;
+    private DroneService service;
+    private List<Object> events;
+    private SimpleMeterRegistry registry;
+    private MedicationCache medicationCache;
+
+    @BeforeEach
+    void setUp() {
+        droneRepository = mock(DroneRepository.class);
+        medicationRepository = mock(MedicationRepository.class);
+        events = new ArrayList<>();
+        registry = new SimpleMeterRegistry();
+        medicationCache = new MedicationCache(true, 100, 60_000);
+        service = new DroneService(droneRepository, medicationRepository, new FleetCache(false, 0), events::add, new DroneMetrics(registry),
+                medicationCache, new DroneWriteBehind(droneRepository, new FleetCache(false, 0), false, 200),
+                new DroneCommandQueues(false, 0, 0));
+    }
+
+    @Test
+    void totalLoadedWeightUsesOneQueryForAllMeds() {
+        Drone drone = drone("d1", "m1", "m2", "m1");
+        when(medicationRepository.findAllById(anyIterable())).thenReturn(List.of(med("m1", 10), med("m2", 25)));
+
+        assertThat(service.getTotalLoadedWeight(drone)).isEqualTo(45f);
+        verify(medicationRepository, times(1)).findAllById(anyIterable());
+        verify(medicationRepository, never()).findById(any());
+    }
+
+    @Test
+    void cachedMedsAreNotReadAgainUntilRewritten() throws Exception {
+        when(medicationRepository.findAllById(anyIterable())).thenReturn(List.of(med("m1", 10), med("m2", 25)));
+        assertThat(service.getTotalLoadedWeight(drone("d1", "m1", "m2"))).isEqualTo(35f);
+
+        when(medicationRepository.findAllById(anyIterable())).thenReturn(List.of(med("m3", 5)));
+        assertThat(service.getTotalLoadedWeight(drone("d2", "m2", "m3"))).isEqualTo(30f);
+        verify(medicationRepository).findAllById(Set.of("m3"));
+
+        when(droneRepository.loadMedication(eq("d1"), eq("m1"), anyFloat())).thenReturn(drone("d1", "m1", "m2", "m1"));
+        service.loadDrone("d1", MedRequest.builder().id("m1").name("med").code("MED_1").weight(12).build());
+        assertThat(medicationCache.get("m1")).isEmpty();
+        assertThat(medicationCache.get("m2")).isPresent();
+    }
+
+    @Test
+    void totalLoadedWeightThrowsForUnknownMed() {
+        Drone drone = drone("d1", "m1", "gone");
+        when(medicationRepository.findAllById(anyIterable())).thenReturn(List.of(med("m1", 10)));
+
+        assertThatThrownBy(() -> service.getTotalLoadedWeight(drone))
+                .isInstanceOf(MedicationNotFoundException.class)
+                .hasMessageContaining("gone");
+    }
+
+    @Test
+    void loadedMedsKeepDroneOrderAndSkipUnknownMeds() {
+        when(droneRepository.findById("d1")).thenReturn(Optional.of(drone("d1", "m2", "gone", "m1")));
+        when(medicationRepository.findAllById(anyIterable())).thenReturn(List.of(med("m1", 10), med("m2", 25)));
+
+        assertThat(service.getLoadedMeds("d1").orElseThrow())
+                .extracting(Medication::getId)
+                .containsExactly("m2", "m1");
+        verify(medicationRepository, never()).findById(any());
+    }
+
+    @Test
+    void loadIsOneConditionalUpdateThenMedicationSave() throws Exception {
+        when(droneRepository.loadMedication(eq("d1"), any(), eq(50f))).thenReturn(drone("d1", "m1"));
+
+        ErrorResponse response = service.loadDrone("d1", medRequest(50));
+
+        assertThat(response.getCode()).isEqualTo("200");
+        verify(medicationRepository).save(any(Medication.class));
+        verify(droneRepository, never()).findById(any());
+        verify(droneRepository, never()).save(any());
+    }
+
+    @Test
+    void refusedLoadReportsWhyAndMarksDroneLoaded() throws Exception {
+        Drone full = drone("d1");
+        full.setLoadedWeight(480f);
+        full.setMedCount(4);
+        when(droneRepository.findById("d1")).thenReturn(Optional.of(full));
+
+        ErrorResponse response = service.loadDrone("d1", medRequest(50));
+
+        assertThat(response.getCode()).isEqualTo("600");
+        verify(droneRepository).transitionState("d1", List.of(State.IDLE, State.LOADING), State.LOADED);
+        ArgumentCaptor<Medication> saved = ArgumentCaptor.forClass(Medication.class);
+        verify(medicationRepository).save(saved.capture());
+        verify(medicationRepository).deleteById(saved.getValue().getId());
+    }
+
+    @Test
+    void medicationIsSavedBeforeTheDroneIsLoaded() {
+        when(medicationRepository.save(any(Medication.class))).thenThrow(new IllegalStateException("no primary"));
+
+        assertThatThrownBy(() -> service.loadDrone("d1", medRequest(50))).isInstanceOf(IllegalStateException.class);
+        verify(droneRepository, never()).loadMedication(any(), any(), anyFloat());
+    }
+
+    @Test
+    void loadOntoMissingDroneIsRejected() throws Exception {
+        when(droneRepository.findById("nope")).thenReturn(Optional.empty());
+
+        assertThat(service.loadDrone("nope", medRequest(10)).getCode()).isEqualTo("603");
+        assertThat(registry.get("drone.load.outcomes").tags("code", "603", "mode", "single").counter().count()).isEqualTo(1);
+        assertThat(registry.get("drone.service.calls").tag("operation", "load").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void legacyDroneGetsPayloadBackfilledBeforeRetry() throws Exception {
+        Drone legacy = drone("d1", "m1");
+        when(droneRepository.findById("d1")).thenReturn(Optional.of(legacy));
+        when(medicationRepository.findAllById(anyIterable())).thenReturn(List.of(med("m1", 30)));
+        when(droneRepository.loadMedication(eq("d1"), any(), eq(10f))).thenReturn(null, legacy);
+
+        assertThat(service.loadDrone("d1", medRequest(10)).getCode()).isEqualTo("200");
+        verify(droneRepository).backfillPayload("d1", 30f, 1);
+    }
+
+    @Test
+    void loadOntoDeliveringDroneIsRefusedWithoutTouchingIt() throws Exception {
+        Drone delivering = drone("d1");
+        delivering.setState(State.DELIVERING);
+        delivering.setLoadedWeight(0f);
+        delivering.setMedCount(0);
+        when(droneRepository.findById("d1")).thenReturn(Optional.of(delivering));
+
+        assertThat(service.loadDrone("d1", medRequest(10)).getCode()).isEqualTo("606");
+        verify(droneRepository, never()).transitionState(any(), any(), any());
+    }
+
+    @Test
+    void everyAcceptedWritePublishesTheStoredDrone() throws Exception {
+        Drone loaded = drone("d1", "m1");
+        Drone delivering = drone("d1", "m1");
+        delivering.setState(State.DELIVERING);
+        when(droneRepository.loadMedication(eq("d1"), any(), eq(50f))).thenReturn(loaded);
+        when(droneRepository.transitionState("d1", List.of(State.LOADED), State.DELIVERING)).thenReturn(delivering);
+
+        service.loadDrone("d1", medRequest(50));
+        service.sendDroneForDelivery("d1");
+        assertThatThrownBy(() -> service.deliverDrone("d1")).isInstanceOf(DroneNotExistException.class);
+
+        assertThat(events).containsExactly(new DroneChangedEvent(loaded), new DroneChangedEvent(delivering));
+    }
+
+    @Test
+    void transitionFromUnexpectedStateIsAConflict() {
+        Drone idle = drone("d1");
+        idle.setState(State.IDLE);
+        when(droneRepository.findById("d1")).thenReturn(Optional.of(idle));
+
+        assertThatThrownBy(() -> service.deliverDrone("d1"))
+                .isInstanceOf(DroneStateConflictException.class)
+                .hasMessageContaining("IDLE");
+        assertThatThrownBy(() -> service.deliverDrone("gone"))
+                .isInstanceOf(DroneNotExistException.class);
+    }
+
+    @Test
+    void batchLoadAppliesSingleLoadRulesAndWritesOnce() {
+        Drone empty = drone("d1");
+        empty.setState(State.IDLE);
+        empty.setLoadedWeight(0f);
+        empty.setMedCount(0);
+        empty.setVersion(3L);
+        when(droneRepository.findAllById(anyIterable())).thenReturn(List.of(empty));
+        when(droneRepository.updateAll(anyCollection())).thenAnswer(DroneServiceTests::appliedAsWritten);
+
+        List<BatchLoadResult> results = service.loadDrones(List.of(
+                BatchLoadRequest.builder().serialNumber("d1").medications(List.of(medRequest(200), medRequest(300), medRequest(50))).build(),
+                BatchLoadRequest.builder().serialNumber("gone").medications(List.of(medRequest(10))).build()));
+
+        assertThat(results.get(0).getResults()).extracting(ErrorResponse::getCode).containsExactly("200", "200", "600");
+        assertThat(results.get(1).getResults()).extracting(ErrorResponse::getCode).containsExactly("603");
+
+        ArgumentCaptor<Collection<Drone>> written = ArgumentCaptor.forClass(Collection.class);
+        verify(droneRepository).updateAll(written.capture());
+        assertThat(written.getValue()).singleElement().satisfies(d -> {
+            assertThat(d.getState()).isEqualTo(State.LOADED);
+            assertThat(d.getLoadedWeight()).isEqualTo(500f);
+            assertThat(d.getMedCount()).isEqualTo(2);
+            assertThat(d.getBatteryCapacity()).isEqualTo(70);
+            assertThat(d.getVersion()).isEqualTo(3L);
+        });
+        verify(medicationRepository).bulkSave(argThat(meds -> meds.size() == 2));
+        verify(droneRepository, never()).loadMedication(any(), any(), anyFloat());
+    }
+
+    @Test
+    void batchLoadReportsConflictWhenDroneChangedUnderneath() {
+        Drone empty = drone("d1");
+        empty.setLoadedWeight(0f);
+        empty.setMedCount(0);
+        when(droneRepository.findAllById(anyIterable())).thenReturn(List.of(empty));
+        when(droneRepository.updateAll(anyCollection())).thenReturn(List.of());
+
+        List<BatchLoadResult> results = service.loadDrones(List.of(
+                BatchLoadRequest.builder().serialNumber("d1").medications(List.of(medRequest(100))).build()));
+
+        assertThat(results.get(0).getResults()).extracting(ErrorResponse::getCode).containsExactly("604");
+        ArgumentCaptor<List<Medication>> saved = ArgumentCaptor.forClass(List.class);
+        InOrder order = inOrder(medicationRepository, droneRepository);
+        order.verify(medicationRepository).bulkSave(saved.capture());
+        order.verify(droneRepository).updateAll(anyCollection());
+        order.verify(medicationRepository).deleteAllById(List.of(saved.getValue().get(0).getId()));
+    }
+
+    @Test
+    void batchLoadKeepsClientSuppliedMedicationsWhenDroneChangedUnderneath() {
+        Drone empty = drone("d1");
+        empty.setLoadedWeight(0f);
+        empty.setMedCount(0);
+        when(droneRepository.findAllById(anyIterable())).thenReturn(List.of(empty));
+        when(droneRepository.updateAll(anyCollection())).thenReturn(List.of());
+        MedRequest catalogued = MedRequest.builder().id("catalog-1").name("med").code("MED_1").weight(50).build();
+
+        List<BatchLoadResult> results = service.loadDrones(List.of(
+                BatchLoadRequest.builder().serialNumber("d1").medications(List.of(catalogued, medRequest(100))).build()));
+
+        assertThat(results.get(0).getResults()).extracting(ErrorResponse::getCode).containsExactly("604", "604");
+        ArgumentCaptor<List<Medication>> saved = ArgumentCaptor.forClass(List.class);
+        verify(medicationRepository).bulkSave(saved.capture());
+        assertThat(saved.getValue()).extracting(Medication::getId).hasSize(2).contains("catalog-1");
+        verify(medicationRepository).deleteAllById(List.of(saved.getValue().get(1).getId()));
+    }
+
+    @Test
+    void batchLoadPublishesTheDroneAsStored() {
+        Drone empty = drone("d1");
+        empty.setState(State.IDLE);
+        empty.setLoadedWeight(0f);
+        empty.setMedCount(0);
+        empty.setVersion(3L);
+        when(droneRepository.findAllById(anyIterable())).thenReturn(List.of(empty));
+        // a telemetry reading landed between the batch's update and our return
+        when(droneRepository.updateAll(anyCollection())).thenAnswer(inv -> appliedAsWritten(inv).stream()
+                .map(d -> d.toBuilder().batteryCapacity(42).version(d.getVersion() + 1).build()).toList());
+
+        service.loadDrones(List.of(BatchLoadRequest.builder().serialNumber("d1").medications(List.of(medRequest(100))).build()));
+
+        assertThat(events).singleElement().isInstanceOfSatisfying(DroneChangedEvent.class, event -> {
+            assertThat(event.drone().getBatteryCapacity()).isEqualTo(42);
+            assertThat(event.drone().getVersion()).isEqualTo(5L);
+        });
+        verify(medicationRepository, never()).deleteAllById(any());
+    }
+
+    @Test
+    void loadsQueuedBehindATransitionAreCheckedAndWrittenTogether() throws Exception {
+        when(droneRepository.updateAll(anyCollection())).thenAnswer(DroneServiceTests::appliedAsWritten);
+
+        List<String> codes = loadWhileDroneBusy(medRequest(200), medRequest(250), medRequest(100));
+
+        assertThat(codes).containsExactly("200", "200", "600");
+        verify(droneRepository).findAllById(anyIterable());
+        verify(droneRepository).updateAll(anyCollection());
+        verify(droneRepository, never()).loadMedication(any(), any(), anyFloat());
+        verify(medicationRepository).bulkSave(argThat(meds -> meds.size() == 2));
+    }
+
+    @Test
+    void queuedLoadsFallBackToSingleLoadsWhenTheDroneChangedUnderneath() throws Exception {
+        when(droneRepository.updateAll(anyCollection())).thenReturn(List.of());
+        when(droneRepository.loadMedication(eq("d1"), any(), anyFloat())).thenReturn(drone("d1"));
+
+        List<String> codes = loadWhileDroneBusy(medRequest(200), medRequest(150));
+
+        assertThat(codes).containsExactly("200", "200");
+        verify(droneRepository, times(2)).loadMedication(eq("d1"), any(), anyFloat());
+    }
+
+    // queues the loads behind a transition that holds the drone until all of them are waiting
+    private List<String> loadWhileDroneBusy(MedRequest... medRequests) throws Exception {
+        DroneCommandQueues commandQueues = new DroneCommandQueues(true, 1, 32);
+        DroneService queued = new DroneService(droneRepository, medicationRepository, new FleetCache(false, 0), events::add,
+                new DroneMetrics(registry), medicationCache, new DroneWriteBehind(droneRepository, new FleetCache(false, 0), false, 200),
+                commandQueues);
+        Drone idle = drone("d1");
+        idle.setState(State.IDLE);
+        idle.setLoadedWeight(0f);
+        idle.setMedCount(0);
+        idle.setVersion(3L);
+        when(droneRepository.findAllById(anyIterable())).thenReturn(List.of(idle));
+        CountDownLatch busy = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(droneRepository.transitionState(eq("d1"), any(), any())).thenAnswer(inv -> {
+            busy.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return idle;
+        });
+        ExecutorService callers = Executors.newFixedThreadPool(medRequests.length + 1);
+        try {
+            callers.submit(() -> queued.markIdle("d1"));
+            busy.await(5, TimeUnit.SECONDS);
+            List<Future<ErrorResponse>> loads = new ArrayList<>();
+            for (MedRequest medRequest : medRequests) {
+                int ahead = commandQueues.pending();
+                loads.add(callers.submit(() -> queued.loadDrone("d1", medRequest)));
+                while (commandQueues.pending() == ahead) {
+                    Thread.sleep(1);
+                }
+            }
+            release.countDown();
+            List<String> codes = new ArrayList<>();
+            for (Future<ErrorResponse> load : loads) {
+                codes.add(load.get(5, TimeUnit.SECONDS).getCode());
+            }
+            return codes;
+        } finally {
+            callers.shutdownNow();
+            commandQueues.shutdown();
+        }
+    }
+
+    @Test
+    void pagesReadOneExtraDroneToKnowIfThereIsANextPage() {
+        when(droneRepository.findPage(null, 3)).thenReturn(List.of(drone("d1"), drone("d2"), drone("d3")));
+        when(droneRepository.findPage("d2", 3, List.of("state")))
+                .thenReturn(List.of(Map.of("serialNumber", "d3", "state", "IDLE")));
+
+        CursorPage<?> first = service.getDronePage(null, 2, null);
+        assertThat(first.getItems()).extracting("serialNumber").containsExactly("d1", "d2");
+        assertThat(first.getNextCursor()).isNotNull().doesNotContain("d2");
+
+        CursorPage<?> last = service.getDronePage(first.getNextCursor(), 2, List.of("state"));
+        assertThat(last.getItems()).hasSize(1);
+        assertThat(last.getNextCursor()).isNull();
+
+        assertThatThrownBy(() -> service.getDronePage(null, 0, null)).isInstanceOf(InvalidPageRequestException.class);
+        assertThatThrownBy(() -> service.getDronePage("not base64!", 2, null)).isInstanceOf(InvalidPageRequestException.class);
+    }
+
+    private static MedRequest medRequest(float weight) {
+        return MedRequest.builder().name("med").code("MED_1").weight(weight).build();
+    }
+
+    private static Drone drone(String serialNumber, String... medIds) {
+        return Drone.builder()
+                .serialNumber(serialNumber)
+                .weightClass(WeightModel.HEAVY_WEIGHT)
+                .weightLimit(500)
+                .batteryCapacity(100)
+                .state(State.LOADING)
+                .loadedMeds(new ArrayList<>(List.of(medIds)))
+                .build();
+    }
+
+    private static Medication med(String id, float weight) {
+        return Medication.builder().id(id).name(id).code(id).weight(weight).build();
+    }
+
+    // updateAll as if every update applied: the drones as written, one version on
+    private static List<Drone> appliedAsWritten(InvocationOnMock inv) {
+        return inv.<Collection<Drone>>getArgument(0).stream()
+                .map(d -> d.toBuilder().version(d.getVersion() + 1).build())
+                .toList();
+    }
+}
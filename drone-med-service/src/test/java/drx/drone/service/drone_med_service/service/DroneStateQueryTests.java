@@ -0,0 +1,74 @@
+package drx.drone.service.drone_med_service.service;
+
+import drx.drone.service.drone_med_service.model.Drone;
+import drx.drone.service.drone_med_service.model.State;
+import drx.drone.service.drone_med_service.model.WeightModel;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Drones of one state are read through the {@code state} index, not by scanning the fleet. Needs a
+ * real database, so it only runs with {@code -Dspring.data.mongodb.uri=...}. Seeded drones are
+ * removed afterwards. How the time behaves as the fleet grows is measured by
+ * {@code DroneStateQueryMongoBenchmark}.
+ */
+@SpringBootTest
+@EnabledIfSystemProperty(named = "spring.data.mongodb.uri", matches = ".+")
+class DroneStateQueryTests {
+
+    private static final String PREFIX = "state-query-";
+    private static final int LOADED_DRONES = 10;
+    private static final int IDLE_DRONES = 1_000;
+
+    @Autowired
+    private DroneService droneService;
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    @Autowired
+    private MongoMappingContext mappingContext;
+
+    @AfterEach
+    void cleanUp() {
+        mongoTemplate.remove(query(where("serialNumber").regex("^" + PREFIX)), Drone.class);
+    }
+
+    @Test
+    void loadedDronesAreReadThroughTheStateIndex() {
+        IndexResolver.create(mappingContext).resolveIndexFor(Drone.class)
+                .forEach(mongoTemplate.indexOps(Drone.class)::createIndex);
+        List<Drone> drones = new ArrayList<>();
+        for (int i = 0; i < LOADED_DRONES + IDLE_DRONES; i++) {
+            drones.add(Drone.builder()
+                    .serialNumber(PREFIX + i)
+                    .weightClass(WeightModel.MIDDLE_WEIGHT)
+                    .weightLimit(400)
+                    .batteryCapacity(100)
+                    .state(i < LOADED_DRONES ? State.LOADED : State.IDLE)
+                    .build());
+        }
+        mongoTemplate.insert(drones, Drone.class);
+
+        assertThat(droneService.getLoadedDrones().orElseThrow())
+                .filteredOn(drone -> drone.getSerialNumber().startsWith(PREFIX))
+                .hasSize(LOADED_DRONES)
+                .allSatisfy(drone -> assertThat(drone.getState()).isEqualTo(State.LOADED));
+        Document plan = mongoTemplate.getCollection("drones")
+                .find(new Document("state", State.LOADED.name()))
+                .explain();
+        assertThat(plan.toJson()).contains("IXSCAN").doesNotContain("COLLSCAN");
+    }
+}
@@ -0,0 +1,216 @@
+package drx.drone.service.drone_med_service.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import drx.drone.service.drone_med_service.dto.MedRequest;
+import drx.drone.service.drone_med_service.dto.TelemetryReading;
+import drx.drone.service.drone_med_service.exception.DroneStateConflictException;
+import drx.drone.service.drone_med_service.model.Drone;
+import drx.drone.service.drone_med_service.model.State;
+import drx.drone.service.drone_med_service.model.WeightModel;
+import drx.drone.service.drone_med_service.repository.DroneRepository;
+import drx.drone.service.drone_med_service.repository.DroneRepositoryCustom.StateChange;
+import drx.drone.service.drone_med_service.repository.MedicationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyFloat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DroneWriteBehindTests {
+
+    private DroneRepository droneRepository;
+    private FleetCache fleetCache;
+    private DroneWriteBehind writeBehind;
+    private DroneService service;
+    private final List<Object> events = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        droneRepository = mock(DroneRepository.class);
+        fleetCache = new FleetCache(true, 100);
+        when(droneRepository.isAvailable()).thenReturn(true);
+        when(droneRepository.bulkTransition(anyCollection())).thenReturn(List.of());
+        writeBehind = new DroneWriteBehind(droneRepository, fleetCache, true, 200);
+        service = new DroneService(droneRepository, mock(MedicationRepository.class), fleetCache, events::add,
+                new DroneMetrics(new SimpleMeterRegistry()), new MedicationCache(false, 0, 0), writeBehind,
+                new DroneCommandQueues(false, 0, 0));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void transitionsAreAcknowledgedAtOnceAndWrittenAsOneUpdate() {
+        fleetCache.put(drone("d1", State.LOADED, 3L));
+
+        service.sendDroneForDelivery("d1");
+        service.deliverDrone("d1");
+        service.returnDrone("d1");
+
+        verify(droneRepository, never()).transitionState(anyString(), anyCollection(), any());
+        Drone cached = fleetCache.get("d1").orElseThrow();
+        assertThat(cached.getState()).isEqualTo(State.RETURNING);
+        assertThat(cached.getMedCount()).isZero();
+        assertThat(cached.getVersion()).isEqualTo(6L);
+        assertThat(events).hasSize(3);
+        assertThat(writeBehind.pending()).isEqualTo(1);
+
+        writeBehind.tick();
+
+        ArgumentCaptor<Collection<StateChange>> written = ArgumentCaptor.forClass(Collection.class);
+        verify(droneRepository).bulkTransition(written.capture());
+        assertThat(written.getValue()).containsExactly(new StateChange("d1", State.LOADED, State.RETURNING, true, 3));
+        assertThat(writeBehind.pending()).isZero();
+    }
+
+    @Test
+    void transitionFromTheWrongStateIsRefusedInMemory() {
+        fleetCache.put(drone("d1", State.IDLE, 0L));
+
+        assertThatThrownBy(() -> service.deliverDrone("d1")).isInstanceOf(DroneStateConflictException.class);
+        assertThat(writeBehind.pending()).isZero();
+        assertThat(fleetCache.get("d1").orElseThrow().getState()).isEqualTo(State.IDLE);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void loadFlushesTheDroneBeforeWriting() throws Exception {
+        fleetCache.put(drone("d1", State.RETURNING, 0L));
+        service.markIdle("d1");
+        when(droneRepository.loadMedication(anyString(), anyString(), anyFloat())).thenReturn(drone("d1", State.LOADING, 2L));
+
+        service.loadDrone("d1", MedRequest.builder().name("m").code("M").weight(10).build());
+
+        ArgumentCaptor<Collection<StateChange>> written = ArgumentCaptor.forClass(Collection.class);
+        InOrder order = inOrder(droneRepository);
+        order.verify(droneRepository).bulkTransition(written.capture());
+        order.verify(droneRepository).loadMedication(anyString(), anyString(), anyFloat());
+        assertThat(written.getValue()).containsExactly(new StateChange("d1", State.RETURNING, State.IDLE, false, 1));
+        assertThat(writeBehind.pending()).isZero();
+    }
+
+    @Test
+    void refusedWriteHandsTheCacheBackToTheDatabase() {
+        fleetCache.put(drone("d1", State.DELIVERING, 0L));
+        service.deliverDrone("d1");
+        Drone stored = drone("d1", State.IDLE, 7L);
+        when(droneRepository.bulkTransition(anyCollection())).thenReturn(List.of(stored));
+
+        writeBehind.tick();
+
+        assertThat(fleetCache.get("d1")).contains(stored);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void otherWritesToTheDroneDoNotUndoAnAcknowledgedTransition() {
+        fleetCache.put(drone("d1", State.LOADED, 3L));
+        service.sendDroneForDelivery("d1");
+        when(droneRepository.applyTelemetry(anyCollection())).thenReturn(1);
+        TelemetryBuffer telemetry = new TelemetryBuffer(droneRepository, fleetCache, Runnable::run, 100, 100, 1000);
+
+        // a battery reading written meanwhile, then the drone read back as the database has it: LOADED v4
+        telemetry.submit(List.of(TelemetryReading.builder().serialNumber("d1").battery(80).timestamp(1L).build()));
+        telemetry.flush();
+        writeBehind.cache(drone("d1", State.LOADED, 4L).toBuilder().batteryCapacity(80).build());
+
+        Drone cached = fleetCache.get("d1").orElseThrow();
+        assertThat(cached.getState()).isEqualTo(State.DELIVERING);
+        assertThat(cached.getBatteryCapacity()).isEqualTo(80);
+        service.deliverDrone("d1");
+        writeBehind.tick();
+
+        ArgumentCaptor<Collection<StateChange>> written = ArgumentCaptor.forClass(Collection.class);
+        verify(droneRepository).bulkTransition(written.capture());
+        assertThat(written.getValue()).containsExactly(new StateChange("d1", State.LOADED, State.DELIVERED, false, 2));
+    }
+
+    @Test
+    void readsTheCacheCannotServeFlushEveryDroneFirst() throws Exception {
+        // never warmed, so the cache is incomplete and lists come from the database
+        fleetCache.put(drone("d1", State.LOADED, 3L));
+        fleetCache.put(drone("d2", State.RETURNING, 0L));
+        service.sendDroneForDelivery("d1");
+        service.markIdle("d2");
+        when(droneRepository.findByState(State.LOADED)).thenReturn(List.of());
+
+        service.getLoadedDrones();
+
+        InOrder order = inOrder(droneRepository);
+        order.verify(droneRepository).bulkTransition(argThat(changes -> changes.size() == 2));
+        order.verify(droneRepository).findByState(State.LOADED);
+        assertThat(writeBehind.pending()).isZero();
+
+        service.deliverDrone("d1");
+        service.getDronePage(null, 10, null);
+        service.returnDrone("d1");
+        new FleetSummaryService(droneRepository, writeBehind, 0).getSummary();
+        service.markIdle("d1");
+        when(droneRepository.streamAll(null, null)).thenReturn(Stream.empty());
+        new ExportService(droneRepository, mock(MedicationRepository.class), writeBehind, new ObjectMapper())
+                .exportDrones(null, null, OutputStream.nullOutputStream());
+
+        order.verify(droneRepository).bulkTransition(anyCollection());
+        order.verify(droneRepository).findPage(null, 11);
+        order.verify(droneRepository).bulkTransition(anyCollection());
+        order.verify(droneRepository).summarize();
+        order.verify(droneRepository).bulkTransition(anyCollection());
+        order.verify(droneRepository).streamAll(null, null);
+        assertThat(writeBehind.pending()).isZero();
+    }
+
+    @Test
+    void flushesRunOnTheirOwnThread() throws Exception {
+        DroneWriteBehind timed = new DroneWriteBehind(droneRepository, fleetCache, true, 10);
+        List<String> threads = new CopyOnWriteArrayList<>();
+        when(droneRepository.bulkTransition(anyCollection())).thenAnswer(inv -> {
+            threads.add(Thread.currentThread().getName());
+            return List.of();
+        });
+        fleetCache.put(drone("d1", State.LOADED, 3L));
+        timed.transition("d1", State.LOADED, State.DELIVERING, false);
+
+        timed.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (timed.pending() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        timed.shutdown();
+
+        assertThat(timed.pending()).isZero();
+        assertThat(threads).containsOnly("drone-write-behind");
+    }
+
+    private static Drone drone(String serialNumber, State state, long version) {
+        return Drone.builder()
+                .serialNumber(serialNumber)
+                .weightClass(WeightModel.HEAVY_WEIGHT)
+                .weightLimit(500)
+                .batteryCapacity(100)
+                .state(state)
+                .loadedMeds(new ArrayList<>(List.of("m1")))
+                .loadedWeight(10f)
+                .medCount(1)
+                .version(version)
+                .build();
+    }
+}
@@ -0,0 +1,46 @@
+package drx.drone.service.drone_med_service.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import drx.drone.service.drone_med_service.model.Drone;
+import drx.drone.service.drone_med_service.model.State;
+import drx.drone.service.drone_med_service.model.WeightModel;
+import drx.drone.service.drone_med_service.repository.DroneRepository;
+import drx.drone.service.drone_med_service.repository.MedicationRepository;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ExportServiceTests {
+
+    @Test
+    void dronesAreWrittenOnePerLineAndTheCursorIsClosed() throws Exception {
+        DroneRepository droneRepository = mock(DroneRepository.class);
+        AtomicBoolean closed = new AtomicBoolean();
+        when(droneRepository.streamAll(State.IDLE, WeightModel.LIGHT_WEIGHT)).thenReturn(IntStream.range(0, 3)
+                .mapToObj(i -> Drone.builder().serialNumber("d" + i).state(State.IDLE).weightClass(WeightModel.LIGHT_WEIGHT).build())
+                .onClose(() -> closed.set(true)));
+        ObjectMapper objectMapper = new ObjectMapper();
+        ExportService exportService = new ExportService(droneRepository, mock(MedicationRepository.class),
+                new DroneWriteBehind(droneRepository, new FleetCache(false, 0), false, 200), objectMapper);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertThat(exportService.exportDrones(State.IDLE, WeightModel.LIGHT_WEIGHT, out)).isEqualTo(3);
+
+        String ndjson = out.toString(StandardCharsets.UTF_8);
+        assertThat(ndjson).endsWith("}\n");
+        List<String> lines = ndjson.lines().toList();
+        assertThat(lines).hasSize(3);
+        for (int i = 0; i < lines.size(); i++) {
+            assertThat(objectMapper.readTree(lines.get(i)).get("serialNumber").asText()).isEqualTo("d" + i);
+        }
+        assertThat(closed).isTrue();
+    }
+}
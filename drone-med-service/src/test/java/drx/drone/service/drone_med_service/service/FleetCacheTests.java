@@ -0,0 +1,164 @@
+package drx.drone.service.drone_med_service.service;
+
+import drx.drone.service.drone_med_service.dto.BatchLoadRequest;
+import drx.drone.service.drone_med_service.dto.DroneRequest;
+import drx.drone.service.drone_med_service.dto.MedRequest;
+import drx.drone.service.drone_med_service.exception.DroneStateConflictException;
+import drx.drone.service.drone_med_service.model.Drone;
+import drx.drone.service.drone_med_service.model.State;
+import drx.drone.service.drone_med_service.model.WeightModel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import drx.drone.service.drone_med_service.repository.DroneStore;
+import drx.drone.service.drone_med_service.repository.EmbeddedStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class FleetCacheTests {
+
+    @Test
+    void concurrentLifecycleCallsLeaveCacheMatchingTheRepository(@TempDir Path dataDir) throws Exception {
+        // a real store that hands out versions and applies the lifecycle guards, only not Mongo
+        EmbeddedStore store = new EmbeddedStore(dataDir.resolve("drones.snapshot").toString());
+        DroneStore droneRepository = yieldingAfterEachCall(store.droneStore());
+        FleetCache cache = new FleetCache(true, 1_000);
+        cache.warm(List.of());
+        DroneService service = new DroneService(droneRepository, store.medicationStore(), cache, event -> { },
+                new DroneMetrics(new SimpleMeterRegistry()), new MedicationCache(false, 0, 0),
+                new DroneWriteBehind(droneRepository, cache, false, 200), new DroneCommandQueues(false, 0, 0));
+        int fleetSize = 8;
+        for (int i = 0; i < fleetSize; i++) {
+            service.registerDrone(DroneRequest.builder().serialNumber("d" + i)
+                    .weightClass(WeightModel.values()[i % WeightModel.values().length]).build());
+        }
+
+        List<Throwable> unexpected = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        Random random = new Random(42);
+        // many short rounds, so more than one ends on a drone whose replies were cached out of order
+        for (int round = 0; round < 50; round++) {
+            List<Callable<Void>> callers = new ArrayList<>();
+            for (int t = 0; t < 16; t++) {
+                long seed = random.nextLong();
+                callers.add(() -> {
+                    callLifecycle(service, new Random(seed), fleetSize, 100, unexpected);
+                    return null;
+                });
+            }
+            pool.invokeAll(callers);
+
+            assertThat(unexpected).isEmpty();
+            assertThat(cache.findAll().orElseThrow()).containsExactlyInAnyOrderElementsOf(droneRepository.findAll());
+            for (State state : State.values()) {
+                assertThat(cache.findByState(state).orElseThrow())
+                        .containsExactlyInAnyOrderElementsOf(droneRepository.findByState(state));
+            }
+            // the store leaves out states no drone is in
+            Map<State, Long> counts = new EnumMap<>(cache.countByState().orElseThrow());
+            counts.values().removeIf(count -> count == 0);
+            assertThat(counts).isEqualTo(droneRepository.countByState());
+        }
+        pool.shutdown();
+        // the fleet really moved through the lifecycle, not just sat refusing calls
+        assertThat(droneRepository.findAll()).extracting(Drone::getVersion).allSatisfy(version -> assertThat(version).isGreaterThan(50));
+    }
+
+    private static void callLifecycle(DroneService service, Random random, int fleetSize, int calls, List<Throwable> unexpected) {
+        for (int i = 0; i < calls; i++) {
+            String serialNumber = "d" + random.nextInt(fleetSize);
+            MedRequest medRequest = MedRequest.builder().name("med").code("MED").weight(50 + random.nextInt(150)).build();
+            try {
+                switch (random.nextInt(6)) {
+                    case 0 -> service.loadDrone(serialNumber, medRequest);
+                    case 1 -> service.loadDrones(List.of(BatchLoadRequest.builder()
+                            .serialNumber(serialNumber).medications(List.of(medRequest, medRequest)).build()));
+                    case 2 -> service.sendDroneForDelivery(serialNumber);
+                    case 3 -> service.deliverDrone(serialNumber);
+                    case 4 -> service.returnDrone(serialNumber);
+                    default -> service.markIdle(serialNumber);
+                }
+            } catch (DroneStateConflictException e) {
+                // lost the race or the drone wasn't in that state, the cache must still agree
+            } catch (Throwable e) {
+                synchronized (unexpected) {
+                    unexpected.add(e);
+                }
+            }
+        }
+    }
+
+    @Test
+    void evictionKeepsSizeBoundedAndSendsListingsBackToMongo() {
+        FleetCache cache = new FleetCache(true, 3);
+        List<Drone> fleet = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            fleet.add(drone("d" + i, State.IDLE, 0));
+        }
+        cache.warm(fleet);
+
+        assertThat(cache.size()).isEqualTo(3);
+        assertThat(cache.get("d0")).isEmpty();
+        assertThat(cache.get("d4")).isPresent();
+        assertThat(cache.findAll()).isEmpty();
+        assertThat(cache.findByState(State.IDLE)).isEmpty();
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        cache.bindTo(registry);
+        assertThat(registry.get("drone.fleet.cache.evictions").functionCounter().count()).isEqualTo(2);
+        assertThat(registry.get("drone.fleet.cache.hits").functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("drone.fleet.cache.misses").functionCounter().count()).isEqualTo(3);
+    }
+
+    @Test
+    void disabledCacheHoldsNothing() {
+        FleetCache cache = new FleetCache(false, 10);
+        cache.warm(List.of(drone("d1", State.IDLE, 0)));
+        cache.put(drone("d2", State.IDLE, 0));
+
+        assertThat(cache.size()).isZero();
+        assertThat(cache.get("d1")).isEmpty();
+        assertThat(cache.findAll()).isEmpty();
+    }
+
+    // lets another caller in between a reply and its caching, as a busy node does, so replies reach the cache out of order
+    private static DroneStore yieldingAfterEachCall(DroneStore store) {
+        return mock(DroneStore.class, invocation -> {
+            try {
+                return invocation.getMethod().invoke(store, invocation.getArguments());
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                for (int i = ThreadLocalRandom.current().nextInt(3); i > 0; i--) {
+                    Thread.yield();
+                }
+            }
+        });
+    }
+
+    private static Drone drone(String serialNumber, State state, long version) {
+        return Drone.builder()
+                .serialNumber(serialNumber)
+                .weightClass(WeightModel.LIGHT_WEIGHT)
+                .weightLimit(200)
+                .batteryCapacity(100)
+                .state(state)
+                .loadedWeight(0f)
+                .medCount(0)
+                .version(version)
+                .build();
+    }
+}
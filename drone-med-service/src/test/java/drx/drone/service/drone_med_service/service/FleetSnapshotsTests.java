@@ -0,0 +1,113 @@
+package drx.drone.service.drone_med_service.service;
+
+import drx.drone.service.drone_med_service.model.Drone;
+import drx.drone.service.drone_med_service.model.State;
+import drx.drone.service.drone_med_service.model.WeightModel;
+import drx.drone.service.drone_med_service.repository.DroneRepository;
+import drx.drone.service.drone_med_service.repository.DroneSnapshot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FleetSnapshotsTests {
+
+    @TempDir
+    Path dir;
+
+    private DroneRepository droneRepository;
+    private Path path;
+
+    @BeforeEach
+    void setUp() {
+        droneRepository = mock(DroneRepository.class);
+        path = dir.resolve("fleet.snapshot");
+    }
+
+    @Test
+    void fleetIsReadBackFromTheSnapshotAndCaughtUpWithWhatChangedSince() throws Exception {
+        when(droneRepository.streamAll(null, null)).thenReturn(Stream.of(
+                drone("d1", State.IDLE, 1L, List.of()), drone("d2", State.LOADED, 4L, List.of("m1", "m2"))));
+        long before = System.currentTimeMillis();
+        new FleetSnapshots(droneRepository, true, path.toString()).snapshot();
+        assertThat(Files.exists(path)).isTrue();
+
+        Drone delivered = drone("d2", State.DELIVERED, 6L, List.of());
+        when(droneRepository.findChangedSince(anyLong())).thenReturn(List.of(delivered));
+        List<Drone> fleet = new ArrayList<>(new FleetSnapshots(droneRepository, true, path.toString()).loadFleet());
+        fleet.sort(Comparator.comparing(Drone::getSerialNumber));
+
+        assertThat(fleet).hasSize(2);
+        assertThat(fleet.get(0).getState()).isEqualTo(State.IDLE);
+        assertThat(fleet.get(0).getWeightClass()).isEqualTo(WeightModel.MIDDLE_WEIGHT);
+        assertThat(fleet.get(0).getBatteryCapacity()).isEqualTo(80);
+        assertThat(fleet.get(0).getVersion()).isEqualTo(1L);
+        assertThat(fleet.get(1)).isSameAs(delivered);
+        ArgumentCaptor<Long> since = ArgumentCaptor.forClass(Long.class);
+        verify(droneRepository).findChangedSince(since.capture());
+        assertThat(since.getValue()).isBetween(before - FleetSnapshots.RECONCILE_MARGIN_MILLIS,
+                System.currentTimeMillis() - FleetSnapshots.RECONCILE_MARGIN_MILLIS);
+        verify(droneRepository, never()).findAll();
+    }
+
+    @Test
+    void loadedMedsSurviveTheRoundTrip() throws Exception {
+        when(droneRepository.streamAll(null, null)).thenReturn(Stream.of(drone("d2", State.LOADED, 4L, List.of("m1", "m2"))));
+        new FleetSnapshots(droneRepository, true, path.toString()).snapshot();
+
+        DroneSnapshot.Columns columns = DroneSnapshot.read(path).getColumns();
+
+        assertThat(columns.size()).isEqualTo(1);
+        assertThat(columns.drone(0).getLoadedMeds()).containsExactly("m1", "m2");
+        assertThat(columns.drone(0).getUpdatedAt()).isEqualTo(1_000L);
+    }
+
+    @Test
+    void withoutASnapshotTheFleetIsScanned() {
+        List<Drone> all = List.of(drone("d1", State.IDLE, 1L, List.of()));
+        when(droneRepository.findAll()).thenReturn(all);
+
+        assertThat(new FleetSnapshots(droneRepository, true, path.toString()).loadFleet()).isEqualTo(all);
+        verify(droneRepository, never()).findChangedSince(anyLong());
+    }
+
+    @Test
+    void snapshotsAreSkippedWhileDisabledOrTheStoreIsDown() {
+        when(droneRepository.isAvailable()).thenReturn(false);
+        new FleetSnapshots(droneRepository, true, path.toString()).tick();
+        when(droneRepository.isAvailable()).thenReturn(true);
+        new FleetSnapshots(droneRepository, false, path.toString()).tick();
+
+        verify(droneRepository, never()).streamAll(null, null);
+        assertThat(Files.exists(path)).isFalse();
+    }
+
+    private static Drone drone(String serialNumber, State state, Long version, List<String> loadedMeds) {
+        return Drone.builder()
+                .serialNumber(serialNumber)
+                .weightClass(WeightModel.MIDDLE_WEIGHT)
+                .weightLimit(300f)
+                .batteryCapacity(80)
+                .state(state)
+                .loadedMeds(new ArrayList<>(loadedMeds))
+                .loadedWeight(loadedMeds.size() * 10f)
+                .medCount(loadedMeds.size())
+                .version(version)
+                .updatedAt(1_000L)
+                .build();
+    }
+}
@@ -0,0 +1,40 @@
+package drx.drone.service.drone_med_service.service;
+
+import drx.drone.service.drone_med_service.dto.FleetSummary;
+import drx.drone.service.drone_med_service.repository.DroneRepository;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FleetSummaryServiceTests {
+
+    private final DroneRepository droneRepository = mock(DroneRepository.class);
+    private final DroneWriteBehind writeBehind = new DroneWriteBehind(droneRepository, new FleetCache(false, 0), false, 200);
+
+    @Test
+    void summaryIsReusedWhileFresh() {
+        FleetSummary summary = FleetSummary.builder().total(3).computedAt(System.currentTimeMillis()).build();
+        when(droneRepository.summarize()).thenReturn(summary);
+        FleetSummaryService service = new FleetSummaryService(droneRepository, writeBehind, 60_000);
+
+        assertThat(service.getSummary()).isSameAs(summary);
+        assertThat(service.getSummary()).isSameAs(summary);
+        verify(droneRepository, times(1)).summarize();
+    }
+
+    @Test
+    void staleSummaryIsRecomputed() {
+        when(droneRepository.summarize())
+                .thenReturn(FleetSummary.builder().total(3).computedAt(System.currentTimeMillis() - 10_000).build())
+                .thenReturn(FleetSummary.builder().total(4).computedAt(System.currentTimeMillis()).build());
+        FleetSummaryService service = new FleetSummaryService(droneRepository, writeBehind, 5_000);
+
+        assertThat(service.getSummary().getTotal()).isEqualTo(3);
+        assertThat(service.getSummary().getTotal()).isEqualTo(4);
+        verify(droneRepository, times(2)).summarize();
+    }
+}
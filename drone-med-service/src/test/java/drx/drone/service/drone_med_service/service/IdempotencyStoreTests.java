@@ -0,0 +1,137 @@
+package drx.drone.service.drone_med_service.service;
+
+import drx.drone.service.drone_med_service.dto.MedRequest;
+import drx.drone.service.drone_med_service.exception.ErrorResponse;
+import drx.drone.service.drone_med_service.model.IdempotencyRecord;
+import drx.drone.service.drone_med_service.repository.IdempotencyRecordRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IdempotencyStoreTests {
+
+    private IdempotencyRecordRepository repository;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(IdempotencyRecordRepository.class);
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    void retryGetsTheFirstResponseWithoutLoadingAgain() throws Exception {
+        IdempotencyStore store = store(false);
+
+        assertThat(store.execute("d1", "k1", med(50), () -> load("200")).getCode()).isEqualTo("200");
+        assertThat(store.execute("d1", "k1", med(50), () -> load("600")).getCode()).isEqualTo("200");
+        // same key, other drone: another load
+        assertThat(store.execute("d2", "k1", med(50), () -> load("200")).getCode()).isEqualTo("200");
+        assertThat(store.execute("d1", "k1", med(60), () -> load("200")).getCode()).isEqualTo("609");
+        assertThat(loads).hasValue(2);
+        verify(repository, never()).save(any());
+    }
+
+    @Test
+    void lostRacesAndFailuresAreNotRemembered() throws Exception {
+        IdempotencyStore store = store(false);
+
+        assertThat(store.execute("d1", "k1", med(50), () -> load("604")).getCode()).isEqualTo("604");
+        assertThatThrownBy(() -> store.execute("d1", "k1", med(50), () -> {
+            throw new IllegalStateException("no primary");
+        })).isInstanceOf(IllegalStateException.class);
+        assertThat(store.execute("d1", "k1", med(50), () -> load("200")).getCode()).isEqualTo("200");
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void retryDuringTheFirstRequestWaitsForIt() throws Exception {
+        IdempotencyStore store = store(false);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<ErrorResponse> first = executor.submit(() -> store.execute("d1", "k1", med(50), () -> {
+                started.countDown();
+                release.await();
+                return load("200");
+            }));
+            started.await();
+            Future<ErrorResponse> retry = executor.submit(() -> store.execute("d1", "k1", med(50), () -> load("200")));
+            release.countDown();
+
+            assertThat(first.get().getCode()).isEqualTo("200");
+            assertThat(retry.get().getCode()).isEqualTo("200");
+            assertThat(loads).hasValue(1);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void persistedResponseIsReplayedAfterARestart() throws Exception {
+        when(repository.findById("d1:k1")).thenReturn(Optional.of(IdempotencyRecord.builder()
+                .id("d1:k1").request(med(50)).code("200").message("MEDS LOADED").build()));
+        IdempotencyStore store = store(true);
+
+        assertThat(store.execute("d1", "k1", med(50), () -> load("200")).getCode()).isEqualTo("200");
+        assertThat(loads).hasValue(0);
+
+        assertThat(store.execute("d1", "k2", med(50), () -> load("200")).getCode()).isEqualTo("200");
+        verify(repository).save(any(IdempotencyRecord.class));
+    }
+
+    @Test
+    void reactiveRetryIsReplayed() {
+        IdempotencyStore store = store(false);
+
+        StepVerifier.create(store.executeReactive("d1", "k1", med(50), () -> Mono.fromCallable(() -> load("200"))))
+                .assertNext(response -> assertThat(response.getCode()).isEqualTo("200"))
+                .verifyComplete();
+        StepVerifier.create(store.executeReactive("d1", "k1", med(50), () -> Mono.fromCallable(() -> load("601"))))
+                .assertNext(response -> assertThat(response.getCode()).isEqualTo("200"))
+                .verifyComplete();
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void cancelledOrEmptyReactiveLoadGivesTheKeyUp() {
+        IdempotencyStore store = store(false);
+
+        store.executeReactive("d1", "k1", med(50), Mono::never).subscribe().dispose();
+        StepVerifier.create(store.executeReactive("d1", "k1", med(50), Mono::empty)).verifyComplete();
+        StepVerifier.create(store.executeReactive("d1", "k1", med(50), () -> Mono.fromCallable(() -> load("200"))))
+                .assertNext(response -> assertThat(response.getCode()).isEqualTo("200"))
+                .verifyComplete();
+        assertThat(loads).hasValue(1);
+    }
+
+    private IdempotencyStore store(boolean persist) {
+        return new IdempotencyStore(repository, 100, 60_000, persist, 5_000);
+    }
+
+    private ErrorResponse load(String code) {
+        loads.incrementAndGet();
+        return new ErrorResponse(code, "");
+    }
+
+    private static MedRequest med(float weight) {
+        return MedRequest.builder().name("med").code("MED_1").weight(weight).build();
+    }
+}
@@ -0,0 +1,198 @@
+package drx.drone.service.drone_med_service.service;
+
+import drx.drone.service.drone_med_service.dto.MedRequest;
+import drx.drone.service.drone_med_service.exception.DroneNotExistException;
+import drx.drone.service.drone_med_service.exception.DroneStateConflictException;
+import drx.drone.service.drone_med_service.exception.ErrorResponse;
+import drx.drone.service.drone_med_service.model.Drone;
+import drx.drone.service.drone_med_service.model.Medication;
+import drx.drone.service.drone_med_service.model.State;
+import drx.drone.service.drone_med_service.model.WeightModel;
+import drx.drone.service.drone_med_service.repository.DroneRepository;
+import drx.drone.service.drone_med_service.repository.MedicationRepository;
+import drx.drone.service.drone_med_service.repository.ReactiveDroneRepository;
+import drx.drone.service.drone_med_service.repository.ReactiveMedicationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Answers;
+import org.mockito.InOrder;
+import org.mockito.stubbing.Answer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+class ReactiveDroneServiceTests {
+
+    // unstubbed reactive methods complete empty, like a query that matched nothing
+    private static final Answer<Object> EMPTY = invocation -> {
+        Class<?> type = invocation.getMethod().getReturnType();
+        if (type == Mono.class) {
+            return Mono.empty();
+        }
+        if (type == Flux.class) {
+            return Flux.empty();
+        }
+        return Answers.RETURNS_DEFAULTS.answer(invocation);
+    };
+
+    private ReactiveDroneRepository droneRepository;
+    private ReactiveMedicationRepository medicationRepository;
+    private ReactiveDroneService service;
+    private List<Object> events;
+
+    @BeforeEach
+    void setUp() {
+        droneRepository = mock(ReactiveDroneRepository.class, withSettings().defaultAnswer(EMPTY));
+        medicationRepository = mock(ReactiveMedicationRepository.class, withSettings().defaultAnswer(EMPTY));
+        when(medicationRepository.save(any(Medication.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        events = new ArrayList<>();
+        FleetCache fleetCache = new FleetCache(false, 0);
+        DroneMetrics metrics = new DroneMetrics(new SimpleMeterRegistry());
+        DroneService rules = new DroneService(mock(DroneRepository.class), mock(MedicationRepository.class), fleetCache,
+                event -> { }, metrics, new MedicationCache(false, 0, 0),
+                new DroneWriteBehind(mock(DroneRepository.class), fleetCache, false, 200), new DroneCommandQueues(false, 0, 0));
+        service = new ReactiveDroneService(droneRepository, medicationRepository, rules, fleetCache, events::add, metrics,
+                new MedicationCache(false, 0, 0));
+    }
+
+    @Test
+    void medicationIsSavedBeforeTheConditionalUpdate() {
+        Drone loaded = drone("d1");
+        when(droneRepository.loadMedication(eq("d1"), any(), eq(50f))).thenReturn(Mono.just(loaded));
+
+        StepVerifier.create(service.loadDrone("d1", medRequest(50)))
+                .assertNext(response -> assertThat(response.getCode()).isEqualTo("200"))
+                .verifyComplete();
+        InOrder order = inOrder(medicationRepository, droneRepository);
+        order.verify(medicationRepository).save(any(Medication.class));
+        order.verify(droneRepository).loadMedication(eq("d1"), any(), eq(50f));
+        verify(medicationRepository, never()).deleteById(any(String.class));
+        verify(droneRepository, never()).findById(any(String.class));
+        assertThat(events).containsExactly(new DroneChangedEvent(loaded));
+    }
+
+    @Test
+    void failedSaveLeavesTheDroneUntouched() {
+        when(medicationRepository.save(any(Medication.class))).thenReturn(Mono.error(new IllegalStateException("down")));
+
+        StepVerifier.create(service.loadDrone("d1", medRequest(50)))
+                .expectError(IllegalStateException.class)
+                .verify();
+        verify(droneRepository, never()).loadMedication(any(), any(), any(Float.class));
+    }
+
+    @Test
+    void refusedLoadReportsWhyAndMarksDroneLoaded() {
+        Drone full = drone("d1");
+        full.setLoadedWeight(480f);
+        full.setMedCount(4);
+        when(droneRepository.findById("d1")).thenReturn(Mono.just(full));
+
+        StepVerifier.create(service.loadDrone("d1", medRequest(50)))
+                .assertNext(response -> assertThat(response.getCode()).isEqualTo("600"))
+                .verifyComplete();
+        verify(droneRepository).transitionState("d1", List.of(State.IDLE, State.LOADING), State.LOADED);
+        // saved first, then dropped again since no drone holds it
+        verify(medicationRepository).deleteById(any(String.class));
+
+        StepVerifier.create(service.loadDrone("nope", medRequest(10)).map(ErrorResponse::getCode))
+                .expectNext("603")
+                .verifyComplete();
+
+        // a client-supplied id may be a catalog medication, a refused load leaves it alone
+        MedRequest existing = medRequest(50);
+        existing.setId("catalog-1");
+        StepVerifier.create(service.loadDrone("d1", existing).map(ErrorResponse::getCode))
+                .expectNext("600")
+                .verifyComplete();
+        verify(medicationRepository, never()).deleteById("catalog-1");
+    }
+
+    @Test
+    void legacyDroneGetsPayloadBackfilledBeforeRetry() {
+        Drone legacy = drone("d1", "m1");
+        legacy.setLoadedWeight(null);
+        legacy.setMedCount(null);
+        when(droneRepository.findById("d1")).thenReturn(Mono.just(legacy));
+        when(medicationRepository.findAllById(anyIterable())).thenReturn(Flux.just(Medication.builder().id("m1").weight(30).build()));
+        when(droneRepository.loadMedication(eq("d1"), any(), eq(10f))).thenReturn(Mono.empty(), Mono.just(legacy));
+
+        StepVerifier.create(service.loadDrone("d1", medRequest(10)).map(ErrorResponse::getCode))
+                .expectNext("200")
+                .verifyComplete();
+        verify(droneRepository).backfillPayload("d1", 30f, 1);
+    }
+
+    @Test
+    void transitionFromUnexpectedStateIsAConflict() {
+        Drone idle = drone("d1");
+        idle.setState(State.IDLE);
+        when(droneRepository.findById("d1")).thenReturn(Mono.just(idle));
+
+        StepVerifier.create(service.deliverDrone("d1"))
+                .expectError(DroneStateConflictException.class)
+                .verify();
+        StepVerifier.create(service.deliverDrone("gone"))
+                .expectError(DroneNotExistException.class)
+                .verify();
+        assertThat(events).isEmpty();
+    }
+
+    @Test
+    void withWriteBehindOnTransitionsGoThroughTheBlockingService() {
+        DroneRepository blockingRepository = mock(DroneRepository.class);
+        FleetCache fleetCache = new FleetCache(true, 100);
+        DroneMetrics metrics = new DroneMetrics(new SimpleMeterRegistry());
+        DroneWriteBehind writeBehind = new DroneWriteBehind(blockingRepository, fleetCache, true, 200);
+        DroneService rules = new DroneService(blockingRepository, mock(MedicationRepository.class), fleetCache,
+                events::add, metrics, new MedicationCache(false, 0, 0), writeBehind, new DroneCommandQueues(false, 0, 0));
+        ReactiveDroneService queued = new ReactiveDroneService(droneRepository, medicationRepository, rules, fleetCache,
+                events::add, metrics, new MedicationCache(false, 0, 0));
+        Drone loaded = drone("d1");
+        loaded.setState(State.LOADED);
+        loaded.setVersion(3L);
+        fleetCache.put(loaded);
+
+        StepVerifier.create(queued.sendDroneForDelivery("d1")).verifyComplete();
+        StepVerifier.create(queued.getDroneById("d1").map(Drone::getState))
+                .expectNext(State.DELIVERING)
+                .verifyComplete();
+
+        // acknowledged from the cache, the write waits for the next flush
+        assertThat(writeBehind.pending()).isEqualTo(1);
+        verify(droneRepository, never()).transitionState(any(), any(), any());
+        verify(blockingRepository, never()).transitionState(any(), any(), any());
+    }
+
+    private static MedRequest medRequest(float weight) {
+        return MedRequest.builder().name("med").code("MED_1").weight(weight).build();
+    }
+
+    private static Drone drone(String serialNumber, String... medIds) {
+        return Drone.builder()
+                .serialNumber(serialNumber)
+                .weightClass(WeightModel.HEAVY_WEIGHT)
+                .weightLimit(500)
+                .batteryCapacity(100)
+                .state(State.LOADING)
+                .loadedMeds(new ArrayList<>(List.of(medIds)))
+                .loadedWeight(0f)
+                .medCount(medIds.length)
+                .build();
+    }
+}
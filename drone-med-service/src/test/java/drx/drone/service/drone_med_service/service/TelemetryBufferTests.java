@@ -0,0 +1,95 @@
+package drx.drone.service.drone_med_service.service;
+
+import drx.drone.service.drone_med_service.dto.TelemetryReading;
+import drx.drone.service.drone_med_service.model.Drone;
+import drx.drone.service.drone_med_service.model.State;
+import drx.drone.service.drone_med_service.repository.DroneRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Collection;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TelemetryBufferTests {
+
+    private DroneRepository droneRepository;
+    private FleetCache fleetCache;
+
+    @BeforeEach
+    void setUp() {
+        droneRepository = mock(DroneRepository.class);
+        fleetCache = new FleetCache(true, 100);
+        when(droneRepository.isAvailable()).thenReturn(true);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flushWritesOnlyTheLatestReadingPerDrone() {
+        TelemetryBuffer buffer = buffer(100, 100);
+        fleetCache.put(Drone.builder().serialNumber("d1").state(State.IDLE).batteryCapacity(100).version(4L).build());
+        when(droneRepository.applyTelemetry(anyCollection())).thenReturn(2);
+
+        assertThat(buffer.submit(List.of(reading("d1", 50, 1), reading("d1", 40, 3), reading("d2", 90, 1))).getCode())
+                .isEqualTo("200");
+        assertThat(buffer.submit(List.of(reading("d1", 45, 2))).getCode()).isEqualTo("200");
+        assertThat(buffer.flush()).isEqualTo(2);
+
+        ArgumentCaptor<Collection<TelemetryReading>> written = ArgumentCaptor.forClass(Collection.class);
+        verify(droneRepository).applyTelemetry(written.capture());
+        assertThat(written.getValue()).containsExactlyInAnyOrder(reading("d1", 40, 3), reading("d2", 90, 1));
+        assertThat(buffer.pending()).isZero();
+        Drone cached = fleetCache.get("d1").orElseThrow();
+        assertThat(cached.getBatteryCapacity()).isEqualTo(40);
+        assertThat(cached.getVersion()).isEqualTo(5L);
+    }
+
+    @Test
+    void batchThatDoesNotFitIsRefusedWhole() {
+        TelemetryBuffer buffer = buffer(2, 100);
+
+        assertThat(buffer.submit(List.of(reading("d1", 50, 1), reading("d2", 50, 1))).getCode()).isEqualTo("200");
+        assertThat(buffer.submit(List.of(reading("d1", 49, 2), reading("d3", 50, 1))).getCode()).isEqualTo("608");
+        assertThat(buffer.retryAfterSeconds()).isEqualTo(1);
+        // already waiting drones need no room
+        assertThat(buffer.submit(List.of(reading("d1", 48, 3))).getCode()).isEqualTo("200");
+        assertThat(buffer.submit(List.of(reading("d1", 101, 4))).getCode()).isEqualTo("605");
+        assertThat(buffer.pending()).isEqualTo(2);
+    }
+
+    @Test
+    void failedFlushKeepsReadingsForTheNextRound() {
+        TelemetryBuffer buffer = buffer(100, 100);
+        when(droneRepository.applyTelemetry(anyCollection())).thenThrow(new IllegalStateException("no primary"));
+
+        buffer.submit(List.of(reading("d1", 50, 1), reading("d2", 60, 1)));
+        assertThat(buffer.flush()).isZero();
+        assertThat(buffer.pending()).isEqualTo(2);
+    }
+
+    @Test
+    void fullEnoughBufferFlushesWithoutWaitingForTheTick() {
+        TelemetryBuffer buffer = buffer(100, 2);
+
+        buffer.submit(List.of(reading("d1", 50, 1)));
+        verify(droneRepository, never()).applyTelemetry(anyCollection());
+        buffer.submit(List.of(reading("d2", 50, 1)));
+        verify(droneRepository).applyTelemetry(anyCollection());
+        assertThat(buffer.pending()).isZero();
+    }
+
+    private TelemetryBuffer buffer(int bufferSize, int flushSize) {
+        return new TelemetryBuffer(droneRepository, fleetCache, Runnable::run, bufferSize, flushSize, 1000);
+    }
+
+    private static TelemetryReading reading(String serialNumber, int battery, long timestamp) {
+        return TelemetryReading.builder().serialNumber(serialNumber).battery(battery).timestamp(timestamp).build();
+    }
+}
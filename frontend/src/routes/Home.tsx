@@ -101,86 +101,56 @@ function CardThing({serialNumber, weightClass, state, batteryCapacity}: {
     )
 }
 
-export function DronesHomePage() {
-
-    document.title = "Home";
-
-    // STATE == "LOADED"
-    const [loadedDrones, setLoadedDrones] = useState([]);
-    useEffect(() => {
-        async function getLoadedDrones() {
-            try {
-                const res = await fetch("http://localhost:8080/api/v1/drones/loaded"); // get all drones
-                const data = await res.json();
-                setLoadedDrones(data);
-
-                saveEventToLocalStorage(`Fetched all loaded drones`);
-            } catch (error) {
-                console.error("Error fetching drones:", error);
-                saveEventToLocalStorage(`Error fetching drones`);
-            }
-        }
-
-        getLoadedDrones()
-    }, [loadedDrones]);
-
-    // STATE == "DELIVERING"
-    const [dronesForDelivery, setDronesForDelivery] = useState([]);
-    useEffect(() => {
-        async function getDronesForDelivery() {
-            try {
-                const res = await fetch("http://localhost:8080/api/v1/drones/forDelivery"); // get all drones
-                const data = await res.json();
-                setDronesForDelivery(data);
-
-                saveEventToLocalStorage(`Fetched all drones ready for delivery.`);
-            } catch (error) {
-                console.error("Error fetching drones:", error);
-                saveEventToLocalStorage(`Error fetching drones ready for delivery.`);
-
-            }
-        }
+type Drone = {
+    serialNumber: string,
+    weightClass: string,
+    state: string,
+    batteryCapacity: string,
+    version?: number
+}
 
-        getDronesForDelivery()
-    }, [dronesForDelivery]);
+function keepNewest(drones: Record<string, Drone>, drone: Drone): Record<string, Drone> {
+    const current = drones[drone.serialNumber];
+    if (current && (current.version ?? -1) > (drone.version ?? -1)) {
+        return drones;
+    }
+    return {...drones, [drone.serialNumber]: drone};
+}
 
-    // STATE == "DELIVERED"
-    const [deliveredDrones, setDeliveredDrones] = useState([]);
-    useEffect(() => {
-        async function getDeliveredDrones() {
-            try {
-                const res = await fetch("http://localhost:8080/api/v1/drones/delivered"); // get all drones
-                const data = await res.json();
-                setDeliveredDrones(data);
-
-                saveEventToLocalStorage(`Fetched all delivered drones.`);
-            } catch (error) {
-                console.error("Error fetching drones:", error);
-                saveEventToLocalStorage(`Error fetching delivered drones.`);
-            }
-        }
+export function DronesHomePage() {
 
-        getDeliveredDrones()
-    }, [deliveredDrones]);
+    document.title = "Home";
 
-    // STATE == "RETURNING"
-    const [returningDrones, setReturningDrones] = useState([]);
+    // one event stream instead of polling /loaded, /forDelivery, /delivered and /returning
+    const [drones, setDrones] = useState<Record<string, Drone>>({});
     useEffect(() => {
-        async function getReturningDrones() {
-            try {
-                const res = await fetch("http://localhost:8080/api/v1/drones/returning"); // get all drones
-                const data = await res.json();
-                setReturningDrones(data);
-
-                saveEventToLocalStorage(`Fetched all returning drones.`);
-            } catch (error) {
-                console.error("Error fetching drones:", error);
-                saveEventToLocalStorage(`Error fetching returning drones.`);
-            }
-        }
-
-        getReturningDrones()
-    }, [returningDrones]);
+        const events = new EventSource("http://localhost:8080/api/v1/drones/events");
+
+        events.addEventListener("snapshot", (e) => {
+            const snapshot: Drone[] = JSON.parse((e as MessageEvent).data);
+            // changes can arrive before the snapshot, keep whichever copy is newer
+            setDrones(current => snapshot.reduce((all, drone) => keepNewest(all, drone), current));
+            saveEventToLocalStorage(`Fetched all drones`);
+        });
+        events.addEventListener("drone", (e) => {
+            const drone: Drone = JSON.parse((e as MessageEvent).data);
+            setDrones(current => keepNewest(current, drone));
+            saveEventToLocalStorage(`Drone ${drone.serialNumber} is now ${drone.state}`);
+        });
+        events.onerror = (error) => {
+            // EventSource reconnects by itself and gets a fresh snapshot
+            console.error("Drone event stream error:", error);
+            saveEventToLocalStorage(`Error streaming drones`);
+        };
+
+        return () => events.close();
+    }, []);
+
+    const inState = (state: string) => Object.values(drones).filter(drone => drone.state === state);
+    const loadedDrones = inState("LOADED");
+    const dronesForDelivery = inState("DELIVERING");
+    const deliveredDrones = inState("DELIVERED");
+    const returningDrones = inState("RETURNING");
 
     return (
         <div className="flex justify-center">